@@ -0,0 +1,90 @@
+package uk.ac.ncl.tom.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.ac.ncl.tom.events.RentalEventListener;
+import uk.ac.ncl.tom.management.PropertyManager;
+import uk.ac.ncl.tom.properties.PropertyCode;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+import static uk.ac.ncl.tom.properties.PropertyFactory.labelApartment;
+import static uk.ac.ncl.tom.properties.PropertyFactory.labelVilla;
+
+/**
+ * Benchmark state holding a Property Manager loaded with a portfolio of the given size and mix of Villas and Apartments,
+ * with half of each property type rented for between 1 and 60 days.
+ * A new Property Manager, with registries of its own, is created for every trial, so the portfolio is always built
+ * from scratch and no property codes or tenant IDs are left over from an earlier trial.
+ *
+ * @author Thomas Hague
+ */
+@State(Scope.Benchmark)
+public class PortfolioState {
+    private static final LocalDate FIRST_DOB = LocalDate.of(1960, 1, 1);
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int portfolioSize;
+
+    @Param({"0.1", "0.5", "0.9"})
+    public double villaShare;
+
+    public PropertyManager manager;
+    private int tenantsCreated;
+    private long operations;
+
+    /**
+     * Creates a new Property Manager and builds the portfolio, then rents out half of the Villas and half of the
+     * Apartments. Rental events are ignored, so the benchmarks don't measure the console listener queueing and
+     * dropping them. There are enough pool cleaning crews to clean every dirty pool whenever cleanPools is called
+     * between iterations.
+     */
+    @Setup(Level.Trial)
+    public void buildPortfolio() {
+        manager = PropertyManager.newInstance(RentalEventListener.NONE);
+        manager.getPropertyCodes().setCodeDigits(PropertyCode.MAX_CODE_DIGITS);
+        manager.setPoolCleaningCrews(Integer.MAX_VALUE);
+        int villas = (int) Math.round(portfolioSize * villaShare);
+        for (int i = 0; i < portfolioSize; i++) {
+            manager.addProperty(i < villas ? labelVilla : labelApartment);
+        }
+        for (int i = 0; i < villas / 2; i++) {
+            manager.issueRentalContract(newTenant(), labelVilla, 1 + i % 60);
+        }
+        for (int i = 0; i < (portfolioSize - villas) / 2; i++) {
+            manager.issueRentalContract(newTenant(), labelApartment, 1 + i % 60);
+        }
+    }
+
+    /**
+     * Returns the property type for the next operation, so that operations follow the portfolio's mix of Villas and
+     * Apartments.
+     *
+     * @return either Villa or Apartment.
+     */
+    public String nextPropertyType() {
+        return (operations++ % 100) < Math.round(villaShare * 100) ? labelVilla : labelApartment;
+    }
+
+    /**
+     * Adds a new premium tenant old enough to rent either property type, with a name and date of birth that haven't
+     * been used before.
+     *
+     * @return the new tenant record.
+     */
+    public TenantRecord newTenant() {
+        int n = tenantsCreated++;
+        LocalDate dob = FIRST_DOB.plusDays(n % 10000);
+        return manager.addTenantRecord("Tenant" + n, "Bench", toDate(dob), true);
+    }
+
+    static Date toDate(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,45 @@
+package uk.ac.ncl.tom.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ncl.tom.properties.Property;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.ncl.tom.properties.PropertyFactory.labelApartment;
+import static uk.ac.ncl.tom.properties.PropertyFactory.labelVilla;
+
+/**
+ * Benchmarks of the Property Manager's read-only operations, which leave the portfolio unchanged so can be timed
+ * one call at a time.
+ *
+ * @author Thomas Hague
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyManagerQueryBenchmark {
+
+    @Benchmark
+    public int noOfAvailableVillas(PortfolioState portfolio) {
+        return portfolio.manager.noOfAvailableProperties(labelVilla);
+    }
+
+    @Benchmark
+    public int noOfAvailableApartments(PortfolioState portfolio) {
+        return portfolio.manager.noOfAvailableProperties(labelApartment);
+    }
+
+    @Benchmark
+    public Collection<Property> getPropertiesTerminatingSoon(PortfolioState portfolio) {
+        return portfolio.manager.getPropertiesTerminatingSoon();
+    }
+}
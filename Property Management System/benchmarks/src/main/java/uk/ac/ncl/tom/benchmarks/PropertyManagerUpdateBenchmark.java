@@ -0,0 +1,114 @@
+package uk.ac.ncl.tom.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the Property Manager's operations that change the portfolio.
+ * Each measurement is a batch of BATCH_SIZE calls, timed as one shot, and tenants used in a batch are prepared before
+ * the batch and have their rentals terminated after it, with the pools of the Villas they leave cleaned straight
+ * away, so every batch starts from the same number of properties that can be rented.
+ * Results are reported per batch, so the time of one call is the reported time divided by BATCH_SIZE.
+ *
+ * @author Thomas Hague
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, batchSize = PropertyManagerUpdateBenchmark.BATCH_SIZE)
+@Measurement(iterations = 50, batchSize = PropertyManagerUpdateBenchmark.BATCH_SIZE)
+@Fork(1)
+public class PropertyManagerUpdateBenchmark {
+    static final int BATCH_SIZE = 100;
+
+    /**
+     * Tenants prepared for one batch of rental contracts.
+     */
+    @State(Scope.Thread)
+    public static class BatchState {
+        final List<TenantRecord> tenants = new ArrayList<>();
+        int next;
+
+        /**
+         * Adds a batch of new tenants who aren't renting anything yet.
+         */
+        @Setup(Level.Iteration)
+        public void prepareTenants(PortfolioState portfolio) {
+            tenants.clear();
+            next = 0;
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                tenants.add(portfolio.newTenant());
+            }
+        }
+
+        /**
+         * Terminates any rentals still held by the batch's tenants, and cleans the pools of the Villas they leave, so
+         * the properties can be rented again by the next batch rather than being rejected for a dirty pool.
+         */
+        @TearDown(Level.Iteration)
+        public void releaseRentals(PortfolioState portfolio) {
+            for (TenantRecord tR : tenants) {
+                if (portfolio.manager.getTenantsProperties().containsKey(tR.getTenantID())) {
+                    portfolio.manager.terminateRental(tR);
+                }
+            }
+            portfolio.manager.cleanPools();
+        }
+
+        TenantRecord nextTenant() {
+            return tenants.get(next++);
+        }
+    }
+
+    /**
+     * Tenants who have each been issued a rental contract before the batch, ready to be terminated.
+     */
+    @State(Scope.Thread)
+    public static class RentedBatchState extends BatchState {
+
+        @Setup(Level.Iteration)
+        public void issueContracts(PortfolioState portfolio) {
+            for (TenantRecord tR : tenants) {
+                portfolio.manager.issueRentalContract(tR, portfolio.nextPropertyType(), 30);
+            }
+        }
+    }
+
+    @Benchmark
+    public Property addProperty(PortfolioState portfolio) {
+        return portfolio.manager.addProperty(portfolio.nextPropertyType());
+    }
+
+    @Benchmark
+    public TenantRecord addTenantRecord(PortfolioState portfolio) {
+        return portfolio.newTenant();
+    }
+
+    @Benchmark
+    public boolean issueRentalContract(PortfolioState portfolio, BatchState batch) {
+        return portfolio.manager.issueRentalContract(batch.nextTenant(), portfolio.nextPropertyType(), 30);
+    }
+
+    @Benchmark
+    public void terminateRental(PortfolioState portfolio, RentedBatchState batch) {
+        TenantRecord tR = batch.nextTenant();
+        if (portfolio.manager.getTenantsProperties().containsKey(tR.getTenantID())) {
+            portfolio.manager.terminateRental(tR);
+        }
+    }
+}
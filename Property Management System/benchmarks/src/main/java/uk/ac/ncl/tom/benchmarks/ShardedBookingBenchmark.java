@@ -0,0 +1,97 @@
+package uk.ac.ncl.tom.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ncl.tom.events.RentalEventListener;
+import uk.ac.ncl.tom.management.ShardedPropertyManager;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark of booking throughput of the sharded Property Manager, with every available processor booking at once.
+ * Each operation issues a rental contract to one of the thread's own tenants and terminates it again, so the number
+ * of free properties stays the same. Comparing one shard with several shows how booking scales with the number of
+ * shards.
+ *
+ * @author Thomas Hague
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Threads(Threads.MAX)
+@Fork(1)
+public class ShardedBookingBenchmark {
+    private static final int APARTMENTS = 10_000;
+    private static final int TENANTS_PER_THREAD = 64;
+
+    /**
+     * Sharded Property Manager shared by every thread.
+     */
+    @State(Scope.Benchmark)
+    public static class ShardedState {
+        @Param({"1", "4", "16"})
+        public int shards;
+
+        ShardedPropertyManager manager;
+        final AtomicInteger tenantCount = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void createPortfolio() {
+            manager = new ShardedPropertyManager(shards, RentalEventListener.NONE);
+            manager.getPropertyCodes().setCodeDigits(5);
+            manager.addProperties("Apartment", APARTMENTS);
+        }
+
+        /**
+         * Adds a new tenant, born on a different day to every other tenant.
+         */
+        TenantRecord newTenant() {
+            LocalDate dob = LocalDate.of(1950, 1, 1).plusDays(tenantCount.getAndIncrement());
+            return manager.addTenantRecord("Bench", "Tenant",
+                    Date.from(dob.atStartOfDay(ZoneId.systemDefault()).toInstant()), false);
+        }
+    }
+
+    /**
+     * Tenants that only one thread books for.
+     */
+    @State(Scope.Thread)
+    public static class ThreadTenants {
+        final TenantRecord[] tenants = new TenantRecord[TENANTS_PER_THREAD];
+        int next;
+
+        @Setup(Level.Trial)
+        public void addTenants(ShardedState sharded) {
+            for (int i = 0; i < tenants.length; i++) {
+                tenants[i] = sharded.newTenant();
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean bookAndTerminate(ShardedState sharded, ThreadTenants thread) {
+        TenantRecord tR = thread.tenants[thread.next++ & (TENANTS_PER_THREAD - 1)];
+        boolean issued = sharded.manager.issueRentalContract(tR, "Apartment", 7);
+        if (issued) {
+            sharded.manager.terminateRental(tR);
+        }
+        return issued;
+    }
+}
@@ -0,0 +1,236 @@
+package uk.ac.ncl.tom.events;
+
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class representing a listener that hands events to another listener on a background thread, so the threads making
+ * rental requests never wait for the other listener, for example while it writes to the console.
+ * Events are put on a lock-free queue and the background thread takes them off in batches, calling the other
+ * listener's flush method after each batch. The queue holds a limited number of events; if it is full, new events are
+ * dropped and counted rather than slowing down rental requests.
+ * If the other listener throws an exception, the event is counted as failed and the exception is passed to the
+ * background thread's uncaught exception handler, and the thread carries on with the next event.
+ *
+ * @author Thomas Hague
+ */
+
+public final class AsyncRentalEventListener implements RentalEventListener, Closeable {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int BATCH_SIZE = 256;
+
+    private final RentalEventListener delegate;
+    private final int capacity;
+    private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean writerWaiting = new AtomicBoolean();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Creates a listener that passes events to the specified listener, holding up to DEFAULT_CAPACITY events.
+     *
+     * @param delegate , listener the events are passed to.
+     */
+    public AsyncRentalEventListener(RentalEventListener delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a listener that passes events to the specified listener, holding up to the specified number of events.
+     * Exceptions are thrown if the listener is null or the capacity isn't positive.
+     *
+     * @param delegate , listener the events are passed to.
+     * @param capacity , most events that can be waiting to be passed on.
+     */
+    public AsyncRentalEventListener(RentalEventListener delegate, int capacity) {
+        if (delegate == null || capacity <= 0) {
+            throw new IllegalArgumentException("Listener can't be null and the capacity must be positive.");
+        }
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.writer = new Thread(this::drain, "rental-event-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void contractIssued(long day, TenantRecord tenantRecord, Property property, int duration) {
+        offer(new Event(Event.ISSUED, day, tenantRecord, property, null, duration, null, 0, 0));
+    }
+
+    @Override
+    public void contractRejected(long day, TenantRecord tenantRecord, String propertyType, RejectionReason reason) {
+        offer(new Event(Event.REJECTED, day, tenantRecord, null, propertyType, 0, reason, 0, 0));
+    }
+
+    @Override
+    public void rentalTerminated(long day, TenantRecord tenantRecord, Property property) {
+        offer(new Event(Event.TERMINATED, day, tenantRecord, property, null, 0, null, 0, 0));
+    }
+
+    @Override
+    public void lapsedRentalsTerminated(long day, int villas, int apartments) {
+        offer(new Event(Event.LAPSED, day, null, null, null, 0, null, villas, apartments));
+    }
+
+    /**
+     * Returns the number of events that were dropped because the queue was full.
+     *
+     * @return a long
+     */
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of events, and flushes, that the other listener threw an exception for.
+     *
+     * @return a long
+     */
+    public long getFailedEvents() {
+        return failed.sum();
+    }
+
+    /**
+     * Passes every event already queued to the other listener, then stops the background thread. Events sent after
+     * the listener is closed are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void offer(Event event) {
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(event);
+        if (writerWaiting.get() && writerWaiting.compareAndSet(true, false)) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Run by the background thread, passes events to the other listener in batches until the listener is closed and
+     * the queue is empty. The thread parks while there is nothing to do.
+     */
+    private void drain() {
+        while (true) {
+            int delivered = 0;
+            Event event;
+            while (delivered < BATCH_SIZE && (event = queue.poll()) != null) {
+                queued.decrementAndGet();
+                deliver(event);
+                delivered++;
+            }
+            if (delivered > 0) {
+                flushDelegate();
+                continue;
+            }
+            if (closed) {
+                return;
+            }
+            writerWaiting.set(true);
+            // an event may have been queued before the flag was set, so look again before parking.
+            if (queue.isEmpty() && !closed) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+            }
+            writerWaiting.set(false);
+        }
+    }
+
+    private void deliver(Event e) {
+        try {
+            switch (e.kind) {
+                case Event.ISSUED:
+                    delegate.contractIssued(e.day, e.tenantRecord, e.property, e.duration);
+                    break;
+                case Event.REJECTED:
+                    delegate.contractRejected(e.day, e.tenantRecord, e.propertyType, e.reason);
+                    break;
+                case Event.LAPSED:
+                    delegate.lapsedRentalsTerminated(e.day, e.villas, e.apartments);
+                    break;
+                default:
+                    delegate.rentalTerminated(e.day, e.tenantRecord, e.property);
+            }
+        } catch (RuntimeException ex) {
+            delegateFailed(ex);
+        }
+    }
+
+    private void flushDelegate() {
+        try {
+            delegate.flush();
+        } catch (RuntimeException ex) {
+            delegateFailed(ex);
+        }
+    }
+
+    /**
+     * Counts an exception thrown by the other listener, and passes it to the background thread's uncaught exception
+     * handler without stopping the thread.
+     */
+    private void delegateFailed(RuntimeException ex) {
+        failed.increment();
+        Thread t = Thread.currentThread();
+        t.getUncaughtExceptionHandler().uncaughtException(t, ex);
+    }
+
+    /**
+     * Class representing one queued event.
+     */
+    private static final class Event {
+        private static final int ISSUED = 0;
+        private static final int REJECTED = 1;
+        private static final int TERMINATED = 2;
+        private static final int LAPSED = 3;
+
+        private final int kind;
+        private final long day;
+        private final TenantRecord tenantRecord;
+        private final Property property;
+        private final String propertyType;
+        private final int duration;
+        private final RejectionReason reason;
+        private final int villas;
+        private final int apartments;
+
+        private Event(int kind, long day, TenantRecord tenantRecord, Property property, String propertyType,
+                      int duration, RejectionReason reason, int villas, int apartments) {
+            this.kind = kind;
+            this.day = day;
+            this.tenantRecord = tenantRecord;
+            this.property = property;
+            this.propertyType = propertyType;
+            this.duration = duration;
+            this.reason = reason;
+            this.villas = villas;
+            this.apartments = apartments;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package uk.ac.ncl.tom.events;
+
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Class representing a listener that writes a message for each rental event to a print stream, such as System.out.
+ * Messages are built up in a buffer and written out together when flush is called, so the stream is only locked once
+ * per batch. It is meant to be wrapped in an AsyncRentalEventListener, which calls flush after every batch.
+ *
+ * @author Thomas Hague
+ */
+
+public final class PrintStreamRentalEventListener implements RentalEventListener {
+    private final PrintStream out;
+    private final StringBuilder buffer = new StringBuilder();
+
+    /**
+     * Creates a listener that writes to the specified print stream.
+     * Exception is thrown if the print stream is null.
+     *
+     * @param out , stream the messages are written to.
+     */
+    public PrintStreamRentalEventListener(PrintStream out) {
+        if (out == null) {
+            throw new IllegalArgumentException("Print stream can't be null.");
+        }
+        this.out = out;
+    }
+
+    @Override
+    public synchronized void contractIssued(long day, TenantRecord tenantRecord, Property property, int duration) {
+        line("Tenant: " + tenantRecord.getName() + ", has rented " + property + " for " + duration + " days.");
+    }
+
+    @Override
+    public synchronized void contractRejected(long day, TenantRecord tenantRecord, String propertyType,
+                                              RejectionReason reason) {
+        switch (reason) {
+            case UNDER_18:
+                line("Tenant needs to be 18 to rent an apartment. They will be eligible in " +
+                        yearsUntil(reason.getRequiredAge(), tenantRecord, day) + " years time.");
+                break;
+            case UNDER_21:
+                line("Tenant needs to be 21 to rent a villa. They will be eligible in " +
+                        yearsUntil(reason.getRequiredAge(), tenantRecord, day) + " years time.");
+                break;
+            case NOT_PREMIUM:
+                line("Tenant needs to be premium class to rent a Villa. Please have a look at our apartments for " +
+                        "rental instead.");
+                break;
+            case ALREADY_RENTING:
+                line("Tenant: " + tenantRecord.getName() + " can only rent one property at a time.");
+                break;
+            case DIRTY_POOL:
+                line("Unfortunately we currently have no available Villas for rental with clean pools. Please keep " +
+                        "checking back as we clean the villa pools daily.");
+                break;
+            default:
+                line("All " + propertyType + "'s are currently already rented. Please join our waiting list and " +
+                        "you will be given the first one that becomes available.");
+        }
+    }
+
+    @Override
+    public synchronized void rentalTerminated(long day, TenantRecord tenantRecord, Property property) {
+        line(tenantRecord.getName() + "'s rental of " + property + " has been terminated.");
+    }
+
+    @Override
+    public synchronized void lapsedRentalsTerminated(long day, int villas, int apartments) {
+        line("Rentals that ended before " + LocalDate.ofEpochDay(day) + " have been terminated: " + villas +
+                " Villas and " + apartments + " Apartments are free again.");
+    }
+
+    /**
+     * Writes every buffered message to the print stream.
+     */
+    @Override
+    public synchronized void flush() {
+        if (buffer.length() > 0) {
+            out.print(buffer);
+            out.flush();
+            buffer.setLength(0);
+        }
+    }
+
+    private void line(String message) {
+        buffer.append(message).append(System.lineSeparator());
+    }
+
+    /**
+     * Returns the number of years until the tenant reaches the specified age, counting from the specified day.
+     */
+    private static long yearsUntil(int age, TenantRecord tenantRecord, long day) {
+        return age - ChronoUnit.YEARS.between(LocalDate.ofEpochDay(tenantRecord.getDateOfBirthEpochDay()),
+                LocalDate.ofEpochDay(day));
+    }
+}
@@ -0,0 +1,54 @@
+package uk.ac.ncl.tom.events;
+
+/**
+ * Enum representing why a rental contract wasn't issued.
+ *
+ * @author Thomas Hague
+ */
+
+public enum RejectionReason {
+    /**
+     * Tenant is under 18, so can't rent an apartment.
+     */
+    UNDER_18(18),
+
+    /**
+     * Tenant is under 21, so can't rent a Villa.
+     */
+    UNDER_21(21),
+
+    /**
+     * Tenant isn't premium class, so can't rent a Villa.
+     */
+    NOT_PREMIUM(0),
+
+    /**
+     * Tenant is already renting a property, and can only rent one at a time.
+     */
+    ALREADY_RENTING(0),
+
+    /**
+     * Every property of the type is already rented.
+     */
+    NO_STOCK(0),
+
+    /**
+     * Every Villa that isn't rented is waiting for its pool to be cleaned.
+     */
+    DIRTY_POOL(0);
+
+    private final int requiredAge;
+
+    RejectionReason(int requiredAge) {
+        this.requiredAge = requiredAge;
+    }
+
+    /**
+     * Returns the age the tenant needs to be, for the age rejections.
+     *
+     * @return an int, or 0 if the rejection isn't about the tenant's age.
+     */
+    public int getRequiredAge() {
+        return requiredAge;
+    }
+}
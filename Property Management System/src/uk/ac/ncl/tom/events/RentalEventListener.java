@@ -0,0 +1,75 @@
+package uk.ac.ncl.tom.events;
+
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+/**
+ * RentalEventListener - interface to something that is told about the outcome of rental requests and terminations.
+ * The Property Manager calls the listener after it has released its locks, from the thread that made the request.
+ *
+ * @author Thomas Hague
+ */
+public interface RentalEventListener {
+    /**
+     * Listener that ignores every event.
+     */
+    RentalEventListener NONE = new RentalEventListener() {
+        @Override
+        public void contractIssued(long day, TenantRecord tenantRecord, Property property, int duration) {
+        }
+
+        @Override
+        public void contractRejected(long day, TenantRecord tenantRecord, String propertyType, RejectionReason reason) {
+        }
+
+        @Override
+        public void rentalTerminated(long day, TenantRecord tenantRecord, Property property) {
+        }
+    };
+
+    /**
+     * Called when a rental contract has been issued.
+     *
+     * @param day          the contract was issued on, in days since the epoch
+     * @param tenantRecord tenant renting the property
+     * @param property     that has been rented
+     * @param duration     of the rental, in days
+     */
+    void contractIssued(long day, TenantRecord tenantRecord, Property property, int duration);
+
+    /**
+     * Called when a rental contract couldn't be issued.
+     *
+     * @param day          the request was made on, in days since the epoch
+     * @param tenantRecord tenant that asked to rent a property
+     * @param propertyType either Villa or Apartment
+     * @param reason       why the contract wasn't issued
+     */
+    void contractRejected(long day, TenantRecord tenantRecord, String propertyType, RejectionReason reason);
+
+    /**
+     * Called when a rental has been terminated.
+     *
+     * @param day          the rental was terminated on, in days since the epoch
+     * @param tenantRecord tenant that was renting the property
+     * @param property     that was rented
+     */
+    void rentalTerminated(long day, TenantRecord tenantRecord, Property property);
+
+    /**
+     * Called after the rentals that had lapsed by the specified day have been terminated together. Each terminated
+     * rental has already been passed to rentalTerminated.
+     *
+     * @param day        the rentals were terminated on, in days since the epoch
+     * @param villas     number of Villa rentals terminated
+     * @param apartments number of Apartment rentals terminated
+     */
+    default void lapsedRentalsTerminated(long day, int villas, int apartments) {
+    }
+
+    /**
+     * Called after a batch of events has been passed to the listener, so anything it has buffered can be written out.
+     */
+    default void flush() {
+    }
+}
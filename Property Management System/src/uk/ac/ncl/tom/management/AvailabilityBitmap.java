@@ -0,0 +1,302 @@
+package uk.ac.ncl.tom.management;
+
+import uk.ac.ncl.tom.properties.PropertyStore;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Class representing the availability of the properties of one type, used by the Property Manager as an index so that
+ * availability counts and picking an arbitrary free property don't need to search through every property on the system.
+ * Each property in the index is given a dense slot of its own, kept in the property store next to the property, and an
+ * array maps slots back to property store ids. Slots of removed properties are reused, so the index only grows with
+ * the properties of this type, however many properties of the other type are in the Property Manager's store.
+ * Three bitsets record which slots hold a property, which are rented and which have a clean pool, so the properties
+ * that can be rented are found 64 at a time with members & ~rented & cleanPool.
+ * The number of rentable properties in each block of 4096 slots is kept in a Fenwick tree, so a random rentable
+ * property is picked by choosing its rank and then selecting the block, the word and the bit holding that rank,
+ * without building a list of candidates.
+ *
+ * @author Thomas Hague
+ */
+
+final class AvailabilityBitmap {
+    private static final int BLOCK_WORDS_BITS = 6;
+    private static final int BLOCK_WORDS = 1 << BLOCK_WORDS_BITS;
+
+    private long[] members = new long[0];
+    private long[] rented = new long[0];
+    private long[] cleanPool = new long[0];
+    /**
+     * Fenwick tree of the number of rentable properties in each block, indexed from 1.
+     */
+    private int[] blockCounts = new int[1];
+    private int free;
+    private int available;
+
+    private final PropertyStore store;
+    /**
+     * Property store id of the property in each slot.
+     */
+    private int[] storeIds = new int[0];
+    private int slotCount;
+    private int[] releasedSlots = new int[0];
+    private int releasedSlotCount;
+
+    /**
+     * Creates an empty index of properties kept in the specified property store.
+     *
+     * @param store , property store of the Property Manager the index belongs to.
+     */
+    AvailabilityBitmap(PropertyStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Marks the property with the specified id as free, adding it to the index if it isn't already in it.
+     *
+     * @param id,        of the property in the property store.
+     * @param cleanPool, whether the property's pool is clean. Always true for Apartments.
+     */
+    void markFree(int id, boolean cleanPool) {
+        int slot = store.availabilitySlot(id);
+        if (slot == PropertyStore.NO_SLOT) {
+            slot = addSlot(id);
+        }
+        boolean wasAvailable = isAvailable(slot);
+        int w = slot >>> 6;
+        long bit = 1L << slot;
+        if ((members[w] & ~rented[w] & bit) == 0) {
+            free++;
+        }
+        members[w] |= bit;
+        rented[w] &= ~bit;
+        this.cleanPool[w] = cleanPool ? this.cleanPool[w] | bit : this.cleanPool[w] & ~bit;
+        changed(slot, wasAvailable);
+    }
+
+    /**
+     * Marks the free property with the specified id as rented. Its pool is no longer clean.
+     *
+     * @param id, of a property in the index.
+     * @return true if the property was free and is now rented, false if it wasn't free.
+     */
+    boolean markRented(int id) {
+        int slot = store.availabilitySlot(id);
+        if (!isFree(slot)) {
+            return false;
+        }
+        boolean wasAvailable = isAvailable(slot);
+        int w = slot >>> 6;
+        long bit = 1L << slot;
+        rented[w] |= bit;
+        cleanPool[w] &= ~bit;
+        free--;
+        changed(slot, wasAvailable);
+        return true;
+    }
+
+    /**
+     * Removes the free property with the specified id from the index, once it has been decommissioned.
+     *
+     * @param id, of a property in the index.
+     * @return true if the property was free and has been removed, false if it wasn't free.
+     */
+    boolean remove(int id) {
+        int slot = store.availabilitySlot(id);
+        if (!isFree(slot)) {
+            return false;
+        }
+        boolean wasAvailable = isAvailable(slot);
+        int w = slot >>> 6;
+        long bit = 1L << slot;
+        members[w] &= ~bit;
+        cleanPool[w] &= ~bit;
+        free--;
+        changed(slot, wasAvailable);
+        releaseSlot(id, slot);
+        return true;
+    }
+
+    /**
+     * Records whether the pool of the property with the specified id is clean.
+     *
+     * @param id,        of a property in the index.
+     * @param cleanPool, whether the property's pool is clean.
+     */
+    void setCleanPool(int id, boolean cleanPool) {
+        int slot = store.availabilitySlot(id);
+        if (slot == PropertyStore.NO_SLOT) {
+            return;
+        }
+        boolean wasAvailable = isAvailable(slot);
+        int w = slot >>> 6;
+        long bit = 1L << slot;
+        this.cleanPool[w] = cleanPool ? this.cleanPool[w] | bit : this.cleanPool[w] & ~bit;
+        changed(slot, wasAvailable);
+    }
+
+    /**
+     * Returns the id of an arbitrary property that is free and has a clean pool, without changing it.
+     *
+     * @param random, source of randomness used to pick the property.
+     * @return an id, or -1 if no property can be rented.
+     */
+    int pickRandom(Random random) {
+        if (available == 0) {
+            return -1;
+        }
+        int rank = random.nextInt(available);
+        // descend the Fenwick tree to the block holding the property with that rank
+        int block = 0;
+        for (int step = Integer.highestOneBit(blockCounts.length - 1); step > 0; step >>>= 1) {
+            int next = block + step;
+            if (next < blockCounts.length && blockCounts[next] <= rank) {
+                block = next;
+                rank -= blockCounts[next];
+            }
+        }
+        int w = block << BLOCK_WORDS_BITS;
+        while (true) {
+            long word = availableWord(w);
+            int count = Long.bitCount(word);
+            if (rank < count) {
+                return storeIds[(w << 6) + select(word, rank)];
+            }
+            rank -= count;
+            w++;
+        }
+    }
+
+    /**
+     * Returns the number of properties that are free, whether or not their pool is clean.
+     *
+     * @return an int
+     */
+    int free() {
+        return free;
+    }
+
+    /**
+     * Returns the number of properties that are free and have a clean pool.
+     *
+     * @return an int
+     */
+    int available() {
+        return available;
+    }
+
+    /**
+     * Returns the number of properties that are free but can't be rented until their pool has been cleaned.
+     *
+     * @return an int
+     */
+    int dirtyPools() {
+        return free - available;
+    }
+
+    /**
+     * Gives the property with the specified id a slot, reusing the most recently released slot if there is one.
+     */
+    private int addSlot(int id) {
+        int slot;
+        if (releasedSlotCount > 0) {
+            slot = releasedSlots[--releasedSlotCount];
+        } else {
+            slot = slotCount++;
+            if (slot == storeIds.length) {
+                storeIds = Arrays.copyOf(storeIds, Math.max(BLOCK_WORDS, storeIds.length * 2));
+            }
+            ensureCapacity(slot);
+        }
+        storeIds[slot] = id;
+        store.setAvailabilitySlot(id, slot);
+        return slot;
+    }
+
+    /**
+     * Takes the property with the specified id out of its slot, so the slot can be given to another property.
+     */
+    private void releaseSlot(int id, int slot) {
+        store.setAvailabilitySlot(id, PropertyStore.NO_SLOT);
+        if (releasedSlotCount == releasedSlots.length) {
+            releasedSlots = Arrays.copyOf(releasedSlots, Math.max(16, releasedSlotCount * 2));
+        }
+        releasedSlots[releasedSlotCount++] = slot;
+    }
+
+    private boolean isFree(int slot) {
+        int w = slot >>> 6;
+        return slot >= 0 && w < members.length && ((members[w] & ~rented[w]) & (1L << slot)) != 0;
+    }
+
+    private boolean isAvailable(int slot) {
+        int w = slot >>> 6;
+        return w < members.length && (availableWord(w) & (1L << slot)) != 0;
+    }
+
+    private long availableWord(int w) {
+        return members[w] & ~rented[w] & cleanPool[w];
+    }
+
+    /**
+     * Updates the count of rentable properties after the property in the specified slot has changed.
+     */
+    private void changed(int slot, boolean wasAvailable) {
+        boolean isAvailable = isAvailable(slot);
+        if (isAvailable != wasAvailable) {
+            int delta = isAvailable ? 1 : -1;
+            available += delta;
+            for (int i = (slot >>> (6 + BLOCK_WORDS_BITS)) + 1; i < blockCounts.length; i += i & -i) {
+                blockCounts[i] += delta;
+            }
+        }
+    }
+
+    /**
+     * Grows the bitsets so they hold the specified slot, doubling their size each time so growing takes constant
+     * amortised time, and rebuilds the Fenwick tree for the new number of blocks.
+     */
+    private void ensureCapacity(int slot) {
+        int w = slot >>> 6;
+        if (w < members.length) {
+            return;
+        }
+        int words = Math.max(BLOCK_WORDS, members.length);
+        while (words <= w) {
+            words <<= 1;
+        }
+        members = Arrays.copyOf(members, words);
+        rented = Arrays.copyOf(rented, words);
+        cleanPool = Arrays.copyOf(cleanPool, words);
+        int blocks = words >>> BLOCK_WORDS_BITS;
+        blockCounts = new int[blocks + 1];
+        for (int b = 0; b < blocks; b++) {
+            int count = 0;
+            for (int i = b << BLOCK_WORDS_BITS; i < (b + 1) << BLOCK_WORDS_BITS; i++) {
+                count += Long.bitCount(availableWord(i));
+            }
+            blockCounts[b + 1] += count;
+            int parent = (b + 1) + ((b + 1) & -(b + 1));
+            if (parent <= blocks) {
+                blockCounts[parent] += blockCounts[b + 1];
+            }
+        }
+    }
+
+    /**
+     * Returns the position of the set bit with the specified rank in a word, counting from the lowest bit.
+     */
+    private static int select(long word, int rank) {
+        int position = 0;
+        for (int width = 32; width > 0; width >>>= 1) {
+            int count = Long.bitCount(word & ((1L << width) - 1));
+            if (rank >= count) {
+                rank -= count;
+                word >>>= width;
+                position += width;
+            }
+        }
+        return position;
+    }
+}
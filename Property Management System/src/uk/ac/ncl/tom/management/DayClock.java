@@ -0,0 +1,108 @@
+package uk.ac.ncl.tom.management;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Class representing the clock the Property Manager reads today's date from, as a number of days since the epoch
+ * (1970-01-01) in the clock's time zone.
+ * Today's date is worked out once and cached along with the instants the day starts and ends, so reading it is just
+ * a comparison of the current time against the cached day until midnight passes.
+ * Any java.time Clock can be used, so tests and simulations can pin the date with Clock.fixed or move it forward with
+ * Clock.offset.
+ *
+ * @author Thomas Hague
+ */
+
+public final class DayClock {
+    private final Clock clock;
+    private volatile Day cached;
+
+    /**
+     * Creates a day clock that reads the time from the specified clock.
+     * Exception is thrown if the clock is null.
+     *
+     * @param clock , source of the current time and time zone.
+     */
+    public DayClock(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock can't be null.");
+        }
+        this.clock = clock;
+        this.cached = dayOf(clock.millis());
+    }
+
+    /**
+     * Returns a day clock that uses the system clock, in the system time zone.
+     *
+     * @return a DayClock
+     */
+    public static DayClock system() {
+        return new DayClock(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Returns today's date, as the number of days since the epoch.
+     *
+     * @return a long.
+     */
+    public long today() {
+        long now = clock.millis();
+        Day day = cached;
+        if (now < day.startMillis || now >= day.endMillis) {
+            day = dayOf(now);
+            cached = day;
+        }
+        return day.epochDay;
+    }
+
+    /**
+     * Returns the number of milliseconds until tomorrow starts, in the clock's time zone.
+     *
+     * @return a long, at least 1.
+     */
+    public long millisUntilTomorrow() {
+        long now = clock.millis();
+        return Math.max(1, dayOf(now).endMillis - now);
+    }
+
+    /**
+     * Returns the clock that the time is read from.
+     *
+     * @return a Clock
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Works out the day the specified instant falls on, and when that day starts and ends, in the clock's time zone.
+     *
+     * @param millis , instant in milliseconds since the epoch.
+     * @return a Day
+     */
+    private Day dayOf(long millis) {
+        ZoneId zone = clock.getZone();
+        LocalDate date = Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+        long start = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        long end = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        return new Day(date.toEpochDay(), start, end);
+    }
+
+    /**
+     * Class representing a cached day and the instants it starts and ends.
+     */
+    private static final class Day {
+        private final long epochDay;
+        private final long startMillis;
+        private final long endMillis;
+
+        private Day(long epochDay, long startMillis, long endMillis) {
+            this.epochDay = epochDay;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package uk.ac.ncl.tom.management;
+
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Class representing the rented properties ordered by the day their rental terminates, used by the Property Manager
+ * to find the rentals terminating within a range of days without checking every rental.
+ * Finding the rentals terminating between two days takes O(log n + k) time, where k is the number of rentals found.
+ * The record of the tenant renting each property is kept too, so rentals that have lapsed can be terminated and
+ * reported without looking through every tenant, even when the tenant is kept by another shard.
+ *
+ * @author Thomas Hague
+ */
+
+final class ExpiryTimeline {
+    private final NavigableMap<Long, Set<Property>> propertiesByDay = new TreeMap<>();
+    private final Map<Property, Long> terminationDays = new HashMap<>();
+    private final Map<Property, TenantRecord> tenants = new HashMap<>();
+
+    /**
+     * Adds the specified property to the timeline on the day its rental terminates. If the property is already on the
+     * timeline, it is moved to the new day.
+     *
+     * @param p,              rented property.
+     * @param tenantRecord,   tenant renting the property.
+     * @param terminationDay, day the rental terminates, in days since the epoch.
+     */
+    void add(Property p, TenantRecord tenantRecord, long terminationDay) {
+        remove(p);
+        Set<Property> onDay = propertiesByDay.get(terminationDay);
+        if (onDay == null) {
+            onDay = new LinkedHashSet<>();
+            propertiesByDay.put(terminationDay, onDay);
+        }
+        onDay.add(p);
+        terminationDays.put(p, terminationDay);
+        tenants.put(p, tenantRecord);
+    }
+
+    /**
+     * Removes the specified property from the timeline, once its rental has been terminated.
+     *
+     * @param p, property whose rental has been terminated.
+     * @return true if the property was on the timeline, false if not.
+     */
+    boolean remove(Property p) {
+        Long terminationDay = terminationDays.remove(p);
+        if (terminationDay == null) {
+            return false;
+        }
+        tenants.remove(p);
+        Set<Property> onDay = propertiesByDay.get(terminationDay);
+        onDay.remove(p);
+        if (onDay.isEmpty()) {
+            propertiesByDay.remove(terminationDay);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the properties with rentals terminating between the two specified days, including both days.
+     *
+     * @param fromDay, first day of the range, in days since the epoch.
+     * @param toDay,   last day of the range, in days since the epoch.
+     * @return a List of properties, ordered by termination day.
+     */
+    List<Property> between(long fromDay, long toDay) {
+        List<Property> terminating = new ArrayList<>();
+        if (fromDay > toDay) {
+            return terminating;
+        }
+        for (Set<Property> onDay : propertiesByDay.subMap(fromDay, true, toDay, true).values()) {
+            terminating.addAll(onDay);
+        }
+        return terminating;
+    }
+
+    /**
+     * Returns the tenants whose rentals terminated before the specified day, so have lapsed.
+     *
+     * @param day, first day that rentals are still live on, in days since the epoch.
+     * @return a List of tenant records, ordered by termination day.
+     */
+    List<TenantRecord> tenantsTerminatingBefore(long day) {
+        List<TenantRecord> lapsed = new ArrayList<>();
+        for (Set<Property> onDay : propertiesByDay.headMap(day, false).values()) {
+            for (Property p : onDay) {
+                lapsed.add(tenants.get(p));
+            }
+        }
+        return lapsed;
+    }
+
+    /**
+     * Returns the number of properties with rentals terminating between the two specified days, including both days.
+     *
+     * @param fromDay, first day of the range, in days since the epoch.
+     * @param toDay,   last day of the range, in days since the epoch.
+     * @return an int
+     */
+    int countBetween(long fromDay, long toDay) {
+        if (fromDay > toDay) {
+            return 0;
+        }
+        int count = 0;
+        for (Set<Property> onDay : propertiesByDay.subMap(fromDay, true, toDay, true).values()) {
+            count += onDay.size();
+        }
+        return count;
+    }
+
+    /**
+     * Passes every rental on the timeline to the specified visitor, in no particular order, without copying them.
+     *
+     * @param visitor, called for each rental.
+     */
+    void forEach(RentalVisitor visitor) {
+        for (Map.Entry<Property, Long> rental : terminationDays.entrySet()) {
+            visitor.rental(rental.getKey(), tenants.get(rental.getKey()), rental.getValue());
+        }
+    }
+
+    /**
+     * Interface to something that is passed the rentals on a timeline.
+     */
+    interface RentalVisitor {
+        void rental(Property p, TenantRecord tenantRecord, long terminationDay);
+    }
+
+    /**
+     * Returns the number of properties on the timeline.
+     *
+     * @return an int
+     */
+    int size() {
+        return terminationDays.size();
+    }
+}
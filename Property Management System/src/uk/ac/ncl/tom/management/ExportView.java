@@ -0,0 +1,124 @@
+package uk.ac.ncl.tom.management;
+
+import uk.ac.ncl.tom.persistence.ExportWriter;
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.properties.PropertyFactory;
+import uk.ac.ncl.tom.properties.PropertyStore;
+import uk.ac.ncl.tom.tenants.Name;
+import uk.ac.ncl.tom.tenants.TenantIDMap;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class representing the properties, tenants and live rentals of a Property Manager at one point in time, captured
+ * for an export.
+ * The properties are a bulk copy of the property store's columns, and the rentals are copied into arrays sized for
+ * every rental when the view is created, so nothing is created per property and no array grows while the rental
+ * stocks are locked. Tenant records never change, so the view holds references to the existing records, which are
+ * noted once the Property Manager has been unlocked. The records are formatted and written after that.
+ *
+ * @author Thomas Hague
+ */
+
+final class ExportView {
+    private final PropertyStore.Columns properties;
+
+    private final int[] rentalIds;
+    private final TenantRecord[] rentalTenants;
+    private final long[] rentalTerminationDays;
+    private int rentalCount;
+
+    private List<TenantRecord> tenants;
+
+    /**
+     * Creates a view of the specified copy of the property store's columns, with room for the specified number of
+     * rentals. Must be called while holding the locks of both rental stocks, with the number of rentals on their
+     * timelines.
+     *
+     * @param properties , copy of the property store's columns.
+     * @param rentals    , number of rentals.
+     */
+    ExportView(PropertyStore.Columns properties, int rentals) {
+        this.properties = properties;
+        rentalIds = new int[rentals];
+        rentalTenants = new TenantRecord[rentals];
+        rentalTerminationDays = new long[rentals];
+    }
+
+    /**
+     * Adds the specified live rental. Must be called while holding the lock of the property's rental stock.
+     *
+     * @param p              , the rented property.
+     * @param tenantRecord   , the tenant renting it.
+     * @param terminationDay , day the rental terminates, in days since the epoch.
+     */
+    void addRental(Property p, TenantRecord tenantRecord, long terminationDay) {
+        rentalIds[rentalCount] = p.getId();
+        rentalTenants[rentalCount] = tenantRecord;
+        rentalTerminationDays[rentalCount] = terminationDay;
+        rentalCount++;
+    }
+
+    /**
+     * Notes the tenants in the specified Map, once the rentals have been added and the rental stocks unlocked.
+     * Tenants added since are harmless, as every tenant renting a property in the view was added before it. A tenant
+     * whose rental was terminated, and who was then decommissioned, after the stocks were unlocked is still noted, from
+     * their rental, so every rental in the view has its tenant.
+     *
+     * @param tenantRecords , the Property Manager's tenants.
+     */
+    void addTenants(TenantIDMap<TenantRecord> tenantRecords) {
+        tenants = new ArrayList<>(tenantRecords.size() + 16);
+        tenantRecords.forEachValue(tenants::add);
+        for (int i = 0; i < rentalCount; i++) {
+            TenantRecord tR = rentalTenants[i];
+            // nearly always in the Map, so the noted tenants are only searched for one that has just been removed
+            if (tenantRecords.get(tR.getTenantID().toLong()) != tR && !containsRecord(tR)) {
+                tenants.add(tR);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the specified tenant record itself, rather than an equal one, has been noted.
+     */
+    private boolean containsRecord(TenantRecord tR) {
+        for (TenantRecord noted : tenants) {
+            if (noted == tR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes every record in the view to the specified writer: the properties, then the tenants, then the rentals.
+     *
+     * @param writer , the export being written.
+     * @throws IOException if the export can't be written.
+     */
+    void writeTo(ExportWriter writer) throws IOException {
+        for (int id = 0; id < properties.size(); id++) {
+            if (properties.isReleased(id)) {
+                continue;
+            }
+            String propertyType = properties.propertyType(id);
+            // Apartments have no pool, and are always exported with a clean one
+            boolean cleanPool = PropertyFactory.labelApartment.equals(propertyType) || properties.isCleanPool(id);
+            writer.property(properties.code(id).toString(), propertyType, properties.isRented(id), cleanPool,
+                    properties.terminationDay(id));
+        }
+        for (TenantRecord tR : tenants) {
+            Name n = tR.getName();
+            writer.tenant(tR.getTenantID().toString(), n.getFirstName(), n.getLastName(), tR.getDateOfBirthEpochDay(),
+                    tR.isPremiumClass());
+        }
+        for (int i = 0; i < rentalCount; i++) {
+            writer.rental(rentalTenants[i].getTenantID().toString(), properties.code(rentalIds[i]).toString(),
+                    rentalTerminationDays[i]);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package uk.ac.ncl.tom.management;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class representing the outcome of a bulk import: how many properties, tenants and rentals were added, and which
+ * lines of the file couldn't be imported and why.
+ * Only the reasons for the MAX_ERRORS lowest numbered lines are kept, so importing a file full of bad lines doesn't
+ * use up memory, but every rejected line is counted.
+ *
+ * @author Thomas Hague
+ */
+
+public final class ImportReport {
+    /**
+     * Most rejected lines whose reasons are kept.
+     */
+    public static final int MAX_ERRORS = 1000;
+
+    private final AtomicLong propertiesAdded = new AtomicLong();
+    private final AtomicLong tenantsAdded = new AtomicLong();
+    private final AtomicLong rentalsAdded = new AtomicLong();
+    private final AtomicLong rowsRejected = new AtomicLong();
+    private final PriorityQueue<RowError> errors =
+            new PriorityQueue<>(Comparator.comparingLong((RowError e) -> e.line).reversed());
+
+    /**
+     * Creates an empty report.
+     */
+    ImportReport() {
+    }
+
+    /**
+     * Returns the number of properties that were added.
+     *
+     * @return a long
+     */
+    public long getPropertiesAdded() {
+        return propertiesAdded.get();
+    }
+
+    /**
+     * Returns the number of tenants that were added.
+     *
+     * @return a long
+     */
+    public long getTenantsAdded() {
+        return tenantsAdded.get();
+    }
+
+    /**
+     * Returns the number of tenants who were added along with their current rental.
+     *
+     * @return a long
+     */
+    public long getRentalsAdded() {
+        return rentalsAdded.get();
+    }
+
+    /**
+     * Returns the number of lines that couldn't be imported.
+     *
+     * @return a long
+     */
+    public long getRowsRejected() {
+        return rowsRejected.get();
+    }
+
+    /**
+     * Returns why lines couldn't be imported, such as "line 12: Invalid date: 1990-02-30", in line order. At most
+     * MAX_ERRORS lines are listed, those with the lowest line numbers.
+     *
+     * @return an unmodifiable List of strings
+     */
+    public synchronized List<String> getErrors() {
+        List<RowError> sorted = new ArrayList<>(errors);
+        sorted.sort(Comparator.comparingLong(e -> e.line));
+        List<String> lines = new ArrayList<>(sorted.size());
+        for (RowError e : sorted) {
+            lines.add("line " + e.line + ": " + e.reason);
+        }
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * Overrides the existing toString method, summarising the import.
+     *
+     * @return a String
+     */
+    @Override
+    public String toString() {
+        return "Imported " + getPropertiesAdded() + " properties and " + getTenantsAdded() + " tenants with "
+                + getRentalsAdded() + " rentals, rejected " + getRowsRejected() + " lines.";
+    }
+
+    void propertiesAdded(int count) {
+        propertiesAdded.addAndGet(count);
+    }
+
+    void tenantAdded(boolean withRental) {
+        tenantsAdded.incrementAndGet();
+        if (withRental) {
+            rentalsAdded.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records that the specified line couldn't be imported.
+     *
+     * @param line   number of the line in the file.
+     * @param reason why it couldn't be imported.
+     */
+    synchronized void rejected(long line, String reason) {
+        rowsRejected.incrementAndGet();
+        errors.add(new RowError(line, reason));
+        if (errors.size() > MAX_ERRORS) {
+            errors.poll();
+        }
+    }
+
+    /**
+     * Class representing a line that couldn't be imported.
+     */
+    private static final class RowError {
+        private final long line;
+        private final String reason;
+
+        private RowError(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+    }
+}
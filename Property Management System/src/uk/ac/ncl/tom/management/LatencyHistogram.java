@@ -0,0 +1,155 @@
+package uk.ac.ncl.tom.management;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class representing a histogram of latencies in nanoseconds, used by the Property Manager's metrics.
+ * Latencies are counted in log-linear buckets: each power of two is split into 16 equal buckets, so recording a latency
+ * is a few bit operations and one atomic increment, and any percentile read back is within about 6% of the true value.
+ * Calls with similar latencies land in the same bucket, so the counts are striped in the same way as a LongAdder: each
+ * thread counts in the stripe picked by its id, and when two threads collide on a stripe the number of stripes is
+ * doubled, up to the number of processors. Reading the histogram sums the stripes.
+ *
+ * @author Thomas Hague
+ */
+
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final int MAX_STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    private volatile AtomicLongArray[] stripes = {new AtomicLongArray(BUCKETS)};
+
+    /**
+     * Records the specified latency. Negative latencies are counted as zero.
+     *
+     * @param nanos, latency in nanoseconds.
+     */
+    void record(long nanos) {
+        int bucket = bucketOf(Math.max(nanos, 0));
+        AtomicLongArray[] current = stripes;
+        AtomicLongArray counts = current[stripeOf(Thread.currentThread()) & (current.length - 1)];
+        long count = counts.get(bucket);
+        if (!counts.compareAndSet(bucket, count, count + 1)) {
+            // another thread is counting in the same stripe, so spread the threads over more stripes
+            grow(current);
+            counts.incrementAndGet(bucket);
+        }
+    }
+
+    /**
+     * Returns the number of latencies recorded.
+     *
+     * @return a long
+     */
+    long count() {
+        long total = 0;
+        for (long count : snapshot()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the latency that the specified percentage of recorded latencies are at or below.
+     * Exception is thrown if the percentile isn't between 0 and 100.
+     *
+     * @param percentile, between 0 and 100.
+     * @return the latency in nanoseconds, or 0 if nothing has been recorded.
+     */
+    long percentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestValueIn(i);
+            }
+        }
+        return highestValueIn(BUCKETS - 1);
+    }
+
+    /**
+     * Clears every recorded latency.
+     */
+    void reset() {
+        for (AtomicLongArray counts : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the count of each bucket, summed over every stripe.
+     */
+    private long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (AtomicLongArray counts : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] += counts.get(i);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Doubles the number of stripes, unless another thread already has or there is a stripe for every processor.
+     *
+     * @param seen , the stripes that had a collision.
+     */
+    private synchronized void grow(AtomicLongArray[] seen) {
+        if (stripes == seen && seen.length < MAX_STRIPES) {
+            AtomicLongArray[] grown = Arrays.copyOf(seen, seen.length * 2);
+            for (int i = seen.length; i < grown.length; i++) {
+                grown[i] = new AtomicLongArray(BUCKETS);
+            }
+            stripes = grown;
+        }
+    }
+
+    /**
+     * Returns the stripe hash of the specified thread, spreading consecutive thread ids over the stripes.
+     */
+    private static int stripeOf(Thread thread) {
+        return (int) ((thread.getId() * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    /**
+     * Returns the bucket the specified latency is counted in. Latencies below 16ns each have their own bucket.
+     */
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest latency counted in the specified bucket.
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lowest = (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -2,18 +2,56 @@
  * A Singleton class representing a Property Manager to store and control Properties, Tenants and Rentals.
  * Includes methods for adding properties and tenants to the system, issuing and terminating rental contracts, calculating
  * the number of available properties for rent and properties with rentals expiring within 7 days.
+ * The Property Manager is safe to use from many threads at once. Each property type's rental stock has its own lock,
+ * and tenants are locked in stripes, so a tenant can only be given one property and a property only one tenant.
  *
  * @authors Thomas Hague.
  */
 
 package uk.ac.ncl.tom.management;
 
+import uk.ac.ncl.tom.events.AsyncRentalEventListener;
+import uk.ac.ncl.tom.events.PrintStreamRentalEventListener;
+import uk.ac.ncl.tom.events.RejectionReason;
+import uk.ac.ncl.tom.events.RentalEventListener;
+import uk.ac.ncl.tom.management.PropertyManagerMetrics.TimedMethod;
+import uk.ac.ncl.tom.persistence.BulkImport;
+import uk.ac.ncl.tom.persistence.ExportFormat;
+import uk.ac.ncl.tom.persistence.ExportWriter;
+import uk.ac.ncl.tom.persistence.FsyncPolicy;
+import uk.ac.ncl.tom.persistence.ImportBatch;
+import uk.ac.ncl.tom.persistence.ImportFormat;
+import uk.ac.ncl.tom.persistence.ImportHandler;
+import uk.ac.ncl.tom.persistence.Journal;
+import uk.ac.ncl.tom.persistence.JournalHandler;
+import uk.ac.ncl.tom.persistence.Snapshot;
+import uk.ac.ncl.tom.persistence.SnapshotHandler;
+import uk.ac.ncl.tom.persistence.SnapshotWriter;
 import uk.ac.ncl.tom.properties.*;
 import uk.ac.ncl.tom.tenants.*;
+import uk.ac.ncl.tom.util.LongHashTable;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
-import static java.util.Calendar.*;
 import static uk.ac.ncl.tom.properties.PropertyFactory.*;
 
 public class PropertyManager {
@@ -21,16 +59,175 @@ public class PropertyManager {
      * Fields for a Singleton instance of PropertyManager and structures for storing property records, tenant records
      * and tenants with their rented property.
      */
+    private static final AtomicInteger INSTANCE_COUNT = new AtomicInteger();
     private static final PropertyManager INSTANCE = new PropertyManager();
 
-    private final Map<PropertyCode, Property> properties = new HashMap<>();
-    private final Map<TenantID, TenantRecord> tenants = new HashMap<>();
-    private final Map<TenantID, PropertyCode> tenantsProperties = new HashMap<>();
+    private final TenantIDMap<TenantRecord> tenants = new TenantIDMap<>();
+    private final TenantIDMap<PropertyCode> tenantsProperties = new TenantIDMap<>();
 
     /**
-     * Creates an instance of PropertyManager.
+     * Index of tenant records by name and date of birth, used to check for duplicate tenants without searching
+     * through every tenant record.
+     */
+    private final Map<TenantKey, TenantRecord> tenantsByNameAndDob = new ConcurrentHashMap<>();
+
+    /**
+     * Index of the property store ids of this Property Manager's properties by their packed property code, so a
+     * property is found from its code's string in constant time without first looking up the property code. Property
+     * objects are views created when they are asked for, so no property or property code is held for each property.
+     */
+    private final LongHashTable<Integer> propertiesByCode = new LongHashTable<>();
+    private final Map<PropertyCode, Property> properties = new PropertiesByCode();
+
+    /**
+     * Store holding the state of this Property Manager's properties, owned by it alone so adding properties never
+     * contends with other Property Managers or shards, and the properties are freed along with the Property Manager.
+     */
+    private final PropertyStore store = new PropertyStore();
+
+    /**
+     * Registries the property codes and tenant IDs of this Property Manager are issued by. The singleton uses the
+     * registries shared by the whole program, and other instances have their own.
+     */
+    private final PropertyCodeRegistry propertyCodes;
+    private final TenantIDRegistry tenantIDs;
+
+    /**
+     * Rental stock of each property type, holding the indexes of free properties and the expiry timeline of rented
+     * properties, kept up to date as properties are added, rented and have their rentals terminated.
+     */
+    private final RentalStock villaStock = new RentalStock(store);
+    private final RentalStock apartmentStock = new RentalStock(store);
+
+    /**
+     * Rental stock each waiting tenant is on the waiting list of. Only changed while holding the tenant's lock, and
+     * together with the stock's waiting list while also holding the stock's lock.
+     */
+    private final TenantIDMap<RentalStock> waitingTenants = new TenantIDMap<>();
+
+    /**
+     * Striped locks for tenants, so that checking a tenant isn't renting a property and giving them one happens
+     * atomically, without every tenant sharing one lock.
+     */
+    private static final int TENANT_LOCK_STRIPES = 64;
+    private final ReentrantLock[] tenantLocks = new ReentrantLock[TENANT_LOCK_STRIPES];
+
+    /**
+     * Journal that every mutation is recorded in, once one has been opened.
+     */
+    private volatile Journal journal;
+
+    /**
+     * Clock that today's date is read from.
+     */
+    private volatile DayClock dayClock = DayClock.system();
+
+    /**
+     * Listener told about the outcome of rental requests and terminations. By default, messages are written to the
+     * console by a background thread.
+     */
+    private volatile RentalEventListener listener;
+
+    /**
+     * Metrics of the Property Manager, or null while metrics are disabled.
+     */
+    private volatile PropertyManagerMetrics metrics;
+
+    /**
+     * Name the metrics are registered under, keyed by the order the Property Manager was created in, so every
+     * instance and shard has its own. The singleton is always number 0.
+     */
+    private final ObjectName metricsName;
+
+    /**
+     * Background thread that saves snapshots periodically, once started.
+     */
+    private ScheduledExecutorService snapshotter;
+
+    /**
+     * Background thread that terminates lapsed rentals at the start of each day, once started.
+     */
+    private ScheduledExecutorService expirySweeper;
+
+    /**
+     * Number of Villa pools that can be cleaned each day, one per crew.
+     */
+    private volatile int poolCleaningCrews = 1;
+
+    /**
+     * Background thread that cleans Villa pools at the start of each day, once started.
+     */
+    private ScheduledExecutorService poolCleaner;
+
+    /**
+     * Creates an instance of PropertyManager that writes messages to the console, and issues property codes and tenant
+     * IDs from the registries shared by the whole program.
      */
     private PropertyManager() {
+        this(consoleListener(), PropertyCodeRegistry.global(), TenantIDRegistry.global());
+    }
+
+    /**
+     * Creates an instance of PropertyManager that tells the specified listener about rental events, and issues
+     * property codes and tenant IDs from the specified registries. Used by the ShardedPropertyManager to create its
+     * shards, which share one listener and one pair of registries.
+     *
+     * @param listener      , told about rental events.
+     * @param propertyCodes , registry property codes are issued by.
+     * @param tenantIDs     , registry tenant IDs are issued by.
+     */
+    PropertyManager(RentalEventListener listener, PropertyCodeRegistry propertyCodes, TenantIDRegistry tenantIDs) {
+        for (int i = 0; i < tenantLocks.length; i++) {
+            tenantLocks[i] = new ReentrantLock();
+        }
+        this.listener = listener;
+        this.propertyCodes = propertyCodes;
+        this.tenantIDs = tenantIDs;
+        try {
+            metricsName = new ObjectName("uk.ac.ncl.tom:type=PropertyManager,name=" + INSTANCE_COUNT.getAndIncrement());
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to name Property Manager metrics.", e);
+        }
+    }
+
+    /**
+     * Returns a new Property Manager, separate from the singleton, with its own property code and tenant ID registries,
+     * so several portfolios can be managed in one program without sharing codes or IDs.
+     * Exception is thrown if the listener is null.
+     *
+     * @param listener , told about rental events. RentalEventListener.NONE ignores every event.
+     * @return a new PropertyManager
+     */
+    public static PropertyManager newInstance(RentalEventListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener can't be null, use RentalEventListener.NONE instead.");
+        }
+        return new PropertyManager(listener, new PropertyCodeRegistry(), new TenantIDRegistry());
+    }
+
+    /**
+     * Returns the listener that writes messages to the console on a background thread, and writes out any messages
+     * still queued when the program ends. Every Property Manager writing to the console shares it, so creating
+     * Property Managers doesn't start a thread or add a shutdown hook each time.
+     *
+     * @return the shared AsyncRentalEventListener
+     */
+    static AsyncRentalEventListener consoleListener() {
+        return ConsoleListenerHolder.CONSOLE;
+    }
+
+    /**
+     * Holds the shared console listener, which is only created the first time it is asked for.
+     */
+    private static final class ConsoleListenerHolder {
+        private static final AsyncRentalEventListener CONSOLE = createConsoleListener();
+
+        private static AsyncRentalEventListener createConsoleListener() {
+            AsyncRentalEventListener console =
+                    new AsyncRentalEventListener(new PrintStreamRentalEventListener(System.out));
+            Runtime.getRuntime().addShutdownHook(new Thread(console::close));
+            return console;
+        }
     }
 
     /**
@@ -43,7 +240,26 @@ public class PropertyManager {
     }
 
     /**
-     * Returns a Map of existing properties on the system.
+     * Returns the registry the property codes of this Property Manager's properties are issued by.
+     *
+     * @return the PropertyCodeRegistry
+     */
+    public PropertyCodeRegistry getPropertyCodes() {
+        return propertyCodes;
+    }
+
+    /**
+     * Returns the registry the tenant IDs of this Property Manager's tenants are issued by.
+     *
+     * @return the TenantIDRegistry
+     */
+    public TenantIDRegistry getTenantIDs() {
+        return tenantIDs;
+    }
+
+    /**
+     * Returns an unmodifiable Map of existing properties on the system. Properties are looked up in the property code
+     * index when they are asked for, and a view of each property is created on demand.
      *
      * @return Map of Properties.
      */
@@ -51,6 +267,77 @@ public class PropertyManager {
         return properties;
     }
 
+    /**
+     * Returns the property with the specified property code, such as "V-A12". The code is parsed into its packed int
+     * and looked up in an index of the properties, so the property is found in constant time without creating any
+     * objects.
+     * Exception is thrown if the property code is null.
+     *
+     * @param propertyCode , string representation of the property's code.
+     * @return the Property, or null if there is no property with that code on the system.
+     */
+    public Property findProperty(String propertyCode) {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            if (propertyCode == null) {
+                throw new IllegalArgumentException("Property code can't be null, please try again.");
+            }
+            return viewOf(PropertyCode.parse(propertyCode));
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.FIND_PROPERTY, start);
+            }
+        }
+    }
+
+    /**
+     * Returns the property with the specified property code, if it is on the system.
+     *
+     * @param propertyCode , the property code.
+     * @return the Property, or null if there is no property with that code on the system.
+     */
+    private Property propertyWithCode(PropertyCode propertyCode) {
+        return viewOf(propertyCode.toInt());
+    }
+
+    /**
+     * Returns a view of the property with the specified packed property code in this Property Manager's property
+     * store. The view is checked against the code after it is built, and against the index not having changed in the
+     * meantime, so a property decommissioned at the same time is never returned, even if its id has been reused.
+     *
+     * @param code , the property's code packed into an int.
+     * @return the Property, or null if there is no property with that code on the system.
+     */
+    private Property viewOf(int code) {
+        return propertiesByCode.get(code, id -> store.viewWithCode(id, code));
+    }
+
+    /**
+     * Returns the tenant record of the tenant with the specified tenant ID, such as "TH.2025.07". The tenant ID is
+     * parsed into its packed long and looked up in the tenants Map, so the tenant is found without creating any
+     * objects.
+     * Exception is thrown if the tenant ID is null.
+     *
+     * @param tenantID , string representation of the tenant's ID.
+     * @return the TenantRecord, or null if there is no tenant with that ID on the system.
+     */
+    public TenantRecord findTenant(String tenantID) {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            if (tenantID == null) {
+                throw new IllegalArgumentException("Tenant ID can't be null, please try again.");
+            }
+            long packed = TenantID.parse(tenantID);
+            return packed == TenantID.INVALID_ID ? null : tenants.get(packed);
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.FIND_TENANT, start);
+            }
+        }
+    }
+
     /**
      * Returns a Map of existing tenants on the system.
      *
@@ -80,17 +367,77 @@ public class PropertyManager {
      * @return Property, either a Villa or Apartment.
      */
     public Property addProperty(String propertyType) {
-        if (propertyType == null) {
-            throw new IllegalArgumentException("Property type can't be null, please try again. We offer Villas and Apartments " +
-                    "for rental.");
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            checkPropertyType(propertyType);
+            Property p = PropertyFactory.getInstance(propertyType, propertyCodes, store);
+            propertiesByCode.put(p.getPropertyCode().toInt(), p.getId());
+            Journal j = journal;
+            long sequence = j == null ? 0 : j.propertyAdded(p.getPropertyType(), p.getPropertyCode().toString());
+            RentalStock stock = stockFor(propertyType);
+            stock.lock.lock();
+            try {
+                markAvailable(stock, p);
+            } finally {
+                stock.lock.unlock();
+            }
+            commit(j, sequence);
+            serveWaitingList(stock);
+            return p;
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.ADD_PROPERTY, start);
+            }
         }
-        if (!propertyType.equalsIgnoreCase(labelVilla) && !propertyType.equalsIgnoreCase(labelApartment)) {
-            throw new IllegalArgumentException("Invalid property type, please try again. The only properties " +
-                    "we offer for rental are Villas and Apartments");
+    }
+
+    /**
+     * Creates and adds the specified number of properties of the same type to the system, which are either Villas or
+     * Apartments depending on the propertyType passed as a parameter.
+     * The property type is checked once and the property codes are reserved all at once, then the properties are added
+     * to the Properties Map and the availability bitmap together.
+     * Exceptions are thrown if the property type parameter is null, or is neither "Villa" nor "Apartment", if the count
+     * is negative, or if there are not enough property codes left for the count.
+     *
+     * @param propertyType (either Villa or Apartment)
+     * @param count        number of properties to add.
+     * @return an unmodifiable List of the new properties.
+     */
+    public List<Property> addProperties(String propertyType, int count) {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            checkPropertyType(propertyType);
+            if (count < 0) {
+                throw new IllegalArgumentException("Number of properties can't be negative, please try again.");
+            }
+            List<Property> added = PropertyFactory.getInstances(propertyType, count, propertyCodes, store);
+            Journal j = journal;
+            long sequence = 0;
+            for (Property p : added) {
+                propertiesByCode.put(p.getPropertyCode().toInt(), p.getId());
+                if (j != null) {
+                    sequence = j.propertyAdded(p.getPropertyType(), p.getPropertyCode().toString());
+                }
+            }
+            RentalStock stock = stockFor(propertyType);
+            stock.lock.lock();
+            try {
+                for (Property p : added) {
+                    markAvailable(stock, p);
+                }
+            } finally {
+                stock.lock.unlock();
+            }
+            commit(j, sequence);
+            serveWaitingList(stock);
+            return Collections.unmodifiableList(added);
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.ADD_PROPERTIES, start);
+            }
         }
-        Property p = PropertyFactory.getInstance(propertyType);
-        properties.put(p.getPropertyCode(), p);
-        return p;
     }
 
     /**
@@ -102,22 +449,73 @@ public class PropertyManager {
      * @return an int, the number of properties available for rent that are of a specified type.
      */
     public int noOfAvailableProperties(String propertyType) {
-        if (propertyType == null) {
-            throw new IllegalArgumentException("Property type can't be null, please try again. We offer Villas and " +
-                    "Apartments for rental.");
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            return countAvailable(propertyType);
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.NO_OF_AVAILABLE_PROPERTIES, start);
+            }
         }
-        if (!propertyType.equalsIgnoreCase(labelVilla) && !propertyType.equalsIgnoreCase(labelApartment)) {
-            throw new IllegalArgumentException("Invalid property type, please try again. The only properties " +
-                    "we offer for rental are Villas and Apartments");
+    }
+
+    /**
+     * Returns the number of a given type of properties that are available for rent, without recording a latency, so
+     * that reading the metrics' gauges doesn't count as a call.
+     * Exceptions are thrown if the property type parameter is null, or is neither "Villa" nor "Apartment".
+     *
+     * @param propertyType (either Villa or Apartment)
+     * @return an int
+     */
+    int countAvailable(String propertyType) {
+        checkPropertyType(propertyType);
+        // Free Villas are counted whether or not their pool is currently clean.
+        RentalStock stock = stockFor(propertyType);
+        stock.lock.lock();
+        try {
+            return stock.availability.free();
+        } finally {
+            stock.lock.unlock();
         }
-        // Search through properties Map and every time a property is found that is not currently rented, the counter increases by 1.
-        int totalAvailableProperties = 0;
-        for (Property p : properties.values()) {
-            if (propertyType.equalsIgnoreCase(p.getPropertyType()) && !p.isRented()) {
-                totalAvailableProperties++;
+    }
+
+    /**
+     * Returns the number of properties of the specified property type that are currently rented.
+     * Exceptions are thrown if the property type parameter is null, or is neither "Villa" nor "Apartment".
+     *
+     * @param propertyType , either Villa or Apartment.
+     * @return an int
+     */
+    public int noOfRentedProperties(String propertyType) {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            return countRented(propertyType);
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.NO_OF_RENTED_PROPERTIES, start);
             }
         }
-        return totalAvailableProperties;
+    }
+
+    /**
+     * Returns the number of properties of the specified property type that are currently rented, without recording a
+     * latency.
+     * Exceptions are thrown if the property type parameter is null, or is neither "Villa" nor "Apartment".
+     *
+     * @param propertyType , either Villa or Apartment.
+     * @return an int
+     */
+    int countRented(String propertyType) {
+        checkPropertyType(propertyType);
+        RentalStock stock = stockFor(propertyType);
+        stock.lock.lock();
+        try {
+            return stock.expiryTimeline.size();
+        } finally {
+            stock.lock.unlock();
+        }
     }
 
     /**
@@ -133,36 +531,123 @@ public class PropertyManager {
      * @return the newly created tenant record
      */
     public TenantRecord addTenantRecord(String firstName, String lastName, Date dob, Boolean premium) {
-        if (firstName == null || lastName == null) {
-            throw new IllegalArgumentException("First name and Last name can't be null, please have another go");
-        }
-        if (dob == null) {
-            throw new IllegalArgumentException("Date of birth can't be null, please have another go.");
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            if (firstName == null || lastName == null) {
+                throw new IllegalArgumentException("First name and Last name can't be null, please have another go");
+            }
+            if (dob == null) {
+                throw new IllegalArgumentException("Date of birth can't be null, please have another go.");
+            }
+            Name n = new Name(firstName, lastName);
+            // Check that the new tenant Record does not have same name and dob as a current tenant record before creating
+            // it, so that no tenant ID is issued for a duplicate tenant.
+            long dobDay = TenantRecord.toEpochDay(dob);
+            TenantKey key = new TenantKey(firstName, lastName, dobDay);
+            if (tenantsByNameAndDob.containsKey(key)) {
+                throw new IllegalArgumentException("Tenant with name and DoB: " + n + ", " + dob + " already exists on our records.");
+            }
+            TenantRecord newTR = new TenantRecord(n, dobDay, premium, tenantIDs.getInstance(n, yearOfIssue()));
+            // Check that the new tenant Record doesn't exist in the tenants Map, and that the same tenant hasn't been
+            // added by another thread in the meantime.
+            if (tenants.containsKey(newTR.getTenantID()) || tenantsByNameAndDob.putIfAbsent(key, newTR) != null) {
+                tenantIDs.release(newTR.getTenantID());
+                throw new IllegalArgumentException("Tenant with name and DoB: " + n + ", " + dob + " already exists on our records.");
+            }
+            tenants.put(newTR.getTenantID(), newTR);
+            Journal j = journal;
+            if (j != null) {
+                commit(j, journalTenant(j, newTR));
+            }
+            return newTR;
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.ADD_TENANT_RECORD, start);
+            }
         }
-        Name n = new Name(firstName, lastName);
-        TenantRecord newTR = new TenantRecord(n, dob, premium);
-        // Check that the new tenant Record does not have same name and dob as a current tenant record, and doesn't
-        // exist in the tenants Map.
-        for (TenantRecord tR : tenants.values()) {
-            if (newTR.equals(tR) || tenants.containsKey(newTR.getTenantID())) {
-                throw new IllegalArgumentException("Tenant with name and DoB: " + n + ", " + dob + "already exists on our records.");
+    }
+
+    /**
+     * Creates and adds a Tenant to the system for each of the specified tenant details.
+     * Every tenant is checked before any are added, so if any tenant details are invalid none of the tenants are added,
+     * and their tenant IDs are issued all at once.
+     * Exceptions are thrown if the list is null, for any tenant details that would fail addTenantRecord, and if two
+     * of the tenant details have the same name and date of birth.
+     *
+     * @param tenantDetails list of the new tenants' details.
+     * @return an unmodifiable List of the newly created tenant records, in the same order as the details.
+     */
+    public List<TenantRecord> addTenantRecords(List<TenantDetails> tenantDetails) {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            if (tenantDetails == null) {
+                throw new IllegalArgumentException("Tenant details can't be null, please have another go.");
+            }
+            List<Name> names = new ArrayList<>(tenantDetails.size());
+            List<TenantKey> keys = new ArrayList<>(tenantDetails.size());
+            Set<TenantKey> batchKeys = new HashSet<>();
+            for (TenantDetails details : tenantDetails) {
+                if (details == null || details.getFirstName() == null || details.getLastName() == null) {
+                    throw new IllegalArgumentException("First name and Last name can't be null, please have another go");
+                }
+                Date dob = details.getDateOfBirth();
+                if (dob == null) {
+                    throw new IllegalArgumentException("Date of birth can't be null, please have another go.");
+                }
+                Name n = new Name(details.getFirstName(), details.getLastName());
+                TenantKey key = new TenantKey(n.getFirstName(), n.getLastName(), TenantRecord.toEpochDay(dob));
+                if (tenantsByNameAndDob.containsKey(key) || !batchKeys.add(key)) {
+                    throw new IllegalArgumentException("Tenant with name and DoB: " + n + ", " + dob + " already exists on our records.");
+                }
+                names.add(n);
+                keys.add(key);
+            }
+            List<TenantID> tIDs = tenantIDs.getInstances(names, yearOfIssue());
+            List<TenantRecord> added = new ArrayList<>(tenantDetails.size());
+            Journal j = journal;
+            long sequence = 0;
+            for (int i = 0; i < names.size(); i++) {
+                TenantDetails details = tenantDetails.get(i);
+                TenantRecord newTR = new TenantRecord(names.get(i), details.getDateOfBirth(), details.isPremium(), tIDs.get(i));
+                // check the same tenant hasn't been added by another thread since the batch was checked.
+                if (tenantsByNameAndDob.putIfAbsent(keys.get(i), newTR) != null) {
+                    for (TenantID unused : tIDs.subList(i, tIDs.size())) {
+                        tenantIDs.release(unused);
+                    }
+                    throw new IllegalArgumentException("Tenant with name and DoB: " + names.get(i) + ", " +
+                            details.getDateOfBirth() + " already exists on our records.");
+                }
+                tenants.put(newTR.getTenantID(), newTR);
+                if (j != null) {
+                    sequence = journalTenant(j, newTR);
+                }
+                added.add(newTR);
+            }
+            commit(j, sequence);
+            return Collections.unmodifiableList(added);
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.ADD_TENANT_RECORDS, start);
             }
         }
-        tenants.put(newTR.getTenantID(), newTR);
-        return newTR;
     }
 
     /**
      * Issues a rental contract between the specified Tenant record, for a specified property of either a Villa or an
      * Apartment, for the specified duration.
-     * The method randomly picks a relevant property from a list of current available properties of the specified property type.
+     * The method randomly picks a relevant property from the current available properties of the specified property type.
      * Upon success, the specified tenant record and property will be added to the TenantsProperties map, the properties
      * rental status is changed to rented, with the termination date set using the duration and set from today's date.
+     * Checking the tenant and picking the property happen atomically, so two threads can't give the same property to
+     * two tenants, or two properties to the same tenant.
      * Exceptions are thrown if the property type parameter is null, or is neither "Villa" nor "Apartment".
-     * Relevant error messages are printed if the tenant is under 21 and tries to rent a Villa, under 18 and
-     * tries to rent an Apartment, tenant is not premium class and tries to rent a Villa, or tries to rent a 2nd
-     * property when already renting one, as tenants can only rent one property at a time.
-     * Calls validTenant, calcTenantAge, getAvailableProperty, assignProperty, calcTerminationDate methods.
+     * The rental event listener is told the contract was issued, or why it was rejected: the tenant is under 21 and
+     * tries to rent a Villa, under 18 and tries to rent an Apartment, tenant is not premium class and tries to rent a
+     * Villa, tries to rent a 2nd property when already renting one, as tenants can only rent one property at a time,
+     * or there are no properties of the type available.
+     * Calls checkEligibility, validTenant, pickAvailableProperty and assignProperty methods.
      *
      * @param tenantRecord that will be renting the property.
      * @param propertyType that they would like to rent.
@@ -170,183 +655,595 @@ public class PropertyManager {
      * @return true upon success, otherwise false.
      */
     public boolean issueRentalContract(TenantRecord tenantRecord, String propertyType, int duration) {
-        int tenantAge = calcTenantAge(tenantRecord.getDateOfBirth());
-        if (propertyType == null) {
-            throw new IllegalArgumentException("Property type can't be null, please try again. We offer Villas and " +
-                    "Apartments for rental.");
-        }
-        if (!propertyType.equalsIgnoreCase(labelVilla) && !propertyType.equalsIgnoreCase(labelApartment)) {
-            throw new IllegalArgumentException("Invalid property type, please try again. The only properties " +
-                    "we offer for rental are Villas and Apartments");
-        }
-        List<Property> availableProperties = getAvailableProperties(properties, propertyType);
-        // check the tenant is not already renting a property
-        if (validTenant(tenantRecord)) {
-            // check there are available properties for rent
-            if (!availableProperties.isEmpty()) {
-                if (propertyType.equalsIgnoreCase(labelVilla)) {
-                    // check tenant is at least 21 to be able to rent a Villa
-                    if (tenantAge >= 21) {
-                        // check tenant is premium class so can rent a Villa
-                        if (tenantRecord.isPremiumClass()) {
-                            // assign tenant record to an arbitrary available Villa for rent and add both to
-                            // the tenantsProperties Map.
-                            Random random = new Random();
-                            int index = random.nextInt(availableProperties.size());
-                            Property chosenVilla = availableProperties.get(index);
-                            assignProperty(chosenVilla, tenantRecord, duration);
-                            return true;
-                        } else {
-                            System.out.println("Tenant needs to be premium class to rent a Villa. Please have a look at our " +
-                                    "apartments for rental instead.");
-                            return false;
-                        }
-                    } else {
-                        System.out.println("Tenant needs to be 21 to rent a villa. They will be eligible in " +
-                                (21 - tenantAge) + " years time.");
-                        return false;
-                    }
-                } else {
-                    // check tenant is at least 18 to be able to rent an Apartment.
-                    if (tenantAge >= 18) {
-                        // assign tenant record to an arbitrary available Apartment for rent and add both to
-                        // the tenantsProperties Map.
-                        Random random = new Random();
-                        int index = random.nextInt(availableProperties.size());
-                        Property chosenApartment = availableProperties.get(index);
-                        assignProperty(chosenApartment, tenantRecord, duration);
-                        return true;
-                    } else {
-                        System.out.println("Tenant needs to be 18 to rent an apartment. They will be eligible in " +
-                                (18 - tenantAge) + " years time.");
-                        return false;
-                    }
-                }
-            } else {
-                return false;
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            return issue(tenantRecord, propertyType, duration, true) == null;
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.ISSUE_RENTAL_CONTRACT, start);
             }
-        } else {
-            System.out.println("Tenant: " + tenantRecord.getName() + " can only rent one property at " +
-                    "a time.");
-            return false;
         }
     }
 
     /**
-     * Called in the issueRentalContract method, validates if the tenant is currently renting a property or not.
-     *
-     * @param tR, a specified tenant record
-     * @return true if the tenant is not renting a property, false if they are.
-     */
-    private boolean validTenant(TenantRecord tR) {
-        return !tenantsProperties.containsKey(tR.getTenantID());
-    }
-
-    /**
-     * Called in the issueRentalContract method, calculates the current tenants age from their date of birth and today's date.
-     * Exception is thrown if date of brith is null.
+     * Issues a rental contract in the same way as issueRentalContract, returning why it was rejected instead of
+     * whether it was issued. joinWaitingList puts the tenant on the waiting list when there is no stock, so it can ask
+     * for NO_STOCK and DIRTY_POOL rejections not to be reported.
      *
-     * @param dob, tenants date of birth.
-     * @return the age of the tenant.
+     * @param tenantRecord  that will be renting the property.
+     * @param propertyType  that they would like to rent.
+     * @param duration      of the rental property, in days.
+     * @param reportNoStock whether to report a rejection because no property of the type could be rented.
+     * @return null upon success, otherwise the reason the contract wasn't issued.
      */
-    private int calcTenantAge(Date dob) {
-        if (dob == null) {
-            throw new IllegalArgumentException("Date of birth can't be null, please have another go.");
+    RejectionReason issue(TenantRecord tenantRecord, String propertyType, int duration, boolean reportNoStock) {
+        if (tenantRecord == null) {
+            throw new IllegalArgumentException("Tenant Record is not valid. Please try again.");
+        }
+        long today = dayClock.today();
+        checkPropertyType(propertyType);
+        RejectionReason reason = checkEligibility(tenantRecord, today, propertyType);
+        if (reason != null) {
+            reportRejected(today, tenantRecord, propertyType, reason);
+            return reason;
         }
-        Calendar cal = Calendar.getInstance();
-        Calendar dobCal = Calendar.getInstance();
-        dobCal.setTime(dob);
-        // initially set age as the current year - their date of birth year.
-        int age = cal.get(YEAR) - dobCal.get(YEAR);
-        // if tenant hasn't had their birthday this current year yet, reduce the age variable by 1.
-        if (cal.get(MONTH) < dobCal.get(MONTH) || cal.get(MONTH) == dobCal.get(MONTH)
-                && cal.get(DATE) < dobCal.get(DATE)) {
-            age--;
+        Property chosenProperty = null;
+        Journal j = journal;
+        long sequence = 0;
+        ReentrantLock tenantLock = tenantLockFor(tenantRecord.getTenantID());
+        tenantLock.lock();
+        try {
+            // check the tenant is not already renting a property
+            if (!validTenant(tenantRecord)) {
+                reason = RejectionReason.ALREADY_RENTING;
+            } else {
+                // assign tenant record to an arbitrary available property for rent and add both to the
+                // tenantsProperties Map.
+                RentalStock stock = stockFor(propertyType);
+                stock.lock.lock();
+                try {
+                    chosenProperty = pickAvailableProperty(stock);
+                    if (chosenProperty == null) {
+                        reason = noStockReason(stock);
+                    } else {
+                        sequence = assignProperty(stock, chosenProperty, tenantRecord, today + duration, j);
+                    }
+                } finally {
+                    stock.lock.unlock();
+                }
+            }
+            if (chosenProperty != null && anyoneWaiting()) {
+                removeFromWaitingList(tenantRecord.getTenantID());
+            }
+        } finally {
+            tenantLock.unlock();
+        }
+        if (reason != null) {
+            if (reportNoStock || reason == RejectionReason.ALREADY_RENTING) {
+                reportRejected(today, tenantRecord, propertyType, reason);
+            }
+            return reason;
         }
-        return age;
+        commit(j, sequence);
+        reportIssued(today, tenantRecord, chosenProperty, duration);
+        return null;
     }
 
     /**
-     * Called in the issueRentalContract method,returns a list of properties of a specified property type that are currently
-     * available to be rented. A property is available for rent and added to the return list if it matches the specified
-     * property type and is currently set as not rented.
-     * If property type is a Villa, there are additional checks that a Villa has a clean pool for it be available for rent.
-     * Appropriate error messages are printed if there are no available properties for rent, or in the case of villas, if
-     * there are Villas that aren't rented, but they don;t have a clean pool so are not available.
+     * Issues a rental contract for each of the specified rental requests, in order, with the same checks and outcomes
+     * as issueRentalContract.
+     * Every request is checked for a valid property type before any contracts are issued, and the tenants and rental
+     * stocks are locked once for the whole batch rather than once per contract.
+     * Exceptions are thrown if the list or any request is null, or any request's tenant record is null or property
+     * type is invalid, in which case no contracts are issued.
      *
-     * @param properties   Map of properties added to the system.
-     * @param propertyType desired property type for rental
-     * @return a list of the available properties for rental
+     * @param rentalRequests list of tenants with the property type and duration they would like to rent.
+     * @return an unmodifiable List with true for each request that was issued a contract, otherwise false.
      */
-    private List<Property> getAvailableProperties(Map<PropertyCode, Property> properties, String
-            propertyType) {
-        List<Property> availableProperties = new ArrayList<>();
-        boolean availableVillaWithCleanPoolFound = false;
-        boolean availableVillaWithDirtyPoolFound = false;
-        for (Property p : properties.values()) {
-            if (propertyType.equalsIgnoreCase(p.getPropertyType()) && !p.isRented()) {
-                // if we are looking for available Villas, also ensure the pools are clean before adding them to
-                // availableProperties Map.
-                if (p instanceof Villa) {
-                    Villa v = (Villa) p;
-                    if (v.getCleanPool()) {
-                        availableProperties.add(v);
-                        availableVillaWithCleanPoolFound = true;
-                    } else {
-                        availableVillaWithDirtyPoolFound = true;
+    public List<Boolean> issueRentalContracts(List<RentalRequest> rentalRequests) {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            if (rentalRequests == null || rentalRequests.contains(null)) {
+                throw new IllegalArgumentException("Rental requests can't be null, please try again.");
+            }
+            RejectionReason[] reasons = new RejectionReason[rentalRequests.size()];
+            Property[] chosen = new Property[rentalRequests.size()];
+            long today = dayClock.today();
+            // tenant lock stripes are taken in ascending order, so batches can't deadlock with each other.
+            SortedSet<Integer> stripes = new TreeSet<>();
+            for (int i = 0; i < rentalRequests.size(); i++) {
+                RentalRequest request = rentalRequests.get(i);
+                if (request.getTenantRecord() == null) {
+                    throw new IllegalArgumentException("Tenant Record is not valid. Please try again.");
+                }
+                checkPropertyType(request.getPropertyType());
+                stripes.add(tenantStripe(request.getTenantRecord().getTenantID()));
+            }
+            for (int i = 0; i < rentalRequests.size(); i++) {
+                RentalRequest request = rentalRequests.get(i);
+                reasons[i] = checkEligibility(request.getTenantRecord(), today, request.getPropertyType());
+            }
+            List<Boolean> issued = new ArrayList<>(rentalRequests.size());
+            Journal j = journal;
+            long sequence = 0;
+            for (int stripe : stripes) {
+                tenantLocks[stripe].lock();
+            }
+            try {
+                villaStock.lock.lock();
+                apartmentStock.lock.lock();
+                try {
+                    for (int i = 0; i < rentalRequests.size(); i++) {
+                        RentalRequest request = rentalRequests.get(i);
+                        TenantRecord tR = request.getTenantRecord();
+                        if (reasons[i] != null) {
+                            issued.add(false);
+                            continue;
+                        }
+                        if (!validTenant(tR)) {
+                            reasons[i] = RejectionReason.ALREADY_RENTING;
+                            issued.add(false);
+                            continue;
+                        }
+                        RentalStock stock = stockFor(request.getPropertyType());
+                        Property chosenProperty = pickAvailableProperty(stock);
+                        if (chosenProperty == null) {
+                            reasons[i] = noStockReason(stock);
+                            issued.add(false);
+                            continue;
+                        }
+                        sequence = Math.max(sequence, assignProperty(stock, chosenProperty, tR,
+                                today + request.getDuration(), j));
+                        if (anyoneWaiting()) {
+                            // both stock locks are already held, so the waiting list's lock is taken again.
+                            removeFromWaitingList(tR.getTenantID());
+                        }
+                        chosen[i] = chosenProperty;
+                        issued.add(true);
                     }
+                } finally {
+                    apartmentStock.lock.unlock();
+                    villaStock.lock.unlock();
+                }
+            } finally {
+                for (int stripe : stripes) {
+                    tenantLocks[stripe].unlock();
+                }
+            }
+            commit(j, sequence);
+            for (int i = 0; i < rentalRequests.size(); i++) {
+                RentalRequest request = rentalRequests.get(i);
+                if (chosen[i] != null) {
+                    reportIssued(today, request.getTenantRecord(), chosen[i], request.getDuration());
                 } else {
-                    availableProperties.add(p);
+                    reportRejected(today, request.getTenantRecord(), request.getPropertyType(), reasons[i]);
                 }
             }
+            return Collections.unmodifiableList(issued);
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.ISSUE_RENTAL_CONTRACTS, start);
+            }
         }
-        // if we only find villas with dirty pools and no villas with clean pools, print appropriate message.
-        if (availableVillaWithDirtyPoolFound && !availableVillaWithCleanPoolFound) {
-            System.out.println("Unfortunately we currently have no available Villas for rental with clean pools. Please " +
-                    "keep checking back as we clean the villa pools daily.");
-
-        } // if there are no available properties, print the appropriate message.
-        else if (availableProperties.isEmpty()) {
-            System.out.println("All " + propertyType + "'s are currently already rented. Please reach out with your email " +
-                    "address and we will add you to our waiting list.");
-        }
-        return Collections.unmodifiableList(availableProperties);
     }
 
     /**
-     * Called in the issueRentalContract method, responsible for assigning a specified property to a tenant record
-     * for a specified number of days.
-     * Sets the property's rental status to true, the termination date using the calcTerminationDate method and if the
-     * property is a villa, changes the status of the pool to need's cleaning.
-     * The method also adds the specified tenant record and property to the tenantsProperties Map to store the record.
+     * Issues a rental contract in the same way as issueRentalContract, but if no property of the type can be rented,
+     * adds the tenant to the waiting list for the property type instead of rejecting them.
+     * Premium tenants are served before other tenants, and tenants of the same class in the order they joined. As soon
+     * as a property of the type becomes available, because a rental is terminated, a Villa's pool is cleaned or a
+     * property is added, it is rented to the first tenant waiting, for the duration they asked for starting from that
+     * day, and the rental event listener is told the contract was issued. Tenants no longer need to keep asking for a
+     * property until one is free.
+     * A tenant can only wait for one property at a time, and leaves the waiting list if they are issued a contract
+     * another way or are decommissioned. Waiting lists aren't recorded in the journal or in snapshots.
+     * Exceptions are thrown if the tenant record is null, or the property type is null or neither "Villa" nor
+     * "Apartment".
      *
-     * @param p             , specified property to be rented.
-     * @param tenantRecord, specified tenant record who is renting the property.
-     * @param duration      of the rental in days.
+     * @param tenantRecord that will be renting the property.
+     * @param propertyType that they would like to rent.
+     * @param duration     of the rental property, in days.
+     * @return true if the tenant was issued a contract or added to the waiting list, false if they can't rent the
+     * property type, are already renting a property or are already waiting for one.
      */
-    private void assignProperty(Property p, TenantRecord tenantRecord, int duration) {
-        p.setRented(true);
-        if (p instanceof Villa) {
-            Villa v = (Villa) p;
-            v.setCleanPool(false);
+    public boolean joinWaitingList(TenantRecord tenantRecord, String propertyType, int duration) {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            RejectionReason reason = issue(tenantRecord, propertyType, duration, false);
+            if (reason == null) {
+                return true;
+            }
+            if (reason != RejectionReason.NO_STOCK && reason != RejectionReason.DIRTY_POOL) {
+                return false;
+            }
+            TenantID tID = tenantRecord.getTenantID();
+            RentalStock stock = stockFor(propertyType);
+            ReentrantLock tenantLock = tenantLockFor(tID);
+            tenantLock.lock();
+            try {
+                // check the tenant hasn't been given a property, or joined a waiting list, by another thread in the
+                // meantime.
+                if (!validTenant(tenantRecord)) {
+                    reason = RejectionReason.ALREADY_RENTING;
+                } else if (waitingTenants.containsKey(tID)) {
+                    return false;
+                } else {
+                    stock.lock.lock();
+                    try {
+                        RentalRequest request = new RentalRequest(tenantRecord, propertyType, duration);
+                        if (tenantRecord.isPremiumClass()) {
+                            stock.premiumWaitingList.put(tID, request);
+                        } else {
+                            stock.waitingList.put(tID, request);
+                        }
+                        stock.waiting++;
+                    } finally {
+                        stock.lock.unlock();
+                    }
+                    waitingTenants.put(tID, stock);
+                    reason = null;
+                }
+            } finally {
+                tenantLock.unlock();
+            }
+            if (reason != null) {
+                reportRejected(dayClock.today(), tenantRecord, propertyType, reason);
+                return false;
+            }
+            // a property may have become available before the tenant joined, with nobody waiting to be given it.
+            serveWaitingList(stock);
+            return true;
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.JOIN_WAITING_LIST, start);
+            }
         }
-        p.setTerminationDate((calcTerminationDate(duration)));
-        tenantsProperties.put(tenantRecord.getTenantID(), p.getPropertyCode());
-        System.out.println("Tenant: " + tenantRecord.getName() + ", has rented " + p + " for " + duration + " days.");
     }
 
     /**
-     * Called in the issueRentalContract method through assignProperty, calculates the termination date of the rental by
-     * adding the specified duration in days, onto today's date.
+     * Takes the specified tenant off the waiting list they are on.
+     * Exception is thrown if the tenant record is null.
      *
-     * @param duration
-     * @return
+     * @param tenantRecord , tenant that no longer wants to wait for a property.
+     * @return true if the tenant was on a waiting list, false if not.
      */
-    private Date calcTerminationDate(int duration) {
-        Calendar c = Calendar.getInstance();
-        c.add(Calendar.DAY_OF_MONTH, duration);
-        final Date terminationDate = c.getTime();
-        return terminationDate;
+    public boolean leaveWaitingList(TenantRecord tenantRecord) {
+        if (tenantRecord == null) {
+            throw new IllegalArgumentException("Tenant Record is not valid. Please try again.");
+        }
+        ReentrantLock tenantLock = tenantLockFor(tenantRecord.getTenantID());
+        tenantLock.lock();
+        try {
+            return removeFromWaitingList(tenantRecord.getTenantID());
+        } finally {
+            tenantLock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the specified tenant is on a waiting list.
+     * Exception is thrown if the tenant record is null.
+     *
+     * @param tenantRecord , a specified tenant record.
+     * @return true if the tenant is waiting for a property, false if not.
+     */
+    public boolean isWaiting(TenantRecord tenantRecord) {
+        if (tenantRecord == null) {
+            throw new IllegalArgumentException("Tenant Record is not valid. Please try again.");
+        }
+        return waitingTenants.containsKey(tenantRecord.getTenantID());
+    }
+
+    /**
+     * Returns the number of tenants waiting for a property of the specified type.
+     * Exceptions are thrown if the property type parameter is null, or is neither "Villa" nor "Apartment".
+     *
+     * @param propertyType (either Villa or Apartment)
+     * @return an int
+     */
+    public int noOfTenantsWaiting(String propertyType) {
+        checkPropertyType(propertyType);
+        RentalStock stock = stockFor(propertyType);
+        stock.lock.lock();
+        try {
+            return stock.premiumWaitingList.size() + stock.waitingList.size();
+        } finally {
+            stock.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether any tenant is on either stock's waiting list, from the stocks' volatile counters, so issuing a
+     * contract doesn't take the waiting tenants' read lock to find out. A tenant's stock counter is raised before they
+     * are added to waitingTenants and lowered after they are removed, both while holding the tenant's lock, so a
+     * caller holding a tenant's lock always sees that tenant counted if they are waiting.
+     *
+     * @return true if a tenant may be waiting, false if nobody is.
+     */
+    private boolean anyoneWaiting() {
+        return villaStock.waiting + apartmentStock.waiting > 0;
+    }
+
+    /**
+     * Takes the specified tenant off the waiting list they are on. Must be called while holding the tenant's lock, and
+     * not while holding only the Apartment stock's lock, as the waiting list's stock lock is taken.
+     *
+     * @param tenantID , ID of the tenant.
+     * @return true if the tenant was on a waiting list, false if not.
+     */
+    private boolean removeFromWaitingList(TenantID tenantID) {
+        RentalStock stock = waitingTenants.remove(tenantID);
+        if (stock == null) {
+            return false;
+        }
+        stock.lock.lock();
+        try {
+            if (stock.premiumWaitingList.remove(tenantID) == null) {
+                stock.waitingList.remove(tenantID);
+            }
+            stock.waiting--;
+        } finally {
+            stock.lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Rents the available properties of the specified rental stock to the tenants at the front of its waiting lists,
+     * premium tenants first, until no property can be rented or nobody is left waiting. Only the front of a list is
+     * looked at, so each match takes constant time however many tenants are waiting.
+     * The stock's lock is released after reading who is at the front, so the tenant's lock can be taken before it, in
+     * the usual order; a tenant who leaves the list in the meantime is skipped. Must not be called while holding any
+     * tenant or stock lock.
+     *
+     * @param stock , rental stock that may have a property available.
+     */
+    private void serveWaitingList(RentalStock stock) {
+        if (stock.waiting == 0) {
+            return;
+        }
+        long today = dayClock.today();
+        Journal j = journal;
+        while (true) {
+            RentalRequest next;
+            stock.lock.lock();
+            try {
+                next = stock.availability.available() == 0 ? null : firstWaiting(stock);
+            } finally {
+                stock.lock.unlock();
+            }
+            if (next == null) {
+                return;
+            }
+            TenantRecord tR = next.getTenantRecord();
+            TenantID tID = tR.getTenantID();
+            Property chosenProperty = null;
+            long sequence = 0;
+            ReentrantLock tenantLock = tenantLockFor(tID);
+            tenantLock.lock();
+            try {
+                if (waitingTenants.get(tID) == stock) {
+                    stock.lock.lock();
+                    try {
+                        chosenProperty = pickAvailableProperty(stock);
+                        if (chosenProperty != null) {
+                            if (stock.premiumWaitingList.remove(tID) == null) {
+                                stock.waitingList.remove(tID);
+                            }
+                            stock.waiting--;
+                            sequence = assignProperty(stock, chosenProperty, tR, today + next.getDuration(), j);
+                        }
+                    } finally {
+                        stock.lock.unlock();
+                    }
+                    if (chosenProperty == null) {
+                        // the only free Villas had dirty pools, and are now waiting to be cleaned.
+                        return;
+                    }
+                    waitingTenants.remove(tID);
+                }
+            } finally {
+                tenantLock.unlock();
+            }
+            if (chosenProperty != null) {
+                commit(j, sequence);
+                reportIssued(today, tR, chosenProperty, next.getDuration());
+            }
+        }
+    }
+
+    /**
+     * Returns the rental request of the tenant at the front of the specified stock's waiting lists, premium tenants
+     * first. Must be called while holding the stock's lock.
+     *
+     * @param stock , rental stock of the property type.
+     * @return a RentalRequest, or null if nobody is waiting.
+     */
+    private static RentalRequest firstWaiting(RentalStock stock) {
+        if (!stock.premiumWaitingList.isEmpty()) {
+            return stock.premiumWaitingList.values().iterator().next();
+        }
+        return stock.waitingList.isEmpty() ? null : stock.waitingList.values().iterator().next();
+    }
+
+    /**
+     * Checks the property type is either "Villa" or "Apartment", ignoring case.
+     * Exceptions are thrown if the property type parameter is null, or is neither "Villa" nor "Apartment".
+     *
+     * @param propertyType (either Villa or Apartment)
+     */
+    private void checkPropertyType(String propertyType) {
+        if (propertyType == null) {
+            throw new IllegalArgumentException("Property type can't be null, please try again. We offer Villas and " +
+                    "Apartments for rental.");
+        }
+        if (!propertyType.equalsIgnoreCase(labelVilla) && !propertyType.equalsIgnoreCase(labelApartment)) {
+            throw new IllegalArgumentException("Invalid property type, please try again. The only properties " +
+                    "we offer for rental are Villas and Apartments");
+        }
+    }
+
+    /**
+     * Called in the issueRentalContract method, checks the tenant is allowed to rent the specified property type.
+     * Tenants must be at least 21 and premium class to rent a Villa, and at least 18 to rent an Apartment.
+     * The tenant's age is checked by comparing today against the day they turn the required age.
+     *
+     * @param tenantRecord that would like to rent the property.
+     * @param today        today's date, in days since the epoch.
+     * @param propertyType that they would like to rent.
+     * @return null if the tenant can rent the property type, otherwise the reason they can't.
+     */
+    private RejectionReason checkEligibility(TenantRecord tenantRecord, long today, String propertyType) {
+        long dob = tenantRecord.getDateOfBirthEpochDay();
+        if (propertyType.equalsIgnoreCase(labelVilla)) {
+            // check tenant is at least 21 and premium class to be able to rent a Villa
+            if (today < dayTurning(dob, 21)) {
+                return RejectionReason.UNDER_21;
+            }
+            if (!tenantRecord.isPremiumClass()) {
+                return RejectionReason.NOT_PREMIUM;
+            }
+        } else if (today < dayTurning(dob, 18)) {
+            // check tenant is at least 18 to be able to rent an Apartment.
+            return RejectionReason.UNDER_18;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the day a tenant born on the specified day turns the specified age.
+     *
+     * @param dob, tenants date of birth, in days since the epoch.
+     * @param age, in years.
+     * @return a long representing the day, in days since the epoch.
+     */
+    private static long dayTurning(long dob, int age) {
+        return LocalDate.ofEpochDay(dob).plusYears(age).toEpochDay();
+    }
+
+    /**
+     * Called in the issueRentalContract method, validates if the tenant is currently renting a property or not.
+     *
+     * @param tR, a specified tenant record
+     * @return true if the tenant is not renting a property, false if they are.
+     */
+    private boolean validTenant(TenantRecord tR) {
+        return !tenantsProperties.containsKey(tR.getTenantID());
+    }
+
+    /**
+     * Called in the issueRentalContract method, returns an arbitrary property from the specified rental stock that is
+     * available to be rented, using the stock's availability bitmap rather than a list of candidates. Must be called
+     * while holding the stock's lock.
+     * If property type is a Villa, a Villa is only available for rent if its pool is clean. A Villa's pool can be made
+     * dirty without going through the Property Manager, so a picked Villa without a clean pool is marked as dirty in
+     * the bitmap, put in the pool cleaning queue, and another Villa is picked instead.
+     *
+     * @param stock rental stock of the desired property type
+     * @return an available property, or null if there are none.
+     */
+    private Property pickAvailableProperty(RentalStock stock) {
+        for (int id = stock.availability.pickRandom(ThreadLocalRandom.current()); id >= 0;
+             id = stock.availability.pickRandom(ThreadLocalRandom.current())) {
+            Property p = store.view(id);
+            if (!(p instanceof Villa) || ((Villa) p).getCleanPool()) {
+                return p;
+            }
+            stock.availability.setCleanPool(id, false);
+            stock.cleaningQueue.add((Villa) p);
+        }
+        return null;
+    }
+
+    /**
+     * Returns why no property could be picked from the specified rental stock: either there are Villas that aren't
+     * rented but are waiting for their pools to be cleaned, or every property is rented. Must be called while holding
+     * the stock's lock.
+     *
+     * @param stock rental stock of the desired property type
+     * @return DIRTY_POOL or NO_STOCK
+     */
+    private static RejectionReason noStockReason(RentalStock stock) {
+        return stock.availability.dirtyPools() == 0 ? RejectionReason.NO_STOCK : RejectionReason.DIRTY_POOL;
+    }
+
+    /**
+     * Returns the rental stock for the specified property type.
+     *
+     * @param propertyType, either Villa or Apartment.
+     * @return the RentalStock of that property type.
+     */
+    private RentalStock stockFor(String propertyType) {
+        return propertyType.equalsIgnoreCase(labelVilla) ? villaStock : apartmentStock;
+    }
+
+    /**
+     * Returns the lock stripe for the specified tenant ID.
+     *
+     * @param tenantID
+     * @return the ReentrantLock guarding that tenant's rentals.
+     */
+    private ReentrantLock tenantLockFor(TenantID tenantID) {
+        return tenantLocks[tenantStripe(tenantID)];
+    }
+
+    /**
+     * Returns the index of the lock stripe for the specified tenant ID.
+     *
+     * @param tenantID
+     * @return an int between 0 and the number of stripes.
+     */
+    private int tenantStripe(TenantID tenantID) {
+        int h = tenantID.hashCode();
+        return (h ^ (h >>> 16)) & (TENANT_LOCK_STRIPES - 1);
+    }
+
+    /**
+     * Marks the specified property as free in the availability bitmap of its rental stock, once it is free to be rented.
+     * Villas with a dirty pool are free but can't be rented, and are put in the pool cleaning queue. Must be called
+     * while holding the stock's lock.
+     *
+     * @param stock, rental stock of the property's type.
+     * @param p,     property that is now free to be rented.
+     */
+    private void markAvailable(RentalStock stock, Property p) {
+        boolean cleanPool = !(p instanceof Villa) || ((Villa) p).getCleanPool();
+        stock.availability.markFree(p.getId(), cleanPool);
+        if (!cleanPool) {
+            stock.cleaningQueue.add((Villa) p);
+        }
+    }
+
+    /**
+     * Called in the issueRentalContract method, responsible for assigning a specified property to a tenant record
+     * until a specified termination date. Must be called while holding the lock of the property's rental stock.
+     * Sets the property's rental status to true, the termination date and if the property is a villa, changes the
+     * status of the pool to need's cleaning.
+     * The method also adds the specified tenant record and property to the tenantsProperties Map to store the record,
+     * and records the contract in the journal if there is one.
+     *
+     * @param stock           , rental stock of the property's type.
+     * @param p               , specified property to be rented.
+     * @param tenantRecord, specified tenant record who is renting the property.
+     * @param terminationDay  of the rental, in days since the epoch.
+     * @param j               , journal to record the contract in, or null.
+     * @return the journal sequence number of the contract, or 0 if there is no journal.
+     */
+    private long assignProperty(RentalStock stock, Property p, TenantRecord tenantRecord, long terminationDay, Journal j) {
+        p.setRented(true);
+        stock.availability.markRented(p.getId());
+        if (p instanceof Villa) {
+            Villa v = (Villa) p;
+            v.setCleanPool(false);
+        }
+        p.setTerminationDay(terminationDay);
+        stock.expiryTimeline.add(p, tenantRecord, terminationDay);
+        tenantsProperties.put(tenantRecord.getTenantID(), p.getPropertyCode());
+        return j == null ? 0 : j.contractIssued(tenantRecord.getTenantID().toString(), p.getPropertyCode().toString(),
+                terminationDay);
     }
 
     /**
@@ -354,56 +1251,1352 @@ public class PropertyManager {
      * property from the tenantsProperty Map.
      * Throws exceptions if the tenant record is null, doesn't have any current rented properties or if the rental
      * property associated with the tenant record is null.
-     * Sets the property's rental status to true, the termination date to null and if the property is a villa, changes
-     * the status of the pool to clean.
+     * Sets the property's rental status to false, the termination date to null and if the property is a villa, puts it
+     * in the pool cleaning queue.
      *
      * @param tenantRecord
      */
     public void terminateRental(TenantRecord tenantRecord) {
-        if (tenantRecord == null) {
-            throw new IllegalArgumentException("Tenant Record is not valid. Please try again.");
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            if (tenantRecord == null) {
+                throw new IllegalArgumentException("Tenant Record is not valid. Please try again.");
+            }
+            // identify the relevant tenant ID from the specified tenant Record, and their corresponding rental property.
+            TenantID relevantTID = tenantRecord.getTenantID();
+            Property releventP;
+            Journal j = journal;
+            long sequence = 0;
+            ReentrantLock tenantLock = tenantLockFor(relevantTID);
+            tenantLock.lock();
+            try {
+                releventP = releaseRental(relevantTID);
+                sequence = finishTermination(relevantTID, j);
+            } finally {
+                tenantLock.unlock();
+            }
+            commit(j, sequence);
+            listener.rentalTerminated(dayClock.today(), tenantRecord, releventP);
+            serveWaitingList(stockFor(releventP.getPropertyType()));
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.TERMINATE_RENTAL, start);
+            }
+        }
+    }
+
+    /**
+     * Terminates every rental whose termination date is before today, so has lapsed, and reports a summary to the
+     * rental event listener.
+     * Lapsed rentals are found using the expiry timelines, only holding each rental stock's lock while they are read.
+     * They are then terminated in one batch, grouped by tenant lock stripe so each stripe is locked once, and each
+     * rental stock is only locked while a single property is released, so rental requests carry on in between.
+     * A rental that is terminated or replaced by another thread in the meantime is left alone. The journal, if there
+     * is one, is committed once for the whole batch.
+     *
+     * @return the number of rentals terminated.
+     */
+    public int terminateLapsedRentals() {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            long today = dayClock.today();
+            List<TenantRecord> lapsed = new ArrayList<>();
+            for (RentalStock stock : new RentalStock[]{villaStock, apartmentStock}) {
+                stock.lock.lock();
+                try {
+                    lapsed.addAll(stock.expiryTimeline.tenantsTerminatingBefore(today));
+                } finally {
+                    stock.lock.unlock();
+                }
+            }
+            lapsed.sort(Comparator.comparingInt(tR -> tenantStripe(tR.getTenantID())));
+            List<TenantRecord> terminatedTenants = new ArrayList<>();
+            List<Property> terminatedProperties = new ArrayList<>();
+            Journal j = journal;
+            long sequence = 0;
+            int i = 0;
+            while (i < lapsed.size()) {
+                int stripe = tenantStripe(lapsed.get(i).getTenantID());
+                ReentrantLock tenantLock = tenantLocks[stripe];
+                tenantLock.lock();
+                try {
+                    for (; i < lapsed.size() && tenantStripe(lapsed.get(i).getTenantID()) == stripe; i++) {
+                        TenantID tenantID = lapsed.get(i).getTenantID();
+                        PropertyCode pc = tenantsProperties.get(tenantID);
+                        Property p = pc == null ? null : propertyWithCode(pc);
+                        if (p == null || !p.isRented() || p.getTerminationDay() >= today) {
+                            continue;
+                        }
+                        releaseRental(tenantID);
+                        sequence = Math.max(sequence, finishTermination(tenantID, j));
+                        terminatedTenants.add(lapsed.get(i));
+                        terminatedProperties.add(p);
+                    }
+                } finally {
+                    tenantLock.unlock();
+                }
+            }
+            commit(j, sequence);
+            int villas = 0;
+            for (int k = 0; k < terminatedProperties.size(); k++) {
+                Property p = terminatedProperties.get(k);
+                if (p instanceof Villa) {
+                    villas++;
+                }
+                listener.rentalTerminated(today, terminatedTenants.get(k), p);
+            }
+            if (m != null) {
+                m.lapsedRentalsTerminated(terminatedProperties.size());
+            }
+            listener.lapsedRentalsTerminated(today, villas, terminatedProperties.size() - villas);
+            serveWaitingList(villaStock);
+            serveWaitingList(apartmentStock);
+            return terminatedProperties.size();
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.TERMINATE_LAPSED_RENTALS, start);
+            }
+        }
+    }
+
+    /**
+     * Starts terminating lapsed rentals on a background thread, straight away and then at the start of each day. A
+     * sweep that fails doesn't stop the next day's, and is reported to the thread's uncaught exception handler.
+     * Exception is thrown if expiry sweeps have already been started.
+     */
+    public synchronized void startExpirySweeps() {
+        if (expirySweeper != null) {
+            throw new IllegalStateException("Expiry sweeps have already been started.");
+        }
+        expirySweeper = startDaily("property-manager-expiry-sweep", () -> {
+            try {
+                terminateLapsedRentals();
+            } catch (RuntimeException e) {
+                backgroundJobFailed(e);
+            }
+        });
+    }
+
+    /**
+     * Stops terminating lapsed rentals at the start of each day. A sweep that is running is allowed to finish.
+     */
+    public synchronized void stopExpirySweeps() {
+        if (expirySweeper != null) {
+            expirySweeper.shutdown();
+            expirySweeper = null;
+        }
+    }
+
+    /**
+     * Cleans the pools of the Villas at the front of the pool cleaning queue, one per crew, making them available to
+     * be rented. Villas whose pools aren't reached stay in the queue for the next day.
+     * Only the Villas being cleaned are looked at, so the cost doesn't grow with the number of Villas on the system.
+     *
+     * @return the number of pools cleaned.
+     */
+    public int cleanPools() {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            Journal j = journal;
+            long sequence = 0;
+            int cleaned = 0;
+            villaStock.lock.lock();
+            try {
+                Iterator<Villa> queue = villaStock.cleaningQueue.iterator();
+                for (int crews = poolCleaningCrews; cleaned < crews && queue.hasNext(); cleaned++) {
+                    Villa v = queue.next();
+                    queue.remove();
+                    v.setCleanPool(true);
+                    villaStock.availability.setCleanPool(v.getId(), true);
+                    if (j != null) {
+                        sequence = j.poolCleaned(v.getPropertyCode().toString());
+                    }
+                }
+            } finally {
+                villaStock.lock.unlock();
+            }
+            commit(j, sequence);
+            serveWaitingList(villaStock);
+            return cleaned;
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.CLEAN_POOLS, start);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of free Villas waiting for their pool to be cleaned.
+     *
+     * @return an int
+     */
+    public int noOfPoolsAwaitingCleaning() {
+        villaStock.lock.lock();
+        try {
+            return villaStock.cleaningQueue.size();
+        } finally {
+            villaStock.lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the number of crews cleaning Villa pools. Each crew cleans one pool a day.
+     * Exception is thrown if the number of crews isn't positive.
+     *
+     * @param crews , number of crews.
+     */
+    public void setPoolCleaningCrews(int crews) {
+        if (crews <= 0) {
+            throw new IllegalArgumentException("Number of pool cleaning crews must be positive.");
+        }
+        poolCleaningCrews = crews;
+    }
+
+    /**
+     * Starts cleaning Villa pools on a background thread, straight away and then at the start of each day. Cleaning
+     * that fails doesn't stop the next day's, and is reported to the thread's uncaught exception handler.
+     * Exception is thrown if pool cleaning has already been started.
+     */
+    public synchronized void startPoolCleaning() {
+        if (poolCleaner != null) {
+            throw new IllegalStateException("Pool cleaning has already been started.");
         }
-        // identify the relevant tenant ID from the specified tenant Record, and their corresponding rental property.
-        TenantID relevantTID = tenantRecord.getTenantID();
-        if (!tenantsProperties.containsKey(relevantTID)) {
-            throw new IllegalArgumentException("Tenant " + tenantRecord.getTenantID() + " does not have any rental properties. " +
+        poolCleaner = startDaily("property-manager-pool-cleaning", () -> {
+            try {
+                cleanPools();
+            } catch (RuntimeException e) {
+                backgroundJobFailed(e);
+            }
+        });
+    }
+
+    /**
+     * Stops cleaning Villa pools at the start of each day. Cleaning that is running is allowed to finish.
+     */
+    public synchronized void stopPoolCleaning() {
+        if (poolCleaner != null) {
+            poolCleaner.shutdown();
+            poolCleaner = null;
+        }
+    }
+
+    /**
+     * Starts a background thread with the specified name that runs the specified job straight away and then at the
+     * start of each day, until the returned executor is shut down.
+     *
+     * @param threadName , name of the background thread.
+     * @param job        , job to run each day.
+     * @return the ScheduledExecutorService running the job.
+     */
+    private ScheduledExecutorService startDaily(String threadName, Runnable job) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                job.run();
+                try {
+                    // the clock may have been changed, so work out when tomorrow starts each time.
+                    executor.schedule(this, dayClock.millisUntilTomorrow(), TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // the job has been stopped.
+                }
+            }
+        });
+        return executor;
+    }
+
+    /**
+     * Records the termination of the specified tenant's rental in the journal. Called once the rental has been
+     * released, while holding the tenant's lock.
+     *
+     * @param tenantID , tenant whose rental has been terminated.
+     * @param j        , journal to record the termination in, or null.
+     * @return the journal sequence number of the record, or 0 if there is no journal.
+     */
+    private long finishTermination(TenantID tenantID, Journal j) {
+        return j == null ? 0 : j.rentalTerminated(tenantID.toString());
+    }
+
+    /**
+     * Called in the terminateRental method, ends the rental of the specified tenant and makes their property free to be
+     * rented again. A Villa's pool is dirty once its tenant has left, so the Villa is put in the pool cleaning queue
+     * and can't be rented until it has been cleaned. Must be called while holding the tenant's lock.
+     * Throws exceptions if the tenant doesn't have any current rented properties or if the rental property is missing.
+     *
+     * @param relevantTID, ID of the tenant whose rental is ending.
+     * @return the property that was rented.
+     */
+    private Property releaseRental(TenantID relevantTID) {
+        PropertyCode relevantPC = tenantsProperties.get(relevantTID);
+        if (relevantPC == null) {
+            throw new IllegalArgumentException("Tenant " + relevantTID + " does not have any rental properties. " +
                     "Please ensure you are trying the correct tenant.");
         }
-        Property releventP = properties.get(tenantsProperties.get(relevantTID));
+        Property releventP = propertyWithCode(relevantPC);
         if (releventP == null) {
             throw new IllegalArgumentException(relevantTID + "'s Rental property is missing");
         }
+        RentalStock stock = stockFor(releventP.getPropertyType());
+        stock.lock.lock();
+        try {
+            stock.expiryTimeline.remove(releventP);
+            releventP.setRented(false);
+            releventP.setTerminationDay(Property.NO_TERMINATION_DAY);
+            markAvailable(stock, releventP);
+        } finally {
+            stock.lock.unlock();
+        }
         tenantsProperties.remove(relevantTID);
-        releventP.setRented(false);
-        releventP.setTerminationDate(null);
-        if (releventP instanceof Villa) {
-            Villa v = (Villa) releventP;
+        return releventP;
+    }
+
+    /**
+     * Cleans the specified Villa's pool, taking it out of the pool cleaning queue, and if the Villa is free, makes it
+     * available to be rented.
+     *
+     * @param v, Villa whose pool has been cleaned.
+     */
+    private void cleanPool(Villa v) {
+        villaStock.lock.lock();
+        try {
             v.setCleanPool(true);
+            villaStock.availability.setCleanPool(v.getId(), true);
+            villaStock.cleaningQueue.remove(v);
+        } finally {
+            villaStock.lock.unlock();
         }
-        System.out.println(tenantRecord.getName() + "'s rental of " + releventP + " has been terminated.");
     }
 
     /**
-     * Returns a Collection of properties with rentals terminating soon. This is determined as any live rental in the
-     * Properties Map with a termination date not before today's date (in case any properties that have finished rentals
-     * have not been removed from the tenantsProperty Map yet) and not after 7 days time.
+     * Decommissions the property with the specified property code, removing it from the system. Its property code is
+     * released so it can be issued to a new property, and its place in the property store is reused, so any views of
+     * the property that are still held must not be used.
+     * Exceptions are thrown if the property code is null, if the property isn't on the system, or if it is rented, as
+     * its rental must be terminated first.
      *
-     * @return an unmodifiable Collection of the properties terminating soon.
+     * @param propertyCode , code of the property to decommission.
      */
-    public Collection<Property> getPropertiesTerminatingSoon() {
-        Set<Property> propertiesTerminatingSoon = new HashSet<>();
-        for (PropertyCode pc : tenantsProperties.values()) {
-            Property expiringP = properties.get(pc);
-            Date expiringDate = expiringP.getTerminationDate();
-            Date todaysDate = new Date();
-            Calendar c = Calendar.getInstance();
-            c.add(DAY_OF_YEAR, 7);
-            Date sevenDaysLater = c.getTime();
-            if (!expiringDate.before(todaysDate) && !expiringDate.after(sevenDaysLater)) {
-                propertiesTerminatingSoon.add(expiringP);
+    public void decommissionProperty(PropertyCode propertyCode) {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            if (propertyCode == null) {
+                throw new IllegalArgumentException("Property code can't be null, please try again.");
+            }
+            Property p = propertyWithCode(propertyCode);
+            if (p == null) {
+                throw new IllegalArgumentException("Property " + propertyCode + " is not on our records.");
+            }
+            Journal j = journal;
+            long sequence;
+            RentalStock stock = stockFor(p.getPropertyType());
+            stock.lock.lock();
+            try {
+                // check the property hasn't been decommissioned by another thread in the meantime.
+                Integer id = propertiesByCode.get(propertyCode.toInt());
+                if (id == null || id != p.getId()) {
+                    throw new IllegalArgumentException("Property " + propertyCode + " is not on our records.");
+                }
+                removeProperty(stock, p);
+                sequence = j == null ? 0 : j.propertyDecommissioned(propertyCode.toString());
+            } finally {
+                stock.lock.unlock();
+            }
+            propertyCodes.release(propertyCode);
+            commit(j, sequence);
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.DECOMMISSION_PROPERTY, start);
+            }
+        }
+    }
+
+    /**
+     * Decommissions the specified tenant, removing them from the system. Their tenant ID is released, but will not be
+     * issued to another tenant.
+     * Exceptions are thrown if the tenant record is null, if the tenant isn't on the system, or if they are renting a
+     * property, as their rental must be terminated first.
+     *
+     * @param tenantRecord , tenant to decommission.
+     */
+    public void decommissionTenant(TenantRecord tenantRecord) {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            if (tenantRecord == null) {
+                throw new IllegalArgumentException("Tenant Record is not valid. Please try again.");
+            }
+            TenantID tID = tenantRecord.getTenantID();
+            Journal j = journal;
+            long sequence;
+            ReentrantLock tenantLock = tenantLockFor(tID);
+            tenantLock.lock();
+            try {
+                if (!tenantRecord.equals(tenants.get(tID))) {
+                    throw new IllegalArgumentException("Tenant " + tID + " is not on our records.");
+                }
+                removeTenant(tenantRecord);
+                removeFromWaitingList(tID);
+                sequence = j == null ? 0 : j.tenantDecommissioned(tID.toString());
+            } finally {
+                tenantLock.unlock();
             }
+            tenantIDs.release(tID);
+            commit(j, sequence);
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.DECOMMISSION_TENANT, start);
+            }
+        }
+    }
+
+    /**
+     * Removes the specified free property from the system and releases its place in the property store. Must be called
+     * while holding the lock of the property's rental stock.
+     * Exception is thrown if the property is rented.
+     *
+     * @param stock, rental stock of the property's type.
+     * @param p,     property to remove.
+     */
+    private void removeProperty(RentalStock stock, Property p) {
+        if (!stock.availability.remove(p.getId())) {
+            throw new IllegalArgumentException("Property " + p.getPropertyCode() + " is rented, its rental must be " +
+                    "terminated before it can be decommissioned.");
+        }
+        if (p instanceof Villa) {
+            stock.cleaningQueue.remove(p);
         }
-        return Collections.unmodifiableSet(propertiesTerminatingSoon);
+        propertiesByCode.remove(store.packedCode(p.getId()));
+        store.release(p.getId());
+    }
+
+    /**
+     * Removes the specified tenant from the system. Must be called while holding the tenant's lock.
+     * Exception is thrown if the tenant is renting a property.
+     *
+     * @param tR, tenant record to remove.
+     */
+    private void removeTenant(TenantRecord tR) {
+        if (tenantsProperties.containsKey(tR.getTenantID())) {
+            throw new IllegalArgumentException("Tenant " + tR.getTenantID() + " is renting a property, their rental " +
+                    "must be terminated before they can be decommissioned.");
+        }
+        tenants.remove(tR.getTenantID());
+        Name n = tR.getName();
+        tenantsByNameAndDob.remove(new TenantKey(n.getFirstName(), n.getLastName(), tR.getDateOfBirthEpochDay()));
+    }
+
+    /**
+     * Returns a Collection of properties with rentals terminating soon. This is determined as any live rental with a
+     * termination date not before today's date (in case any properties that have finished rentals have not been
+     * removed from the tenantsProperty Map yet) and not after 7 days time.
+     * Rentals are found using the expiry timelines, so only the rentals terminating soon are looked at.
+     *
+     * @return an unmodifiable Collection of the properties terminating soon.
+     */
+    public Collection<Property> getPropertiesTerminatingSoon() {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            long today = dayClock.today();
+            return Collections.unmodifiableList(terminatingBetween(today, today + 7));
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.GET_PROPERTIES_TERMINATING_SOON, start);
+            }
+        }
+    }
+
+    /**
+     * Returns a Collection of properties with live rentals terminating on any day between the two specified dates,
+     * including both the from and to dates.
+     * Exceptions are thrown if either date is null, or if the from date is after the to date.
+     *
+     * @param from first date of the range.
+     * @param to   last date of the range.
+     * @return an unmodifiable Collection of the properties terminating between the two dates.
+     */
+    public Collection<Property> getPropertiesTerminatingBetween(Date from, Date to) {
+        PropertyManagerMetrics m = metrics;
+        long start = m == null ? 0 : System.nanoTime();
+        try {
+            if (from == null || to == null) {
+                throw new IllegalArgumentException("Dates can't be null, please have another go.");
+            }
+            long fromDay = toEpochDay(from);
+            long toDay = toEpochDay(to);
+            if (fromDay > toDay) {
+                throw new IllegalArgumentException("From date can't be after the to date, please have another go.");
+            }
+            return Collections.unmodifiableList(terminatingBetween(fromDay, toDay));
+        } finally {
+            if (m != null) {
+                m.recordLatency(TimedMethod.GET_PROPERTIES_TERMINATING_BETWEEN, start);
+            }
+        }
+    }
+
+    /**
+     * Collects the properties of every type with rentals terminating between the two specified days, locking one
+     * rental stock at a time.
+     *
+     * @param fromDay, first day of the range, in days since the epoch.
+     * @param toDay,   last day of the range, in days since the epoch.
+     * @return a List of properties.
+     */
+    private List<Property> terminatingBetween(long fromDay, long toDay) {
+        List<Property> terminating = new ArrayList<>();
+        for (RentalStock stock : new RentalStock[]{villaStock, apartmentStock}) {
+            stock.lock.lock();
+            try {
+                terminating.addAll(stock.expiryTimeline.between(fromDay, toDay));
+            } finally {
+                stock.lock.unlock();
+            }
+        }
+        return terminating;
+    }
+
+    /**
+     * Returns the number of rentals terminating between today and 7 days time, without collecting the properties.
+     *
+     * @return an int
+     */
+    int noOfPropertiesTerminatingSoon() {
+        long today = dayClock.today();
+        int count = 0;
+        for (RentalStock stock : new RentalStock[]{villaStock, apartmentStock}) {
+            stock.lock.lock();
+            try {
+                count += stock.expiryTimeline.countBetween(today, today + 7);
+            } finally {
+                stock.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Opens the journal at the specified path, creating it if it doesn't exist, and rebuilds the properties, tenants and
+     * rentals recorded in it, including their property codes and tenant IDs. From then on, every property added, tenant
+     * added, contract issued, rental terminated, pool cleaned and property or tenant decommissioned is recorded in the
+     * journal before the method making the change returns.
+     * Exceptions are thrown if the path or policy is null, if a journal is already open, or if the Property Manager
+     * already has properties or tenants, since they would be missing from the journal.
+     *
+     * @param path   of the journal file.
+     * @param policy when the journal's writes are forced to disk.
+     * @throws IOException if the journal can't be read or written.
+     */
+    public synchronized void openJournal(Path path, FsyncPolicy policy) throws IOException {
+        if (path == null || policy == null) {
+            throw new IllegalArgumentException("Journal path and fsync policy can't be null.");
+        }
+        if (journal != null) {
+            throw new IllegalStateException("A journal is already open.");
+        }
+        if (!properties.isEmpty() || !tenants.isEmpty()) {
+            throw new IllegalStateException("The journal must be opened before any properties or tenants are added.");
+        }
+        journal = Journal.open(path, policy, new JournalReplayer());
+    }
+
+    /**
+     * Forces every recorded mutation to disk and closes the journal. Later mutations are no longer recorded.
+     *
+     * @throws IOException if the journal can't be written or closed.
+     */
+    public synchronized void closeJournal() throws IOException {
+        Journal j = journal;
+        journal = null;
+        if (j != null) {
+            j.close();
+        }
+    }
+
+    /**
+     * Records the specified tenant in the journal.
+     *
+     * @param j,  journal to record the tenant in.
+     * @param tR, tenant record that has been added.
+     * @return the journal sequence number of the record.
+     */
+    private long journalTenant(Journal j, TenantRecord tR) {
+        Name n = tR.getName();
+        return j.tenantAdded(tR.getTenantID().toString(), n.getFirstName(), n.getLastName(),
+                tR.getDateOfBirthEpochDay(), tR.isPremiumClass());
+    }
+
+    /**
+     * Waits for the specified journal record, and those before it, to be committed to the journal.
+     *
+     * @param j,        journal the record was appended to, or null if there is no journal.
+     * @param sequence, number of the record, or 0 if nothing was recorded.
+     */
+    private void commit(Journal j, long sequence) {
+        if (j != null && sequence > 0) {
+            j.commit(sequence);
+        }
+    }
+
+    /**
+     * Saves a snapshot of the property codes and tenant IDs that have been issued, the properties, the tenants and the
+     * live rentals to the specified path, replacing any snapshot already there.
+     * The Property Manager is locked only while the snapshot is encoded into memory, and the file is written afterwards.
+     *
+     * @param path of the snapshot file.
+     * @throws IOException if the snapshot can't be written.
+     */
+    public void saveSnapshot(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Snapshot path can't be null.");
+        }
+        SnapshotWriter writer = new SnapshotWriter();
+        // every tenant stripe and then each rental stock is locked, in the same order as issueRentalContracts, so no
+        // rental can be issued or terminated while the snapshot is taken.
+        for (ReentrantLock tenantLock : tenantLocks) {
+            tenantLock.lock();
+        }
+        try {
+            villaStock.lock.lock();
+            apartmentStock.lock.lock();
+            try {
+                for (String code : propertyCodes.getPropertyCodesMap().keySet()) {
+                    writer.propertyCode(code);
+                }
+                for (String tID : tenantIDs.getTenantIDsMap().keySet()) {
+                    writer.tenantID(tID);
+                }
+                for (long code : propertiesByCode.keys()) {
+                    Property p = viewOf((int) code);
+                    writer.property(p.getPropertyType(), p.getPropertyCode().toString(),
+                            !(p instanceof Villa) || ((Villa) p).getCleanPool());
+                }
+                for (TenantRecord tR : tenants.values()) {
+                    Name n = tR.getName();
+                    writer.tenant(tR.getTenantID().toString(), n.getFirstName(), n.getLastName(),
+                            tR.getDateOfBirthEpochDay(), tR.isPremiumClass());
+                }
+                for (Map.Entry<TenantID, PropertyCode> rental : tenantsProperties.entrySet()) {
+                    Property p = propertyWithCode(rental.getValue());
+                    writer.rental(rental.getKey().toString(), rental.getValue().toString(),
+                            p.getTerminationDay());
+                }
+            } finally {
+                apartmentStock.lock.unlock();
+                villaStock.lock.unlock();
+            }
+        } finally {
+            for (ReentrantLock tenantLock : tenantLocks) {
+                tenantLock.unlock();
+            }
+        }
+        writer.writeTo(path);
+    }
+
+    /**
+     * Loads the properties, tenants and rentals from the snapshot at the specified path, restoring their original
+     * property codes and tenant IDs, along with any other codes and IDs that had been issued.
+     * Exceptions are thrown if the path is null, if a journal is open, or if the Property Manager already has
+     * properties or tenants.
+     *
+     * @param path of the snapshot file.
+     * @throws IOException if the snapshot can't be read or is corrupt.
+     */
+    public synchronized void loadSnapshot(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Snapshot path can't be null.");
+        }
+        if (journal != null) {
+            throw new IllegalStateException("A snapshot can't be loaded while a journal is open.");
+        }
+        if (!properties.isEmpty() || !tenants.isEmpty()) {
+            throw new IllegalStateException("A snapshot must be loaded before any properties or tenants are added.");
+        }
+        Snapshot.read(path, new SnapshotLoader());
+    }
+
+    /**
+     * Imports properties and tenants, with their current rentals, from the CSV or NDJSON file at the specified path.
+     * The format is told from the file's extension, and the file is read with a thread for each processor.
+     * Exceptions are thrown if the path is null or its extension isn't one ImportFormat knows.
+     *
+     * @param path of the file.
+     * @return an ImportReport of what was imported and which lines were rejected.
+     * @throws IOException if the file can't be read.
+     */
+    public ImportReport importRecords(Path path) throws IOException {
+        return importRecords(path, ImportFormat.forPath(path), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Imports properties and tenants, with their current rentals, from the file at the specified path, in the
+     * specified format, as described by ImportFormat.
+     * The file is streamed in parallel chunks and its records are added in batches, each batch issuing its property
+     * codes or tenant IDs at once and waiting for the journal once. Every property is added before any tenant, and a
+     * tenant's rental is given a random available property of its type, so properties must be in the file, or already
+     * on the system, for the tenants renting them. Rentals are existing contracts, so their tenants aren't checked
+     * for eligibility and the rental event listener isn't told about them.
+     * A line that can't be imported, because it can't be parsed, the tenant already exists, the rental has already
+     * ended or there is no property available for it, is rejected without stopping the import, and nothing from that
+     * line is added.
+     * Exceptions are thrown if the path or format is null, or the number of threads is less than 1.
+     *
+     * @param path    of the file.
+     * @param format  of the file.
+     * @param threads , number of threads to read the file with.
+     * @return an ImportReport of what was imported and which lines were rejected.
+     * @throws IOException if the file can't be read.
+     */
+    public ImportReport importRecords(Path path, ImportFormat format, int threads) throws IOException {
+        ImportReport report = new ImportReport();
+        BulkImport.read(path, format, threads, new Importer(report));
+        return report;
+    }
+
+    /**
+     * Exports the properties, tenants and live rentals to the specified channel, in the specified format, as described
+     * by ExportFormat. The channel isn't closed afterwards.
+     * The export is a consistent view of one point in time. Both rental stocks are locked just long enough to bulk
+     * copy the property store's columns and note the rentals on their timelines, without creating a view of any
+     * property, so bookings are held up for far less time than a snapshot takes. The tenants are noted once the stocks
+     * are unlocked, and the records are then formatted and written through a reused buffer with nothing locked.
+     * Tenant lock stripes aren't needed: a rental is added and removed together with its property's state while
+     * holding the stock's lock, and a tenant is added before their first rental, so every rental in the view has its
+     * property and tenant in the view too.
+     * Exceptions are thrown if the channel or format is null.
+     *
+     * @param channel to write the export to.
+     * @param format  of the export.
+     * @return the number of records exported.
+     * @throws IOException if the export can't be written to the channel.
+     */
+    public int exportRecords(WritableByteChannel channel, ExportFormat format) throws IOException {
+        ExportWriter writer = new ExportWriter(channel, format);
+        ExportView view;
+        villaStock.lock.lock();
+        apartmentStock.lock.lock();
+        try {
+            view = new ExportView(store.copyColumns(),
+                    villaStock.expiryTimeline.size() + apartmentStock.expiryTimeline.size());
+            villaStock.expiryTimeline.forEach(view::addRental);
+            apartmentStock.expiryTimeline.forEach(view::addRental);
+        } finally {
+            apartmentStock.lock.unlock();
+            villaStock.lock.unlock();
+        }
+        // tenants are noted after the rentals, so a tenant added and given a rental since can't be missing.
+        view.addTenants(tenants);
+        view.writeTo(writer);
+        return writer.finish();
+    }
+
+    /**
+     * Adds the properties of each type in the specified batch of an import with a single call to addProperties. If
+     * there aren't enough property codes left for them, the batch's properties of that type are rejected.
+     *
+     * @param batch  of property records.
+     * @param report of the import.
+     */
+    private void importProperties(ImportBatch batch, ImportReport report) {
+        for (String propertyType : new String[]{labelVilla, labelApartment}) {
+            int count = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                if (propertyType.equals(batch.propertyType(i))) {
+                    count++;
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            try {
+                addProperties(propertyType, count);
+                report.propertiesAdded(count);
+            } catch (IllegalStateException e) {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (propertyType.equals(batch.propertyType(i))) {
+                        report.rejected(batch.line(i), e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the tenants in the specified batch of an import, along with their current rentals, rejecting any that are
+     * already on the system, whose rental has already ended or for whom there is no property available. The tenant
+     * IDs are issued all at once, and the tenants and rental stocks are locked once for the whole batch.
+     * A new tenant can be found by other threads as soon as they are added, before their rental is assigned and
+     * journaled, so their lock stripes are taken in ascending order before the rental stocks, in the same way as
+     * issueRentalContracts, and other threads can't rent to or decommission them until the batch is done.
+     *
+     * @param batch  of tenant records.
+     * @param report of the import.
+     */
+    private void importTenants(ImportBatch batch, ImportReport report) {
+        long today = dayClock.today();
+        int[] rows = new int[batch.size()];
+        List<Name> names = new ArrayList<>(batch.size());
+        List<TenantKey> keys = new ArrayList<>(batch.size());
+        Set<TenantKey> batchKeys = new HashSet<>();
+        boolean rentals = false;
+        for (int i = 0; i < batch.size(); i++) {
+            TenantKey key = new TenantKey(batch.firstName(i), batch.lastName(i), batch.dateOfBirthDay(i));
+            if (tenantsByNameAndDob.containsKey(key) || !batchKeys.add(key)) {
+                report.rejected(batch.line(i), "Tenant " + batch.firstName(i) + " " + batch.lastName(i)
+                        + " already exists on our records.");
+            } else if (batch.propertyType(i) != null && batch.rentalEndDay(i) < today) {
+                report.rejected(batch.line(i), "Rental has already ended.");
+            } else {
+                rows[names.size()] = i;
+                names.add(new Name(batch.firstName(i), batch.lastName(i)));
+                keys.add(key);
+                rentals |= batch.propertyType(i) != null;
+            }
+        }
+        if (names.isEmpty()) {
+            return;
+        }
+        int yearOfIssue = LocalDate.ofEpochDay(today).getYear();
+        List<TenantID> tIDs;
+        try {
+            tIDs = tenantIDs.getInstances(names, yearOfIssue);
+        } catch (IllegalStateException e) {
+            // the serial numbers have run out for some of the names, so issue them one at a time to find which
+            tIDs = new ArrayList<>(names.size());
+            for (Name n : names) {
+                try {
+                    tIDs.add(tenantIDs.getInstance(n, yearOfIssue));
+                } catch (IllegalStateException noSerials) {
+                    tIDs.add(null);
+                }
+            }
+        }
+        Journal j = journal;
+        long sequence = 0;
+        // tenant lock stripes are taken in ascending order, so batches can't deadlock with each other.
+        SortedSet<Integer> stripes = new TreeSet<>();
+        for (TenantID tID : tIDs) {
+            if (tID != null) {
+                stripes.add(tenantStripe(tID));
+            }
+        }
+        for (int stripe : stripes) {
+            tenantLocks[stripe].lock();
+        }
+        if (rentals) {
+            villaStock.lock.lock();
+            apartmentStock.lock.lock();
+        }
+        try {
+            for (int k = 0; k < names.size(); k++) {
+                int i = rows[k];
+                if (tIDs.get(k) == null) {
+                    report.rejected(batch.line(i), "No tenant IDs are left for " + names.get(k) + "'s initials.");
+                    continue;
+                }
+                RentalStock stock = null;
+                Property p = null;
+                if (batch.propertyType(i) != null) {
+                    stock = stockFor(batch.propertyType(i));
+                    p = pickAvailableProperty(stock);
+                    if (p == null) {
+                        tenantIDs.release(tIDs.get(k));
+                        report.rejected(batch.line(i), "No " + batch.propertyType(i)
+                                + " is available for the tenant's rental.");
+                        continue;
+                    }
+                }
+                TenantRecord newTR = new TenantRecord(names.get(k), batch.dateOfBirthDay(i), batch.isPremium(i),
+                        tIDs.get(k));
+                // check the same tenant hasn't been added by another thread since the batch was checked.
+                if (tenantsByNameAndDob.putIfAbsent(keys.get(k), newTR) != null) {
+                    tenantIDs.release(tIDs.get(k));
+                    report.rejected(batch.line(i), "Tenant " + names.get(k) + " already exists on our records.");
+                    continue;
+                }
+                tenants.put(newTR.getTenantID(), newTR);
+                if (j != null) {
+                    sequence = journalTenant(j, newTR);
+                }
+                if (p != null) {
+                    sequence = assignProperty(stock, p, newTR, batch.rentalEndDay(i), j);
+                }
+                report.tenantAdded(p != null);
+            }
+        } finally {
+            if (rentals) {
+                apartmentStock.lock.unlock();
+                villaStock.lock.unlock();
+            }
+            for (int stripe : stripes) {
+                tenantLocks[stripe].unlock();
+            }
+        }
+        commit(j, sequence);
+    }
+
+    /**
+     * Starts saving a snapshot to the specified path at a fixed interval, on a background thread. A snapshot that
+     * can't be saved doesn't stop later ones, and is reported to the thread's uncaught exception handler.
+     * Exceptions are thrown if the path is null, the interval isn't positive or snapshots have already been started.
+     *
+     * @param path           of the snapshot file.
+     * @param intervalMillis time between snapshots, in milliseconds.
+     */
+    public synchronized void startSnapshots(Path path, long intervalMillis) {
+        if (path == null || intervalMillis <= 0) {
+            throw new IllegalArgumentException("Snapshot path can't be null and the interval must be positive.");
+        }
+        if (snapshotter != null) {
+            throw new IllegalStateException("Snapshots have already been started.");
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "property-manager-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                saveSnapshot(path);
+            } catch (IOException e) {
+                backgroundJobFailed(new UncheckedIOException("Failed to save snapshot to " + path, e));
+            } catch (RuntimeException e) {
+                backgroundJobFailed(e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reports the failure of a background job, which carries on running at its next time. The failure is counted in
+     * the metrics, if they are enabled, and handed to the background thread's uncaught exception handler, which prints
+     * its stack trace unless the program has set a default handler of its own.
+     *
+     * @param e , why the job failed.
+     */
+    private void backgroundJobFailed(RuntimeException e) {
+        PropertyManagerMetrics m = metrics;
+        if (m != null) {
+            m.backgroundJobFailed();
+        }
+        Thread t = Thread.currentThread();
+        t.getUncaughtExceptionHandler().uncaughtException(t, e);
+    }
+
+    /**
+     * Stops saving snapshots periodically. A snapshot that is being saved is allowed to finish.
+     */
+    public synchronized void stopSnapshots() {
+        if (snapshotter != null) {
+            snapshotter.shutdown();
+            snapshotter = null;
+        }
+    }
+
+    /**
+     * Adds a restored property to the system, and makes it available to be rented.
+     *
+     * @param p, property that has been restored.
+     */
+    private void restoreProperty(Property p) {
+        propertiesByCode.put(p.getPropertyCode().toInt(), p.getId());
+        RentalStock stock = stockFor(p.getPropertyType());
+        stock.lock.lock();
+        try {
+            markAvailable(stock, p);
+        } finally {
+            stock.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a restored tenant to the system.
+     *
+     * @param tenantID       , restored ID of the tenant.
+     * @param firstName      tenants first name
+     * @param lastName       tenants last name
+     * @param dateOfBirthDay tenants date of birth, in days since the epoch
+     * @param premium        is the tenant premium class or not
+     */
+    private void restoreTenant(TenantID tenantID, String firstName, String lastName, long dateOfBirthDay,
+                               boolean premium) {
+        TenantRecord tR = new TenantRecord(new Name(firstName, lastName), dateOfBirthDay, premium, tenantID);
+        tenants.put(tR.getTenantID(), tR);
+        tenantsByNameAndDob.put(new TenantKey(firstName, lastName, dateOfBirthDay), tR);
+    }
+
+    /**
+     * Restores the rental of the specified property to the specified tenant.
+     * Exceptions are thrown if either the tenant or the property isn't on the system.
+     *
+     * @param tenantID       , string representation of the tenant's ID.
+     * @param propertyCode   , string representation of the rented property's code.
+     * @param terminationDay date the rental terminates, in days since the epoch.
+     */
+    private void restoreRental(String tenantID, String propertyCode, long terminationDay) {
+        TenantRecord tR = tenants.get(knownTenant(tenantID));
+        Property p = knownProperty(propertyCode);
+        RentalStock stock = stockFor(p.getPropertyType());
+        stock.lock.lock();
+        try {
+            assignProperty(stock, p, tR, terminationDay, null);
+        } finally {
+            stock.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the tenant ID with the specified string representation, when that tenant is on the system.
+     * Exception is thrown if it isn't.
+     *
+     * @param tenantID , string representation of the tenant's ID.
+     * @return the TenantID
+     */
+    private TenantID knownTenant(String tenantID) {
+        long packed = TenantID.parse(tenantID);
+        TenantID tID = packed == TenantID.INVALID_ID ? null : tenantIDs.valueOf(packed);
+        if (tID == null || !tenants.containsKey(packed)) {
+            throw new IllegalStateException("Unknown tenant " + tenantID);
+        }
+        return tID;
+    }
+
+    /**
+     * Returns the property with the specified property code, when it is on the system.
+     * Exception is thrown if it isn't.
+     *
+     * @param propertyCode , string representation of the property's code.
+     * @return the Property
+     */
+    private Property knownProperty(String propertyCode) {
+        Property p = viewOf(PropertyCode.parse(propertyCode));
+        if (p == null) {
+            throw new IllegalStateException("Unknown property " + propertyCode);
+        }
+        return p;
+    }
+
+    /**
+     * Class representing the properties on the system as an unmodifiable Map keyed by property code, read from the
+     * property code index. Each property and property code is created when it is asked for, and iterating goes over
+     * the codes in the index when the iterator was created, skipping any property decommissioned since.
+     */
+    private final class PropertiesByCode extends AbstractMap<PropertyCode, Property> {
+
+        @Override
+        public Property get(Object key) {
+            return key instanceof PropertyCode ? propertyWithCode((PropertyCode) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof PropertyCode
+                    && propertiesByCode.containsKey(((PropertyCode) key).toInt());
+        }
+
+        @Override
+        public int size() {
+            return propertiesByCode.size();
+        }
+
+        @Override
+        public Set<Entry<PropertyCode, Property>> entrySet() {
+            return new AbstractSet<Entry<PropertyCode, Property>>() {
+                @Override
+                public Iterator<Entry<PropertyCode, Property>> iterator() {
+                    long[] codes = propertiesByCode.keys();
+                    return new Iterator<Entry<PropertyCode, Property>>() {
+                        private int i;
+                        private Property next;
+
+                        @Override
+                        public boolean hasNext() {
+                            while (next == null && i < codes.length) {
+                                next = viewOf((int) codes[i++]);
+                            }
+                            return next != null;
+                        }
+
+                        @Override
+                        public Entry<PropertyCode, Property> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Property p = next;
+                            next = null;
+                            return new SimpleImmutableEntry<>(p.getPropertyCode(), p);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return propertiesByCode.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Class that adds the records read by a bulk import to the Property Manager, batch by batch, and notes the lines
+     * that were rejected in the import's report.
+     */
+    private final class Importer implements ImportHandler {
+        private final ImportReport report;
+
+        private Importer(ImportReport report) {
+            this.report = report;
+        }
+
+        @Override
+        public void properties(ImportBatch batch) {
+            importProperties(batch, report);
+        }
+
+        @Override
+        public void tenants(ImportBatch batch) {
+            importTenants(batch, report);
+        }
+
+        @Override
+        public void rowRejected(long line, String reason) {
+            report.rejected(line, reason);
+        }
+    }
+
+    /**
+     * Class that rebuilds the Property Manager's state from the mutations read back from its journal, restoring the
+     * original property codes and tenant IDs.
+     */
+    private final class JournalReplayer implements JournalHandler {
+
+        @Override
+        public void propertyAdded(String propertyType, String propertyCode) {
+            restoreProperty(PropertyFactory.restore(propertyType, propertyCodes.restore(propertyCode), store));
+        }
+
+        @Override
+        public void tenantAdded(String tenantID, String firstName, String lastName, long dateOfBirthDay,
+                                boolean premium) {
+            restoreTenant(tenantIDs.restore(tenantID), firstName, lastName, dateOfBirthDay, premium);
+        }
+
+        @Override
+        public void contractIssued(String tenantID, String propertyCode, long terminationDay) {
+            restoreRental(tenantID, propertyCode, terminationDay);
+        }
+
+        @Override
+        public void rentalTerminated(String tenantID) {
+            releaseRental(knownTenant(tenantID));
+        }
+
+        @Override
+        public void poolCleaned(String propertyCode) {
+            Property p = knownProperty(propertyCode);
+            if (!(p instanceof Villa)) {
+                throw new IllegalStateException("Property " + propertyCode + " is not a Villa.");
+            }
+            cleanPool((Villa) p);
+        }
+
+        @Override
+        public void propertyDecommissioned(String propertyCode) {
+            Property p = knownProperty(propertyCode);
+            PropertyCode pc = p.getPropertyCode();
+            RentalStock stock = stockFor(p.getPropertyType());
+            stock.lock.lock();
+            try {
+                removeProperty(stock, p);
+            } finally {
+                stock.lock.unlock();
+            }
+            propertyCodes.release(pc);
+        }
+
+        @Override
+        public void tenantDecommissioned(String tenantID) {
+            TenantRecord tR = tenants.get(knownTenant(tenantID));
+            removeTenant(tR);
+            tenantIDs.release(tR.getTenantID());
+        }
+    }
+
+    /**
+     * Class that rebuilds the Property Manager's state from a snapshot. Property codes and tenant IDs are restored
+     * first, so properties and tenants are given back their original codes and IDs.
+     */
+    private final class SnapshotLoader implements SnapshotHandler {
+
+        @Override
+        public void propertyCode(String propertyCode) {
+            propertyCodes.restore(propertyCode);
+        }
+
+        @Override
+        public void tenantID(String tenantID) {
+            tenantIDs.restore(tenantID);
+        }
+
+        @Override
+        public void property(String propertyType, String propertyCode, boolean cleanPool) {
+            PropertyCode pc = propertyCodes.valueOf(propertyCode);
+            if (pc == null) {
+                throw new IllegalStateException("Unknown property code " + propertyCode);
+            }
+            Property p = PropertyFactory.restore(propertyType, pc, store);
+            if (p instanceof Villa) {
+                ((Villa) p).setCleanPool(cleanPool);
+            }
+            restoreProperty(p);
+        }
+
+        @Override
+        public void tenant(String tenantID, String firstName, String lastName, long dateOfBirthDay, boolean premium) {
+            TenantID tID = tenantIDs.valueOf(tenantID);
+            if (tID == null) {
+                throw new IllegalStateException("Unknown tenant ID " + tenantID);
+            }
+            restoreTenant(tID, firstName, lastName, dateOfBirthDay, premium);
+        }
+
+        @Override
+        public void rental(String tenantID, String propertyCode, long terminationDay) {
+            restoreRental(tenantID, propertyCode, terminationDay);
+        }
+    }
+
+    /**
+     * Sets the clock that today's date is read from, for rental termination dates, tenant age checks and rentals
+     * terminating soon. Tests and simulations can pin the date with Clock.fixed or move it forward with Clock.offset.
+     * Exception is thrown if the clock is null.
+     *
+     * @param clock , source of the current time and time zone.
+     */
+    public void setClock(Clock clock) {
+        dayClock = new DayClock(clock);
+    }
+
+    /**
+     * Sets the listener that is told about the outcome of rental requests and terminations, in place of the default
+     * listener that writes messages to the console. RentalEventListener.NONE ignores every event.
+     * The listener is called from the thread making the request, so a listener that does any I/O should be wrapped in
+     * an AsyncRentalEventListener.
+     * Exception is thrown if the listener is null.
+     *
+     * @param listener , told about rental events.
+     */
+    public void setRentalEventListener(RentalEventListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener can't be null, use RentalEventListener.NONE instead.");
+        }
+        this.listener = listener;
+    }
+
+    /**
+     * Tells the rental event listener and the metrics that a rental contract has been issued.
+     *
+     * @param today        , day the contract was issued, in days since the epoch.
+     * @param tenantRecord , tenant renting the property.
+     * @param p            , property that has been rented.
+     * @param duration     , of the rental, in days.
+     */
+    private void reportIssued(long today, TenantRecord tenantRecord, Property p, int duration) {
+        PropertyManagerMetrics m = metrics;
+        if (m != null) {
+            m.contractIssued();
+        }
+        listener.contractIssued(today, tenantRecord, p, duration);
+    }
+
+    /**
+     * Tells the rental event listener and the metrics that a rental contract has been rejected.
+     *
+     * @param today        , day the contract was requested, in days since the epoch.
+     * @param tenantRecord , tenant that asked to rent a property.
+     * @param propertyType , either Villa or Apartment.
+     * @param reason       , why the contract wasn't issued.
+     */
+    private void reportRejected(long today, TenantRecord tenantRecord, String propertyType, RejectionReason reason) {
+        PropertyManagerMetrics m = metrics;
+        if (m != null) {
+            m.contractRejected(reason);
+        }
+        listener.contractRejected(today, tenantRecord, propertyType, reason);
+    }
+
+    /**
+     * Starts collecting metrics, and registers them with the platform MBean server so they can be read through JMX
+     * under the name returned by getMetricsName. If metrics are already enabled, the existing metrics are returned.
+     *
+     * @return the PropertyManagerMetrics
+     */
+    public synchronized PropertyManagerMetrics enableMetrics() {
+        if (metrics == null) {
+            PropertyManagerMetrics m = new PropertyManagerMetrics(this);
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(m, metricsName);
+            } catch (JMException e) {
+                throw new IllegalStateException("Failed to register Property Manager metrics.", e);
+            }
+            metrics = m;
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops collecting metrics and unregisters this Property Manager's metrics from the platform MBean server. While
+     * metrics are disabled, the Property Manager does no work for them beyond checking they are disabled.
+     */
+    public synchronized void disableMetrics() {
+        if (metrics == null) {
+            return;
+        }
+        metrics = null;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(metricsName)) {
+                server.unregisterMBean(metricsName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister Property Manager metrics.", e);
+        }
+    }
+
+    /**
+     * Returns the name this Property Manager's metrics are registered under with the platform MBean server while they
+     * are enabled, such as uk.ac.ncl.tom:type=PropertyManager,name=0 for the singleton.
+     *
+     * @return the ObjectName
+     */
+    public ObjectName getMetricsName() {
+        return metricsName;
+    }
+
+    /**
+     * Converts the specified date into the number of days since the epoch (1970-01-01), in the system time zone.
+     *
+     * @param date
+     * @return a long representing the day of the date.
+     */
+    private static long toEpochDay(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Returns today's year by the Property Manager's clock, used as the year of issue of new tenant IDs.
+     *
+     * @return an int representing the year.
+     */
+    private int yearOfIssue() {
+        return LocalDate.ofEpochDay(dayClock.today()).getYear();
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,235 @@
+package uk.ac.ncl.tom.management;
+
+import uk.ac.ncl.tom.events.RejectionReason;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static uk.ac.ncl.tom.properties.PropertyFactory.labelApartment;
+import static uk.ac.ncl.tom.properties.PropertyFactory.labelVilla;
+
+/**
+ * Class representing the metrics of the Property Manager: counts of contracts issued and rejected for each reason,
+ * gauges of free, rented and soon terminating properties, and latency histograms for each public method.
+ * Counters are LongAdders, so threads issuing contracts at the same time don't contend on one counter. Gauges are read
+ * from the Property Manager when they are asked for, so they cost nothing until then, and are read without recording
+ * latencies, so polling them doesn't show up as calls.
+ * Metrics are only collected while they are enabled with PropertyManager.enableMetrics; while they are disabled, the
+ * Property Manager only checks a field is null.
+ *
+ * @author Thomas Hague
+ */
+
+public final class PropertyManagerMetrics implements PropertyManagerMetricsMBean {
+    /**
+     * Enum representing the Property Manager methods whose latencies are recorded.
+     */
+    enum TimedMethod {
+        ADD_PROPERTY("addProperty"),
+        ADD_PROPERTIES("addProperties"),
+        NO_OF_AVAILABLE_PROPERTIES("noOfAvailableProperties"),
+        NO_OF_RENTED_PROPERTIES("noOfRentedProperties"),
+        FIND_PROPERTY("findProperty"),
+        ADD_TENANT_RECORD("addTenantRecord"),
+        ADD_TENANT_RECORDS("addTenantRecords"),
+        FIND_TENANT("findTenant"),
+        ISSUE_RENTAL_CONTRACT("issueRentalContract"),
+        ISSUE_RENTAL_CONTRACTS("issueRentalContracts"),
+        JOIN_WAITING_LIST("joinWaitingList"),
+        TERMINATE_RENTAL("terminateRental"),
+        TERMINATE_LAPSED_RENTALS("terminateLapsedRentals"),
+        CLEAN_POOLS("cleanPools"),
+        DECOMMISSION_PROPERTY("decommissionProperty"),
+        DECOMMISSION_TENANT("decommissionTenant"),
+        GET_PROPERTIES_TERMINATING_SOON("getPropertiesTerminatingSoon"),
+        GET_PROPERTIES_TERMINATING_BETWEEN("getPropertiesTerminatingBetween");
+
+        private final String methodName;
+
+        TimedMethod(String methodName) {
+            this.methodName = methodName;
+        }
+    }
+
+    private final PropertyManager propertyManager;
+    private final LongAdder contractsIssued = new LongAdder();
+    private final Map<RejectionReason, LongAdder> contractsRejected = new EnumMap<>(RejectionReason.class);
+    private final LongAdder lapsedRentalsTerminated = new LongAdder();
+    private final LongAdder backgroundJobFailures = new LongAdder();
+    private final LatencyHistogram[] latencies = new LatencyHistogram[TimedMethod.values().length];
+
+    /**
+     * Creates the metrics of the specified Property Manager.
+     *
+     * @param propertyManager , Property Manager the gauges are read from.
+     */
+    PropertyManagerMetrics(PropertyManager propertyManager) {
+        this.propertyManager = propertyManager;
+        for (RejectionReason reason : RejectionReason.values()) {
+            contractsRejected.put(reason, new LongAdder());
+        }
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Counts a rental contract that has been issued.
+     */
+    void contractIssued() {
+        contractsIssued.increment();
+    }
+
+    /**
+     * Counts a rental contract that has been rejected for the specified reason.
+     *
+     * @param reason , why the contract wasn't issued.
+     */
+    void contractRejected(RejectionReason reason) {
+        contractsRejected.get(reason).increment();
+    }
+
+    /**
+     * Counts lapsed rentals that have been terminated by an expiry sweep.
+     *
+     * @param count , number of rentals terminated.
+     */
+    void lapsedRentalsTerminated(int count) {
+        lapsedRentalsTerminated.add(count);
+    }
+
+    /**
+     * Counts a background job that has failed.
+     */
+    void backgroundJobFailed() {
+        backgroundJobFailures.increment();
+    }
+
+    /**
+     * Records the latency of a call to the specified method, which started at the specified time.
+     *
+     * @param method     , method that was called.
+     * @param startNanos , System.nanoTime when the call started.
+     */
+    void recordLatency(TimedMethod method, long startNanos) {
+        latencies[method.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public long getContractsIssued() {
+        return contractsIssued.sum();
+    }
+
+    @Override
+    public long getContractsRejectedUnder18() {
+        return contractsRejected.get(RejectionReason.UNDER_18).sum();
+    }
+
+    @Override
+    public long getContractsRejectedUnder21() {
+        return contractsRejected.get(RejectionReason.UNDER_21).sum();
+    }
+
+    @Override
+    public long getContractsRejectedNotPremium() {
+        return contractsRejected.get(RejectionReason.NOT_PREMIUM).sum();
+    }
+
+    @Override
+    public long getContractsRejectedAlreadyRenting() {
+        return contractsRejected.get(RejectionReason.ALREADY_RENTING).sum();
+    }
+
+    @Override
+    public long getContractsRejectedNoStock() {
+        return contractsRejected.get(RejectionReason.NO_STOCK).sum();
+    }
+
+    @Override
+    public long getContractsRejectedDirtyPool() {
+        return contractsRejected.get(RejectionReason.DIRTY_POOL).sum();
+    }
+
+    @Override
+    public long getLapsedRentalsTerminated() {
+        return lapsedRentalsTerminated.sum();
+    }
+
+    @Override
+    public long getBackgroundJobFailures() {
+        return backgroundJobFailures.sum();
+    }
+
+    @Override
+    public int getFreeVillas() {
+        return propertyManager.countAvailable(labelVilla);
+    }
+
+    @Override
+    public int getRentedVillas() {
+        return propertyManager.countRented(labelVilla);
+    }
+
+    @Override
+    public int getFreeApartments() {
+        return propertyManager.countAvailable(labelApartment);
+    }
+
+    @Override
+    public int getRentedApartments() {
+        return propertyManager.countRented(labelApartment);
+    }
+
+    @Override
+    public int getPoolsAwaitingCleaning() {
+        return propertyManager.noOfPoolsAwaitingCleaning();
+    }
+
+    @Override
+    public int getRentalsTerminatingSoon() {
+        return propertyManager.noOfPropertiesTerminatingSoon();
+    }
+
+    @Override
+    public String[] getTimedMethods() {
+        TimedMethod[] methods = TimedMethod.values();
+        String[] names = new String[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            names[i] = methods[i].methodName;
+        }
+        return names;
+    }
+
+    @Override
+    public long callCount(String method) {
+        return latencies[timedMethod(method).ordinal()].count();
+    }
+
+    @Override
+    public double latencyPercentileMicros(String method, double percentile) {
+        long nanos = latencies[timedMethod(method).ordinal()].percentile(percentile);
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    @Override
+    public void resetLatencies() {
+        for (LatencyHistogram histogram : latencies) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Returns the timed method with the specified name.
+     * Exception is thrown if there isn't one.
+     */
+    private static TimedMethod timedMethod(String method) {
+        for (TimedMethod m : TimedMethod.values()) {
+            if (m.methodName.equals(method)) {
+                return m;
+            }
+        }
+        throw new IllegalArgumentException("No latencies are recorded for method " + method);
+    }
+}
@@ -0,0 +1,142 @@
+package uk.ac.ncl.tom.management;
+
+/**
+ * PropertyManagerMetricsMBean - management interface to the Property Manager's metrics, as seen through JMX.
+ *
+ * @author Thomas Hague
+ */
+public interface PropertyManagerMetricsMBean {
+    /**
+     * Returns the number of rental contracts issued.
+     *
+     * @return a long
+     */
+    long getContractsIssued();
+
+    /**
+     * Returns the number of rental contracts rejected because the tenant was under 18.
+     *
+     * @return a long
+     */
+    long getContractsRejectedUnder18();
+
+    /**
+     * Returns the number of rental contracts rejected because the tenant was under 21.
+     *
+     * @return a long
+     */
+    long getContractsRejectedUnder21();
+
+    /**
+     * Returns the number of rental contracts rejected because the tenant wasn't premium class.
+     *
+     * @return a long
+     */
+    long getContractsRejectedNotPremium();
+
+    /**
+     * Returns the number of rental contracts rejected because the tenant was already renting a property.
+     *
+     * @return a long
+     */
+    long getContractsRejectedAlreadyRenting();
+
+    /**
+     * Returns the number of rental contracts rejected because every property of the type was rented.
+     *
+     * @return a long
+     */
+    long getContractsRejectedNoStock();
+
+    /**
+     * Returns the number of rental contracts rejected because every free Villa was waiting for its pool to be cleaned.
+     *
+     * @return a long
+     */
+    long getContractsRejectedDirtyPool();
+
+    /**
+     * Returns the number of lapsed rentals that have been terminated by expiry sweeps.
+     *
+     * @return a long
+     */
+    long getLapsedRentalsTerminated();
+
+    /**
+     * Returns the number of times a background job, such as saving a snapshot or an expiry sweep, has failed.
+     *
+     * @return a long
+     */
+    long getBackgroundJobFailures();
+
+    /**
+     * Returns the number of Villas that are free to be rented, including those waiting for their pool to be cleaned.
+     *
+     * @return an int
+     */
+    int getFreeVillas();
+
+    /**
+     * Returns the number of Villas that are rented.
+     *
+     * @return an int
+     */
+    int getRentedVillas();
+
+    /**
+     * Returns the number of Apartments that are free to be rented.
+     *
+     * @return an int
+     */
+    int getFreeApartments();
+
+    /**
+     * Returns the number of Apartments that are rented.
+     *
+     * @return an int
+     */
+    int getRentedApartments();
+
+    /**
+     * Returns the number of free Villas waiting for their pool to be cleaned.
+     *
+     * @return an int
+     */
+    int getPoolsAwaitingCleaning();
+
+    /**
+     * Returns the number of rentals terminating between today and 7 days time.
+     *
+     * @return an int
+     */
+    int getRentalsTerminatingSoon();
+
+    /**
+     * Returns the names of the Property Manager methods whose latencies are recorded.
+     *
+     * @return an array of method names
+     */
+    String[] getTimedMethods();
+
+    /**
+     * Returns the number of calls to the specified Property Manager method that have been timed.
+     *
+     * @param method name of the method
+     * @return a long
+     */
+    long callCount(String method);
+
+    /**
+     * Returns the latency that the specified percentage of calls to the specified Property Manager method took at most.
+     *
+     * @param method     name of the method
+     * @param percentile between 0 and 100
+     * @return the latency in microseconds
+     */
+    double latencyPercentileMicros(String method, double percentile);
+
+    /**
+     * Clears every recorded latency.
+     */
+    void resetLatencies();
+}
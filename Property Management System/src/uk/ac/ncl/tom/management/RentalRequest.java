@@ -0,0 +1,56 @@
+package uk.ac.ncl.tom.management;
+
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+/**
+ * Class representing a request for a tenant to rent a property of a given type for a number of days, used when
+ * issuing many rental contracts at once.
+ *
+ * @author Thomas Hague
+ */
+
+public final class RentalRequest {
+    private final TenantRecord tenantRecord;
+    private final String propertyType;
+    private final int duration;
+
+    /**
+     * Creates a rental request using the specified parameters. The request is checked when the contract is issued.
+     *
+     * @param tenantRecord that will be renting the property.
+     * @param propertyType that they would like to rent.
+     * @param duration     of the rental property, in days.
+     */
+    public RentalRequest(TenantRecord tenantRecord, String propertyType, int duration) {
+        this.tenantRecord = tenantRecord;
+        this.propertyType = propertyType;
+        this.duration = duration;
+    }
+
+    /**
+     * Returns the tenant record that will be renting the property.
+     *
+     * @return TenantRecord.
+     */
+    public TenantRecord getTenantRecord() {
+        return tenantRecord;
+    }
+
+    /**
+     * Returns the property type the tenant would like to rent.
+     *
+     * @return a string (villa or apartment)
+     */
+    public String getPropertyType() {
+        return propertyType;
+    }
+
+    /**
+     * Returns the duration of the rental, in days.
+     *
+     * @return an int
+     */
+    public int getDuration() {
+        return duration;
+    }
+}
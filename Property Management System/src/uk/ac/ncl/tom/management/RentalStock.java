@@ -0,0 +1,70 @@
+package uk.ac.ncl.tom.management;
+
+import uk.ac.ncl.tom.properties.PropertyStore;
+import uk.ac.ncl.tom.properties.Villa;
+import uk.ac.ncl.tom.tenants.TenantID;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class representing the rental stock of one property type, made up of the availability bitmap of its properties, its
+ * expiry timeline of rented properties and the waiting lists of tenants waiting for one to become available.
+ * Each property type has its own lock, so rentals of Villas and Apartments can be issued and terminated at the same
+ * time. The indexes must only be read or changed while holding the lock.
+ *
+ * @author Thomas Hague
+ */
+
+final class RentalStock {
+    /**
+     * Lock guarding every index of this property type.
+     */
+    final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Which properties of this type are free, and which of those can be rented because their pool is clean. Every
+     * free Apartment can be rented.
+     */
+    final AvailabilityBitmap availability;
+
+    /**
+     * Free Villas waiting for their pool to be cleaned, in the order they were left. Always empty for Apartments.
+     */
+    final Set<Villa> cleaningQueue = new LinkedHashSet<>();
+
+    /**
+     * Rented properties, ordered by the day their rental terminates.
+     */
+    final ExpiryTimeline expiryTimeline = new ExpiryTimeline();
+
+    /**
+     * Premium tenants waiting for a property of this type, in the order they joined, with the rental they asked for.
+     * They are served before the tenants on the standard waiting list.
+     */
+    final Map<TenantID, RentalRequest> premiumWaitingList = new LinkedHashMap<>();
+
+    /**
+     * Tenants that aren't premium class waiting for a property of this type, in the order they joined, with the
+     * rental they asked for.
+     */
+    final Map<TenantID, RentalRequest> waitingList = new LinkedHashMap<>();
+
+    /**
+     * Number of tenants on both waiting lists. Only changed while holding the lock, but can be read without it to
+     * check whether there is anyone to serve when a property becomes available.
+     */
+    volatile int waiting;
+
+    /**
+     * Creates an empty rental stock for properties kept in the specified property store.
+     *
+     * @param store , property store of the Property Manager the stock belongs to.
+     */
+    RentalStock(PropertyStore store) {
+        availability = new AvailabilityBitmap(store);
+    }
+}
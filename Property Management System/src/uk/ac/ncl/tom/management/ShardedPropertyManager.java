@@ -0,0 +1,419 @@
+package uk.ac.ncl.tom.management;
+
+import uk.ac.ncl.tom.events.RentalEventListener;
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.properties.PropertyCode;
+import uk.ac.ncl.tom.properties.PropertyCodeRegistry;
+import uk.ac.ncl.tom.tenants.Name;
+import uk.ac.ncl.tom.tenants.TenantID;
+import uk.ac.ncl.tom.tenants.TenantIDRegistry;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Class representing a Property Manager split into independent shards, each a Property Manager with its own maps,
+ * rental stocks and locks, so requests routed to different shards never contend with each other.
+ * New properties are spread across the shards in turn, so each shard holds an even share of the stock. Tenants are
+ * routed by their name and date of birth, so a duplicate tenant always reaches the shard that would reject it.
+ * A tenant's rental requests, terminations and decommissioning all go to the shard holding their tenant record, so a
+ * shard's rentals are always for its own tenants, and each shard's journal, snapshots and exports can be restored on
+ * their own. The shard enforces that a tenant only rents one property. A request is rejected if the tenant's shard
+ * has no property of the type free, even if another shard has one, which the even spread of properties keeps rare.
+ * Queries across every shard, such as availability and rentals terminating soon, ask the shards in parallel and
+ * combine their answers.
+ * The shards share one property code registry and one tenant ID registry of their own, so codes and IDs are unique
+ * across the shards but separate from any other Property Manager. Each shard keeps its properties in a property store
+ * of its own, so adding properties to different shards never contends on one lock.
+ *
+ * @author Thomas Hague
+ */
+
+public final class ShardedPropertyManager {
+    private final PropertyManager[] shards;
+    private final AtomicInteger nextPropertyShard = new AtomicInteger();
+    private final PropertyCodeRegistry propertyCodes = new PropertyCodeRegistry();
+    private final TenantIDRegistry tenantIDs = new TenantIDRegistry();
+
+    /**
+     * Creates a sharded Property Manager with one shard per available processor.
+     */
+    public ShardedPropertyManager() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a sharded Property Manager with the specified number of shards, which write messages to the console
+     * through the listener shared by every Property Manager.
+     * Exception is thrown if the number of shards isn't positive.
+     *
+     * @param shardCount , number of shards.
+     */
+    public ShardedPropertyManager(int shardCount) {
+        this(shardCount, PropertyManager.consoleListener());
+    }
+
+    /**
+     * Creates a sharded Property Manager with the specified number of shards, which all tell the specified listener
+     * about rental events.
+     * Exceptions are thrown if the number of shards isn't positive or the listener is null.
+     *
+     * @param shardCount , number of shards.
+     * @param listener   , told about every rental contract issued, rejected or terminated by any shard.
+     */
+    public ShardedPropertyManager(int shardCount, RentalEventListener listener) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Number of shards must be positive, please try again.");
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener can't be null, use RentalEventListener.NONE instead.");
+        }
+        shards = new PropertyManager[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new PropertyManager(listener, propertyCodes, tenantIDs);
+        }
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return an int
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the shard with the specified index, for running the operations that aren't routed, such as journals
+     * and snapshots, on each shard.
+     * Exception is thrown if there is no shard with that index.
+     *
+     * @param index , of the shard.
+     * @return the PropertyManager of that shard.
+     */
+    public PropertyManager getShard(int index) {
+        if (index < 0 || index >= shards.length) {
+            throw new IllegalArgumentException("There is no shard " + index + ", please try again.");
+        }
+        return shards[index];
+    }
+
+    /**
+     * Returns the registry the property codes of every shard's properties are issued by.
+     *
+     * @return the PropertyCodeRegistry
+     */
+    public PropertyCodeRegistry getPropertyCodes() {
+        return propertyCodes;
+    }
+
+    /**
+     * Returns the registry the tenant IDs of every shard's tenants are issued by.
+     *
+     * @return the TenantIDRegistry
+     */
+    public TenantIDRegistry getTenantIDs() {
+        return tenantIDs;
+    }
+
+    /**
+     * Creates and adds a Property to the next shard in turn, which is either a Villa or Apartment object, depending
+     * on the propertyType passed as a parameter.
+     * Exceptions are thrown if the property type parameter is null, or is neither "Villa" nor "Apartment".
+     *
+     * @param propertyType (either Villa or Apartment)
+     * @return Property, either a Villa or Apartment.
+     */
+    public Property addProperty(String propertyType) {
+        return shards[Math.floorMod(nextPropertyShard.getAndIncrement(), shards.length)].addProperty(propertyType);
+    }
+
+    /**
+     * Creates and adds the specified number of properties of the same type, split evenly between the shards, which
+     * add their share in parallel.
+     * Exceptions are thrown if the property type parameter is null, or is neither "Villa" nor "Apartment", or if the
+     * count is negative.
+     *
+     * @param propertyType (either Villa or Apartment)
+     * @param count        number of properties to add.
+     * @return an unmodifiable List of the new properties.
+     */
+    public List<Property> addProperties(String propertyType, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Number of properties can't be negative, please try again.");
+        }
+        int first = Math.floorMod(nextPropertyShard.getAndAdd(count), shards.length);
+        List<List<Property>> added = Arrays.stream(shardIndexes()).parallel().mapToObj(i -> {
+            // shards from the next in turn onwards get any properties left over after an even split
+            int share = count / shards.length + (Math.floorMod(i - first, shards.length) < count % shards.length ? 1 : 0);
+            return shards[i].addProperties(propertyType, share);
+        }).collect(Collectors.toList());
+        List<Property> all = new ArrayList<>(count);
+        added.forEach(all::addAll);
+        return Collections.unmodifiableList(all);
+    }
+
+    /**
+     * Returns the property with the specified property code, such as "V-A12", from whichever shard holds it. Each
+     * shard finds it in constant time, so the cost only grows with the number of shards.
+     * Exception is thrown if the property code is null.
+     *
+     * @param propertyCode , string representation of the property's code.
+     * @return the Property, or null if no shard has a property with that code.
+     */
+    public Property findProperty(String propertyCode) {
+        for (PropertyManager shard : shards) {
+            Property p = shard.findProperty(propertyCode);
+            if (p != null) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the tenant record of the tenant with the specified tenant ID, such as "TH.2025.07", from whichever shard
+     * holds it. A tenant's shard is chosen by their name and date of birth, which can't be worked out from the tenant
+     * ID, so each shard is asked in turn.
+     * Exception is thrown if the tenant ID is null.
+     *
+     * @param tenantID , string representation of the tenant's ID.
+     * @return the TenantRecord, or null if no shard has a tenant with that ID.
+     */
+    public TenantRecord findTenant(String tenantID) {
+        for (PropertyManager shard : shards) {
+            TenantRecord tR = shard.findTenant(tenantID);
+            if (tR != null) {
+                return tR;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of a given type of properties that are available for rent, across every shard.
+     * Exceptions are thrown if the property type parameter is null, or is neither "Villa" nor "Apartment".
+     *
+     * @param propertyType (either Villa or Apartment)
+     * @return an int
+     */
+    public int noOfAvailableProperties(String propertyType) {
+        return Arrays.stream(shards).parallel().mapToInt(s -> s.noOfAvailableProperties(propertyType)).sum();
+    }
+
+    /**
+     * Returns the number of a given type of properties that are rented, across every shard.
+     * Exceptions are thrown if the property type parameter is null, or is neither "Villa" nor "Apartment".
+     *
+     * @param propertyType (either Villa or Apartment)
+     * @return an int
+     */
+    public int noOfRentedProperties(String propertyType) {
+        return Arrays.stream(shards).parallel().mapToInt(s -> s.noOfRentedProperties(propertyType)).sum();
+    }
+
+    /**
+     * Creates a tenant record in the shard for the tenant's name and date of birth, with the same checks as
+     * PropertyManager.addTenantRecord.
+     *
+     * @param firstName tenants first name
+     * @param lastName  tenants last name
+     * @param dob       tenants date of birth
+     * @param premium   is the tenant premium or not
+     * @return the newly created tenant record
+     */
+    public TenantRecord addTenantRecord(String firstName, String lastName, Date dob, Boolean premium) {
+        if (firstName == null || lastName == null || dob == null) {
+            return shards[0].addTenantRecord(firstName, lastName, dob, premium);
+        }
+        TenantKey key = new TenantKey(firstName, lastName, TenantRecord.toEpochDay(dob));
+        return shards[shardFor(key)].addTenantRecord(firstName, lastName, dob, premium);
+    }
+
+    /**
+     * Issues a rental contract for the specified tenant, for an arbitrary property of the specified type in the shard
+     * holding their tenant record, with the same checks and outcomes as PropertyManager.issueRentalContract.
+     * Exception is thrown if the tenant record is null.
+     *
+     * @param tenantRecord that will be renting the property.
+     * @param propertyType that they would like to rent.
+     * @param duration     of the rental property, in days.
+     * @return true upon success, otherwise false.
+     */
+    public boolean issueRentalContract(TenantRecord tenantRecord, String propertyType, int duration) {
+        return shardOf(tenantRecord).issueRentalContract(tenantRecord, propertyType, duration);
+    }
+
+    /**
+     * Terminates the rental of the specified tenant, in the shard holding their tenant record.
+     * Exceptions are thrown if the tenant record is null or the tenant isn't renting a property.
+     *
+     * @param tenantRecord that is renting a property.
+     */
+    public void terminateRental(TenantRecord tenantRecord) {
+        shardOf(tenantRecord).terminateRental(tenantRecord);
+    }
+
+    /**
+     * Decommissions the property with the specified property code, in whichever shard holds it, with the same checks
+     * as PropertyManager.decommissionProperty.
+     * Exceptions are thrown if the property code is null, if no shard holds the property, or if it is rented.
+     *
+     * @param propertyCode , code of the property to decommission.
+     */
+    public void decommissionProperty(PropertyCode propertyCode) {
+        if (propertyCode == null) {
+            throw new IllegalArgumentException("Property code can't be null, please try again.");
+        }
+        for (PropertyManager shard : shards) {
+            if (shard.getProperties().containsKey(propertyCode)) {
+                shard.decommissionProperty(propertyCode);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Property " + propertyCode + " is not on our records.");
+    }
+
+    /**
+     * Decommissions the specified tenant from the shard holding their tenant record, with the same checks as
+     * PropertyManager.decommissionTenant.
+     * Exceptions are thrown if the tenant record is null, if the tenant isn't on the system, or if they are renting a
+     * property.
+     *
+     * @param tenantRecord , tenant to decommission.
+     */
+    public void decommissionTenant(TenantRecord tenantRecord) {
+        shardOf(tenantRecord).decommissionTenant(tenantRecord);
+    }
+
+    /**
+     * Returns the properties with rentals terminating between today and 7 days time, across every shard.
+     *
+     * @return an unmodifiable Collection of the properties terminating soon.
+     */
+    public Collection<Property> getPropertiesTerminatingSoon() {
+        return gather(PropertyManager::getPropertiesTerminatingSoon);
+    }
+
+    /**
+     * Returns the properties with live rentals terminating on any day between the two specified dates, including both
+     * the from and to dates, across every shard.
+     * Exceptions are thrown if either date is null, or if the from date is after the to date.
+     *
+     * @param from first date of the range.
+     * @param to   last date of the range.
+     * @return an unmodifiable Collection of the properties terminating between the two dates.
+     */
+    public Collection<Property> getPropertiesTerminatingBetween(Date from, Date to) {
+        return gather(s -> s.getPropertiesTerminatingBetween(from, to));
+    }
+
+    /**
+     * Returns the rentals of every shard, with TenantID as key and linked to the associated rental property code.
+     *
+     * @return an unmodifiable Map of tenants with relevant rented property.
+     */
+    public Map<TenantID, PropertyCode> getTenantsProperties() {
+        Map<TenantID, PropertyCode> all = new ConcurrentHashMap<>();
+        Arrays.stream(shards).parallel().forEach(s -> all.putAll(s.getTenantsProperties()));
+        return Collections.unmodifiableMap(all);
+    }
+
+    /**
+     * Terminates the lapsed rentals of every shard, in parallel.
+     *
+     * @return the number of rentals terminated.
+     */
+    public int terminateLapsedRentals() {
+        return Arrays.stream(shards).parallel().mapToInt(PropertyManager::terminateLapsedRentals).sum();
+    }
+
+    /**
+     * Cleans the pools at the front of every shard's pool cleaning queue, in parallel. Each shard has its own crews.
+     *
+     * @return the number of pools cleaned.
+     */
+    public int cleanPools() {
+        return Arrays.stream(shards).parallel().mapToInt(PropertyManager::cleanPools).sum();
+    }
+
+    /**
+     * Sets the clock that every shard reads today's date from.
+     * Exception is thrown if the clock is null.
+     *
+     * @param clock , source of the current time and time zone.
+     */
+    public void setClock(Clock clock) {
+        for (PropertyManager shard : shards) {
+            shard.setClock(clock);
+        }
+    }
+
+    /**
+     * Sets the listener that every shard tells about the outcome of rental requests and terminations.
+     * Exception is thrown if the listener is null.
+     *
+     * @param listener , told about rental events.
+     */
+    public void setRentalEventListener(RentalEventListener listener) {
+        for (PropertyManager shard : shards) {
+            shard.setRentalEventListener(listener);
+        }
+    }
+
+    /**
+     * Asks every shard for a collection of properties in parallel, and combines them.
+     *
+     * @param query , run on each shard.
+     * @return an unmodifiable Collection of properties.
+     */
+    private Collection<Property> gather(Function<PropertyManager, Collection<Property>> query) {
+        List<Property> all = Arrays.stream(shards).parallel().map(query)
+                .flatMap(Collection::stream).collect(Collectors.toList());
+        return Collections.unmodifiableList(all);
+    }
+
+    /**
+     * Returns the shard holding the specified tenant's record, chosen by their name and date of birth.
+     * Exception is thrown if the tenant record is null.
+     *
+     * @param tenantRecord , of a tenant.
+     * @return the PropertyManager of the tenant's shard.
+     */
+    private PropertyManager shardOf(TenantRecord tenantRecord) {
+        if (tenantRecord == null) {
+            throw new IllegalArgumentException("Tenant Record is not valid. Please try again.");
+        }
+        Name n = tenantRecord.getName();
+        TenantKey key = new TenantKey(n.getFirstName(), n.getLastName(), tenantRecord.getDateOfBirthEpochDay());
+        return shards[shardFor(key)];
+    }
+
+    /**
+     * Returns the shard for the specified tenant's name and date of birth.
+     *
+     * @param key , of a tenant's name and date of birth.
+     * @return an int between 0 and the number of shards.
+     */
+    private int shardFor(TenantKey key) {
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    private int[] shardIndexes() {
+        int[] indexes = new int[shards.length];
+        Arrays.setAll(indexes, i -> i);
+        return indexes;
+    }
+}
@@ -0,0 +1,67 @@
+package uk.ac.ncl.tom.management;
+
+import java.util.Date;
+
+/**
+ * Class representing the details of a new tenant to be added to the system, used when adding many tenants at once.
+ *
+ * @author Thomas Hague
+ */
+
+public final class TenantDetails {
+    private final String firstName;
+    private final String lastName;
+    private final Date dateOfBirth;
+    private final boolean premium;
+
+    /**
+     * Creates tenant details using the specified parameters. The details are checked when they are added to the system.
+     *
+     * @param firstName   tenants first name
+     * @param lastName    tenants last name
+     * @param dateOfBirth tenants date of birth
+     * @param premium     is the tenant premium class or not
+     */
+    public TenantDetails(String firstName, String lastName, Date dateOfBirth, boolean premium) {
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.dateOfBirth = dateOfBirth == null ? null : (Date) dateOfBirth.clone();
+        this.premium = premium;
+    }
+
+    /**
+     * Returns the first name.
+     *
+     * @return a string representing first name.
+     */
+    public String getFirstName() {
+        return firstName;
+    }
+
+    /**
+     * Returns the last name.
+     *
+     * @return a string representing last name.
+     */
+    public String getLastName() {
+        return lastName;
+    }
+
+    /**
+     * Returns the date of birth.
+     *
+     * @return Date.
+     */
+    public Date getDateOfBirth() {
+        return dateOfBirth == null ? null : (Date) dateOfBirth.clone();
+    }
+
+    /**
+     * Returns whether the tenant is premium class.
+     *
+     * @return true if the tenant is premium, false if not
+     */
+    public boolean isPremium() {
+        return premium;
+    }
+}
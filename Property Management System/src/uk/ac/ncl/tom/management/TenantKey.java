@@ -0,0 +1,58 @@
+package uk.ac.ncl.tom.management;
+
+/**
+ * Class representing the key used by the Property Manager to look up tenants by their name and date of birth, which
+ * is what makes two tenant records the same. It holds the name's parts and the date of birth directly, so building a
+ * key doesn't create any Name or Date objects.
+ *
+ * @author Thomas Hague
+ */
+
+final class TenantKey {
+    private final String firstName;
+    private final String lastName;
+    private final long dateOfBirth;
+    private final int hash;
+
+    /**
+     * Creates a tenant key using the specified parameters.
+     *
+     * @param firstName   tenants first name
+     * @param lastName    tenants last name
+     * @param dateOfBirth tenants date of birth, in days since the epoch.
+     */
+    TenantKey(String firstName, String lastName, long dateOfBirth) {
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.dateOfBirth = dateOfBirth;
+        int hc = 19;
+        hc = 31 * hc + firstName.hashCode();
+        hc = 31 * hc + lastName.hashCode();
+        this.hash = 31 * hc + Long.hashCode(dateOfBirth);
+    }
+
+    /**
+     * Overriding the existing equals method to determine if two tenant keys are the same. They are the same if first
+     * name, last name and day of birth are all identical.
+     *
+     * @param o, the object to be compared.
+     * @return true if the tenant keys are equal, false if not.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TenantKey)) return false;
+        final TenantKey k = (TenantKey) o;
+        return dateOfBirth == k.dateOfBirth && firstName.equals(k.firstName) && lastName.equals(k.lastName);
+    }
+
+    /**
+     * Overriding the existing hashCode method, returning the hash calculated when the key was created.
+     *
+     * @return an int
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
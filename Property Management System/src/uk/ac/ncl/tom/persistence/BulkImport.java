@@ -0,0 +1,737 @@
+package uk.ac.ncl.tom.persistence;
+
+import uk.ac.ncl.tom.properties.PropertyFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class that reads a CSV or NDJSON file of properties and tenants for a bulk import, passing the records to a handler
+ * in batches.
+ * The file is split into chunks at line boundaries, and the chunks are read in parallel through one FileChannel, each
+ * with its own fixed-size buffer and batch, so memory use doesn't grow with the size of the file. Lines are parsed
+ * straight from the buffer's bytes without splitting them into strings, and only the tenants' names are turned into
+ * strings.
+ * The file is read three times: once to count the lines in each chunk, so records can be reported by line number,
+ * once for the properties and once for the tenants, so every property is imported before any tenant's rental needs it.
+ * Lines that are blank or start with # are skipped.
+ *
+ * @author Thomas Hague
+ */
+
+public final class BulkImport {
+    /**
+     * Number of records in each batch passed to the handler.
+     */
+    public static final int BATCH_SIZE = 1024;
+
+    /**
+     * Longest line that can be imported, in bytes. Longer lines are rejected.
+     */
+    public static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final byte[] KIND_PROPERTY = bytes("property");
+    private static final byte[] KIND_TENANT = bytes("tenant");
+    private static final byte[] VILLA = bytes(PropertyFactory.labelVilla);
+    private static final byte[] APARTMENT = bytes(PropertyFactory.labelApartment);
+    private static final byte[] TRUE = bytes("true");
+    private static final byte[] FALSE = bytes("false");
+    private static final byte[] NULL = bytes("null");
+
+    /**
+     * Slots the fields of a record are parsed into, whichever format it is in.
+     */
+    private static final int KIND = 0;
+    private static final int FIRST_NAME = 1;
+    private static final int LAST_NAME = 2;
+    private static final int DATE_OF_BIRTH = 3;
+    private static final int PREMIUM = 4;
+    private static final int RENTAL_TYPE = 5;
+    private static final int RENTAL_ENDS = 6;
+    private static final int PROPERTY_TYPE = 7;
+    private static final int SLOTS = 8;
+
+    /**
+     * Keys of an NDJSON record, indexed by the slot they are parsed into.
+     */
+    private static final byte[][] JSON_KEYS = {bytes("kind"), bytes("firstName"), bytes("lastName"),
+            bytes("dateOfBirth"), bytes("premium"), bytes("rentalType"), bytes("rentalEnds"), bytes("propertyType")};
+
+    private BulkImport() {
+    }
+
+    /**
+     * Reads the file at the specified path, passing its properties and then its tenants to the handler in batches,
+     * and telling it about each line that can't be imported.
+     * Exceptions are thrown if any parameter is null or the number of threads is less than 1, and exceptions thrown
+     * by the handler stop the import.
+     *
+     * @param path    of the file.
+     * @param format  of the file.
+     * @param threads , number of threads to read the file with.
+     * @param handler receives the records in the file.
+     * @throws IOException if the file can't be read.
+     */
+    public static void read(Path path, ImportFormat format, int threads, ImportHandler handler) throws IOException {
+        if (path == null || format == null || handler == null) {
+            throw new IllegalArgumentException("Import path, format and handler can't be null.");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("An import needs at least 1 thread.");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunks = (int) Math.max(1, Math.min((long) threads * CHUNKS_PER_THREAD, size / MIN_CHUNK_SIZE));
+            long[] bounds = new long[chunks + 1];
+            for (int i = 0; i <= chunks; i++) {
+                bounds[i] = size * i / chunks;
+            }
+            AtomicInteger threadNumber = new AtomicInteger();
+            ExecutorService readers = Executors.newFixedThreadPool(Math.min(threads, chunks), r -> {
+                Thread t = new Thread(r, "bulk-import-" + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                long[] newlines = new long[chunks];
+                runChunks(readers, chunks, i -> newlines[i] = countNewlines(channel, bounds[i], bounds[i + 1]));
+                long[] firstLines = new long[chunks];
+                firstLines[0] = 1;
+                for (int i = 1; i < chunks; i++) {
+                    firstLines[i] = firstLines[i - 1] + newlines[i - 1];
+                }
+                for (boolean properties : new boolean[]{true, false}) {
+                    runChunks(readers, chunks, i -> new ChunkReader(channel, format, handler, properties,
+                            bounds[i], bounds[i + 1], firstLines[i]).read());
+                }
+            } finally {
+                readers.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Interface to a job carried out for one chunk of the file.
+     */
+    private interface ChunkJob {
+        void run(int chunk) throws IOException;
+    }
+
+    /**
+     * Carries out the specified job for every chunk on the readers, and waits for them all to finish.
+     */
+    private static void runChunks(ExecutorService readers, int chunks, ChunkJob job) throws IOException {
+        List<Future<Void>> done = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            int chunk = i;
+            done.add(readers.submit(() -> {
+                job.run(chunk);
+                return null;
+            }));
+        }
+        try {
+            for (Future<Void> f : done) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import was interrupted.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns the number of newlines between the specified positions of the file.
+     */
+    private static long countNewlines(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_LINE_LENGTH);
+        byte[] b = buffer.array();
+        long newlines = 0;
+        for (long position = from; position < to; ) {
+            buffer.clear().limit((int) Math.min(b.length, to - position));
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (b[i] == '\n') {
+                    newlines++;
+                }
+            }
+            position += n;
+        }
+        return newlines;
+    }
+
+    /**
+     * Class that reads the lines starting in one chunk of the file, parses the records of the kind being imported,
+     * and passes them to the handler in batches. A line belongs to the chunk it starts in, so a chunk skips the end
+     * of a line that started in the chunk before, and reads past its end to finish its own last line.
+     */
+    private static final class ChunkReader {
+        private final FileChannel channel;
+        private final ImportFormat format;
+        private final ImportHandler handler;
+        private final boolean properties;
+        private final long start;
+        private final long end;
+        private final byte[] buf = new byte[MAX_LINE_LENGTH];
+        private final ImportBatch batch = new ImportBatch(BATCH_SIZE);
+        private final int[] from = new int[SLOTS];
+        private final int[] to = new int[SLOTS];
+        private final boolean[] escaped = new boolean[SLOTS];
+        private final int[] fieldFrom = new int[SLOTS];
+        private final int[] fieldTo = new int[SLOTS];
+        private final boolean[] fieldEscaped = new boolean[SLOTS];
+        private long line;
+        private String error;
+
+        private ChunkReader(FileChannel channel, ImportFormat format, ImportHandler handler, boolean properties,
+                            long start, long end, long firstLine) {
+            this.channel = channel;
+            this.format = format;
+            this.handler = handler;
+            this.properties = properties;
+            this.start = start;
+            this.end = end;
+            this.line = firstLine;
+        }
+
+        /**
+         * Reads every line that starts in the chunk.
+         */
+        private void read() throws IOException {
+            long bufStart = start;
+            int limit = 0;
+            int lineStart = 0;
+            int scan = 0;
+            boolean eof = false;
+            // the chunk's first line is the end of the chunk before's last line, unless it follows a newline
+            boolean skipping = start > 0 && !followsNewline();
+            while (skipping || bufStart + lineStart < end) {
+                int newline = indexOfNewline(scan, limit);
+                if (newline >= 0) {
+                    if (!skipping) {
+                        parseLine(lineStart, newline);
+                    }
+                    skipping = false;
+                    line++;
+                    lineStart = newline + 1;
+                    scan = lineStart;
+                    continue;
+                }
+                scan = limit;
+                if (eof) {
+                    if (!skipping && lineStart < limit) {
+                        parseLine(lineStart, limit);
+                    }
+                    break;
+                }
+                if (skipping) {
+                    lineStart = limit;
+                }
+                if (lineStart > 0) {
+                    System.arraycopy(buf, lineStart, buf, 0, limit - lineStart);
+                    bufStart += lineStart;
+                    limit -= lineStart;
+                    scan -= lineStart;
+                    lineStart = 0;
+                } else if (limit == buf.length) {
+                    if (!properties) {
+                        handler.rowRejected(line, "Line is longer than " + MAX_LINE_LENGTH + " bytes.");
+                    }
+                    skipping = true;
+                    bufStart += limit;
+                    limit = 0;
+                    scan = 0;
+                }
+                int n = channel.read(ByteBuffer.wrap(buf, limit, buf.length - limit), bufStart + limit);
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    limit += n;
+                }
+            }
+            flush();
+        }
+
+        /**
+         * Returns a boolean indicating whether the byte before the start of the chunk is a newline.
+         */
+        private boolean followsNewline() throws IOException {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            return channel.read(b, start - 1) == 1 && b.get(0) == '\n';
+        }
+
+        private int indexOfNewline(int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (buf[i] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Parses the line between the specified positions of the buffer, adding it to the batch if it is a record of
+         * the kind being imported, or rejecting it if it can't be imported.
+         */
+        private void parseLine(int lineFrom, int lineTo) {
+            if (lineTo > lineFrom && buf[lineTo - 1] == '\r') {
+                lineTo--;
+            }
+            lineFrom = skipSpaces(lineFrom, lineTo);
+            if (lineFrom == lineTo || buf[lineFrom] == '#') {
+                return;
+            }
+            for (int slot = 0; slot < SLOTS; slot++) {
+                from[slot] = -1;
+                escaped[slot] = false;
+            }
+            error = null;
+            boolean parsed = format == ImportFormat.CSV ? parseCsv(lineFrom, lineTo) : parseJson(lineFrom, lineTo);
+            boolean property = parsed && matches(KIND, KIND_PROPERTY);
+            boolean tenant = parsed && matches(KIND, KIND_TENANT);
+            if (parsed && !property && !tenant) {
+                parsed = fail("Unknown kind of record, expected property or tenant.");
+            }
+            // lines that aren't records at all are reported while the tenants are imported
+            if (property != properties || (!parsed && properties)) {
+                return;
+            }
+            if (parsed) {
+                parsed = property ? addProperty() : addTenant();
+            }
+            if (!parsed) {
+                handler.rowRejected(line, error);
+            } else if (batch.isFull()) {
+                flush();
+            }
+        }
+
+        private boolean addProperty() {
+            String propertyType = propertyType(PROPERTY_TYPE);
+            if (propertyType == null) {
+                return fail("Property type must be Villa or Apartment.");
+            }
+            batch.addProperty(line, propertyType);
+            return true;
+        }
+
+        private boolean addTenant() {
+            if (from[FIRST_NAME] < 0 || from[LAST_NAME] < 0 || to[FIRST_NAME] == from[FIRST_NAME]
+                    || to[LAST_NAME] == from[LAST_NAME]) {
+                return fail("First name and Last name can't be empty.");
+            }
+            long dob = day(DATE_OF_BIRTH);
+            if (error != null) {
+                return false;
+            }
+            boolean premium;
+            if (matches(PREMIUM, TRUE)) {
+                premium = true;
+            } else if (matches(PREMIUM, FALSE)) {
+                premium = false;
+            } else {
+                return fail("Premium must be true or false.");
+            }
+            String rentalType = null;
+            long rentalEnds = 0;
+            if (from[RENTAL_TYPE] >= 0 || from[RENTAL_ENDS] >= 0) {
+                rentalType = propertyType(RENTAL_TYPE);
+                if (rentalType == null) {
+                    return fail("Rental type must be Villa or Apartment.");
+                }
+                rentalEnds = day(RENTAL_ENDS);
+                if (error != null) {
+                    return false;
+                }
+            }
+            batch.addTenant(line, string(FIRST_NAME), string(LAST_NAME), dob, premium, rentalType, rentalEnds);
+            return true;
+        }
+
+        /**
+         * Passes the batch to the handler, if it has any records, and empties it.
+         */
+        private void flush() {
+            if (batch.size() > 0) {
+                if (properties) {
+                    handler.properties(batch);
+                } else {
+                    handler.tenants(batch);
+                }
+                batch.clear();
+            }
+        }
+
+        /**
+         * Splits a CSV line into its fields, and puts them in the slots for the kind of record the first field names.
+         */
+        private boolean parseCsv(int lineFrom, int lineTo) {
+            int fields = 0;
+            int i = lineFrom;
+            while (true) {
+                if (fields == SLOTS) {
+                    return fail("Too many fields.");
+                }
+                i = skipSpaces(i, lineTo);
+                int fieldEnd;
+                fieldEscaped[fields] = false;
+                if (i < lineTo && buf[i] == '"') {
+                    fieldFrom[fields] = ++i;
+                    while (true) {
+                        if (i == lineTo) {
+                            return fail("Quoted field isn't closed.");
+                        }
+                        if (buf[i] == '"') {
+                            if (i + 1 < lineTo && buf[i + 1] == '"') {
+                                fieldEscaped[fields] = true;
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        i++;
+                    }
+                    fieldTo[fields] = i;
+                    i = skipSpaces(i + 1, lineTo);
+                    if (i < lineTo && buf[i] != ',') {
+                        return fail("Unexpected characters after a quoted field.");
+                    }
+                } else {
+                    fieldFrom[fields] = i;
+                    while (i < lineTo && buf[i] != ',') {
+                        i++;
+                    }
+                    fieldEnd = i;
+                    while (fieldEnd > fieldFrom[fields] && buf[fieldEnd - 1] == ' ') {
+                        fieldEnd--;
+                    }
+                    fieldTo[fields] = fieldEnd;
+                }
+                fields++;
+                if (i == lineTo) {
+                    break;
+                }
+                i++;
+            }
+            from[KIND] = fieldFrom[0];
+            to[KIND] = fieldTo[0];
+            if (matches(KIND, KIND_PROPERTY)) {
+                if (fields != 2) {
+                    return fail("A property has 2 fields: property and its type.");
+                }
+                setSlot(PROPERTY_TYPE, fieldFrom[1], fieldTo[1], fieldEscaped[1]);
+            } else if (matches(KIND, KIND_TENANT)) {
+                if (fields != 5 && fields != 7) {
+                    return fail("A tenant has 5 fields, or 7 with their rental: tenant, first name, last name, "
+                            + "date of birth, premium, rental type and the date it ends.");
+                }
+                for (int field = 1; field < fields; field++) {
+                    setSlot(field, fieldFrom[field], fieldTo[field], fieldEscaped[field]);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Parses an NDJSON line as a flat object, putting the values of the keys it knows into their slots.
+         */
+        private boolean parseJson(int lineFrom, int lineTo) {
+            int i = lineFrom;
+            if (buf[i] != '{') {
+                return fail("A record must be a JSON object.");
+            }
+            i = skipSpaces(i + 1, lineTo);
+            if (i < lineTo && buf[i] == '}') {
+                return endOfJson(i + 1, lineTo) || fail("Record is empty.");
+            }
+            while (true) {
+                if (i == lineTo || buf[i] != '"') {
+                    return fail("Expected a key.");
+                }
+                int keyFrom = i + 1;
+                i = endOfJsonString(keyFrom, lineTo);
+                if (i < 0) {
+                    return fail("String isn't closed.");
+                }
+                int slot = jsonSlot(keyFrom, i);
+                i = skipSpaces(i + 1, lineTo);
+                if (i == lineTo || buf[i] != ':') {
+                    return fail("Expected : after a key.");
+                }
+                i = skipSpaces(i + 1, lineTo);
+                if (i == lineTo) {
+                    return fail("Expected a value.");
+                }
+                byte c = buf[i];
+                if (c == '"') {
+                    int valueFrom = i + 1;
+                    i = endOfJsonString(valueFrom, lineTo);
+                    if (i < 0) {
+                        return fail("String isn't closed.");
+                    }
+                    if (slot >= 0) {
+                        setSlot(slot, valueFrom, i, escapeBetween(valueFrom, i));
+                    }
+                    i++;
+                } else if (c == '{' || c == '[') {
+                    return fail("Nested objects and arrays aren't supported.");
+                } else {
+                    int valueFrom = i;
+                    while (i < lineTo && buf[i] != ',' && buf[i] != '}' && buf[i] != ' ' && buf[i] != '\t') {
+                        i++;
+                    }
+                    // true, false and numbers are kept as they are written, and null leaves the slot empty
+                    if (slot >= 0 && !equalsWord(valueFrom, i, NULL, false)) {
+                        setSlot(slot, valueFrom, i, false);
+                    }
+                }
+                i = skipSpaces(i, lineTo);
+                if (i < lineTo && buf[i] == ',') {
+                    i = skipSpaces(i + 1, lineTo);
+                } else if (i < lineTo && buf[i] == '}') {
+                    return endOfJson(i + 1, lineTo) || fail("Unexpected characters after the record.");
+                } else {
+                    return fail("Expected , or } after a value.");
+                }
+            }
+        }
+
+        private boolean endOfJson(int i, int lineTo) {
+            return skipSpaces(i, lineTo) == lineTo;
+        }
+
+        /**
+         * Returns the position of the quote that closes the JSON string starting at the specified position, or -1 if
+         * it isn't closed.
+         */
+        private int endOfJsonString(int i, int lineTo) {
+            for (; i < lineTo; i++) {
+                if (buf[i] == '\\') {
+                    i++;
+                } else if (buf[i] == '"') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean escapeBetween(int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (buf[i] == '\\') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int jsonSlot(int keyFrom, int keyTo) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (equalsWord(keyFrom, keyTo, JSON_KEYS[slot], false)) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private void setSlot(int slot, int fieldFrom, int fieldTo, boolean fieldEscaped) {
+            from[slot] = fieldFrom;
+            to[slot] = fieldTo;
+            escaped[slot] = fieldEscaped;
+        }
+
+        /**
+         * Returns a boolean indicating whether the specified slot holds the specified word, ignoring case.
+         */
+        private boolean matches(int slot, byte[] word) {
+            return from[slot] >= 0 && !escaped[slot] && equalsWord(from[slot], to[slot], word, true);
+        }
+
+        /**
+         * Returns a boolean indicating whether the bytes between the specified positions are the specified word.
+         */
+        private boolean equalsWord(int wordFrom, int wordTo, byte[] word, boolean ignoreCase) {
+            if (wordTo - wordFrom != word.length) {
+                return false;
+            }
+            for (int i = 0; i < word.length; i++) {
+                byte b = buf[wordFrom + i];
+                if (b != word[i] && !(ignoreCase && (b | 0x20) == (word[i] | 0x20) && Character.isLetter(b))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the property type held in the specified slot, as one of the Property Factory's labels so no string
+         * is created.
+         */
+        private String propertyType(int slot) {
+            if (matches(slot, VILLA)) {
+                return PropertyFactory.labelVilla;
+            }
+            if (matches(slot, APARTMENT)) {
+                return PropertyFactory.labelApartment;
+            }
+            return null;
+        }
+
+        /**
+         * Returns the date held in the specified slot, written as yyyy-MM-dd, in days since the epoch. If it isn't a
+         * valid date, the error is set.
+         */
+        private long day(int slot) {
+            int f = from[slot];
+            if (f < 0 || escaped[slot] || to[slot] - f != 10 || buf[f + 4] != '-' || buf[f + 7] != '-') {
+                fail("Dates must be written as yyyy-MM-dd.");
+                return 0;
+            }
+            int year = digits(f, 4);
+            int month = digits(f + 5, 2);
+            int day = digits(f + 8, 2);
+            if (year < 0 || month < 0 || day < 0) {
+                fail("Dates must be written as yyyy-MM-dd.");
+                return 0;
+            }
+            try {
+                return LocalDate.of(year, month, day).toEpochDay();
+            } catch (DateTimeException e) {
+                fail("Invalid date: " + new String(buf, f, 10, StandardCharsets.UTF_8));
+                return 0;
+            }
+        }
+
+        private int digits(int f, int count) {
+            int n = 0;
+            for (int i = f; i < f + count; i++) {
+                if (buf[i] < '0' || buf[i] > '9') {
+                    return -1;
+                }
+                n = n * 10 + (buf[i] - '0');
+            }
+            return n;
+        }
+
+        /**
+         * Returns the text held in the specified slot, decoding CSV's doubled quotes or JSON's escapes if it has any.
+         */
+        private String string(int slot) {
+            int f = from[slot];
+            int t = to[slot];
+            if (!escaped[slot]) {
+                return new String(buf, f, t - f, StandardCharsets.UTF_8);
+            }
+            StringBuilder sb = new StringBuilder(t - f);
+            int segment = f;
+            for (int i = f; i < t; i++) {
+                if (format == ImportFormat.CSV && buf[i] == '"') {
+                    sb.append(new String(buf, segment, i + 1 - segment, StandardCharsets.UTF_8));
+                    segment = ++i + 1;
+                } else if (format == ImportFormat.NDJSON && buf[i] == '\\' && i + 1 < t) {
+                    sb.append(new String(buf, segment, i - segment, StandardCharsets.UTF_8));
+                    i++;
+                    switch (buf[i]) {
+                        case 'n':
+                            sb.append('\n');
+                            break;
+                        case 't':
+                            sb.append('\t');
+                            break;
+                        case 'r':
+                            sb.append('\r');
+                            break;
+                        case 'b':
+                            sb.append('\b');
+                            break;
+                        case 'f':
+                            sb.append('\f');
+                            break;
+                        case 'u':
+                            int c = i + 4 < t ? hex(i + 1) : -1;
+                            if (c >= 0) {
+                                sb.append((char) c);
+                                i += 4;
+                            } else {
+                                sb.append('u');
+                            }
+                            break;
+                        default:
+                            sb.append((char) buf[i]);
+                    }
+                    segment = i + 1;
+                }
+            }
+            sb.append(new String(buf, segment, t - segment, StandardCharsets.UTF_8));
+            return sb.toString();
+        }
+
+        /**
+         * Returns the 4 hex digits at the specified position as a char code, or -1 if they aren't hex digits.
+         */
+        private int hex(int f) {
+            int c = 0;
+            for (int i = f; i < f + 4; i++) {
+                int digit = Character.digit(buf[i], 16);
+                if (digit < 0) {
+                    return -1;
+                }
+                c = c * 16 + digit;
+            }
+            return c;
+        }
+
+        private int skipSpaces(int i, int lineTo) {
+            while (i < lineTo && (buf[i] == ' ' || buf[i] == '\t')) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Sets the reason the line can't be imported.
+         *
+         * @return false
+         */
+        private boolean fail(String reason) {
+            if (error == null) {
+                error = reason;
+            }
+            return false;
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
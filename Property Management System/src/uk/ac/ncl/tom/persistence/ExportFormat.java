@@ -0,0 +1,32 @@
+package uk.ac.ncl.tom.persistence;
+
+/**
+ * Enum representing the formats an export can be written in. Both list the properties, then the tenants, then the
+ * live rentals.
+ *
+ * @author Thomas Hague
+ */
+
+public enum ExportFormat {
+    /**
+     * Comma separated values, one record per line, after a comment line describing each kind of record:
+     * "property,V-A12,Villa,true,false,2026-12-01" with the code, type, whether it is rented, whether its pool is clean
+     * and the date its rental terminates if it is rented, "tenant,TH.2025.07,Thomas,Hague,1990-01-31,true" with the
+     * tenant ID, name, date of birth and premium flag, and "rental,TH.2025.07,V-A12,2026-12-01". Names holding a
+     * comma, quote or line break are quoted, with "" for a quote inside them.
+     */
+    CSV,
+
+    /**
+     * A compact binary format, written big-endian. It starts with the int 0x504D5358 ("PMSX") and a version byte,
+     * followed by the records, each starting with a tag byte:
+     * 1 for a property, followed by its code, a flags byte (1 if it is an Apartment, 2 if it is rented and 4 if its
+     * pool is clean) and the day its rental terminates, or 0 if it isn't rented;
+     * 2 for a tenant, followed by their tenant ID, first name, last name, date of birth and a premium byte;
+     * 3 for a rental, followed by the tenant ID, the property code and the day it terminates.
+     * The export ends with the tag 0, the number of records as an int, and a CRC32 checksum of everything before it.
+     * Codes and IDs are written as a length byte then UTF-8, names as an unsigned short length then UTF-8, and days
+     * as an int number of days since the epoch (1970-01-01).
+     */
+    BINARY
+}
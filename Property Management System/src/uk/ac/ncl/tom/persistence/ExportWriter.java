@@ -0,0 +1,340 @@
+package uk.ac.ncl.tom.persistence;
+
+import uk.ac.ncl.tom.properties.PropertyFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+/**
+ * Class that writes an export of a Property Manager straight to a channel, in the CSV or binary format described by
+ * ExportFormat. Records are encoded into a buffer that is reused for the whole export and written to the channel each
+ * time it fills, so an export of any size only needs the buffer's memory. Records should be added in the order the
+ * format lists them: properties, then tenants, then rentals.
+ * The channel isn't closed when the export is finished, so the caller can write to it before and after.
+ *
+ * @author Thomas Hague
+ */
+
+public final class ExportWriter {
+    static final int MAGIC = 0x504D5358; // "PMSX"
+    static final byte VERSION = 1;
+    static final byte END = 0;
+    static final byte PROPERTY = 1;
+    static final byte TENANT = 2;
+    static final byte RENTAL = 3;
+
+    /**
+     * Size of the buffer records are encoded into, in bytes.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String CSV_HEADER = "# property,code,type,rented,cleanPool,terminationDate\n"
+            + "# tenant,tenantID,firstName,lastName,dateOfBirth,premium\n"
+            + "# rental,tenantID,propertyCode,terminationDate\n";
+
+    private final WritableByteChannel channel;
+    private final ExportFormat format;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private int records;
+    private boolean finished;
+
+    /**
+     * Creates a writer that exports to the specified channel in the specified format, and writes the start of the
+     * export into its buffer.
+     * Exception is thrown if either parameter is null.
+     *
+     * @param channel to write the export to.
+     * @param format  of the export.
+     */
+    public ExportWriter(WritableByteChannel channel, ExportFormat format) {
+        if (channel == null || format == null) {
+            throw new IllegalArgumentException("Export channel and format can't be null.");
+        }
+        this.channel = channel;
+        this.format = format;
+        if (format == ExportFormat.BINARY) {
+            buffer.putInt(MAGIC).put(VERSION);
+        } else {
+            for (int i = 0; i < CSV_HEADER.length(); i++) {
+                buffer.put((byte) CSV_HEADER.charAt(i));
+            }
+        }
+    }
+
+    /**
+     * Adds a property to the export.
+     *
+     * @param propertyCode   string representation of the property's code
+     * @param propertyType   either Villa or Apartment
+     * @param rented         is the property rented or not
+     * @param cleanPool      is the pool clean or not, always true for an apartment
+     * @param terminationDay day the rental terminates, in days since the epoch, only written if it is rented
+     * @throws IOException if the export can't be written to the channel.
+     */
+    public void property(CharSequence propertyCode, String propertyType, boolean rented, boolean cleanPool,
+                         long terminationDay) throws IOException {
+        begin();
+        if (format == ExportFormat.BINARY) {
+            ensure(1);
+            buffer.put(PROPERTY);
+            putShortString(propertyCode);
+            ensure(5);
+            int flags = (PropertyFactory.labelApartment.equalsIgnoreCase(propertyType) ? 1 : 0)
+                    | (rented ? 2 : 0) | (cleanPool ? 4 : 0);
+            buffer.put((byte) flags).putInt(rented ? (int) terminationDay : 0);
+        } else {
+            putAscii("property,");
+            putAscii(propertyCode);
+            putAscii(",");
+            putAscii(propertyType);
+            putAscii(rented ? ",true," : ",false,");
+            putAscii(cleanPool ? "true," : "false,");
+            if (rented) {
+                putDate(terminationDay);
+            }
+            putAscii("\n");
+        }
+    }
+
+    /**
+     * Adds a tenant to the export.
+     * Exception is thrown if either name is longer than 65535 bytes in UTF-8.
+     *
+     * @param tenantID       string representation of the tenant's ID
+     * @param firstName      tenants first name
+     * @param lastName       tenants last name
+     * @param dateOfBirthDay tenants date of birth, in days since the epoch
+     * @param premium        is the tenant premium class or not
+     * @throws IOException if the export can't be written to the channel.
+     */
+    public void tenant(CharSequence tenantID, String firstName, String lastName, long dateOfBirthDay,
+                       boolean premium) throws IOException {
+        begin();
+        if (format == ExportFormat.BINARY) {
+            ensure(1);
+            buffer.put(TENANT);
+            putShortString(tenantID);
+            putName(firstName);
+            putName(lastName);
+            ensure(5);
+            buffer.putInt((int) dateOfBirthDay).put((byte) (premium ? 1 : 0));
+        } else {
+            putAscii("tenant,");
+            putCsvText(tenantID);
+            putAscii(",");
+            putCsvText(firstName);
+            putAscii(",");
+            putCsvText(lastName);
+            putAscii(",");
+            putDate(dateOfBirthDay);
+            putAscii(premium ? ",true\n" : ",false\n");
+        }
+    }
+
+    /**
+     * Adds a live rental to the export.
+     *
+     * @param tenantID       string representation of the tenant's ID
+     * @param propertyCode   string representation of the rented property's code
+     * @param terminationDay day the rental terminates, in days since the epoch
+     * @throws IOException if the export can't be written to the channel.
+     */
+    public void rental(CharSequence tenantID, CharSequence propertyCode, long terminationDay) throws IOException {
+        begin();
+        if (format == ExportFormat.BINARY) {
+            ensure(1);
+            buffer.put(RENTAL);
+            putShortString(tenantID);
+            putShortString(propertyCode);
+            ensure(4);
+            buffer.putInt((int) terminationDay);
+        } else {
+            putAscii("rental,");
+            putCsvText(tenantID);
+            putAscii(",");
+            putAscii(propertyCode);
+            putAscii(",");
+            putDate(terminationDay);
+            putAscii("\n");
+        }
+    }
+
+    /**
+     * Finishes the export, writing the end of a binary export, and writes whatever is left in the buffer to the
+     * channel. No more records can be added.
+     *
+     * @return the number of records exported.
+     * @throws IOException if the export can't be written to the channel.
+     */
+    public int finish() throws IOException {
+        if (finished) {
+            throw new IllegalStateException("The export has already been finished.");
+        }
+        finished = true;
+        if (format == ExportFormat.BINARY) {
+            ensure(5);
+            buffer.put(END).putInt(records);
+            ensure(4);
+            // the checksum covers everything written before it, including the end of the buffer
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putInt((int) crc.getValue());
+        }
+        drain();
+        return records;
+    }
+
+    private void begin() {
+        if (finished) {
+            throw new IllegalStateException("The export has already been finished.");
+        }
+        records++;
+    }
+
+    /**
+     * Makes room for the specified number of bytes in the buffer, writing it to the channel if it doesn't have them.
+     */
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            if (format == ExportFormat.BINARY) {
+                crc.update(buffer.array(), 0, buffer.position());
+            }
+            drain();
+        }
+    }
+
+    /**
+     * Writes the buffer to the channel and empties it.
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void putAscii(CharSequence s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            ensure(1);
+            buffer.put((byte) s.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a code or ID as a length byte followed by its UTF-8 bytes, as a tenant's initials can be any character.
+     */
+    private void putShortString(CharSequence s) throws IOException {
+        int length = utf8Length(s);
+        if (length > 0xFF) {
+            throw new IllegalArgumentException(s + " is too long to export.");
+        }
+        ensure(1);
+        buffer.put((byte) length);
+        putUtf8(s);
+    }
+
+    /**
+     * Writes a name as an unsigned short length followed by its UTF-8 bytes.
+     */
+    private void putName(String s) throws IOException {
+        int length = utf8Length(s);
+        if (length > 0xFFFF) {
+            throw new IllegalArgumentException("Name " + s.substring(0, 20) + "... is too long to export.");
+        }
+        ensure(2);
+        buffer.putShort((short) length);
+        putUtf8(s);
+    }
+
+    /**
+     * Writes text as a CSV field, quoting it if it holds a comma, quote or line break.
+     */
+    private void putCsvText(CharSequence s) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            putUtf8(s);
+            return;
+        }
+        putAscii("\"");
+        int from = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '"') {
+                putUtf8(s.subSequence(from, i + 1));
+                putAscii("\"");
+                from = i + 1;
+            }
+        }
+        putUtf8(s.subSequence(from, s.length()));
+        putAscii("\"");
+    }
+
+    /**
+     * Writes the characters of the text as UTF-8, without creating a byte array for them.
+     */
+    private void putUtf8(CharSequence s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            ensure(4);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                        .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    private static int utf8Length(CharSequence s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes the specified day as yyyy-MM-dd.
+     */
+    private void putDate(long day) throws IOException {
+        LocalDate date = LocalDate.ofEpochDay(day);
+        ensure(11);
+        putDigits(date.getYear(), 4);
+        buffer.put((byte) '-');
+        putDigits(date.getMonthValue(), 2);
+        buffer.put((byte) '-');
+        putDigits(date.getDayOfMonth(), 2);
+    }
+
+    private void putDigits(int n, int digits) {
+        for (int divisor = digits == 4 ? 1000 : 10; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + n / divisor % 10));
+        }
+    }
+}
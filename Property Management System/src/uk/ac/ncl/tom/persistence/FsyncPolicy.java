@@ -0,0 +1,26 @@
+package uk.ac.ncl.tom.persistence;
+
+/**
+ * Enum representing when the journal forces its writes to disk.
+ *
+ * @author Thomas Hague
+ */
+
+public enum FsyncPolicy {
+    /**
+     * Every committed mutation is forced to disk before the Property Manager returns. Mutations committed by several
+     * threads at the same time share one force.
+     */
+    ALWAYS,
+
+    /**
+     * Committed mutations are written to the file straight away, and forced to disk by a background thread at a fixed
+     * interval, so a crash can lose up to one interval of mutations.
+     */
+    INTERVAL,
+
+    /**
+     * Committed mutations are written to the file, and the operating system decides when to write them to disk.
+     */
+    NEVER
+}
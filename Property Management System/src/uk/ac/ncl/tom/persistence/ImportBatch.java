@@ -0,0 +1,178 @@
+package uk.ac.ncl.tom.persistence;
+
+/**
+ * Class representing a batch of records read by a bulk import, either all properties or all tenants. The records are
+ * held in arrays that are reused for each batch a thread reads, so a large file is imported without creating an
+ * object per record beyond the tenants' names.
+ *
+ * @author Thomas Hague
+ */
+
+public final class ImportBatch {
+    private final long[] lines;
+    private final String[] propertyTypes;
+    private final String[] firstNames;
+    private final String[] lastNames;
+    private final long[] dateOfBirthDays;
+    private final boolean[] premium;
+    private final long[] rentalEndDays;
+    private int size;
+
+    /**
+     * Creates an empty batch that can hold the specified number of records.
+     *
+     * @param capacity , the most records the batch can hold.
+     */
+    ImportBatch(int capacity) {
+        lines = new long[capacity];
+        propertyTypes = new String[capacity];
+        firstNames = new String[capacity];
+        lastNames = new String[capacity];
+        dateOfBirthDays = new long[capacity];
+        premium = new boolean[capacity];
+        rentalEndDays = new long[capacity];
+    }
+
+    /**
+     * Returns the number of records in the batch.
+     *
+     * @return an int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of the line the specified record was read from, starting from 1.
+     *
+     * @param i , index of the record in the batch.
+     * @return a long
+     */
+    public long line(int i) {
+        return lines[check(i)];
+    }
+
+    /**
+     * Returns the property type of the specified record: the type of a property record, or the type of property a
+     * tenant is renting.
+     *
+     * @param i , index of the record in the batch.
+     * @return either Villa or Apartment, or null if the tenant isn't renting a property.
+     */
+    public String propertyType(int i) {
+        return propertyTypes[check(i)];
+    }
+
+    /**
+     * Returns the first name of the specified tenant record.
+     *
+     * @param i , index of the record in the batch.
+     * @return a string representing first name.
+     */
+    public String firstName(int i) {
+        return firstNames[check(i)];
+    }
+
+    /**
+     * Returns the last name of the specified tenant record.
+     *
+     * @param i , index of the record in the batch.
+     * @return a string representing last name.
+     */
+    public String lastName(int i) {
+        return lastNames[check(i)];
+    }
+
+    /**
+     * Returns the date of birth of the specified tenant record, as the number of days since the epoch (1970-01-01).
+     *
+     * @param i , index of the record in the batch.
+     * @return a long
+     */
+    public long dateOfBirthDay(int i) {
+        return dateOfBirthDays[check(i)];
+    }
+
+    /**
+     * Returns whether the specified tenant record is premium class.
+     *
+     * @param i , index of the record in the batch.
+     * @return true if the tenant is premium, false if not
+     */
+    public boolean isPremium(int i) {
+        return premium[check(i)];
+    }
+
+    /**
+     * Returns the day the specified tenant's rental terminates, as the number of days since the epoch (1970-01-01).
+     *
+     * @param i , index of the record in the batch.
+     * @return a long, only meaningful if the tenant is renting a property.
+     */
+    public long rentalEndDay(int i) {
+        return rentalEndDays[check(i)];
+    }
+
+    /**
+     * Adds a property record to the batch.
+     *
+     * @param line         , number of the line it was read from.
+     * @param propertyType , either Villa or Apartment.
+     */
+    void addProperty(long line, String propertyType) {
+        lines[size] = line;
+        propertyTypes[size] = propertyType;
+        size++;
+    }
+
+    /**
+     * Adds a tenant record to the batch.
+     *
+     * @param line           , number of the line it was read from.
+     * @param firstName      tenants first name
+     * @param lastName       tenants last name
+     * @param dateOfBirthDay tenants date of birth, in days since the epoch
+     * @param isPremium      is the tenant premium class or not
+     * @param rentalType     type of property the tenant is renting, or null if they aren't
+     * @param rentalEndDay   day the rental terminates, in days since the epoch
+     */
+    void addTenant(long line, String firstName, String lastName, long dateOfBirthDay, boolean isPremium,
+                   String rentalType, long rentalEndDay) {
+        lines[size] = line;
+        firstNames[size] = firstName;
+        lastNames[size] = lastName;
+        dateOfBirthDays[size] = dateOfBirthDay;
+        premium[size] = isPremium;
+        propertyTypes[size] = rentalType;
+        rentalEndDays[size] = rentalEndDay;
+        size++;
+    }
+
+    /**
+     * Returns a boolean indicating whether the batch can't hold any more records.
+     *
+     * @return true if the batch is full, false if not.
+     */
+    boolean isFull() {
+        return size == lines.length;
+    }
+
+    /**
+     * Empties the batch so it can be filled again, letting go of the names it held.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            propertyTypes[i] = null;
+            firstNames[i] = null;
+            lastNames[i] = null;
+        }
+        size = 0;
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Record " + i + " is not in a batch of " + size + ".");
+        }
+        return i;
+    }
+}
@@ -0,0 +1,48 @@
+package uk.ac.ncl.tom.persistence;
+
+import java.nio.file.Path;
+
+/**
+ * Enum representing the file formats a bulk import can read. Both have one record per line: either a property, or a
+ * tenant with their current rental if they have one.
+ *
+ * @author Thomas Hague
+ */
+
+public enum ImportFormat {
+    /**
+     * Comma separated values, such as "property,Villa" or "tenant,Jane,Doe,1990-01-31,true,Apartment,2026-12-01". A
+     * tenant has a first name, last name, date of birth and premium flag, optionally followed by the type of property
+     * they are renting and the date the rental terminates. Fields may be quoted, with "" for a quote inside them.
+     */
+    CSV,
+
+    /**
+     * Newline delimited JSON, with one flat object per line such as {"kind":"property","propertyType":"Villa"} or
+     * {"kind":"tenant","firstName":"Jane","lastName":"Doe","dateOfBirth":"1990-01-31","premium":true,
+     * "rentalType":"Apartment","rentalEnds":"2026-12-01"}. Other keys are ignored.
+     */
+    NDJSON;
+
+    /**
+     * Returns the format of the file at the specified path, from its extension: .csv for CSV, and .ndjson, .jsonl or
+     * .json for NDJSON.
+     * Exception is thrown if the path is null or has any other extension.
+     *
+     * @param path of the file.
+     * @return the ImportFormat
+     */
+    public static ImportFormat forPath(Path path) {
+        if (path == null || path.getFileName() == null) {
+            throw new IllegalArgumentException("Import path can't be null.");
+        }
+        String name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Can't tell the format of " + path + ", please use a .csv or .ndjson file.");
+    }
+}
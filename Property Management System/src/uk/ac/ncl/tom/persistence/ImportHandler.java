@@ -0,0 +1,33 @@
+package uk.ac.ncl.tom.persistence;
+
+/**
+ * ImportHandler - interface to something that receives the records of a bulk import as they are read. Every property
+ * in the file is passed to the handler before any tenants, so tenants' rentals can be given the imported properties.
+ * The file is read in parallel chunks, so the methods are called from several threads at once, and records within a
+ * pass don't arrive in the order they are in the file. A batch is only valid until the method it is passed to returns.
+ *
+ * @author Thomas Hague
+ */
+public interface ImportHandler {
+    /**
+     * Called with each batch of properties read from the file.
+     *
+     * @param batch of property records.
+     */
+    void properties(ImportBatch batch);
+
+    /**
+     * Called with each batch of tenants read from the file.
+     *
+     * @param batch of tenant records.
+     */
+    void tenants(ImportBatch batch);
+
+    /**
+     * Called for each line of the file that can't be imported. The import carries on with the next line.
+     *
+     * @param line   number of the line in the file, starting from 1.
+     * @param reason why the line can't be imported.
+     */
+    void rowRejected(long line, String reason);
+}
@@ -0,0 +1,476 @@
+package uk.ac.ncl.tom.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Class representing an append-only, checksummed binary journal of the mutations made to a Property Manager, so that
+ * its properties, tenants and rentals can be rebuilt after a restart.
+ * The file starts with a header, followed by one record per mutation. Each record is its length, a record type, the
+ * record's fields and a CRC32 checksum of the type and fields. When a journal is opened, records are replayed up to the
+ * first incomplete or corrupt record, which is where a crash stopped writing, and the file is cut back to that point.
+ * Mutations are appended to a buffer and written out when they are committed. A commit writes every mutation appended
+ * so far, so threads committing at the same time share one write and, depending on the FsyncPolicy, one force to disk.
+ *
+ * @author Thomas Hague
+ */
+
+public final class Journal implements Closeable {
+    private static final int MAGIC = 0x504D534A; // "PMSJ"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+
+    static final byte PROPERTY_ADDED = 1;
+    static final byte TENANT_ADDED = 2;
+    static final byte CONTRACT_ISSUED = 3;
+    static final byte RENTAL_TERMINATED = 4;
+    static final byte POOL_CLEANED = 5;
+    static final byte PROPERTY_DECOMMISSIONED = 6;
+    static final byte TENANT_DECOMMISSIONED = 7;
+
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 100;
+
+    private final FileChannel channel;
+    private final FsyncPolicy policy;
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService syncer;
+
+    // guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long appended;
+
+    // guarded by writeLock
+    private final Object writeLock = new Object();
+    private long written;
+    private boolean closed;
+
+    /**
+     * Creates a journal that appends to the specified channel, which is already positioned at the end of its records.
+     *
+     * @param channel            open file channel of the journal file.
+     * @param policy             when writes are forced to disk.
+     * @param syncIntervalMillis how often writes are forced to disk, for the INTERVAL policy.
+     */
+    private Journal(FileChannel channel, FsyncPolicy policy, long syncIntervalMillis) {
+        this.channel = channel;
+        this.policy = policy;
+        if (policy == FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::forceQuietly, syncIntervalMillis, syncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Opens the journal at the specified path with the default sync interval, creating it if it doesn't exist.
+     * Every complete record already in the journal is passed to the handler before the journal is returned.
+     *
+     * @param path    of the journal file.
+     * @param policy  when writes are forced to disk.
+     * @param handler receives the mutations already in the journal.
+     * @return the Journal, ready to append to.
+     * @throws IOException if the file can't be read or written, or isn't a journal.
+     */
+    public static Journal open(Path path, FsyncPolicy policy, JournalHandler handler) throws IOException {
+        return open(path, policy, DEFAULT_SYNC_INTERVAL_MILLIS, handler);
+    }
+
+    /**
+     * Opens the journal at the specified path, creating it if it doesn't exist.
+     * Every complete record already in the journal is passed to the handler before the journal is returned, and
+     * anything after the last complete record is removed.
+     * Exception is thrown if the policy or handler is null, or the sync interval isn't positive.
+     *
+     * @param path               of the journal file.
+     * @param policy             when writes are forced to disk.
+     * @param syncIntervalMillis how often writes are forced to disk, for the INTERVAL policy.
+     * @param handler            receives the mutations already in the journal.
+     * @return the Journal, ready to append to.
+     * @throws IOException if the file can't be read or written, or isn't a journal.
+     */
+    public static Journal open(Path path, FsyncPolicy policy, long syncIntervalMillis, JournalHandler handler)
+            throws IOException {
+        if (policy == null || handler == null) {
+            throw new IllegalArgumentException("Fsync policy and handler can't be null.");
+        }
+        if (syncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Sync interval must be positive.");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long end;
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put(VERSION);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                channel.force(true);
+                end = HEADER_SIZE;
+            } else {
+                end = replay(path, handler);
+                // remove a record that was only partly written when the system stopped.
+                channel.truncate(end);
+            }
+            channel.position(end);
+            return new Journal(channel, policy, syncIntervalMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the journal at the specified path, passing every complete record to the handler in order, and stopping at
+     * the end of the file or the first incomplete or corrupt record.
+     *
+     * @param path    of the journal file.
+     * @param handler receives the mutations in the journal.
+     * @return the position in the file after the last complete record.
+     * @throws IOException if the file can't be read, or isn't a journal.
+     */
+    public static long replay(Path path, JournalHandler handler) throws IOException {
+        try (InputStream in = Files.newInputStream(path);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16))) {
+            if (data.readInt() != MAGIC) {
+                throw new IOException(path + " is not a Property Manager journal.");
+            }
+            byte version = data.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported journal version " + version + " in " + path);
+            }
+            long position = HEADER_SIZE;
+            CRC32 checksum = new CRC32();
+            byte[] record = new byte[256];
+            while (true) {
+                int length;
+                try {
+                    length = data.readInt();
+                    if (length <= 0 || length > (1 << 20)) {
+                        return position;
+                    }
+                    if (record.length < length) {
+                        record = new byte[Math.max(length, record.length * 2)];
+                    }
+                    data.readFully(record, 0, length);
+                    int expected = data.readInt();
+                    checksum.reset();
+                    checksum.update(record, 0, length);
+                    if ((int) checksum.getValue() != expected) {
+                        return position;
+                    }
+                } catch (EOFException e) {
+                    return position;
+                }
+                dispatch(ByteBuffer.wrap(record, 0, length), handler);
+                position += 4 + length + 4;
+            }
+        } catch (EOFException e) {
+            throw new IOException(path + " is not a Property Manager journal.", e);
+        }
+    }
+
+    /**
+     * Decodes one record and passes it to the matching handler method.
+     */
+    private static void dispatch(ByteBuffer record, JournalHandler handler) throws IOException {
+        byte type = record.get();
+        switch (type) {
+            case PROPERTY_ADDED:
+                handler.propertyAdded(readString(record), readString(record));
+                break;
+            case TENANT_ADDED:
+                handler.tenantAdded(readString(record), readString(record), readString(record), record.getLong(),
+                        record.get() != 0);
+                break;
+            case CONTRACT_ISSUED:
+                handler.contractIssued(readString(record), readString(record), record.getLong());
+                break;
+            case RENTAL_TERMINATED:
+                handler.rentalTerminated(readString(record));
+                break;
+            case POOL_CLEANED:
+                handler.poolCleaned(readString(record));
+                break;
+            case PROPERTY_DECOMMISSIONED:
+                handler.propertyDecommissioned(readString(record));
+                break;
+            case TENANT_DECOMMISSIONED:
+                handler.tenantDecommissioned(readString(record));
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getShort() & 0xFFFF;
+        String s = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return s;
+    }
+
+    /**
+     * Appends a property added record.
+     *
+     * @param propertyType either Villa or Apartment
+     * @param propertyCode string representation of the property's code
+     * @return the sequence number of the record, to pass to commit.
+     */
+    public long propertyAdded(String propertyType, String propertyCode) {
+        byte[][] strings = {bytes(propertyType), bytes(propertyCode)};
+        synchronized (this) {
+            return endRecord(beginRecord(PROPERTY_ADDED, strings, 0));
+        }
+    }
+
+    /**
+     * Appends a tenant added record.
+     *
+     * @param tenantID       string representation of the tenant's ID
+     * @param firstName      tenants first name
+     * @param lastName       tenants last name
+     * @param dateOfBirthDay tenants date of birth, in days since the epoch
+     * @param premium        is the tenant premium class or not
+     * @return the sequence number of the record, to pass to commit.
+     */
+    public long tenantAdded(String tenantID, String firstName, String lastName, long dateOfBirthDay, boolean premium) {
+        byte[][] strings = {bytes(tenantID), bytes(firstName), bytes(lastName)};
+        synchronized (this) {
+            int start = beginRecord(TENANT_ADDED, strings, 9);
+            pending.putLong(dateOfBirthDay).put((byte) (premium ? 1 : 0));
+            return endRecord(start);
+        }
+    }
+
+    /**
+     * Appends a contract issued record.
+     *
+     * @param tenantID       string representation of the renting tenant's ID
+     * @param propertyCode   string representation of the rented property's code
+     * @param terminationDay day the rental terminates, in days since the epoch
+     * @return the sequence number of the record, to pass to commit.
+     */
+    public long contractIssued(String tenantID, String propertyCode, long terminationDay) {
+        byte[][] strings = {bytes(tenantID), bytes(propertyCode)};
+        synchronized (this) {
+            int start = beginRecord(CONTRACT_ISSUED, strings, 8);
+            pending.putLong(terminationDay);
+            return endRecord(start);
+        }
+    }
+
+    /**
+     * Appends a rental terminated record.
+     *
+     * @param tenantID string representation of the tenant's ID
+     * @return the sequence number of the record, to pass to commit.
+     */
+    public long rentalTerminated(String tenantID) {
+        byte[][] strings = {bytes(tenantID)};
+        synchronized (this) {
+            return endRecord(beginRecord(RENTAL_TERMINATED, strings, 0));
+        }
+    }
+
+    /**
+     * Appends a pool cleaned record.
+     *
+     * @param propertyCode string representation of the Villa's code
+     * @return the sequence number of the record, to pass to commit.
+     */
+    public long poolCleaned(String propertyCode) {
+        byte[][] strings = {bytes(propertyCode)};
+        synchronized (this) {
+            return endRecord(beginRecord(POOL_CLEANED, strings, 0));
+        }
+    }
+
+    /**
+     * Appends a property decommissioned record.
+     *
+     * @param propertyCode string representation of the property's code
+     * @return the sequence number of the record, to pass to commit.
+     */
+    public long propertyDecommissioned(String propertyCode) {
+        byte[][] strings = {bytes(propertyCode)};
+        synchronized (this) {
+            return endRecord(beginRecord(PROPERTY_DECOMMISSIONED, strings, 0));
+        }
+    }
+
+    /**
+     * Appends a tenant decommissioned record.
+     *
+     * @param tenantID string representation of the tenant's ID
+     * @return the sequence number of the record, to pass to commit.
+     */
+    public long tenantDecommissioned(String tenantID) {
+        byte[][] strings = {bytes(tenantID)};
+        synchronized (this) {
+            return endRecord(beginRecord(TENANT_DECOMMISSIONED, strings, 0));
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        if (b.length > 0xFFFF) {
+            throw new IllegalArgumentException("Journal strings can't be longer than 65535 bytes.");
+        }
+        return b;
+    }
+
+    /**
+     * Starts a record in the pending buffer, making sure it has room for the record, and writes its length, type and
+     * strings. Must be called while holding this journal's lock.
+     *
+     * @return the position of the record in the pending buffer.
+     */
+    private int beginRecord(byte type, byte[][] strings, int fixedBytes) {
+        int length = 1 + fixedBytes;
+        for (byte[] s : strings) {
+            length += 2 + s.length;
+        }
+        if (pending.remaining() < 4 + length + 4) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + 4 + length + 4));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        int start = pending.position();
+        pending.putInt(length).put(type);
+        for (byte[] s : strings) {
+            pending.putShort((short) s.length).put(s);
+        }
+        return start;
+    }
+
+    /**
+     * Finishes the record that starts at the specified position in the pending buffer with its checksum. Must be
+     * called while holding this journal's lock.
+     *
+     * @return the sequence number of the record.
+     */
+    private long endRecord(int start) {
+        crc.reset();
+        crc.update(pending.array(), start + 4, pending.position() - start - 4);
+        pending.putInt((int) crc.getValue());
+        return ++appended;
+    }
+
+    /**
+     * Makes sure the record with the specified sequence number, and every record before it, has been written to the
+     * journal file, and forced to disk if the policy is ALWAYS.
+     * If another thread's commit has already covered the record, this returns without writing anything.
+     *
+     * @param sequence number returned when the record was appended.
+     */
+    public void commit(long sequence) {
+        synchronized (writeLock) {
+            if (closed) {
+                throw new IllegalStateException("Journal has been closed.");
+            }
+            if (written >= sequence) {
+                return;
+            }
+            ByteBuffer toWrite;
+            long upTo;
+            synchronized (this) {
+                toWrite = pending;
+                upTo = appended;
+                pending = spare;
+                pending.clear();
+                spare = toWrite;
+            }
+            try {
+                toWrite.flip();
+                while (toWrite.hasRemaining()) {
+                    channel.write(toWrite);
+                }
+                if (policy == FsyncPolicy.ALWAYS) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write to the journal.", e);
+            }
+            written = upTo;
+        }
+    }
+
+    /**
+     * Writes and forces every record appended so far to disk, whatever the policy.
+     */
+    public void sync() {
+        long sequence;
+        synchronized (this) {
+            sequence = appended;
+        }
+        commit(sequence);
+        synchronized (writeLock) {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to force the journal to disk.", e);
+            }
+        }
+    }
+
+    private void forceQuietly() {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                // the next forced write or close will report the problem.
+            }
+        }
+    }
+
+    /**
+     * Writes and forces every record appended so far, then closes the journal file.
+     *
+     * @throws IOException if the journal can't be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            try {
+                sync();
+            } finally {
+                closed = true;
+                channel.close();
+            }
+        }
+    }
+}
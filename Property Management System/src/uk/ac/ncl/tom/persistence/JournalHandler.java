@@ -0,0 +1,65 @@
+package uk.ac.ncl.tom.persistence;
+
+/**
+ * JournalHandler - interface to something that receives the mutations read back from a journal, in the order they
+ * were written.
+ *
+ * @author Thomas Hague
+ */
+public interface JournalHandler {
+    /**
+     * Called for a property that was added to the system.
+     *
+     * @param propertyType either Villa or Apartment
+     * @param propertyCode string representation of the property's code
+     */
+    void propertyAdded(String propertyType, String propertyCode);
+
+    /**
+     * Called for a tenant that was added to the system.
+     *
+     * @param tenantID       string representation of the tenant's ID
+     * @param firstName      tenants first name
+     * @param lastName       tenants last name
+     * @param dateOfBirthDay tenants date of birth, in days since the epoch
+     * @param premium        is the tenant premium class or not
+     */
+    void tenantAdded(String tenantID, String firstName, String lastName, long dateOfBirthDay, boolean premium);
+
+    /**
+     * Called for a rental contract that was issued.
+     *
+     * @param tenantID       string representation of the renting tenant's ID
+     * @param propertyCode   string representation of the rented property's code
+     * @param terminationDay day the rental terminates, in days since the epoch
+     */
+    void contractIssued(String tenantID, String propertyCode, long terminationDay);
+
+    /**
+     * Called for a rental that was terminated.
+     *
+     * @param tenantID string representation of the tenant's ID
+     */
+    void rentalTerminated(String tenantID);
+
+    /**
+     * Called for a Villa whose pool was cleaned.
+     *
+     * @param propertyCode string representation of the Villa's code
+     */
+    void poolCleaned(String propertyCode);
+
+    /**
+     * Called for a property that was decommissioned, so is no longer on the system.
+     *
+     * @param propertyCode string representation of the property's code
+     */
+    void propertyDecommissioned(String propertyCode);
+
+    /**
+     * Called for a tenant that was decommissioned, so is no longer on the system.
+     *
+     * @param tenantID string representation of the tenant's ID
+     */
+    void tenantDecommissioned(String tenantID);
+}
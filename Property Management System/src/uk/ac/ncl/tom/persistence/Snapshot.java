@@ -0,0 +1,105 @@
+package uk.ac.ncl.tom.persistence;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Class that reads a compact, versioned binary snapshot of a Property Manager: the property codes and tenant IDs that
+ * have been issued, the properties, the tenants and the live rentals.
+ * The file is a header holding the number of entries in each section, the sections one after another, and a CRC32
+ * checksum of everything before it. Snapshots are written with a SnapshotWriter.
+ * The file is memory-mapped rather than read through a stream, so the operating system pages it straight in from its
+ * cache and entries are decoded from the mapped buffer without being copied first.
+ *
+ * @author Thomas Hague
+ */
+
+public final class Snapshot {
+    static final int MAGIC = 0x504D5353; // "PMSS"
+    static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 5 * 4;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Reads the snapshot at the specified path, passing its contents to the handler.
+     * The checksum is verified before anything is passed to the handler.
+     *
+     * @param path    of the snapshot file.
+     * @param handler receives the contents of the snapshot.
+     * @throws IOException if the file can't be read, isn't a snapshot, or is corrupt.
+     */
+    public static void read(Path path, SnapshotHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 4) {
+                throw new IOException(path + " is not a Property Manager snapshot.");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to be a Property Manager snapshot.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a Property Manager snapshot.");
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + path);
+            }
+            int end = (int) size - 4;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(0).limit(end));
+            if ((int) crc.getValue() != buffer.getInt(end)) {
+                throw new IOException("Snapshot " + path + " is corrupt.");
+            }
+            buffer.limit(end);
+            try {
+                decode(buffer, handler);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Snapshot " + path + " is corrupt.", e);
+            }
+        }
+    }
+
+    /**
+     * Decodes each section of the snapshot in turn and passes the entries to the matching handler method.
+     */
+    private static void decode(MappedByteBuffer buffer, SnapshotHandler handler) {
+        int propertyCodes = buffer.getInt();
+        int tenantIDs = buffer.getInt();
+        int properties = buffer.getInt();
+        int tenants = buffer.getInt();
+        int rentals = buffer.getInt();
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < propertyCodes; i++) {
+            handler.propertyCode(readString(buffer, scratch));
+        }
+        for (int i = 0; i < tenantIDs; i++) {
+            handler.tenantID(readString(buffer, scratch));
+        }
+        for (int i = 0; i < properties; i++) {
+            handler.property(readString(buffer, scratch), readString(buffer, scratch), buffer.get() != 0);
+        }
+        for (int i = 0; i < tenants; i++) {
+            handler.tenant(readString(buffer, scratch), readString(buffer, scratch), readString(buffer, scratch),
+                    buffer.getLong(), buffer.get() != 0);
+        }
+        for (int i = 0; i < rentals; i++) {
+            handler.rental(readString(buffer, scratch), readString(buffer, scratch), buffer.getLong());
+        }
+    }
+
+    private static String readString(MappedByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] b = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(b, 0, length);
+        return new String(b, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,52 @@
+package uk.ac.ncl.tom.persistence;
+
+/**
+ * SnapshotHandler - interface to something that receives the contents of a snapshot as it is read. Property codes and
+ * tenant IDs come first, then properties, then tenants, then rentals.
+ *
+ * @author Thomas Hague
+ */
+public interface SnapshotHandler {
+    /**
+     * Called for each property code that had been issued.
+     *
+     * @param propertyCode string representation of the property code
+     */
+    void propertyCode(String propertyCode);
+
+    /**
+     * Called for each tenant ID that had been issued.
+     *
+     * @param tenantID string representation of the tenant ID
+     */
+    void tenantID(String tenantID);
+
+    /**
+     * Called for each property on the system.
+     *
+     * @param propertyType either Villa or Apartment
+     * @param propertyCode string representation of the property's code
+     * @param cleanPool    is the pool clean or not, always true for an apartment
+     */
+    void property(String propertyType, String propertyCode, boolean cleanPool);
+
+    /**
+     * Called for each tenant on the system.
+     *
+     * @param tenantID       string representation of the tenant's ID
+     * @param firstName      tenants first name
+     * @param lastName       tenants last name
+     * @param dateOfBirthDay tenants date of birth, in days since the epoch
+     * @param premium        is the tenant premium class or not
+     */
+    void tenant(String tenantID, String firstName, String lastName, long dateOfBirthDay, boolean premium);
+
+    /**
+     * Called for each live rental.
+     *
+     * @param tenantID       string representation of the tenant's ID
+     * @param propertyCode   string representation of the rented property's code
+     * @param terminationDay date the rental terminates, in days since the epoch
+     */
+    void rental(String tenantID, String propertyCode, long terminationDay);
+}
@@ -0,0 +1,163 @@
+package uk.ac.ncl.tom.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Class representing a snapshot that is being written. The contents are encoded into memory as they are added, which
+ * is quick enough to do while the Property Manager is locked, and the file is written afterwards with writeTo.
+ * Contents can be added in any order; they are written out in the order the Snapshot reads them back.
+ *
+ * @author Thomas Hague
+ */
+
+public final class SnapshotWriter {
+    private final Section propertyCodes = new Section();
+    private final Section tenantIDs = new Section();
+    private final Section properties = new Section();
+    private final Section tenants = new Section();
+    private final Section rentals = new Section();
+
+    /**
+     * Adds a property code that has been issued.
+     *
+     * @param propertyCode string representation of the property code
+     */
+    public void propertyCode(String propertyCode) {
+        propertyCodes.begin().writeString(propertyCode);
+    }
+
+    /**
+     * Adds a tenant ID that has been issued.
+     *
+     * @param tenantID string representation of the tenant ID
+     */
+    public void tenantID(String tenantID) {
+        tenantIDs.begin().writeString(tenantID);
+    }
+
+    /**
+     * Adds a property on the system.
+     *
+     * @param propertyType either Villa or Apartment
+     * @param propertyCode string representation of the property's code
+     * @param cleanPool    is the pool clean or not, always true for an apartment
+     */
+    public void property(String propertyType, String propertyCode, boolean cleanPool) {
+        properties.begin().writeString(propertyType).writeString(propertyCode).writeBoolean(cleanPool);
+    }
+
+    /**
+     * Adds a tenant on the system.
+     *
+     * @param tenantID       string representation of the tenant's ID
+     * @param firstName      tenants first name
+     * @param lastName       tenants last name
+     * @param dateOfBirthDay tenants date of birth, in days since the epoch
+     * @param premium        is the tenant premium class or not
+     */
+    public void tenant(String tenantID, String firstName, String lastName, long dateOfBirthDay, boolean premium) {
+        tenants.begin().writeString(tenantID).writeString(firstName).writeString(lastName).writeLong(dateOfBirthDay)
+                .writeBoolean(premium);
+    }
+
+    /**
+     * Adds a live rental.
+     *
+     * @param tenantID       string representation of the tenant's ID
+     * @param propertyCode   string representation of the rented property's code
+     * @param terminationDay date the rental terminates, in days since the epoch
+     */
+    public void rental(String tenantID, String propertyCode, long terminationDay) {
+        rentals.begin().writeString(tenantID).writeString(propertyCode).writeLong(terminationDay);
+    }
+
+    /**
+     * Writes the snapshot to the specified path, replacing any snapshot already there. The snapshot is written to a
+     * temporary file and forced to disk first, then moved into place, so a crash never leaves a half written snapshot.
+     *
+     * @param path of the snapshot file.
+     * @throws IOException if the snapshot can't be written.
+     */
+    public void writeTo(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 crc = new CRC32();
+            OutputStream out = Channels.newOutputStream(channel);
+            DataOutputStream data = new DataOutputStream(new CheckedOutputStream(out, crc));
+            data.writeInt(Snapshot.MAGIC);
+            data.writeByte(Snapshot.VERSION);
+            Section[] sections = {propertyCodes, tenantIDs, properties, tenants, rentals};
+            for (Section section : sections) {
+                data.writeInt(section.count);
+            }
+            for (Section section : sections) {
+                section.bytes.writeTo(data);
+            }
+            data.flush();
+            new DataOutputStream(out).writeInt((int) crc.getValue());
+            channel.force(true);
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Class representing one section of the snapshot, the encoded entries in it and how many there are.
+     */
+    private static final class Section {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        private final DataOutputStream data = new DataOutputStream(bytes);
+        private int count;
+
+        private Section begin() {
+            count++;
+            return this;
+        }
+
+        private Section writeString(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            if (b.length > 0xFFFF) {
+                throw new IllegalArgumentException("Snapshot strings can't be longer than 65535 bytes.");
+            }
+            try {
+                data.writeShort(b.length);
+                data.write(b);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        private Section writeLong(long value) {
+            try {
+                data.writeLong(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        private Section writeBoolean(boolean value) {
+            try {
+                data.writeBoolean(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+    }
+}
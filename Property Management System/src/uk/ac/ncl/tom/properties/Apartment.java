@@ -6,7 +6,6 @@ package uk.ac.ncl.tom.properties;
  * @author Thomas Hague
  */
 class Apartment extends PropertyFactory {
-    private final PropertyCode propertyCode;
     private static final int deposit = 200;
     private static final String propertyType = "Apartment";
 
@@ -14,8 +13,27 @@ class Apartment extends PropertyFactory {
      * Creates an Apartment object and its Property code.
      */
     Apartment() {
-        super();
-        this.propertyCode = PropertyCode.getInstance('A');
+        this(PropertyStore.global(), PropertyCode.getInstance('A'));
+    }
+
+    /**
+     * Creates an Apartment object with the specified Property code, in the specified property store.
+     *
+     * @param store,        property store the Apartment is kept in.
+     * @param propertyCode, an Apartment property code that has already been created.
+     */
+    Apartment(PropertyStore store, PropertyCode propertyCode) {
+        super(store, store.add(PropertyStore.APARTMENT, propertyCode, deposit));
+    }
+
+    /**
+     * Creates a view of the Apartment with the specified id in the specified property store.
+     *
+     * @param store, property store the Apartment is kept in.
+     * @param id,    of an Apartment that is already in the property store.
+     */
+    Apartment(PropertyStore store, int id) {
+        super(store, id);
     }
 
     /**
@@ -26,7 +44,7 @@ class Apartment extends PropertyFactory {
      */
     @Override
     public PropertyCode getPropertyCode() {
-        return propertyCode;
+        return store().code(getId());
     }
 
     /**
@@ -36,7 +54,7 @@ class Apartment extends PropertyFactory {
      */
     @Override
     public int getDeposit() {
-        return deposit;
+        return store().deposit(getId());
     }
 
     /**
@@ -9,6 +9,11 @@ import java.util.Date;
  * Copyright (C) 2025 Newcastle University, UK
  */
 public interface Property {
+    /**
+     * Termination day of a property that isn't rented.
+     */
+    long NO_TERMINATION_DAY = Long.MIN_VALUE;
+
     /**
      * Returns the Property Code.
      * All properties must have a code
@@ -18,6 +23,13 @@ public interface Property {
     PropertyCode getPropertyCode();
 
 
+    /**
+     * Returns the property's id, a dense number given to each property when it is created, starting from 0.
+     *
+     * @return an int
+     */
+    int getId();
+
     /**
      * Returns the Property type.
      * a property can be either a villa or an apartment
@@ -49,6 +61,13 @@ public interface Property {
      */
     Date getTerminationDate();
 
+    /**
+     * Returns the termination date for the rental contract, as the number of days since the epoch (1970-01-01).
+     *
+     * @return a long, or NO_TERMINATION_DAY if the property isn't rented.
+     */
+    long getTerminationDay();
+
     /**
      * Setter method to change the value of a properties rental state
      *
@@ -63,6 +82,13 @@ public interface Property {
      */
     void setTerminationDate(Date terminationDate);
 
+    /**
+     * Setter method to set a new termination date of a rental, as the number of days since the epoch (1970-01-01).
+     *
+     * @param terminationDay , or NO_TERMINATION_DAY if the property isn't rented.
+     */
+    void setTerminationDay(long terminationDay);
+
 }
 
 
@@ -1,74 +1,215 @@
 package uk.ac.ncl.tom.properties;
 
-import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.HashMap;
 
 /**
  * Class representing a property's code.
+ * A property code is held as a single packed int: the top bit is set for Apartments, the next three bits hold the
+ * number of digits in the alphanumeric code, and the low 28 bits hold the code's position in its code space, which is
+ * the letter's index times a power of ten plus the number. Two property codes are equal if their packed ints are.
  *
  * @author Thomas Hague
  */
 
 public final class PropertyCode {
 
-    private final char prefix;
-    private final String anuCode, strRep;
-    private static final Map<String, PropertyCode> PROPERTYCODES = new HashMap<>();
+    private final int packed;
+    private static final Random RANDOM = new Random();
+    public static final int DEFAULT_CODE_DIGITS = 2;
+    public static final int MAX_CODE_DIGITS = 7;
 
     /**
-     * Creates a property code with the specified parameters.
+     * Packed int returned by parse for a string that isn't a valid property code. No property code packs to it.
+     */
+    public static final int INVALID_CODE = -1;
+
+    private static final int APARTMENT_BIT = 1 << 31;
+    private static final int DIGITS_SHIFT = 28;
+    private static final int VALUE_MASK = (1 << DIGITS_SHIFT) - 1;
+
+    /**
+     * Creates a property code from its packed int.
+     *
+     * @param packed , the property code packed by pack.
+     */
+    PropertyCode(int packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * Packs a property code into an int.
+     *
+     * @param prefix, either 'V' for Villa, or 'A' for apartments.
+     * @param value,  position in the code space.
+     * @param digits, number of digits in the alphanumeric code.
+     * @return an int
+     */
+    static int pack(char prefix, int value, int digits) {
+        return (prefix == 'A' ? APARTMENT_BIT : 0) | digits << DIGITS_SHIFT | value;
+    }
+
+    /**
+     * Returns the position in its code space of the property code packed into the specified int.
+     *
+     * @param packed , a packed property code.
+     * @return an int
+     */
+    static int positionOf(int packed) {
+        return packed & VALUE_MASK;
+    }
+
+    /**
+     * Returns the number of digits in the alphanumeric code of the property code packed into the specified int.
+     *
+     * @param packed , a packed property code.
+     * @return an int
+     */
+    static int digitsOf(int packed) {
+        return (packed >>> DIGITS_SHIFT) & 7;
+    }
+
+    /**
+     * Returns the prefix of the property code packed into the specified int.
+     *
+     * @param packed , a packed property code.
+     * @return either 'V' or 'A'.
+     */
+    static char prefixOf(int packed) {
+        return (packed & APARTMENT_BIT) != 0 ? 'A' : 'V';
+    }
+
+    /**
+     * Parses the string representation of a property code, such as "V-A12", into its packed int without creating any
+     * objects, so property codes can be looked up by their string in constant time. Codes in the default format and
+     * in any wider format are accepted.
+     * The string isn't checked against any registry, so a valid code may not have been issued.
      *
-     * @param prefix  either 'V' for Villa, or 'A' for objects
-     * @param anuCode alphanumeric code, made up an arbitrary letter and two-digit number between 0-99.
-     * @param strRep
+     * @param code , string representation of the property code.
+     * @return the packed int, or INVALID_CODE if the string is null or isn't a valid property code.
      */
-    private PropertyCode(char prefix, String anuCode, String strRep) {
-        this.prefix = prefix;
-        this.anuCode = anuCode;
-        this.strRep = strRep;
+    public static int parse(CharSequence code) {
+        if (code == null) {
+            return INVALID_CODE;
+        }
+        int digits = code.length() - 3;
+        if (digits < DEFAULT_CODE_DIGITS || digits > MAX_CODE_DIGITS) {
+            return INVALID_CODE;
+        }
+        char prefix = code.charAt(0);
+        char letter = code.charAt(2);
+        if ((prefix != 'V' && prefix != 'A') || code.charAt(1) != '-' || letter < 'A' || letter > 'Z') {
+            return INVALID_CODE;
+        }
+        int value = letter - 'A';
+        for (int i = 3; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID_CODE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return pack(prefix, value, digits);
     }
 
     /**
-     * Static Factory method that returns a unique property code for the property type specified by the prefix.
-     * If the generated property code already exists in the system, it will generate a new one until a unique property code  is
-     * created that doesn't exist in the system. This new property code is then added to the property code Map.
-     * The method creates the property code as specified by the prefix and generates the alphanumeric code.
-     * Exception is thrown if the prefix is not 'V' or 'A'.
+     * Static Factory method that returns a unique property code for the property type specified by the prefix, from
+     * the registry shared by the whole program. This new property code is then added to the property code Map.
+     * Exception is thrown if the prefix is not 'V' or 'A', or if every code for the prefix has already been used.
+     * Property codes can be created from many threads at once.
      *
      * @param prefix
      * @return
      */
     public static PropertyCode getInstance(char prefix) {
-        if (prefix != 'V' && prefix != 'A') {
-            throw new IllegalArgumentException("Invalid property prefix. " +
-                    "Must be either 'V' for Villa, or 'A' for apartments.");
-        }
-        // set blank alphanumeric code and string representation of property code.
-        String anuCode = "";
-        String strRep = "";
-        while (strRep.isEmpty() || PROPERTYCODES.containsKey(strRep)) {
-            anuCode = generateANUCode();
-            strRep = prefix + "-" + anuCode;
+        return PropertyCodeRegistry.global().getInstance(prefix);
+    }
+
+    /**
+     * Static Factory method that returns the specified number of unique property codes for the property type specified
+     * by the prefix, from the registry shared by the whole program, reserving them all at once. Either every code is
+     * created, or none are.
+     * Exceptions are thrown if the prefix is not 'V' or 'A', if the count is negative, or if there are not enough codes
+     * left for the prefix.
+     *
+     * @param prefix, either 'V' for Villa, or 'A' for apartments.
+     * @param count,  number of property codes to create.
+     * @return a List of the new property codes.
+     */
+    public static List<PropertyCode> getInstances(char prefix, int count) {
+        return PropertyCodeRegistry.global().getInstances(prefix, count);
+    }
+
+    /**
+     * Static Factory method that recreates a property code that was created before in the registry shared by the whole
+     * program, for example when the system is restarted, so that it will not be generated again.
+     * Exceptions are thrown if the code is null, isn't a valid property code, or already exists in the system.
+     *
+     * @param code, string representation of the property code.
+     * @return the property code.
+     */
+    public static PropertyCode restore(String code) {
+        return PropertyCodeRegistry.global().restore(code);
+    }
+
+    /**
+     * Sets the number of digits used after the letter in newly generated alphanumeric codes, in the registry shared by
+     * the whole program.
+     * Exception is thrown if the number of digits is less than 2 or more than 7.
+     *
+     * @param digits, number of digits in the alphanumeric code.
+     */
+    public static void setCodeDigits(int digits) {
+        PropertyCodeRegistry.global().setCodeDigits(digits);
+    }
+
+    /**
+     * Returns the number of digits used after the letter in newly generated alphanumeric codes, in the registry shared
+     * by the whole program.
+     *
+     * @return an int
+     */
+    public static int getCodeDigits() {
+        return PropertyCodeRegistry.global().getCodeDigits();
+    }
+
+    /**
+     * Converts a value from an allocator into an alphanumeric code, made up of a capital letter followed by the
+     * value's remaining digits, padded with zeros to the specified number of digits.
+     *
+     * @param value,  position in the code space.
+     * @param digits, number of digits in the alphanumeric code.
+     * @return a String representing the alphanumeric code.
+     */
+    static String formatANUCode(int value, int digits) {
+        int scale = pow10(digits);
+        char[] code = new char[digits + 1];
+        code[0] = (char) ('A' + value / scale);
+        int number = value % scale;
+        for (int i = digits; i > 0; i--) {
+            code[i] = (char) ('0' + number % 10);
+            number /= 10;
         }
-        // when a unique property code has been generated, create property code object.
-        PropertyCode pc = new PropertyCode(prefix, anuCode, strRep);
-        PROPERTYCODES.put(strRep, pc);
-        return pc;
+        return new String(code);
+    }
 
+    static int pow10(int digits) {
+        int scale = 1;
+        for (int i = 0; i < digits; i++) {
+            scale *= 10;
+        }
+        return scale;
     }
 
     /**
-     * Called in the property code getInstance method, generates an arbitrary capital letter and two-digit number between 0-99.
+     * Generates an arbitrary capital letter and two-digit number between 0-99, in the default alphanumeric code format.
+     * Codes generated this way are not checked for uniqueness, the getInstance method should be used to create property codes.
      *
      * @return a String representing the alphanumeric code.
      */
     public static String generateANUCode() {
-        Random random = new Random();
-        char anucLetter = (char) ('A' + random.nextInt(26));
-        String anucDigits = String.format("%02d", random.nextInt(100));
-        return anucLetter + anucDigits;
+        return formatANUCode(RANDOM.nextInt(26 * pow10(DEFAULT_CODE_DIGITS)), DEFAULT_CODE_DIGITS);
     }
 
     /**
@@ -77,7 +218,7 @@ public final class PropertyCode {
      * @return a char representing prefix.
      */
     public char getPrefix() {
-        return prefix;
+        return prefixOf(packed);
     }
 
     /**
@@ -86,16 +227,26 @@ public final class PropertyCode {
      * @return a string representing the alphanumeric code.
      */
     public String getAnuCode() {
-        return anuCode;
+        return formatANUCode(positionOf(packed), digitsOf(packed));
+    }
+
+    /**
+     * Returns the property code packed into an int, as described in the class comment. Packed ints can be used as keys
+     * in place of property code objects, and are parsed from strings by parse.
+     *
+     * @return an int
+     */
+    public int toInt() {
+        return packed;
     }
 
     /**
-     * Returns a Map of property codes.
+     * Returns a Map of the property codes in the registry shared by the whole program.
      *
      * @return Map
      */
     public static Map<String, PropertyCode> getPropertyCodesMap() {
-        return Collections.unmodifiableMap(PROPERTYCODES);
+        return PropertyCodeRegistry.global().getPropertyCodesMap();
     }
 
     /**
@@ -105,6 +256,42 @@ public final class PropertyCode {
      */
     @Override
     public String toString() {
-        return strRep;
+        int digits = digitsOf(packed);
+        int scale = pow10(digits);
+        int value = positionOf(packed);
+        char[] code = new char[digits + 3];
+        code[0] = getPrefix();
+        code[1] = '-';
+        code[2] = (char) ('A' + value / scale);
+        int number = value % scale;
+        for (int i = digits + 2; i > 2; i--) {
+            code[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+        return new String(code);
+    }
+
+    /**
+     * Overriding the existing equals method to determine if two property code objects are the same. They are the same
+     * if their prefix and alphanumeric code are identical, which is when their packed ints are equal.
+     *
+     * @param o, the object to be compared.
+     * @return true if the property codes are equal, false if not.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PropertyCode)) return false;
+        return packed == ((PropertyCode) o).packed;
+    }
+
+    /**
+     * Overriding the existing hashCode method so two equal property codes have the same hash representation.
+     *
+     * @return an int
+     */
+    @Override
+    public int hashCode() {
+        return packed ^ (packed >>> 16);
     }
 }
@@ -0,0 +1,154 @@
+package uk.ac.ncl.tom.properties;
+
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * Class representing the allocator for one property code space, which hands out every value between 0 and the
+ * capacity in a random order, without storing anything for each value it hands out.
+ * The order is a keyed permutation of the code space: a counter is passed through a four round Feistel network over
+ * the smallest power of two with an even number of bits that covers the code space, and results outside the code
+ * space are passed through again until one lands inside it (cycle walking). Each counter value gives a different
+ * code, so a new code is found in constant expected time no matter how full the code space is.
+ * Values that are released are kept in an int array and handed out again before new ones. Values can also be
+ * reserved out of order when codes are restored, so the registry is asked whether a value is in use before it is
+ * handed out, and values that are skipped are simply dropped.
+ *
+ * @author Thomas Hague
+ */
+
+final class PropertyCodeAllocator {
+    private static final int ROUNDS = 4;
+
+    private final int capacity;
+    private final int halfBits;
+    private final int halfMask;
+    private final long domain;
+    private final int[] roundKeys = new int[ROUNDS];
+    private final IntPredicate inUse;
+    private long next;
+    private int allocated;
+    private int[] released = new int[0];
+    private int releasedCount;
+
+    /**
+     * Creates an allocator for a code space with the specified number of values.
+     *
+     * @param capacity, the number of codes in the code space.
+     * @param random,   source of randomness used to pick the order values are handed out in.
+     * @param inUse,    whether a value is in use, as values reserved by restore may come up again.
+     */
+    PropertyCodeAllocator(int capacity, Random random, IntPredicate inUse) {
+        this.capacity = capacity;
+        this.inUse = inUse;
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(capacity - 1, 1));
+        halfBits = (bits + 1) / 2;
+        halfMask = (1 << halfBits) - 1;
+        domain = 1L << (2 * halfBits);
+        for (int i = 0; i < ROUNDS; i++) {
+            roundKeys[i] = random.nextInt();
+        }
+    }
+
+    /**
+     * Allocates an arbitrary value that isn't in use, preferring values that have been released.
+     * Exception is thrown if every value in the code space is already in use.
+     *
+     * @return an int between 0 and the capacity.
+     */
+    int allocate() {
+        if (allocated == capacity) {
+            throw new IllegalStateException("All " + capacity + " codes have already been allocated.");
+        }
+        while (releasedCount > 0) {
+            int value = released[--releasedCount];
+            if (!inUse.test(value)) {
+                allocated++;
+                return value;
+            }
+        }
+        while (next < domain) {
+            int value = permute((int) next++);
+            if (value < capacity && !inUse.test(value)) {
+                allocated++;
+                return value;
+            }
+        }
+        // only reached if the registry and the allocator disagree about which values are in use.
+        throw new IllegalStateException("All " + capacity + " codes have already been allocated.");
+    }
+
+    /**
+     * Counts the specified value as allocated, when a code is restored. The value must not be in use, and must be in
+     * use by the time allocate is next called, so it is skipped if it comes up again.
+     *
+     * @param value, value to reserve.
+     */
+    void reserve(int value) {
+        checkValue(value);
+        allocated++;
+    }
+
+    /**
+     * Returns the specified value, which must be in use, to the code space so it can be allocated again.
+     *
+     * @param value, value to release.
+     */
+    void release(int value) {
+        checkValue(value);
+        if (releasedCount == released.length) {
+            int[] grown = new int[Math.max(16, releasedCount * 2)];
+            System.arraycopy(released, 0, grown, 0, releasedCount);
+            released = grown;
+        }
+        released[releasedCount++] = value;
+        allocated--;
+    }
+
+    /**
+     * Returns the number of values that have not been allocated yet.
+     *
+     * @return an int
+     */
+    int remaining() {
+        return capacity - allocated;
+    }
+
+    /**
+     * Returns the number of values in the code space.
+     *
+     * @return an int
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    private void checkValue(int value) {
+        if (value < 0 || value >= capacity) {
+            throw new IllegalArgumentException("Code " + value + " is outside of the code space.");
+        }
+    }
+
+    /**
+     * Returns the position of the specified counter value in the keyed permutation of the power of two domain. Each
+     * round swaps the two halves, mixing a hash of one half and the round's key into the other, which can always be
+     * undone, so no two counter values give the same result.
+     */
+    private int permute(int x) {
+        int left = x >>> halfBits;
+        int right = x & halfMask;
+        for (int key : roundKeys) {
+            int mixed = left ^ (round(right, key) & halfMask);
+            left = right;
+            right = mixed;
+        }
+        return left << halfBits | right;
+    }
+
+    private static int round(int half, int key) {
+        int h = (half ^ key) * 0x9E3779B9;
+        h ^= h >>> 15;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+}
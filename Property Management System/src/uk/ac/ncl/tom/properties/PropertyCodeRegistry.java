@@ -0,0 +1,278 @@
+package uk.ac.ncl.tom.properties;
+
+import uk.ac.ncl.tom.util.LongHashTable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Class representing the property codes issued for one portfolio, so that several Property Managers can each have
+ * their own codes in one program. The static methods of PropertyCode use a registry shared by the whole program.
+ * Codes of properties that are decommissioned are released, so they can be issued again and the registry only holds
+ * the codes in use. Only the packed ints of the codes in use are kept, as the keys of a LongHashTable, and a property
+ * code is created from its packed int when it is looked up, so a code is found from its string by parsing it, without
+ * creating a key. Property codes can be issued and released from many threads at once.
+ *
+ * @author Thomas Hague
+ */
+
+public final class PropertyCodeRegistry {
+    private static final PropertyCodeRegistry GLOBAL = new PropertyCodeRegistry();
+
+    private final LongHashTable<Boolean> propertyCodes = new LongHashTable<>();
+    private final Map<String, PropertyCode> propertyCodesByString = new PropertyCodesByString();
+    private final Map<String, PropertyCodeAllocator> allocators = new HashMap<>();
+    private final Random random = new Random();
+    private int codeDigits = PropertyCode.DEFAULT_CODE_DIGITS;
+
+    /**
+     * Creates an empty registry.
+     */
+    public PropertyCodeRegistry() {
+    }
+
+    /**
+     * Returns the registry shared by the whole program, used by the static methods of PropertyCode.
+     *
+     * @return the PropertyCodeRegistry
+     */
+    public static PropertyCodeRegistry global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns a unique property code for the property type specified by the prefix.
+     * The alphanumeric code is drawn from an allocator for the prefix and current code format, which hands out the
+     * codes in the code space in a random order without storing anything per code, so a unique code is found in
+     * constant time however many codes have already been used.
+     * Exception is thrown if the prefix is not 'V' or 'A', or if every code for the prefix is in use.
+     *
+     * @param prefix, either 'V' for Villa, or 'A' for apartments.
+     * @return the property code.
+     */
+    public synchronized PropertyCode getInstance(char prefix) {
+        return getInstances(prefix, 1).get(0);
+    }
+
+    /**
+     * Returns the specified number of unique property codes for the property type specified by the prefix, reserving
+     * them all at once. Either every code is created, or none are.
+     * Exceptions are thrown if the prefix is not 'V' or 'A', if the count is negative, or if there are not enough codes
+     * left for the prefix.
+     *
+     * @param prefix, either 'V' for Villa, or 'A' for apartments.
+     * @param count,  number of property codes to create.
+     * @return a List of the new property codes.
+     */
+    public synchronized List<PropertyCode> getInstances(char prefix, int count) {
+        if (prefix != 'V' && prefix != 'A') {
+            throw new IllegalArgumentException("Invalid property prefix. " +
+                    "Must be either 'V' for Villa, or 'A' for apartments.");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Number of property codes can't be negative.");
+        }
+        int digits = codeDigits;
+        PropertyCodeAllocator allocator = getAllocator(prefix, digits);
+        if (allocator.remaining() < count) {
+            throw new IllegalStateException("Only " + allocator.remaining() + " of " + allocator.capacity() +
+                    " property codes with prefix '" + prefix + "' are left. Use setCodeDigits to allow wider property codes.");
+        }
+        List<PropertyCode> codes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PropertyCode pc = new PropertyCode(PropertyCode.pack(prefix, allocator.allocate(), digits));
+            propertyCodes.put(pc.toInt(), Boolean.TRUE);
+            codes.add(pc);
+        }
+        return codes;
+    }
+
+    /**
+     * Recreates a property code that was issued before, for example when the system is restarted, so that it will not
+     * be issued again. Codes in the default format such as "V-A12" and in any wider format are accepted.
+     * Exceptions are thrown if the code is null, isn't a valid property code, or is already in use.
+     *
+     * @param code, string representation of the property code.
+     * @return the property code.
+     */
+    public synchronized PropertyCode restore(String code) {
+        if (code == null) {
+            throw new IllegalArgumentException("Property code can't be null.");
+        }
+        int packed = PropertyCode.parse(code);
+        if (packed == PropertyCode.INVALID_CODE) {
+            throw new IllegalArgumentException("Invalid property code: " + code);
+        }
+        if (propertyCodes.containsKey(packed)) {
+            throw new IllegalArgumentException("Property code " + code + " already exists.");
+        }
+        allocatorOf(packed).reserve(PropertyCode.positionOf(packed));
+        propertyCodes.put(packed, Boolean.TRUE);
+        return new PropertyCode(packed);
+    }
+
+    /**
+     * Releases the specified property code, once its property has been decommissioned, so it can be issued again.
+     * Exception is thrown if the property code is null.
+     *
+     * @param pc, property code to release.
+     * @return true if the code was in use and has been released, false if it wasn't issued by this registry.
+     */
+    public synchronized boolean release(PropertyCode pc) {
+        if (pc == null) {
+            throw new IllegalArgumentException("Property code can't be null.");
+        }
+        if (propertyCodes.remove(pc.toInt()) == null) {
+            return false;
+        }
+        allocatorOf(pc.toInt()).release(PropertyCode.positionOf(pc.toInt()));
+        return true;
+    }
+
+    /**
+     * Returns the property code in use with the specified string representation.
+     *
+     * @param code, string representation of the property code.
+     * @return the property code, or null if no such property code is in use.
+     */
+    public PropertyCode valueOf(String code) {
+        return valueOf(PropertyCode.parse(code));
+    }
+
+    /**
+     * Returns the property code in use with the specified packed int, as a new property code equal to the one issued.
+     *
+     * @param packed , the property code packed into an int.
+     * @return the property code, or null if no such property code is in use.
+     */
+    public PropertyCode valueOf(int packed) {
+        if (packed == PropertyCode.INVALID_CODE || !propertyCodes.containsKey(packed)) {
+            return null;
+        }
+        return new PropertyCode(packed);
+    }
+
+    /**
+     * Returns a Map of the property codes in use, keyed by their string representation. Looking a code up in the map
+     * parses the string, and iterating over it goes over a copy of the packed codes, creating each code and its string.
+     *
+     * @return an unmodifiable Map
+     */
+    public Map<String, PropertyCode> getPropertyCodesMap() {
+        return propertyCodesByString;
+    }
+
+    /**
+     * Sets the number of digits used after the letter in newly generated alphanumeric codes. The default of 2 digits
+     * allows 2,600 property codes per prefix, and each extra digit allows 10 times as many.
+     * Property codes that have already been generated in another format are still valid, and will not be generated again.
+     * Exception is thrown if the number of digits is less than 2 or more than 7.
+     *
+     * @param digits, number of digits in the alphanumeric code.
+     */
+    public synchronized void setCodeDigits(int digits) {
+        if (digits < PropertyCode.DEFAULT_CODE_DIGITS || digits > PropertyCode.MAX_CODE_DIGITS) {
+            throw new IllegalArgumentException("Property codes must have between " + PropertyCode.DEFAULT_CODE_DIGITS +
+                    " and " + PropertyCode.MAX_CODE_DIGITS + " digits.");
+        }
+        codeDigits = digits;
+    }
+
+    /**
+     * Returns the number of digits used after the letter in newly generated alphanumeric codes.
+     *
+     * @return an int
+     */
+    public synchronized int getCodeDigits() {
+        return codeDigits;
+    }
+
+    /**
+     * Returns the allocator for the specified prefix and number of digits, creating it if it doesn't exist yet.
+     *
+     * @param prefix, either 'V' or 'A'.
+     * @param digits, number of digits in the alphanumeric code.
+     * @return the allocator for that code space.
+     */
+    private PropertyCodeAllocator getAllocator(char prefix, int digits) {
+        String key = prefix + "" + digits;
+        PropertyCodeAllocator allocator = allocators.get(key);
+        if (allocator == null) {
+            allocator = new PropertyCodeAllocator(26 * PropertyCode.pow10(digits), random,
+                    value -> propertyCodes.containsKey(PropertyCode.pack(prefix, value, digits)));
+            allocators.put(key, allocator);
+        }
+        return allocator;
+    }
+
+    /**
+     * Returns the allocator for the code space of the property code packed into the specified int.
+     *
+     * @param packed , a packed property code.
+     * @return the allocator for that code space.
+     */
+    private PropertyCodeAllocator allocatorOf(int packed) {
+        return getAllocator(PropertyCode.prefixOf(packed), PropertyCode.digitsOf(packed));
+    }
+
+    /**
+     * Class representing the property codes in use as an unmodifiable Map keyed by their string representation.
+     */
+    private final class PropertyCodesByString extends AbstractMap<String, PropertyCode> {
+
+        @Override
+        public PropertyCode get(Object key) {
+            return key instanceof String ? valueOf((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return propertyCodes.size();
+        }
+
+        @Override
+        public Set<Entry<String, PropertyCode>> entrySet() {
+            return new AbstractSet<Entry<String, PropertyCode>>() {
+                @Override
+                public Iterator<Entry<String, PropertyCode>> iterator() {
+                    long[] codes = propertyCodes.keys();
+                    return new Iterator<Entry<String, PropertyCode>>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < codes.length;
+                        }
+
+                        @Override
+                        public Entry<String, PropertyCode> next() {
+                            if (next == codes.length) {
+                                throw new NoSuchElementException();
+                            }
+                            PropertyCode pc = new PropertyCode((int) codes[next++]);
+                            return new SimpleImmutableEntry<>(pc.toString(), pc);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return propertyCodes.size();
+                }
+            };
+        }
+    }
+}
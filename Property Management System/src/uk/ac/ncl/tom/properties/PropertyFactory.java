@@ -1,25 +1,54 @@
 package uk.ac.ncl.tom.properties;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Abstract class providing partial implementation of Property.
+ * A property's state is kept in a property store, so property objects only hold the store and the property's id, and
+ * two objects with the same store and id are views of the same property.
  *
  * @author Thomas Hague
  */
 
 public abstract class PropertyFactory implements Property {
-    private boolean isRented;
-    private Date terminationDate;
+    private final PropertyStore store;
+    private final int id;
     public static final String labelVilla = "Villa";
     public static final String labelApartment = "Apartment";
 
     /**
-     * Creates a Property Factory object.
+     * Creates a Property Factory object that is a view of the property with the specified id in the specified property
+     * store.
+     *
+     * @param store, property store that holds the property's state.
+     * @param id,    of the property in the property store.
+     */
+    PropertyFactory(PropertyStore store, int id) {
+        this.store = store;
+        this.id = id;
+    }
+
+    /**
+     * Returns the property store that holds this property's state.
+     *
+     * @return the PropertyStore
      */
-    PropertyFactory() {
-        this.isRented = false;
-        this.terminationDate = null;
+    PropertyStore store() {
+        return store;
+    }
+
+    /**
+     * Returns the property's id in the property store.
+     *
+     * @return an int
+     */
+    @Override
+    public int getId() {
+        return id;
     }
 
     /**
@@ -30,13 +59,102 @@ public abstract class PropertyFactory implements Property {
      * @return an account of the specified type, either a Villa or Apartment.
      */
     public static Property getInstance(String label) {
+        return getInstance(label, PropertyCodeRegistry.global(), PropertyStore.global());
+    }
+
+    /**
+     * Static Factory method that returns a property of the specified type, with a property code issued by the
+     * specified registry, kept in the specified property store.
+     * If the label doesn't match either a Villa or Apartment, or the registry or store is null, an exception is thrown.
+     *
+     * @param label,         representing the relevant property type.
+     * @param propertyCodes, registry the property code is issued by.
+     * @param store,         property store the property is kept in.
+     * @return a property of the specified type, either a Villa or Apartment.
+     */
+    public static Property getInstance(String label, PropertyCodeRegistry propertyCodes, PropertyStore store) {
         if (!label.equalsIgnoreCase(labelVilla) && !label.equalsIgnoreCase(labelApartment)) {
             throw new IllegalArgumentException("Invalid property type: " + label + ", please try again.");
         }
+        if (propertyCodes == null) {
+            throw new IllegalArgumentException("Property code registry can't be null.");
+        }
+        checkStore(store);
         if (label.equalsIgnoreCase(labelVilla)) {
-            return new Villa();
+            return new Villa(store, propertyCodes.getInstance('V'));
         } else {
-            return new Apartment();
+            return new Apartment(store, propertyCodes.getInstance('A'));
+        }
+    }
+
+    /**
+     * Static Factory method that recreates a property of the specified type with a property code that has already been
+     * created, for example when the system is restarted, in the specified property store.
+     * If the label doesn't match either a Villa or Apartment, the code's prefix doesn't match the label, or the store
+     * is null, an exception is thrown.
+     *
+     * @param label,        representing the relevant property type.
+     * @param propertyCode, the property's existing code.
+     * @param store,        property store the property is kept in.
+     * @return a property of the specified type, either a Villa or Apartment.
+     */
+    public static Property restore(String label, PropertyCode propertyCode, PropertyStore store) {
+        if (!label.equalsIgnoreCase(labelVilla) && !label.equalsIgnoreCase(labelApartment)) {
+            throw new IllegalArgumentException("Invalid property type: " + label + ", please try again.");
+        }
+        boolean isVilla = label.equalsIgnoreCase(labelVilla);
+        if (propertyCode.getPrefix() != (isVilla ? 'V' : 'A')) {
+            throw new IllegalArgumentException("Property code " + propertyCode + " is not for a " + label);
+        }
+        checkStore(store);
+        return isVilla ? new Villa(store, propertyCode) : new Apartment(store, propertyCode);
+    }
+
+    /**
+     * Static Factory method that returns the specified number of properties of the specified type, with their property
+     * codes reserved all at once.
+     * If the label doesn't match either a Villa or Apartment, or the count is negative, an exception is thrown.
+     *
+     * @param label, representing the relevant property type.
+     * @param count, number of properties to create.
+     * @return a List of properties of the specified type, either Villas or Apartments.
+     */
+    public static List<Property> getInstances(String label, int count) {
+        return getInstances(label, count, PropertyCodeRegistry.global(), PropertyStore.global());
+    }
+
+    /**
+     * Static Factory method that returns the specified number of properties of the specified type, with their property
+     * codes reserved all at once in the specified registry, kept in the specified property store.
+     * If the label doesn't match either a Villa or Apartment, the count is negative, or the registry or store is null,
+     * an exception is thrown.
+     *
+     * @param label,         representing the relevant property type.
+     * @param count,         number of properties to create.
+     * @param propertyCodes, registry the property codes are issued by.
+     * @param store,         property store the properties are kept in.
+     * @return a List of properties of the specified type, either Villas or Apartments.
+     */
+    public static List<Property> getInstances(String label, int count, PropertyCodeRegistry propertyCodes,
+                                              PropertyStore store) {
+        if (!label.equalsIgnoreCase(labelVilla) && !label.equalsIgnoreCase(labelApartment)) {
+            throw new IllegalArgumentException("Invalid property type: " + label + ", please try again.");
+        }
+        if (propertyCodes == null) {
+            throw new IllegalArgumentException("Property code registry can't be null.");
+        }
+        checkStore(store);
+        boolean isVilla = label.equalsIgnoreCase(labelVilla);
+        List<Property> created = new ArrayList<>(count);
+        for (PropertyCode pc : propertyCodes.getInstances(isVilla ? 'V' : 'A', count)) {
+            created.add(isVilla ? new Villa(store, pc) : new Apartment(store, pc));
+        }
+        return created;
+    }
+
+    private static void checkStore(PropertyStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException("Property store can't be null.");
         }
     }
 
@@ -55,7 +173,7 @@ public abstract class PropertyFactory implements Property {
      */
     @Override
     public boolean isRented() {
-        return isRented;
+        return store().isRented(id);
     }
 
     /**
@@ -73,13 +191,27 @@ public abstract class PropertyFactory implements Property {
     public abstract String getPropertyType();
 
     /**
-     * Returns the termination date for the rental contract .
+     * Returns the termination date for the rental contract, at the start of the day in the system time zone.
      *
-     * @return a Date
+     * @return a Date, or null if the property isn't rented.
      */
     @Override
     public Date getTerminationDate() {
-        return terminationDate;
+        long terminationDay = getTerminationDay();
+        if (terminationDay == NO_TERMINATION_DAY) {
+            return null;
+        }
+        return Date.from(LocalDate.ofEpochDay(terminationDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * Returns the termination date for the rental contract, as the number of days since the epoch.
+     *
+     * @return a long, or NO_TERMINATION_DAY if the property isn't rented.
+     */
+    @Override
+    public long getTerminationDay() {
+        return store().terminationDay(id);
     }
 
     /**
@@ -89,17 +221,54 @@ public abstract class PropertyFactory implements Property {
      */
     @Override
     public void setRented(boolean rented) {
-        this.isRented = rented;
+        store().setRented(id, rented);
     }
 
     /**
-     * Setter method to set a new termination date of a rental.
+     * Setter method to set a new termination date of a rental. Only the day of the date is kept, in the system time
+     * zone.
      *
-     * @param terminationDate of the rental
+     * @param terminationDate of the rental, or null if the property isn't rented.
      */
     @Override
     public void setTerminationDate(Date terminationDate) {
-        this.terminationDate = terminationDate;
+        setTerminationDay(terminationDate == null ? NO_TERMINATION_DAY
+                : terminationDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay());
+    }
+
+    /**
+     * Setter method to set a new termination date of a rental, as the number of days since the epoch.
+     *
+     * @param terminationDay of the rental, or NO_TERMINATION_DAY if the property isn't rented.
+     */
+    @Override
+    public void setTerminationDay(long terminationDay) {
+        store().setTerminationDay(id, terminationDay);
+    }
+
+    /**
+     * Overriding the existing equals method to determine if two property objects are the same. They are the same if
+     * they are views of the same property in the same property store.
+     *
+     * @param o, the object to be compared.
+     * @return true if the properties are equal, false if not.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PropertyFactory)) return false;
+        PropertyFactory other = (PropertyFactory) o;
+        return id == other.id && store == other.store;
+    }
+
+    /**
+     * Overriding the existing hashCode method so two views of the same property have the same hash representation.
+     *
+     * @return an int
+     */
+    @Override
+    public int hashCode() {
+        return id;
     }
 
 }
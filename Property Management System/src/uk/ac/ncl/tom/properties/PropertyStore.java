@@ -0,0 +1,442 @@
+package uk.ac.ncl.tom.properties;
+
+/**
+ * Class representing a store that holds the state of a set of properties, one primitive column per field, indexed by a
+ * dense int id given to each property when it is created. Villa and Apartment objects are flyweight views holding
+ * only their id, so a property costs a few bytes in each column rather than an object with its own fields, and
+ * scanning a column reads memory in order instead of following a pointer per property. Property codes are kept packed
+ * into ints too, and views and property codes are only created when they are asked for.
+ * Columns are split into fixed-size chunks that are never moved once created, so growing the store never copies
+ * existing properties and a column can be read while properties are being added. Changing a property's state must
+ * be guarded by the caller, as with any other property object.
+ * The id of a property that is released is reused by the next property added, so views of a released property must
+ * not be used once it has been released.
+ * Each Property Manager and shard keeps its properties in a store of its own, so adding properties to different
+ * Property Managers never contends on one lock, and a Property Manager's properties are freed along with it. Properties
+ * created by the property factory without a store are kept in a store shared by the whole program.
+ *
+ * @author Thomas Hague
+ */
+
+public final class PropertyStore {
+    static final byte VILLA = 0;
+    static final byte APARTMENT = 1;
+    private static final byte RELEASED = -1;
+
+    private static final byte RENTED = 1;
+    private static final byte CLEAN_POOL = 2;
+    private static final int NO_TERMINATION_DAY = Integer.MIN_VALUE;
+
+    /**
+     * Availability slot of a property that isn't in any availability index.
+     */
+    public static final int NO_SLOT = -1;
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final PropertyStore GLOBAL = new PropertyStore();
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile int size;
+    private int[] releasedIds = new int[0];
+    private int releasedCount;
+
+    /**
+     * Creates an empty property store.
+     */
+    public PropertyStore() {
+    }
+
+    /**
+     * Returns the store shared by the whole program, used by the property factory methods that aren't given a store.
+     *
+     * @return the PropertyStore
+     */
+    public static PropertyStore global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Adds a property of the specified type with the specified code to the store. It is free to be rented, and if it
+     * is a Villa, its pool is clean. The id of the most recently released property is reused if there is one.
+     *
+     * @param type,         VILLA or APARTMENT.
+     * @param propertyCode, the property's code.
+     * @param deposit,      the property's deposit.
+     * @return the property's id.
+     */
+    synchronized int add(byte type, PropertyCode propertyCode, int deposit) {
+        if (releasedCount > 0) {
+            int id = releasedIds[--releasedCount];
+            fill(chunks[id >>> CHUNK_BITS], id & CHUNK_MASK, type, propertyCode, deposit);
+            return id;
+        }
+        int id = size;
+        int c = id >>> CHUNK_BITS;
+        Chunk[] current = chunks;
+        if (c == current.length) {
+            Chunk[] grown = new Chunk[c + 1];
+            System.arraycopy(current, 0, grown, 0, c);
+            grown[c] = new Chunk();
+            current = grown;
+            chunks = grown;
+        }
+        fill(current[c], id & CHUNK_MASK, type, propertyCode, deposit);
+        size = id + 1;
+        return id;
+    }
+
+    /**
+     * Releases the property with the specified id, once it has been decommissioned, so its id can be given to the
+     * next property added. The property must not be rented.
+     * Exceptions are thrown if there is no property with that id, or if it is rented.
+     *
+     * @param id , of the property.
+     */
+    public synchronized void release(int id) {
+        Chunk chunk = chunk(id);
+        int i = id & CHUNK_MASK;
+        if ((chunk.flags[i] & RENTED) != 0) {
+            throw new IllegalArgumentException("Property " + new PropertyCode(chunk.codes[i])
+                    + " is rented and can't be released.");
+        }
+        chunk.types[i] = RELEASED;
+        chunk.flags[i] = 0;
+        chunk.codes[i] = 0;
+        chunk.slots[i] = NO_SLOT;
+        if (releasedCount == releasedIds.length) {
+            int[] grown = new int[Math.max(16, releasedCount * 2)];
+            System.arraycopy(releasedIds, 0, grown, 0, releasedCount);
+            releasedIds = grown;
+        }
+        releasedIds[releasedCount++] = id;
+    }
+
+    /**
+     * Sets every column of the specified slot for a newly added property.
+     */
+    private static void fill(Chunk chunk, int i, byte type, PropertyCode propertyCode, int deposit) {
+        chunk.types[i] = type;
+        chunk.flags[i] = type == VILLA ? CLEAN_POOL : 0;
+        chunk.terminationDays[i] = NO_TERMINATION_DAY;
+        chunk.deposits[i] = deposit;
+        chunk.codes[i] = propertyCode.toInt();
+        chunk.slots[i] = NO_SLOT;
+    }
+
+    /**
+     * Returns a view of the property with the specified id.
+     * Exception is thrown if there is no property with that id.
+     *
+     * @param id , of the property.
+     * @return a Villa or Apartment.
+     */
+    public Property view(int id) {
+        byte type = type(id);
+        if (type == RELEASED) {
+            throw new IllegalArgumentException("No property with id " + id);
+        }
+        return type == VILLA ? new Villa(this, id) : new Apartment(this, id);
+    }
+
+    /**
+     * Returns a view of the property with the specified id, if it is still in the store with the specified code. Used
+     * when the id was looked up by code without holding a lock, so the property may have been released, and its id
+     * reused, in the meantime.
+     *
+     * @param id         , of the property.
+     * @param packedCode , the code the property was looked up by, packed into an int.
+     * @return a Villa or Apartment, or null if there is no property with that id and code.
+     */
+    public Property viewWithCode(int id, int packedCode) {
+        if (id < 0 || id >= size) {
+            return null;
+        }
+        Chunk chunk = chunks[id >>> CHUNK_BITS];
+        int i = id & CHUNK_MASK;
+        byte type = chunk.types[i];
+        if (type == RELEASED || chunk.codes[i] != packedCode) {
+            return null;
+        }
+        return type == VILLA ? new Villa(this, id) : new Apartment(this, id);
+    }
+
+    /**
+     * Returns the property code of the property with the specified id, packed into an int as by PropertyCode.toInt,
+     * without creating a property code.
+     * Exception is thrown if there is no property with that id.
+     *
+     * @param id , of the property.
+     * @return an int
+     */
+    public int packedCode(int id) {
+        return chunk(id).codes[id & CHUNK_MASK];
+    }
+
+    /**
+     * Returns the slot of the property with the specified id in the availability index of its type. Each index numbers
+     * its own properties densely, so it only grows with the properties of its type rather than with every property in
+     * the store.
+     * Exception is thrown if there is no property with that id.
+     *
+     * @param id , of the property.
+     * @return an int, or NO_SLOT if the property isn't in an availability index.
+     */
+    public int availabilitySlot(int id) {
+        return chunk(id).slots[id & CHUNK_MASK];
+    }
+
+    /**
+     * Sets the slot of the property with the specified id in the availability index of its type. Must be guarded by the
+     * same lock as the index.
+     * Exception is thrown if there is no property with that id.
+     *
+     * @param id   , of the property.
+     * @param slot , in the availability index, or NO_SLOT once the property has been taken out of it.
+     */
+    public void setAvailabilitySlot(int id, int slot) {
+        chunk(id).slots[id & CHUNK_MASK] = slot;
+    }
+
+    /**
+     * Returns the number of ids handed out by the store, including the ids of released properties that are waiting
+     * to be reused.
+     *
+     * @return an int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a copy of the type, flag, code and termination day columns of every id handed out by the store, made
+     * with one bulk copy per chunk of each column rather than a view per property. Must be called while holding the
+     * locks guarding the properties' state, if the copy has to be consistent with it.
+     *
+     * @return the Columns
+     */
+    public synchronized Columns copyColumns() {
+        int n = size;
+        Columns copy = new Columns(n);
+        for (int c = 0; c * CHUNK_SIZE < n; c++) {
+            Chunk chunk = chunks[c];
+            int from = c * CHUNK_SIZE;
+            int length = Math.min(CHUNK_SIZE, n - from);
+            System.arraycopy(chunk.types, 0, copy.types, from, length);
+            System.arraycopy(chunk.flags, 0, copy.flags, from, length);
+            System.arraycopy(chunk.codes, 0, copy.codes, from, length);
+            System.arraycopy(chunk.terminationDays, 0, copy.terminationDays, from, length);
+        }
+        return copy;
+    }
+
+    /**
+     * Counts the properties of the specified type that are, or aren't, rented, by scanning the type and flag columns.
+     * Exception is thrown if the property type is neither "Villa" nor "Apartment".
+     *
+     * @param propertyType , either Villa or Apartment.
+     * @param rented       , whether to count rented properties or free ones.
+     * @return an int
+     */
+    public int count(String propertyType, boolean rented) {
+        byte type = typeOf(propertyType);
+        byte wanted = rented ? RENTED : 0;
+        int n = size;
+        Chunk[] current = chunks;
+        int count = 0;
+        for (int c = 0; c * CHUNK_SIZE < n; c++) {
+            Chunk chunk = current[c];
+            int end = Math.min(CHUNK_SIZE, n - c * CHUNK_SIZE);
+            for (int i = 0; i < end; i++) {
+                if (chunk.types[i] == type && (chunk.flags[i] & RENTED) == wanted) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    byte type(int id) {
+        return chunk(id).types[id & CHUNK_MASK];
+    }
+
+    PropertyCode code(int id) {
+        return new PropertyCode(packedCode(id));
+    }
+
+    int deposit(int id) {
+        return chunk(id).deposits[id & CHUNK_MASK];
+    }
+
+    boolean isRented(int id) {
+        return (chunk(id).flags[id & CHUNK_MASK] & RENTED) != 0;
+    }
+
+    void setRented(int id, boolean rented) {
+        setFlag(id, RENTED, rented);
+    }
+
+    boolean isCleanPool(int id) {
+        return (chunk(id).flags[id & CHUNK_MASK] & CLEAN_POOL) != 0;
+    }
+
+    void setCleanPool(int id, boolean cleanPool) {
+        setFlag(id, CLEAN_POOL, cleanPool);
+    }
+
+    /**
+     * Returns the termination day of the property with the specified id.
+     *
+     * @return a long, or Property.NO_TERMINATION_DAY if it isn't rented.
+     */
+    long terminationDay(int id) {
+        int day = chunk(id).terminationDays[id & CHUNK_MASK];
+        return day == NO_TERMINATION_DAY ? Property.NO_TERMINATION_DAY : day;
+    }
+
+    /**
+     * Sets the termination day of the property with the specified id. Days are stored as ints, which covers several
+     * million years either side of the epoch.
+     * Exception is thrown if the day doesn't fit.
+     */
+    void setTerminationDay(int id, long terminationDay) {
+        int day;
+        if (terminationDay == Property.NO_TERMINATION_DAY) {
+            day = NO_TERMINATION_DAY;
+        } else if (terminationDay > Integer.MIN_VALUE && terminationDay <= Integer.MAX_VALUE) {
+            day = (int) terminationDay;
+        } else {
+            throw new IllegalArgumentException("Termination day " + terminationDay + " is out of range.");
+        }
+        chunk(id).terminationDays[id & CHUNK_MASK] = day;
+    }
+
+    private void setFlag(int id, byte flag, boolean value) {
+        Chunk chunk = chunk(id);
+        int i = id & CHUNK_MASK;
+        chunk.flags[i] = (byte) (value ? chunk.flags[i] | flag : chunk.flags[i] & ~flag);
+    }
+
+    private Chunk chunk(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("No property with id " + id);
+        }
+        return chunks[id >>> CHUNK_BITS];
+    }
+
+    /**
+     * Returns the type column value for the specified property type.
+     * Exception is thrown if the property type is neither "Villa" nor "Apartment".
+     */
+    static byte typeOf(String propertyType) {
+        if (PropertyFactory.labelVilla.equalsIgnoreCase(propertyType)) {
+            return VILLA;
+        }
+        if (PropertyFactory.labelApartment.equalsIgnoreCase(propertyType)) {
+            return APARTMENT;
+        }
+        throw new IllegalArgumentException("Invalid property type: " + propertyType + ", please try again.");
+    }
+
+    /**
+     * Class representing a copy of the columns of a store, taken by copyColumns, indexed by property id. The ids of
+     * released properties are included, so they must be skipped.
+     */
+    public static final class Columns {
+        private final byte[] types;
+        private final byte[] flags;
+        private final int[] codes;
+        private final int[] terminationDays;
+
+        private Columns(int size) {
+            types = new byte[size];
+            flags = new byte[size];
+            codes = new int[size];
+            terminationDays = new int[size];
+        }
+
+        /**
+         * Returns the number of ids in the copy.
+         *
+         * @return an int
+         */
+        public int size() {
+            return types.length;
+        }
+
+        /**
+         * Returns whether the property with the specified id had been released when the copy was taken.
+         *
+         * @param id , of the property.
+         * @return true if there was no property with that id, false if there was.
+         */
+        public boolean isReleased(int id) {
+            return types[id] == RELEASED;
+        }
+
+        /**
+         * Returns the type of the property with the specified id.
+         *
+         * @param id , of the property.
+         * @return either Villa or Apartment.
+         */
+        public String propertyType(int id) {
+            return types[id] == VILLA ? PropertyFactory.labelVilla : PropertyFactory.labelApartment;
+        }
+
+        /**
+         * Returns the code of the property with the specified id, as a new property code.
+         *
+         * @param id , of the property.
+         * @return the PropertyCode
+         */
+        public PropertyCode code(int id) {
+            return new PropertyCode(codes[id]);
+        }
+
+        /**
+         * Returns whether the property with the specified id was rented.
+         *
+         * @param id , of the property.
+         * @return true if it was rented, false if not.
+         */
+        public boolean isRented(int id) {
+            return (flags[id] & RENTED) != 0;
+        }
+
+        /**
+         * Returns whether the property with the specified id is a Villa whose pool was clean.
+         *
+         * @param id , of the property.
+         * @return true if its pool was clean, false if not or if it is an Apartment.
+         */
+        public boolean isCleanPool(int id) {
+            return (flags[id] & CLEAN_POOL) != 0;
+        }
+
+        /**
+         * Returns the termination day of the property with the specified id.
+         *
+         * @param id , of the property.
+         * @return a long, or Property.NO_TERMINATION_DAY if it wasn't rented.
+         */
+        public long terminationDay(int id) {
+            int day = terminationDays[id];
+            return day == NO_TERMINATION_DAY ? Property.NO_TERMINATION_DAY : day;
+        }
+    }
+
+    /**
+     * Class representing one chunk of every column.
+     */
+    private static final class Chunk {
+        private final byte[] types = new byte[CHUNK_SIZE];
+        private final byte[] flags = new byte[CHUNK_SIZE];
+        private final int[] terminationDays = new int[CHUNK_SIZE];
+        private final int[] deposits = new int[CHUNK_SIZE];
+        private final int[] codes = new int[CHUNK_SIZE];
+        private final int[] slots = new int[CHUNK_SIZE];
+    }
+}
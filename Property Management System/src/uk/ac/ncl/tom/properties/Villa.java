@@ -7,18 +7,34 @@ package uk.ac.ncl.tom.properties;
  */
 
 public class Villa extends PropertyFactory {
-    private final PropertyCode propertyCode;
     private static final int deposit = 500;
-    private boolean cleanPool;
     private static final String propertyType = "Villa";
 
     /**
      * Creates a Villa object and its Property code.
      */
     Villa() {
-        super();
-        this.propertyCode = PropertyCode.getInstance('V');
-        this.cleanPool = true;
+        this(PropertyStore.global(), PropertyCode.getInstance('V'));
+    }
+
+    /**
+     * Creates a Villa object with the specified Property code, in the specified property store.
+     *
+     * @param store,        property store the Villa is kept in.
+     * @param propertyCode, a Villa property code that has already been created.
+     */
+    Villa(PropertyStore store, PropertyCode propertyCode) {
+        super(store, store.add(PropertyStore.VILLA, propertyCode, deposit));
+    }
+
+    /**
+     * Creates a view of the Villa with the specified id in the specified property store.
+     *
+     * @param store, property store the Villa is kept in.
+     * @param id,    of a Villa that is already in the property store.
+     */
+    Villa(PropertyStore store, int id) {
+        super(store, id);
     }
 
     /**
@@ -29,7 +45,7 @@ public class Villa extends PropertyFactory {
      */
     @Override
     public PropertyCode getPropertyCode() {
-        return propertyCode;
+        return store().code(getId());
     }
 
     /**
@@ -39,7 +55,7 @@ public class Villa extends PropertyFactory {
      */
     @Override
     public int getDeposit() {
-        return deposit;
+        return store().deposit(getId());
     }
 
     /**
@@ -58,7 +74,7 @@ public class Villa extends PropertyFactory {
      * @return true if the pool is clean and false if it needs cleaning.
      */
     public boolean getCleanPool() {
-        return cleanPool;
+        return store().isCleanPool(getId());
     }
 
     /**
@@ -67,7 +83,7 @@ public class Villa extends PropertyFactory {
      * @param cleanPool , new status of the pool's cleanliness.
      */
     public void setCleanPool(boolean cleanPool) {
-        this.cleanPool = cleanPool;
+        store().setCleanPool(getId(), cleanPool);
     }
 
     /**
@@ -9,6 +9,7 @@ package uk.ac.ncl.tom.tenants;
 public final class Name {
     private final String firstName;
     private final String lastName;
+    private final int hash;
 
     /**
      * Creates a Name object using specified first name and last name.
@@ -32,6 +33,7 @@ public final class Name {
         }
         this.firstName = firstName;
         this.lastName = lastName;
+        this.hash = hashOf(firstName, lastName);
     }
 
     /**
@@ -74,21 +76,32 @@ public final class Name {
         if (this == o) return true;
         if (!(o instanceof Name)) return false;
         final Name n = (Name) o;
-        return getFirstName().equals(n.getFirstName()) && getLastName().equals(n.getLastName());
+        return hash == n.hash && firstName.equals(n.firstName) && lastName.equals(n.lastName);
     }
 
     /**
      * Overriding the existing hashCode method so two equal name objects will have the same hash representation,
-     * using the same parameters as the Name equals method.
+     * using the same parameters as the Name equals method. The hash is calculated once when the name is created.
      *
      * @return an int
      */
     @Override
     public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Calculates the hash representation of a name made up of the specified first name and last name.
+     *
+     * @param firstName
+     * @param lastName
+     * @return an int
+     */
+    private static int hashOf(String firstName, String lastName) {
         int hc = 19;
         int mult = 31;
-        hc = mult * hc + getFirstName().hashCode();
-        return mult * hc + getLastName().hashCode();
+        hc = mult * hc + firstName.hashCode();
+        return mult * hc + lastName.hashCode();
     }
 
     /**
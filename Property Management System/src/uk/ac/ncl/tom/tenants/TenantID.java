@@ -1,85 +1,152 @@
 package uk.ac.ncl.tom.tenants;
 
-import java.util.HashMap;
-import java.util.*;
-import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Class representing a tenants ID.
+ * A tenant ID is held as a single packed long: the top 32 bits hold the two initials, the next 13 bits the year of
+ * issue and the low 19 bits the serial number, so a tenant ID costs one small object and can be used as a primitive
+ * key. Two tenant IDs are equal if their packed longs are.
  *
  * @author Thomas Hague
  */
 
 public final class TenantID {
-    private final String initials;
-    private final int yearOfIssue;
-    private final String serialNumber;
-    private final String strRep;
-    private static final Map<String, TenantID> TENANTIDs = new HashMap<>();
+    private final long packed;
 
     /**
-     * Creates a tenant ID using the specified parameters.
+     * Packed long returned by parse for a string that isn't a valid tenant ID. No tenant ID packs to it, as its serial
+     * number is above MAX_SERIAL_NUMBER.
+     */
+    public static final long INVALID_ID = -1L;
+
+    /**
+     * Largest year of issue and serial number that fit in a packed tenant ID.
+     */
+    public static final int MAX_YEAR_OF_ISSUE = (1 << 13) - 1;
+    public static final int MAX_SERIAL_NUMBER = (1 << 19) - 2;
+
+    private static final int YEAR_SHIFT = 19;
+    private static final int INITIALS_SHIFT = 32;
+
+    /**
+     * Creates a tenant ID from its packed long.
+     *
+     * @param packed , the tenant ID packed by pack.
+     */
+    TenantID(long packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * Packs a tenant ID into a long.
      *
-     * @param initials     of the tenant
-     * @param yearOfIssue  year the ID was created.
-     * @param serialNumber random two-digit number
-     * @param strRep       String representation of the tenant ID
+     * @param first       , first initial.
+     * @param last        , last initial.
+     * @param yearOfIssue , between 0 and MAX_YEAR_OF_ISSUE.
+     * @param serial      , between 0 and MAX_SERIAL_NUMBER.
+     * @return a long
      */
-    private TenantID(String initials, int yearOfIssue, String serialNumber, String strRep) {
-        this.initials = initials;
-        this.yearOfIssue = yearOfIssue;
-        this.serialNumber = serialNumber;
-        this.strRep = strRep;
+    static long pack(char first, char last, int yearOfIssue, int serial) {
+        return (long) first << 48 | (long) last << INITIALS_SHIFT | (long) yearOfIssue << YEAR_SHIFT | serial;
     }
 
     /**
-     * Static Factory method that returns a unique Tenant ID for the specified name.
-     * If the generated tenantID already exists in the system, it will generate a new one until a unique tenant ID is
-     * created that doesn't exist in the system. This new tenant ID is then added to the Tenant ID Map.
+     * Parses the string representation of a tenant ID, such as "TH.2025.07", into its packed long without creating
+     * any objects. Only the form tenant IDs are written in is accepted: two initials, the year of issue, and a serial
+     * number with at least two digits and no other leading zeros.
+     * The string isn't checked against any registry, so a valid tenant ID may not have been issued.
+     *
+     * @param tenantID , string representation of the tenant ID.
+     * @return the packed long, or INVALID_ID if the string is null or isn't a valid tenant ID.
+     */
+    public static long parse(CharSequence tenantID) {
+        if (tenantID == null || tenantID.length() < 7 || tenantID.charAt(2) != '.') {
+            return INVALID_ID;
+        }
+        int dot = 3;
+        while (dot < tenantID.length() && tenantID.charAt(dot) != '.') {
+            dot++;
+        }
+        int year = parseNumber(tenantID, 3, dot, 1);
+        int serial = parseNumber(tenantID, dot + 1, tenantID.length(), 2);
+        if (year < 0 || year > MAX_YEAR_OF_ISSUE || serial < 0 || serial > MAX_SERIAL_NUMBER) {
+            return INVALID_ID;
+        }
+        return pack(tenantID.charAt(0), tenantID.charAt(1), year, serial);
+    }
+
+    /**
+     * Parses the digits between the specified positions as a number, which must be written with the specified
+     * minimum number of digits and no more leading zeros than that needs.
+     *
+     * @return the number, or -1 if the characters aren't a number in that form or it is too large.
+     */
+    private static int parseNumber(CharSequence s, int from, int to, int minDigits) {
+        int length = to - from;
+        if (length < minDigits || length > 7 || (length > minDigits && s.charAt(from) == '0')) {
+            return -1;
+        }
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    /**
+     * Static Factory method that returns a unique Tenant ID for the specified name, from the registry shared by the
+     * whole program. This new tenant ID is then added to the Tenant ID Map.
      * The method calculates the initials based on the specified name, sets the year of issue to the date of creation
-     * and generates the alphanumeric code.
+     * and generates the serial number.
      * Exception is thrown if name is null
+     * Tenant IDs can be created from many threads at once.
      *
      * @param name , made up of first name and last name.
      * @return the tenant ID
      */
     public static TenantID getInstance(Name name) {
-        if (name == null) {
-            throw new IllegalArgumentException("Name can't be null");
-        }
-        String initials = "" + name.getFirstName().charAt(0) + name.getLastName().charAt(0);
-        int yearOfIssue = generateYearOfIssue();
-        // set serial number and string representation of tenant ID.
-        String serialNumber = "";
-        String strRep = "";
-        while (strRep.isEmpty() || TENANTIDs.containsKey(strRep)) {
-            serialNumber = generateSerialNumber();
-            strRep = initials + "." + yearOfIssue + "." + serialNumber;
-        }
-        // when a unique tenant ID has been generated, create tenant ID object.
-        TenantID tID = new TenantID(initials, yearOfIssue, serialNumber, strRep);
-        TENANTIDs.put(strRep, tID);
-        return tID;
+        return TenantIDRegistry.global().getInstance(name);
+    }
+
+    /**
+     * Static Factory method that returns a unique Tenant ID for each of the specified names, in the same order, from
+     * the registry shared by the whole program, issuing them all at once with a single year of issue.
+     * Exception is thrown if the list or any of its names is null, in which case no tenant IDs are created.
+     *
+     * @param names , each made up of first name and last name.
+     * @return a List of the tenant IDs
+     */
+    public static List<TenantID> getInstances(List<Name> names) {
+        return TenantIDRegistry.global().getInstances(names);
     }
 
     /**
-     * Called in the tenant ID getInstance method, that calculates the appropriate year of Issue as the current year.
+     * Static Factory method that recreates a tenant ID that was issued before in the registry shared by the whole
+     * program, for example when the system is restarted, so that it will not be issued again.
+     * Exceptions are thrown if the tenant ID is null, isn't a valid tenant ID, or already exists in the system.
      *
-     * @return an int representing the year the ID was issued
+     * @param tenantID , string representation of the tenant ID, made up of initials, year of issue and serial number.
+     * @return the tenant ID
      */
-    private static int generateYearOfIssue() {
-        Calendar cal = Calendar.getInstance();
-        return cal.get(Calendar.YEAR);
+    public static TenantID restore(String tenantID) {
+        return TenantIDRegistry.global().restore(tenantID);
     }
 
     /**
-     * Called in the tenant ID getInstance method, generates a random two-digit number between 0-99.
+     * Returns the existing tenant ID with the specified string representation, in the registry shared by the whole
+     * program.
      *
-     * @return a String representing the serial number.
+     * @param tenantID , string representation of the tenant ID.
+     * @return the tenant ID, or null if no such tenant ID exists.
      */
-    private static String generateSerialNumber() {
-        Random random = new Random();
-        return String.format("%02d", random.nextInt(100));
+    public static TenantID valueOf(String tenantID) {
+        return TenantIDRegistry.global().valueOf(tenantID);
     }
 
     /**
@@ -88,7 +155,7 @@ public final class TenantID {
      * @return a string representing the tenants initials.
      */
     public String getInitials() {
-        return initials;
+        return new String(new char[]{(char) (packed >>> 48), (char) (packed >>> INITIALS_SHIFT)});
     }
 
     /**
@@ -97,7 +164,7 @@ public final class TenantID {
      * @return an int representing the year of issue.
      */
     public int getYearOfIssue() {
-        return yearOfIssue;
+        return (int) (packed >>> YEAR_SHIFT) & MAX_YEAR_OF_ISSUE;
     }
 
     /**
@@ -106,16 +173,36 @@ public final class TenantID {
      * @return an int representing serial number.
      */
     public String getSerialNumber() {
-        return serialNumber;
+        int serial = serial();
+        return serial < 10 ? "0" + serial : Integer.toString(serial);
+    }
+
+    /**
+     * Returns the serial number as an int.
+     *
+     * @return an int
+     */
+    int serial() {
+        return (int) packed & ((1 << YEAR_SHIFT) - 1);
+    }
+
+    /**
+     * Returns the tenant ID packed into a long, as described in the class comment. Packed longs can be used as keys
+     * in place of tenant ID objects, and are parsed from strings by parse.
+     *
+     * @return a long
+     */
+    public long toLong() {
+        return packed;
     }
 
     /**
-     * Returns a Map of tenant IDs
+     * Returns a Map of the tenant IDs in the registry shared by the whole program.
      *
      * @return Map
      */
-    public Map<String, TenantID> getTenantIDsMap() {
-        return Collections.unmodifiableMap(TENANTIDs);
+    public static Map<String, TenantID> getTenantIDsMap() {
+        return TenantIDRegistry.global().getTenantIDsMap();
     }
 
     /**
@@ -125,6 +212,42 @@ public final class TenantID {
      */
     @Override
     public String toString() {
-        return strRep;
+        return getInitials() + "." + getYearOfIssue() + "." + getSerialNumber();
+    }
+
+    /**
+     * Overriding the existing equals method to determine if two tenant ID objects are the same. They are the same if
+     * initials, year of issue and serial number are all identical, which is when their packed longs are equal.
+     *
+     * @param o, the object to be compared.
+     * @return true if the tenant IDs are equal, false if not.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TenantID)) return false;
+        return packed == ((TenantID) o).packed;
+    }
+
+    /**
+     * Overriding the existing hashCode method so two equal tenant ID objects will have the same hash representation.
+     *
+     * @return an int
+     */
+    @Override
+    public int hashCode() {
+        return hashOf(packed);
+    }
+
+    /**
+     * Returns the hash representation of the tenant ID packed into the specified long, mixing its bits so tenant IDs
+     * that differ only in their serial number are spread out.
+     *
+     * @param packed , a packed tenant ID.
+     * @return an int
+     */
+    static int hashOf(long packed) {
+        long h = packed * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
     }
 }
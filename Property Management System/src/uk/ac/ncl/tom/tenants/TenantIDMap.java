@@ -0,0 +1,204 @@
+package uk.ac.ncl.tom.tenants;
+
+import uk.ac.ncl.tom.util.LongHashTable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Class representing a Map keyed by tenant ID, which stores each key as the tenant ID's packed long in a LongHashTable,
+ * so looking up a tenant neither boxes a key nor compares strings, and can be done with a packed long parsed straight
+ * from a string. Lookups don't take a lock, and the Map can be used from many threads at once. Iterating over the Map
+ * goes through a copy of its entries taken when the iteration starts.
+ * Null keys and values aren't allowed.
+ *
+ * @param <V> the type of the values.
+ * @author Thomas Hague
+ */
+
+public final class TenantIDMap<V> extends AbstractMap<TenantID, V> {
+    private final LongHashTable<V> table = new LongHashTable<>();
+
+    /**
+     * Creates an empty Map.
+     */
+    public TenantIDMap() {
+    }
+
+    /**
+     * Returns the value for the tenant ID packed into the specified long.
+     *
+     * @param tenantID , a tenant ID packed into a long, as returned by TenantID.toLong or TenantID.parse.
+     * @return the value, or null if the tenant ID isn't in the Map.
+     */
+    public V get(long tenantID) {
+        return table.get(tenantID);
+    }
+
+    /**
+     * Returns the value for the specified tenant ID.
+     *
+     * @param key , the tenant ID.
+     * @return the value, or null if the key isn't a tenant ID in the Map.
+     */
+    @Override
+    public V get(Object key) {
+        return key instanceof TenantID ? get(((TenantID) key).toLong()) : null;
+    }
+
+    /**
+     * Returns a boolean indicating whether the tenant ID packed into the specified long is in the Map.
+     *
+     * @param tenantID , a tenant ID packed into a long.
+     * @return true if the tenant ID is in the Map, false if not.
+     */
+    public boolean containsKey(long tenantID) {
+        return table.containsKey(tenantID);
+    }
+
+    /**
+     * Returns a boolean indicating whether the specified tenant ID is in the Map.
+     *
+     * @param key , the tenant ID.
+     * @return true if the key is a tenant ID in the Map, false if not.
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Adds the specified value to the Map under the specified tenant ID, replacing any value already there.
+     * Exception is thrown if the tenant ID or value is null.
+     *
+     * @param key   , the tenant ID.
+     * @param value , the value.
+     * @return the value that was replaced, or null if the tenant ID wasn't in the Map.
+     */
+    @Override
+    public V put(TenantID key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Tenant ID and value can't be null");
+        }
+        return table.put(key.toLong(), value);
+    }
+
+    /**
+     * Removes the entry for the specified tenant ID.
+     *
+     * @param key , the tenant ID.
+     * @return the value that was removed, or null if the key isn't a tenant ID in the Map.
+     */
+    @Override
+    public V remove(Object key) {
+        return key instanceof TenantID ? table.remove(((TenantID) key).toLong()) : null;
+    }
+
+    /**
+     * Removes the entry for the specified tenant ID, only if it has the specified value.
+     *
+     * @param key   , the tenant ID.
+     * @param value , the value the entry must have.
+     * @return true if the entry was removed, false if not.
+     */
+    @Override
+    public boolean remove(Object key, Object value) {
+        return key instanceof TenantID && table.remove(((TenantID) key).toLong(), value);
+    }
+
+    /**
+     * Returns the number of entries in the Map.
+     *
+     * @return an int
+     */
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Returns a boolean indicating whether the Map is empty.
+     *
+     * @return true if the Map has no entries, false otherwise.
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes every entry from the Map.
+     */
+    @Override
+    public void clear() {
+        table.clear();
+    }
+
+    /**
+     * Returns a Set of the entries in the Map. Iterating over it goes through a copy of the entries taken when the
+     * iteration starts, and removing an entry through the iterator removes it from the Map.
+     *
+     * @return a Set of the entries
+     */
+    @Override
+    public Set<Entry<TenantID, V>> entrySet() {
+        return new AbstractSet<Entry<TenantID, V>>() {
+            @Override
+            public Iterator<Entry<TenantID, V>> iterator() {
+                Iterator<Entry<TenantID, V>> entries = entries().iterator();
+                return new Iterator<Entry<TenantID, V>>() {
+                    private Entry<TenantID, V> last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Entry<TenantID, V> next() {
+                        last = entries.next();
+                        return last;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException("next hasn't been called");
+                        }
+                        TenantIDMap.this.remove(last.getKey(), last.getValue());
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return TenantIDMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Passes each value in the Map to the specified action, holding the table's read lock, so entries can't be added
+     * or removed while it runs and no copy of the entries is made. The action must not change the Map.
+     *
+     * @param action , called for each value.
+     */
+    public void forEachValue(Consumer<? super V> action) {
+        table.forEachValue(action);
+    }
+
+    /**
+     * Returns a copy of the entries in the Map. The tenant ID of each entry is created from its packed long.
+     */
+    private List<Entry<TenantID, V>> entries() {
+        List<Entry<TenantID, V>> entries = new ArrayList<>(table.size());
+        table.forEach((tenantID, value) -> entries.add(new SimpleImmutableEntry<>(new TenantID(tenantID), value)));
+        return entries;
+    }
+}
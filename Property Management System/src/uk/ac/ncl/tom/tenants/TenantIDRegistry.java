@@ -0,0 +1,291 @@
+package uk.ac.ncl.tom.tenants;
+
+import java.time.Year;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class representing the tenant IDs issued for one portfolio, so that several Property Managers can each have their
+ * own tenants in one program. The static methods of TenantID use a registry shared by the whole program.
+ * Tenant IDs of tenants that are decommissioned are released so the registry only holds the IDs in use, but their
+ * serial numbers are never issued again, as an old tenant ID may still be found in records kept outside the system.
+ * Tenant IDs are kept by their packed long, so finding one from its string doesn't create any objects.
+ * Tenant IDs can be issued and released from many threads at once.
+ *
+ * @author Thomas Hague
+ */
+
+public final class TenantIDRegistry {
+    private static final TenantIDRegistry GLOBAL = new TenantIDRegistry();
+
+    private final TenantIDMap<TenantID> tenantIDs = new TenantIDMap<>();
+    /**
+     * Next serial number for each pair of initials and year of issue, keyed by the packed tenant ID with serial 0.
+     */
+    private final Map<Long, Integer> nextSerialNumbers = new HashMap<>();
+
+    /**
+     * Creates an empty registry.
+     */
+    public TenantIDRegistry() {
+    }
+
+    /**
+     * Returns the registry shared by the whole program, used by the static methods of TenantID.
+     *
+     * @return the TenantIDRegistry
+     */
+    public static TenantIDRegistry global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns a unique Tenant ID for the specified name, issued this year by the system clock.
+     * Exception is thrown if name is null
+     *
+     * @param name , made up of first name and last name.
+     * @return the tenant ID
+     */
+    public TenantID getInstance(Name name) {
+        return getInstance(name, Year.now().getValue());
+    }
+
+    /**
+     * Returns a unique Tenant ID for the specified name and year of issue.
+     * Serial numbers are issued in order from a counter kept for each pair of initials and year of issue, so a unique
+     * tenant ID is created in constant time however many tenants share the same initials.
+     * Exceptions are thrown if name is null or the year of issue is outside of 0-MAX_YEAR_OF_ISSUE.
+     *
+     * @param name        , made up of first name and last name.
+     * @param yearOfIssue year the ID is being issued, normally taken from the Property Manager's clock.
+     * @return the tenant ID
+     */
+    public synchronized TenantID getInstance(Name name, int yearOfIssue) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name can't be null");
+        }
+        checkYearOfIssue(yearOfIssue);
+        return create(name, yearOfIssue);
+    }
+
+    /**
+     * Returns a unique Tenant ID for each of the specified names, in the same order, issued this year by the system
+     * clock.
+     * Exceptions are thrown if the list or any of its names is null, or if the serial numbers run out for any of the
+     * names, in which case no tenant IDs are created.
+     *
+     * @param names , each made up of first name and last name.
+     * @return a List of the tenant IDs
+     */
+    public List<TenantID> getInstances(List<Name> names) {
+        return getInstances(names, Year.now().getValue());
+    }
+
+    /**
+     * Returns a unique Tenant ID for each of the specified names, in the same order, issuing them all at once with a
+     * single year of issue.
+     * Exceptions are thrown if the list or any of its names is null, if the year of issue is outside of
+     * 0-MAX_YEAR_OF_ISSUE, or if the serial numbers run out for any of the names, in which case no tenant IDs are
+     * created.
+     *
+     * @param names       , each made up of first name and last name.
+     * @param yearOfIssue year the IDs are being issued, normally taken from the Property Manager's clock.
+     * @return a List of the tenant IDs
+     */
+    public synchronized List<TenantID> getInstances(List<Name> names, int yearOfIssue) {
+        if (names == null || names.contains(null)) {
+            throw new IllegalArgumentException("Names can't be null");
+        }
+        checkYearOfIssue(yearOfIssue);
+        List<TenantID> tIDs = new ArrayList<>(names.size());
+        try {
+            for (Name name : names) {
+                tIDs.add(create(name, yearOfIssue));
+            }
+        } catch (IllegalStateException e) {
+            for (TenantID tID : tIDs) {
+                tenantIDs.remove(tID);
+            }
+            throw e;
+        }
+        return tIDs;
+    }
+
+    /**
+     * Recreates a tenant ID that was issued before, for example when the system is restarted, so that it will not be
+     * issued again. New tenant IDs with the same initials and year of issue are given serial numbers after the
+     * restored one.
+     * Exceptions are thrown if the tenant ID is null, isn't a valid tenant ID as described by TenantID.parse, or is
+     * already in use.
+     *
+     * @param tenantID , string representation of the tenant ID, made up of initials, year of issue and serial number.
+     * @return the tenant ID
+     */
+    public synchronized TenantID restore(String tenantID) {
+        if (tenantID == null) {
+            throw new IllegalArgumentException("Tenant ID can't be null");
+        }
+        long packed = TenantID.parse(tenantID);
+        if (packed == TenantID.INVALID_ID) {
+            throw new IllegalArgumentException("Invalid tenant ID: " + tenantID);
+        }
+        if (tenantIDs.containsKey(packed)) {
+            throw new IllegalArgumentException("Tenant ID " + tenantID + " already exists.");
+        }
+        TenantID tID = new TenantID(packed);
+        long initialsAndYear = packed - tID.serial();
+        Integer next = nextSerialNumbers.get(initialsAndYear);
+        if (next == null || next <= tID.serial()) {
+            nextSerialNumbers.put(initialsAndYear, tID.serial() + 1);
+        }
+        tenantIDs.put(tID, tID);
+        return tID;
+    }
+
+    /**
+     * Releases the specified tenant ID, once its tenant has been decommissioned. The tenant ID is no longer in use,
+     * but its serial number will not be issued again.
+     * Exception is thrown if the tenant ID is null.
+     *
+     * @param tID , tenant ID to release.
+     * @return true if the tenant ID was in use and has been released, false if it wasn't issued by this registry.
+     */
+    public boolean release(TenantID tID) {
+        if (tID == null) {
+            throw new IllegalArgumentException("Tenant ID can't be null");
+        }
+        return tenantIDs.remove(tID, tID);
+    }
+
+    /**
+     * Returns the tenant ID in use with the specified string representation.
+     *
+     * @param tenantID , string representation of the tenant ID.
+     * @return the tenant ID, or null if no such tenant ID is in use.
+     */
+    public TenantID valueOf(String tenantID) {
+        long packed = TenantID.parse(tenantID);
+        return packed == TenantID.INVALID_ID ? null : tenantIDs.get(packed);
+    }
+
+    /**
+     * Returns the tenant ID in use with the specified packed long.
+     *
+     * @param tenantID , a tenant ID packed into a long, as returned by TenantID.toLong or TenantID.parse.
+     * @return the tenant ID, or null if no such tenant ID is in use.
+     */
+    public TenantID valueOf(long tenantID) {
+        return tenantIDs.get(tenantID);
+    }
+
+    /**
+     * Returns a Map of the tenant IDs in use, keyed by their string representation.
+     *
+     * @return an unmodifiable Map
+     */
+    public Map<String, TenantID> getTenantIDsMap() {
+        return new TenantIDsByString();
+    }
+
+    /**
+     * Creates a tenant ID for the specified name and year of issue, with the next serial number, and adds it to the
+     * Tenant ID Map.
+     *
+     * @param name        , made up of first name and last name.
+     * @param yearOfIssue year the ID is being created.
+     * @return the tenant ID
+     */
+    private TenantID create(Name name, int yearOfIssue) {
+        long initialsAndYear = TenantID.pack(name.getFirstName().charAt(0), name.getLastName().charAt(0),
+                yearOfIssue, 0);
+        TenantID tID = new TenantID(initialsAndYear + generateSerialNumber(initialsAndYear));
+        tenantIDs.put(tID, tID);
+        return tID;
+    }
+
+    /**
+     * Checks that the specified year of issue fits in a tenant ID.
+     *
+     * @param yearOfIssue year the ID is being issued.
+     */
+    private static void checkYearOfIssue(int yearOfIssue) {
+        if (yearOfIssue < 0 || yearOfIssue > TenantID.MAX_YEAR_OF_ISSUE) {
+            throw new IllegalArgumentException("Year of issue " + yearOfIssue + " is outside of 0-"
+                    + TenantID.MAX_YEAR_OF_ISSUE + ".");
+        }
+    }
+
+    /**
+     * Returns the next serial number for the specified initials and year of issue. The first 100 serial numbers are
+     * written as two-digit numbers between 00-99, after which serial numbers carry on from 100 with as many digits as
+     * they need.
+     * Exception is thrown if every serial number for the initials and year of issue has been issued.
+     *
+     * @param initialsAndYear, the tenant ID's initials and year of issue, packed with serial number 0.
+     * @return an int representing the serial number.
+     */
+    private int generateSerialNumber(long initialsAndYear) {
+        Integer next = nextSerialNumbers.get(initialsAndYear);
+        int serial = next == null ? 0 : next;
+        if (serial > TenantID.MAX_SERIAL_NUMBER) {
+            throw new IllegalStateException("All " + (TenantID.MAX_SERIAL_NUMBER + 1)
+                    + " serial numbers have been issued for these initials this year.");
+        }
+        nextSerialNumbers.put(initialsAndYear, serial + 1);
+        return serial;
+    }
+
+    /**
+     * Class representing the tenant IDs in use as an unmodifiable Map keyed by their string representation.
+     */
+    private final class TenantIDsByString extends AbstractMap<String, TenantID> {
+
+        @Override
+        public TenantID get(Object key) {
+            return key instanceof String ? valueOf((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return tenantIDs.size();
+        }
+
+        @Override
+        public Set<Entry<String, TenantID>> entrySet() {
+            return new AbstractSet<Entry<String, TenantID>>() {
+                @Override
+                public Iterator<Entry<String, TenantID>> iterator() {
+                    Iterator<TenantID> tIDs = tenantIDs.values().iterator();
+                    return new Iterator<Entry<String, TenantID>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return tIDs.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, TenantID> next() {
+                            TenantID tID = tIDs.next();
+                            return new SimpleImmutableEntry<>(tID.toString(), tID);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return tenantIDs.size();
+                }
+            };
+        }
+    }
+}
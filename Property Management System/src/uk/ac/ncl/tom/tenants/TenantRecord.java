@@ -1,5 +1,7 @@
 package uk.ac.ncl.tom.tenants;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
 
 /**
@@ -10,12 +12,14 @@ import java.util.Date;
 
 public final class TenantRecord {
     private final Name name;
-    private final Date dateOfBirth;
+    private final long dateOfBirth;
     private final TenantID tenantID;
     private final boolean premiumClass;
+    private final int hash;
 
     /**
      * Creates a tenant record using the specified parameters.
+     * The date of birth is stored as a day, so the time of day of the specified date is not kept.
      * Exception is thrown if date of birth is null.
      *
      * @param name
@@ -23,14 +27,82 @@ public final class TenantRecord {
      * @param isPremium
      */
     public TenantRecord(Name name, Date dateOfBirth, boolean isPremium) {
-        if (dateOfBirth == null) {
-            throw new IllegalArgumentException("Date of birth can't be null");
-        }
+        this(name, dateOfBirth, isPremium, null);
+    }
+
+    /**
+     * Creates a tenant record using the specified parameters, with a tenant ID that has already been issued for the
+     * tenant's name. If the tenant ID is null, a new one is issued.
+     * Exceptions are thrown if date of birth is null, or if the tenant ID's initials don't match the name.
+     *
+     * @param name
+     * @param dateOfBirth
+     * @param isPremium
+     * @param tenantID
+     */
+    public TenantRecord(Name name, Date dateOfBirth, boolean isPremium, TenantID tenantID) {
+        this(name, toEpochDay(nonNull(dateOfBirth)), isPremium, tenantID);
+    }
+
+    /**
+     * Creates a tenant record using the specified parameters, with the date of birth given as the number of days since
+     * the epoch (1970-01-01), and a tenant ID that has already been issued for the tenant's name. If the tenant ID is
+     * null, a new one is issued.
+     * Exception is thrown if the tenant ID's initials don't match the name.
+     *
+     * @param name
+     * @param dateOfBirthDay
+     * @param isPremium
+     * @param tenantID
+     */
+    public TenantRecord(Name name, long dateOfBirthDay, boolean isPremium, TenantID tenantID) {
         Name n = new Name(name.getFirstName(), name.getLastName());
+        if (tenantID != null && (tenantID.getInitials().charAt(0) != n.getFirstName().charAt(0)
+                || tenantID.getInitials().charAt(1) != n.getLastName().charAt(0))) {
+            throw new IllegalArgumentException("Tenant ID " + tenantID + " was not issued for " + n);
+        }
         this.name = n;
-        this.dateOfBirth = dateOfBirth;
-        this.tenantID = TenantID.getInstance(n);
+        this.dateOfBirth = dateOfBirthDay;
+        this.tenantID = tenantID == null ? TenantID.getInstance(n) : tenantID;
         this.premiumClass = isPremium;
+        this.hash = hashOf(name.hashCode(), this.dateOfBirth);
+    }
+
+    /**
+     * Converts the specified date into the number of days since the epoch (1970-01-01), in the system time zone.
+     *
+     * @param date
+     * @return a long representing the day of the date.
+     */
+    public static long toEpochDay(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Checks the specified date of birth isn't null, before it is converted into a day.
+     * Exception is thrown if it is.
+     *
+     * @param dateOfBirth
+     * @return the date of birth.
+     */
+    private static Date nonNull(Date dateOfBirth) {
+        if (dateOfBirth == null) {
+            throw new IllegalArgumentException("Date of birth can't be null");
+        }
+        return dateOfBirth;
+    }
+
+    /**
+     * Calculates the hash representation of a tenant record with the specified name hash and date of birth.
+     *
+     * @param nameHash       hash representation of the tenants name
+     * @param dateOfBirthDay tenants date of birth, in days since the epoch
+     * @return an int
+     */
+    private static int hashOf(int nameHash, long dateOfBirthDay) {
+        int hc = 19;
+        hc = 31 * hc + nameHash;
+        return hc * 31 + Long.hashCode(dateOfBirthDay);
     }
 
     /**
@@ -43,12 +115,21 @@ public final class TenantRecord {
     }
 
     /**
-     * Returns the tenant's date of birth.
+     * Returns the tenant's date of birth, at the start of the day.
      *
      * @return Date.
      */
     public Date getDateOfBirth() {
-        return (Date) dateOfBirth.clone();
+        return Date.from(LocalDate.ofEpochDay(dateOfBirth).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * Returns the tenant's date of birth as the number of days since the epoch (1970-01-01).
+     *
+     * @return a long.
+     */
+    public long getDateOfBirthEpochDay() {
+        return dateOfBirth;
     }
 
     /**
@@ -92,20 +173,19 @@ public final class TenantRecord {
         if (this == o) return true;
         if (!(o instanceof TenantRecord)) return false;
         final TenantRecord tR = (TenantRecord) o;
-        return getName().equals(tR.getName()) && getDateOfBirth().equals(tR.getDateOfBirth());
+        return hash == tR.hash && dateOfBirth == tR.dateOfBirth && name.equals(tR.name);
     }
 
     /**
      * Overriding the existing hashCode method so two tenant record objects will have the same hash representation
-     * if they are equal, using the same parameters as the tenant record equal method.
+     * if they are equal, using the same parameters as the tenant record equal method. The hash is calculated once
+     * when the tenant record is created.
      *
      * @return an int
      */
     @Override
     public int hashCode() {
-        int hc = 19;
-        hc = 31 * hc + getName().hashCode();
-        return hc * 31 + getDateOfBirth().hashCode();
+        return hash;
     }
 
 
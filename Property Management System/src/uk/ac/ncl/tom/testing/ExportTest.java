@@ -0,0 +1,224 @@
+package uk.ac.ncl.tom.testing;
+
+import uk.ac.ncl.tom.events.RentalEventListener;
+import uk.ac.ncl.tom.management.PropertyManager;
+import uk.ac.ncl.tom.persistence.ExportFormat;
+import uk.ac.ncl.tom.persistence.ExportWriter;
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+public class ExportTest {
+    String villaPropertyType = "Villa";
+    String apartmentPropertyType = "Apartment";
+
+    public static void main(String[] args) throws Exception {
+        ExportTest exportTest = new ExportTest();
+        System.out.println("Test exporting to CSV");
+        exportTest.testExportCsv();
+        System.out.println("Test exporting to the binary format");
+        exportTest.testExportBinary();
+        System.out.println("Test exporting while rentals are issued and terminated");
+        exportTest.testExportWhileBooking();
+    }
+
+    private void testExportCsv() throws IOException {
+        PropertyManager pm = PropertyManager.newInstance(RentalEventListener.NONE);
+        Property villa = pm.addProperty(villaPropertyType);
+        Property apartment = pm.addProperty(apartmentPropertyType);
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.MARCH, 3);
+        TenantRecord tR = pm.addTenantRecord("Smith, Jr", "O\"Neil", cal.getTime(), true);
+        Assertions.assertTrue(pm.issueRentalContract(tR, apartmentPropertyType, 5));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // test normal case: each property, tenant and rental is written as a line, after the header comments
+        Assertions.assertEquals(4, pm.exportRecords(Channels.newChannel(out), ExportFormat.CSV));
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        Assertions.assertEquals(7, lines.length);
+        Assertions.assertTrue(lines[0].startsWith("# property,"));
+        String ends = LocalDate.now().plusDays(5).toString();
+        Set<String> properties = new HashSet<>();
+        properties.add(lines[3]);
+        properties.add(lines[4]);
+        Assertions.assertTrue(properties.contains("property," + villa.getPropertyCode() + ",Villa,false,true,"));
+        Assertions.assertTrue(properties.contains("property," + apartment.getPropertyCode()
+                + ",Apartment,true,true," + ends));
+        // test normal case: names holding commas and quotes are quoted
+        Assertions.assertEquals("tenant," + tR.getTenantID() + ",\"Smith, Jr\",\"O\"\"Neil\",1980-03-03,true",
+                lines[5]);
+        Assertions.assertEquals("rental," + tR.getTenantID() + "," + apartment.getPropertyCode() + "," + ends,
+                lines[6]);
+        // test normal case: a decommissioned property is left out, even though its id is still in the property store
+        pm.decommissionProperty(villa.getPropertyCode());
+        out.reset();
+        Assertions.assertEquals(3, pm.exportRecords(Channels.newChannel(out), ExportFormat.CSV));
+        Assertions.assertFalse(new String(out.toByteArray(), StandardCharsets.UTF_8).contains(
+                villa.getPropertyCode().toString()));
+        // test exception case: null channel or format, and finishing an export twice
+        try {
+            pm.exportRecords(null, ExportFormat.CSV);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        ExportWriter writer = new ExportWriter(Channels.newChannel(out), ExportFormat.CSV);
+        writer.finish();
+        try {
+            writer.finish();
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalStateException.class, t);
+        }
+    }
+
+    private void testExportBinary() throws IOException {
+        PropertyManager pm = PropertyManager.newInstance(RentalEventListener.NONE);
+        pm.getPropertyCodes().setCodeDigits(4);
+        pm.addProperties(apartmentPropertyType, 3000);
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.MARCH, 3);
+        List<TenantRecord> renting = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            TenantRecord tR = pm.addTenantRecord("Zo\u00eb" + i, "\u00c9lan \ud83c\udfe0", cal.getTime(), false);
+            if (i % 2 == 0) {
+                Assertions.assertTrue(pm.issueRentalContract(tR, apartmentPropertyType, 10 + i % 7));
+                renting.add(tR);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // test complicated normal case: an export larger than the writer's buffer
+        Assertions.assertEquals(3000 + 2000 + 1000, pm.exportRecords(Channels.newChannel(out), ExportFormat.BINARY));
+        byte[] bytes = out.toByteArray();
+        Assertions.assertTrue(bytes.length > ExportWriter.BUFFER_SIZE);
+        // test normal case: the checksum covers everything before it
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        Assertions.assertEquals(0x504D5358, in.readInt());
+        Assertions.assertEquals(1, in.readByte());
+        int[] counts = new int[4];
+        Map<String, String> rentals = new HashMap<>();
+        Set<String> rented = new HashSet<>();
+        String name = null;
+        int tag;
+        while ((tag = in.readByte()) != 0) {
+            counts[tag]++;
+            if (tag == 1) {
+                String code = readShortString(in);
+                int flags = in.readByte();
+                int day = in.readInt();
+                Assertions.assertEquals(1, flags & 1);
+                if ((flags & 2) != 0) {
+                    rented.add(code);
+                    Assertions.assertTrue(day > LocalDate.now().toEpochDay());
+                }
+            } else if (tag == 2) {
+                readShortString(in);
+                name = readName(in);
+                Assertions.assertEquals("\u00c9lan \ud83c\udfe0", readName(in));
+                Assertions.assertEquals((int) LocalDate.of(1980, 3, 3).toEpochDay(), in.readInt());
+                Assertions.assertEquals(0, in.readByte());
+            } else {
+                rentals.put(readShortString(in), readShortString(in));
+                in.readInt();
+            }
+        }
+        Assertions.assertEquals(6000, in.readInt());
+        Assertions.assertEquals((int) crc.getValue(), in.readInt());
+        Assertions.assertEquals(3000, counts[1]);
+        Assertions.assertEquals(2000, counts[2]);
+        Assertions.assertEquals(1000, counts[3]);
+        Assertions.assertTrue(name.startsWith("Zo\u00eb"));
+        // test normal case: the rentals are the ones issued, with IDs holding non-ASCII initials, and their properties
+        // are exported as rented
+        for (TenantRecord tR : renting) {
+            String code = rentals.get(tR.getTenantID().toString());
+            Assertions.assertEquals(pm.getTenantsProperties().get(tR.getTenantID()).toString(), code);
+            Assertions.assertTrue(rented.contains(code));
+        }
+    }
+
+    private void testExportWhileBooking() throws Exception {
+        PropertyManager pm = PropertyManager.newInstance(RentalEventListener.NONE);
+        pm.addProperties(apartmentPropertyType, 200);
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.MARCH, 3);
+        List<TenantRecord> tenants = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            tenants.add(pm.addTenantRecord("Busy", "Tenant" + i, cal.getTime(), false));
+        }
+        Thread booker = new Thread(() -> {
+            for (int round = 0; round < 200; round++) {
+                for (TenantRecord tR : tenants) {
+                    if (!pm.issueRentalContract(tR, apartmentPropertyType, 3)) {
+                        continue;
+                    }
+                    if (tR.hashCode() % 3 != round % 3) {
+                        pm.terminateRental(tR);
+                    }
+                }
+                for (TenantRecord tR : tenants) {
+                    if (pm.getTenantsProperties().containsKey(tR.getTenantID())) {
+                        pm.terminateRental(tR);
+                    }
+                }
+            }
+        });
+        booker.start();
+        // test complicated normal case: every export is consistent, with each rental's property exported as rented and
+        // exactly as many rented properties as rentals
+        int exports = 0;
+        while (booker.isAlive() || exports == 0) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            pm.exportRecords(Channels.newChannel(out), ExportFormat.CSV);
+            Set<String> rented = new HashSet<>();
+            Set<String> tenantIDs = new HashSet<>();
+            List<String[]> rentals = new ArrayList<>();
+            for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+                String[] fields = line.split(",");
+                if (fields[0].equals("property") && fields[3].equals("true")) {
+                    rented.add(fields[1]);
+                } else if (fields[0].equals("tenant")) {
+                    tenantIDs.add(fields[1]);
+                } else if (fields[0].equals("rental")) {
+                    rentals.add(fields);
+                }
+            }
+            Assertions.assertEquals(rented.size(), rentals.size());
+            for (String[] rental : rentals) {
+                Assertions.assertTrue(tenantIDs.contains(rental[1]));
+                Assertions.assertTrue(rented.contains(rental[2]));
+            }
+            exports++;
+        }
+        booker.join();
+        Assertions.assertTrue(exports > 0);
+    }
+
+    private static String readShortString(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readUnsignedByte()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static String readName(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readUnsignedShort()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
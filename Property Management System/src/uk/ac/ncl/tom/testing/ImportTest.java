@@ -0,0 +1,188 @@
+package uk.ac.ncl.tom.testing;
+
+import uk.ac.ncl.tom.events.RentalEventListener;
+import uk.ac.ncl.tom.management.ImportReport;
+import uk.ac.ncl.tom.management.PropertyManager;
+import uk.ac.ncl.tom.persistence.ImportFormat;
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+
+public class ImportTest {
+    String villaPropertyType = "Villa";
+    String apartmentPropertyType = "Apartment";
+    String rentalEnds = LocalDate.now().plusDays(30).toString();
+
+    public static void main(String[] args) throws IOException {
+        ImportTest importTest = new ImportTest();
+        Path csv = Files.createTempFile("pms", ".csv");
+        Path ndjson = Files.createTempFile("pms", ".ndjson");
+        try {
+            System.out.println("Test importing a CSV file");
+            importTest.testImportCsv(csv);
+            System.out.println("Test importing an NDJSON file");
+            importTest.testImportNdjson(ndjson);
+            System.out.println("Test importing a large file in parallel chunks");
+            importTest.testImportChunks(csv);
+            System.out.println("Test import format from the file extension");
+            importTest.testImportFormat();
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(ndjson);
+        }
+    }
+
+    private void testImportCsv(Path path) throws IOException {
+        Files.write(path, ("# properties, then tenants\r\n" +
+                "tenant,Jane,Doe,1990-01-31,true,Villa," + rentalEnds + "\r\n" +
+                "property,Villa\r\n" +
+                "property, apartment \r\n" +
+                "\r\n" +
+                "tenant,\"Smith, Jr\",\"O\"\"Neil\",1985-06-02,false\r\n" +
+                "tenant,Jane,Doe,1990-01-31,false\r\n" +
+                "tenant,Sam,Stone,1990-02-30,false\r\n" +
+                "tenant,Ann,Lee,1990-03-01,maybe\r\n" +
+                "property,Castle\r\n" +
+                "tenant,Tom,Tell,1970-01-01,true,Apartment,2000-01-01\r\n" +
+                "tenant,Ava,Ash,1980-05-05,true,Villa," + rentalEnds + "\r\n" +
+                "house,Villa\r\n" +
+                "tenant,Bo,Bell,1980-05-05,true,Apartment," + rentalEnds).getBytes(StandardCharsets.UTF_8));
+        PropertyManager pm = PropertyManager.newInstance(RentalEventListener.NONE);
+        ImportReport report = pm.importRecords(path);
+        // test normal case: properties are added before tenants, wherever they are in the file, so Jane gets the villa
+        Assertions.assertEquals(2, (int) report.getPropertiesAdded());
+        Assertions.assertEquals(3, (int) report.getTenantsAdded());
+        Assertions.assertEquals(2, (int) report.getRentalsAdded());
+        Assertions.assertEquals(2, pm.getProperties().size());
+        Assertions.assertEquals(2, pm.getTenantsProperties().size());
+        Assertions.assertEquals(0, pm.noOfAvailableProperties(villaPropertyType));
+        Assertions.assertEquals(0, pm.noOfAvailableProperties(apartmentPropertyType));
+        TenantRecord jane = null;
+        TenantRecord smith = null;
+        for (TenantRecord tR : pm.getTenants().values()) {
+            if (tR.getName().getFirstName().equals("Jane")) {
+                jane = tR;
+            } else if (tR.getName().getFirstName().equals("Smith, Jr")) {
+                smith = tR;
+            }
+        }
+        Assertions.assertNotNull(jane);
+        Assertions.assertTrue(jane.isPremiumClass());
+        Property villa = pm.getProperties().get(pm.getTenantsProperties().get(jane.getTenantID()));
+        Assertions.assertEquals(villaPropertyType, villa.getPropertyType());
+        Assertions.assertEquals(LocalDate.parse(rentalEnds).toEpochDay(), villa.getTerminationDay());
+        // test normal case: quoted fields keep their commas and quotes
+        Assertions.assertNotNull(smith);
+        Assertions.assertEquals("O\"Neil", smith.getName().getLastName());
+        // test error case: every bad line is rejected with its line number, and the rest of the file is imported
+        Assertions.assertEquals(7, (int) report.getRowsRejected());
+        List<String> errors = report.getErrors();
+        Assertions.assertEquals(7, errors.size());
+        Assertions.assertTrue(errors.get(0).startsWith("line 7: "));
+        Assertions.assertTrue(errors.get(1).startsWith("line 8: Invalid date"));
+        Assertions.assertTrue(errors.get(2).startsWith("line 9: Premium"));
+        Assertions.assertTrue(errors.get(3).startsWith("line 10: Property type"));
+        Assertions.assertTrue(errors.get(4).startsWith("line 11: Rental has already ended"));
+        Assertions.assertTrue(errors.get(5).startsWith("line 12: No Villa"));
+        Assertions.assertTrue(errors.get(6).startsWith("line 13: Unknown kind"));
+        // test error case: a rejected tenant isn't added and their tenant ID is released
+        Assertions.assertEquals(3, pm.getTenantIDs().getTenantIDsMap().size());
+    }
+
+    private void testImportNdjson(Path path) throws IOException {
+        Files.write(path, ("{\"kind\":\"property\",\"propertyType\":\"Apartment\"}\n" +
+                "{\"kind\": \"tenant\", \"firstName\": \"Zo\\u00eb\", \"lastName\": \"Quill\", " +
+                "\"dateOfBirth\": \"1992-07-14\", \"premium\": false, \"note\": 12, " +
+                "\"rentalType\": \"Apartment\", \"rentalEnds\": \"" + rentalEnds + "\"}\n" +
+                "{\"kind\":\"tenant\",\"firstName\":\"Al\",\"lastName\":\"Bo\",\"dateOfBirth\":\"1992-07-14\"," +
+                "\"premium\":true,\"rentalType\":null}\n" +
+                "{\"kind\":\"tenant\",\"firstName\":\"Cy\",\"lastName\":\"Do\",\"dateOfBirth\":\"1992-07-14\"," +
+                "\"premium\":true,\"address\":{\"town\":\"Newcastle\"}}\n" +
+                "{\"kind\":\"tenant\",\"firstName\":\"Ed\"\n" +
+                "not json\n").getBytes(StandardCharsets.UTF_8));
+        PropertyManager pm = PropertyManager.newInstance(RentalEventListener.NONE);
+        ImportReport report = pm.importRecords(path);
+        // test normal case: escapes are decoded, unknown keys are ignored and null leaves out the rental
+        Assertions.assertEquals(1, (int) report.getPropertiesAdded());
+        Assertions.assertEquals(2, (int) report.getTenantsAdded());
+        Assertions.assertEquals(1, (int) report.getRentalsAdded());
+        boolean foundZoe = false;
+        for (TenantRecord tR : pm.getTenants().values()) {
+            foundZoe |= tR.getName().getFirstName().equals("Zo\u00eb");
+        }
+        Assertions.assertTrue(foundZoe);
+        // test error case: nested values, unfinished objects and lines that aren't JSON are rejected
+        Assertions.assertEquals(3, (int) report.getRowsRejected());
+        List<String> errors = report.getErrors();
+        Assertions.assertTrue(errors.get(0).startsWith("line 4: Nested"));
+        Assertions.assertTrue(errors.get(1).startsWith("line 5: "));
+        Assertions.assertTrue(errors.get(2).startsWith("line 6: A record must be a JSON object"));
+    }
+
+    private void testImportChunks(Path path) throws IOException {
+        // a file of a few megabytes is split into several chunks, and lines crossing chunk boundaries are read once
+        int tenants = 60000;
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int i = 1; i <= tenants; i++) {
+                if (i % 10000 == 0) {
+                    out.write("tenant,Bad,Line" + i + ",not-a-date,false\n");
+                } else {
+                    out.write("tenant,Tenant" + i + ",Surname" + i + ",1980-01-01,false\n");
+                }
+            }
+            for (int i = 0; i < 50; i++) {
+                out.write("property,Apartment\n");
+            }
+            out.write("tenant,Renter,One,1980-01-01,false,Apartment," + rentalEnds + "\n");
+        }
+        PropertyManager pm = PropertyManager.newInstance(RentalEventListener.NONE);
+        ImportReport report = pm.importRecords(path, ImportFormat.CSV, 4);
+        // test complicated normal case: every good line is imported exactly once
+        Assertions.assertEquals(50, (int) report.getPropertiesAdded());
+        Assertions.assertEquals(tenants - tenants / 10000 + 1, (int) report.getTenantsAdded());
+        Assertions.assertEquals(tenants - tenants / 10000 + 1, pm.getTenants().size());
+        Assertions.assertEquals(49, pm.noOfAvailableProperties(apartmentPropertyType));
+        // test error case: the bad lines are reported with their line numbers, whichever chunk they are in
+        Assertions.assertEquals(tenants / 10000, (int) report.getRowsRejected());
+        List<String> errors = report.getErrors();
+        for (int k = 1; k <= tenants / 10000; k++) {
+            Assertions.assertTrue(errors.get(k - 1).startsWith("line " + k * 10000 + ": "));
+        }
+        // test boundary case: importing the same file again rejects every tenant as a duplicate
+        ImportReport again = pm.importRecords(path, ImportFormat.CSV, 2);
+        Assertions.assertEquals(0, (int) again.getTenantsAdded());
+        Assertions.assertEquals(tenants + 1, (int) again.getRowsRejected());
+        Assertions.assertEquals(ImportReport.MAX_ERRORS, again.getErrors().size());
+        Assertions.assertTrue(again.getErrors().get(0).startsWith("line 1: "));
+    }
+
+    private void testImportFormat() {
+        // test normal case
+        Assertions.assertEquals(ImportFormat.CSV, ImportFormat.forPath(Paths.get("book.CSV")));
+        Assertions.assertEquals(ImportFormat.NDJSON, ImportFormat.forPath(Paths.get("book.ndjson")));
+        Assertions.assertEquals(ImportFormat.NDJSON, ImportFormat.forPath(Paths.get("book.jsonl")));
+        // test exception case: unknown extension
+        try {
+            ImportFormat.forPath(Paths.get("book.xlsx"));
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        // test exception case: no threads
+        try {
+            PropertyManager.newInstance(RentalEventListener.NONE).importRecords(Paths.get("book.csv"),
+                    ImportFormat.CSV, 0);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package uk.ac.ncl.tom.testing;
+
+import uk.ac.ncl.tom.events.RentalEventListener;
+import uk.ac.ncl.tom.management.PropertyManager;
+import uk.ac.ncl.tom.persistence.FsyncPolicy;
+import uk.ac.ncl.tom.persistence.Journal;
+import uk.ac.ncl.tom.persistence.JournalHandler;
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.properties.PropertyCode;
+import uk.ac.ncl.tom.tenants.TenantID;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Calendar;
+
+public class JournalTest {
+    String villaPropertyType = "Villa";
+    String apartmentPropertyType = "Apartment";
+    String tenantID = "JD." + Calendar.getInstance().get(Calendar.YEAR) + ".05";
+
+    public static void main(String[] args) throws IOException {
+        JournalTest journalTest = new JournalTest();
+        Path path = Files.createTempFile("pms", ".journal");
+        try {
+            System.out.println("Test rebuilding the Property Manager from a journal");
+            journalTest.testOpenJournal(path);
+            System.out.println("Test recording Property Manager changes in the journal");
+            journalTest.testRecordChanges(path);
+            System.out.println("Test replaying a journal with a torn last record");
+            journalTest.testTornRecord(path);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+        Path decommissionPath = Files.createTempFile("pms", ".journal");
+        try {
+            System.out.println("Test replaying decommissioned properties and tenants");
+            journalTest.testDecommission(decommissionPath);
+        } finally {
+            Files.deleteIfExists(decommissionPath);
+        }
+    }
+
+    private void testOpenJournal(Path path) throws IOException {
+        // write a journal as an earlier run of the Property Manager would have
+        try (Journal journal = Journal.open(path, FsyncPolicy.NEVER, new CountingHandler())) {
+            journal.propertyAdded(villaPropertyType, "V-B07");
+            journal.propertyAdded(apartmentPropertyType, "A-C12");
+            journal.tenantAdded(tenantID, "Jane", "Doe", LocalDate.of(1990, 1, 1).toEpochDay(), true);
+            long sequence = journal.contractIssued(tenantID, "V-B07", LocalDate.now().plusDays(3).toEpochDay());
+            journal.commit(sequence);
+        }
+        // test normal case: properties, tenants and rentals are rebuilt with their original codes and IDs
+        PropertyManager.getInstance().openJournal(path, FsyncPolicy.ALWAYS);
+        Assertions.assertEquals(2, PropertyManager.getInstance().getProperties().size());
+        Assertions.assertEquals(1, PropertyManager.getInstance().getTenants().size());
+        Assertions.assertTrue(PropertyCode.getPropertyCodesMap().containsKey("V-B07"));
+        Assertions.assertNotNull(TenantID.valueOf(tenantID));
+        Assertions.assertEquals(0, PropertyManager.getInstance().noOfAvailableProperties(villaPropertyType));
+        Assertions.assertEquals(1, PropertyManager.getInstance().noOfAvailableProperties(apartmentPropertyType));
+        Property villa = PropertyManager.getInstance().getProperties().get(PropertyCode.getPropertyCodesMap().get("V-B07"));
+        Assertions.assertTrue(villa.isRented());
+        Assertions.assertTrue(PropertyManager.getInstance().getPropertiesTerminatingSoon().contains(villa));
+        // test exception case: a journal is already open
+        try {
+            PropertyManager.getInstance().openJournal(path, FsyncPolicy.ALWAYS);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalStateException.class, t);
+        }
+        // test exception case: null path
+        try {
+            PropertyManager.getInstance().openJournal(null, FsyncPolicy.ALWAYS);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testRecordChanges(Path path) throws IOException {
+        TenantRecord jane = PropertyManager.getInstance().getTenants().get(TenantID.valueOf(tenantID));
+        PropertyManager.getInstance().addProperty(apartmentPropertyType);
+        PropertyManager.getInstance().terminateRental(jane);
+        Assertions.assertEquals(1, PropertyManager.getInstance().noOfAvailableProperties(villaPropertyType));
+        Assertions.assertEquals(1, PropertyManager.getInstance().cleanPools());
+        PropertyManager.getInstance().closeJournal();
+        // test normal case: the changes made after opening the journal were appended to it
+        CountingHandler counts = new CountingHandler();
+        Journal.replay(path, counts);
+        Assertions.assertEquals(3, counts.propertiesAdded);
+        Assertions.assertEquals(1, counts.tenantsAdded);
+        Assertions.assertEquals(1, counts.contractsIssued);
+        Assertions.assertEquals(1, counts.rentalsTerminated);
+        Assertions.assertEquals(1, counts.poolsCleaned);
+        // test exception case: the journal can't be opened once the Property Manager has properties
+        try {
+            PropertyManager.getInstance().openJournal(path, FsyncPolicy.ALWAYS);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalStateException.class, t);
+        }
+    }
+
+    private void testTornRecord(Path path) throws IOException {
+        long end = Files.size(path);
+        // a record that was only partly written when the system stopped
+        Files.write(path, new byte[]{0, 0, 0, 40, 3, 0, 7}, StandardOpenOption.APPEND);
+        CountingHandler counts = new CountingHandler();
+        // test boundary case: the torn record is ignored and every complete record is still read
+        Assertions.assertEquals(end, Journal.replay(path, counts));
+        Assertions.assertEquals(3, counts.propertiesAdded);
+        Assertions.assertEquals(1, counts.poolsCleaned);
+        // test normal case: opening the journal again cuts the torn record off
+        Journal.open(path, FsyncPolicy.NEVER, new CountingHandler()).close();
+        Assertions.assertEquals(end, Files.size(path));
+    }
+
+    private void testDecommission(Path path) throws IOException {
+        Files.delete(path);
+        PropertyManager manager = PropertyManager.newInstance(RentalEventListener.NONE);
+        manager.openJournal(path, FsyncPolicy.ALWAYS);
+        Property kept = manager.addProperty(apartmentPropertyType);
+        Property removed = manager.addProperty(apartmentPropertyType);
+        String removedCode = removed.getPropertyCode().toString();
+        Calendar cal = Calendar.getInstance();
+        cal.set(1990, Calendar.JANUARY, 1);
+        TenantRecord jane = manager.addTenantRecord("Jane", "Doe", cal.getTime(), true);
+        manager.decommissionProperty(removed.getPropertyCode());
+        manager.decommissionTenant(jane);
+        manager.closeJournal();
+        // test normal case: decommissioning is recorded in the journal
+        CountingHandler counts = new CountingHandler();
+        Journal.replay(path, counts);
+        Assertions.assertEquals(1, counts.propertiesDecommissioned);
+        Assertions.assertEquals(1, counts.tenantsDecommissioned);
+        // test normal case: replaying the journal leaves out the decommissioned property and tenant, and their codes
+        PropertyManager rebuilt = PropertyManager.newInstance(RentalEventListener.NONE);
+        rebuilt.openJournal(path, FsyncPolicy.ALWAYS);
+        Assertions.assertEquals(1, rebuilt.getProperties().size());
+        Assertions.assertTrue(rebuilt.getProperties().containsKey(rebuilt.getPropertyCodes().valueOf(
+                kept.getPropertyCode().toString())));
+        Assertions.assertNull(rebuilt.getPropertyCodes().valueOf(removedCode));
+        Assertions.assertTrue(rebuilt.getTenants().isEmpty());
+        Assertions.assertTrue(rebuilt.getTenantIDs().getTenantIDsMap().isEmpty());
+        Assertions.assertEquals(1, rebuilt.noOfAvailableProperties(apartmentPropertyType));
+        rebuilt.closeJournal();
+    }
+
+    private static final class CountingHandler implements JournalHandler {
+        int propertiesAdded;
+        int tenantsAdded;
+        int contractsIssued;
+        int rentalsTerminated;
+        int poolsCleaned;
+        int propertiesDecommissioned;
+        int tenantsDecommissioned;
+
+        @Override
+        public void propertyAdded(String propertyType, String propertyCode) {
+            propertiesAdded++;
+        }
+
+        @Override
+        public void tenantAdded(String tenantID, String firstName, String lastName, long dateOfBirthDay,
+                                boolean premium) {
+            tenantsAdded++;
+        }
+
+        @Override
+        public void contractIssued(String tenantID, String propertyCode, long terminationDay) {
+            contractsIssued++;
+        }
+
+        @Override
+        public void rentalTerminated(String tenantID) {
+            rentalsTerminated++;
+        }
+
+        @Override
+        public void poolCleaned(String propertyCode) {
+            poolsCleaned++;
+        }
+
+        @Override
+        public void propertyDecommissioned(String propertyCode) {
+            propertiesDecommissioned++;
+        }
+
+        @Override
+        public void tenantDecommissioned(String tenantID) {
+            tenantsDecommissioned++;
+        }
+    }
+}
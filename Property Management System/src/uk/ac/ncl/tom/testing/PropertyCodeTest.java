@@ -1,6 +1,7 @@
 package uk.ac.ncl.tom.testing;
 
 import uk.ac.ncl.tom.properties.PropertyCode;
+import uk.ac.ncl.tom.properties.PropertyCodeRegistry;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -20,6 +21,14 @@ public class PropertyCodeTest {
         pcTest.testGetPropertiesHashMap();
         System.out.println("Test toString");
         pcTest.testToString();
+        System.out.println("Test wider property code format");
+        pcTest.testCodeDigits();
+        System.out.println("Test using every property code for a prefix");
+        pcTest.testCodeSpaceExhausted();
+        System.out.println("Test separate registries and releasing property codes");
+        pcTest.testRegistry();
+        System.out.println("Test packed property codes");
+        pcTest.testPacked();
     }
 
     private void createPropertyCode() {
@@ -108,4 +117,120 @@ public class PropertyCodeTest {
         String expectedSTRRep = "A" + "-" + pc.getAnuCode();
         Assertions.assertTrue(pc.toString().equals(expectedSTRRep));
     }
+
+    private void testCodeDigits() {
+        // test normal case: wider codes are one letter followed by the configured number of digits
+        PropertyCode.setCodeDigits(5);
+        PropertyCode pc = PropertyCode.getInstance('V');
+        Assertions.assertEquals(6, pc.getAnuCode().length());
+        Assertions.assertTrue(Character.isLetter(pc.getAnuCode().charAt(0)));
+        for (int i = 1; i < 6; i++) {
+            Assertions.assertTrue(Character.isDigit(pc.getAnuCode().charAt(i)));
+        }
+        // test normal case: codes in the original format are still on the system
+        PropertyCode.setCodeDigits(PropertyCode.DEFAULT_CODE_DIGITS);
+        PropertyCode pc2 = PropertyCode.getInstance('V');
+        Assertions.assertEquals(3, pc2.getAnuCode().length());
+        Assertions.assertTrue(PropertyCode.getPropertyCodesMap().containsKey(pc.toString()));
+        // test exception case: too few and too many digits
+        try {
+            PropertyCode.setCodeDigits(1);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        try {
+            PropertyCode.setCodeDigits(8);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testCodeSpaceExhausted() {
+        // test boundary case: every one of the 2600 apartment codes can be generated, and they are all unique
+        Set<String> generatedCodes = new HashSet<>();
+        for (String code : PropertyCode.getPropertyCodesMap().keySet()) {
+            if (code.charAt(0) == 'A') {
+                generatedCodes.add(code);
+            }
+        }
+        while (generatedCodes.size() < 2600) {
+            PropertyCode pc = PropertyCode.getInstance('A');
+            Assertions.assertFalse(generatedCodes.contains(pc.toString()));
+            generatedCodes.add(pc.toString());
+        }
+        // test exception case: no apartment codes left
+        try {
+            PropertyCode.getInstance('A');
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalStateException.class, t);
+        }
+    }
+
+    private void testRegistry() {
+        // test normal case: a new registry has its own codes, separate from the shared registry's
+        PropertyCodeRegistry registry = new PropertyCodeRegistry();
+        Assertions.assertTrue(registry.getPropertyCodesMap().isEmpty());
+        PropertyCode pc = registry.getInstance('A');
+        Assertions.assertEquals(pc, registry.valueOf(pc.toString()));
+        Assertions.assertFalse(PropertyCode.getPropertyCodesMap().get(pc.toString()) == pc);
+        // test boundary case: every apartment code is used, then the one that is released is issued again
+        registry.getInstances('A', 2599);
+        Assertions.assertEquals(2600, registry.getPropertyCodesMap().size());
+        Assertions.assertTrue(registry.release(pc));
+        Assertions.assertNull(registry.valueOf(pc.toString()));
+        // test error case: a code that has already been released, or was issued by another registry, isn't released
+        Assertions.assertFalse(registry.release(pc));
+        Assertions.assertFalse(registry.release(PropertyCode.getInstance('V')));
+        PropertyCode reissued = registry.getInstance('A');
+        Assertions.assertEquals(pc, reissued);
+        // test normal case: a released code can be restored
+        Assertions.assertTrue(registry.release(reissued));
+        Assertions.assertEquals(reissued.toString(), registry.restore(reissued.toString()).toString());
+        // test boundary case: codes restored out of order, and restored after being released, are never issued again
+        PropertyCodeRegistry restored = new PropertyCodeRegistry();
+        Set<String> codes = new HashSet<>();
+        for (String code : new String[]{"V-A00", "V-M42", "V-Z99"}) {
+            codes.add(restored.restore(code).toString());
+        }
+        PropertyCode released = restored.getInstance('V');
+        Assertions.assertTrue(restored.release(released));
+        codes.add(restored.restore(released.toString()).toString());
+        while (codes.size() < 2600) {
+            Assertions.assertTrue(codes.add(restored.getInstance('V').toString()));
+        }
+        Assertions.assertEquals(2600, restored.getPropertyCodesMap().size());
+        // test exception case: null property code
+        try {
+            registry.release(null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testPacked() {
+        PropertyCode pc = PropertyCode.getInstance('V');
+        // test normal case: a code's string parses back to its packed int, and finds the same code
+        Assertions.assertEquals(pc.toInt(), PropertyCode.parse(pc.toString()));
+        Assertions.assertEquals(pc, PropertyCode.getPropertyCodesMap().get(pc.toString()));
+        Assertions.assertEquals(pc.hashCode(), PropertyCode.getPropertyCodesMap().get(pc.toString()).hashCode());
+        // test normal case: codes of each prefix and width pack to different ints
+        Assertions.assertNotEquals(PropertyCode.parse("V-A12"), PropertyCode.parse("A-A12"));
+        Assertions.assertNotEquals(PropertyCode.parse("V-A12"), PropertyCode.parse("V-A012"));
+        Assertions.assertNotEquals(PropertyCode.parse("V-A12"), PropertyCode.parse("V-B12"));
+        // test boundary case: the widest codes, at both ends of the code space
+        Assertions.assertNotEquals(PropertyCode.INVALID_CODE, PropertyCode.parse("A-A0000000"));
+        Assertions.assertNotEquals(PropertyCode.INVALID_CODE, PropertyCode.parse("A-Z9999999"));
+        // test error case: strings that aren't property codes
+        Assertions.assertEquals(PropertyCode.INVALID_CODE, PropertyCode.parse(null));
+        Assertions.assertEquals(PropertyCode.INVALID_CODE, PropertyCode.parse("T-A12"));
+        Assertions.assertEquals(PropertyCode.INVALID_CODE, PropertyCode.parse("V-A1"));
+        Assertions.assertEquals(PropertyCode.INVALID_CODE, PropertyCode.parse("V-a12"));
+        Assertions.assertEquals(PropertyCode.INVALID_CODE, PropertyCode.parse("V_A12"));
+        Assertions.assertEquals(PropertyCode.INVALID_CODE, PropertyCode.parse("V-A1x"));
+        Assertions.assertEquals(PropertyCode.INVALID_CODE, PropertyCode.parse("V-A12345678"));
+    }
 }
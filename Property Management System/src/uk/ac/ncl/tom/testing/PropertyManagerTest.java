@@ -1,11 +1,37 @@
 package uk.ac.ncl.tom.testing;
 
+import uk.ac.ncl.tom.events.AsyncRentalEventListener;
+import uk.ac.ncl.tom.events.PrintStreamRentalEventListener;
+import uk.ac.ncl.tom.events.RejectionReason;
+import uk.ac.ncl.tom.events.RentalEventListener;
 import uk.ac.ncl.tom.properties.*;
 import uk.ac.ncl.tom.management.PropertyManager;
+import uk.ac.ncl.tom.management.PropertyManagerMetrics;
+import uk.ac.ncl.tom.management.RentalRequest;
+import uk.ac.ncl.tom.management.TenantDetails;
 import uk.ac.ncl.tom.tenants.TenantRecord;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class PropertyManagerTest {
     String villaPropertyType = "Villa";
@@ -13,7 +39,7 @@ public class PropertyManagerTest {
     String mansionPropertyType = "Mansion";
     String nullPropertyType = null;
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
         PropertyManagerTest propertyManagerTest = new PropertyManagerTest();
         System.out.println("Test add property");
         propertyManagerTest.testAddProperty();
@@ -27,6 +53,28 @@ public class PropertyManagerTest {
         propertyManagerTest.testTerminateRentalContract();
         System.out.println("Test get properties terminating soon");
         propertyManagerTest.testGetPropertiesTerminatingSoon();
+        System.out.println("Test get properties terminating between two dates");
+        propertyManagerTest.testGetPropertiesTerminatingBetween();
+        System.out.println("Test issue rental contracts from many threads");
+        propertyManagerTest.testConcurrentRentalContracts();
+        System.out.println("Test adding properties, tenants and rental contracts in bulk");
+        propertyManagerTest.testBulkOperations();
+        System.out.println("Test pinning and moving forward the Property Manager's clock");
+        propertyManagerTest.testClock();
+        System.out.println("Test rental event listener");
+        propertyManagerTest.testRentalEvents();
+        System.out.println("Test Property Manager metrics");
+        propertyManagerTest.testMetrics();
+        System.out.println("Test terminating lapsed rentals");
+        propertyManagerTest.testExpirySweep();
+        System.out.println("Test pool cleaning queue");
+        propertyManagerTest.testPoolCleaning();
+        System.out.println("Test separate Property Managers and decommissioning");
+        propertyManagerTest.testDecommission();
+        System.out.println("Test finding properties while they are decommissioned");
+        propertyManagerTest.testFindWhileDecommissioning();
+        System.out.println("Test waiting lists");
+        propertyManagerTest.testWaitingList();
     }
 
     private void testAddProperty() {
@@ -42,6 +90,19 @@ public class PropertyManagerTest {
         Property pV2 = PropertyManager.getInstance().addProperty(villaPropertyType);
         // test normal case: properties added are unique
         Assertions.assertNotEquals(pV, pV2);
+        // test normal case: properties are found by code, and iterated, as views equal to the properties added
+        Map<PropertyCode, Property> properties = PropertyManager.getInstance().getProperties();
+        Assertions.assertEquals(pV2, properties.get(pV2.getPropertyCode()));
+        Assertions.assertTrue(properties.containsKey(pA.getPropertyCode()));
+        Assertions.assertTrue(properties.values().containsAll(Arrays.asList(pV, pA, pV2)));
+        Assertions.assertEquals(pV, PropertyManager.getInstance().findProperty(pV.getPropertyCode().toString()));
+        // test exception case: the properties map can't be changed directly
+        try {
+            properties.remove(pV.getPropertyCode());
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(UnsupportedOperationException.class, t);
+        }
         // test exception case: invalid property type
         try {
             Property p1 = PropertyManager.getInstance().addProperty(mansionPropertyType);
@@ -135,6 +196,14 @@ public class PropertyManagerTest {
         } catch (Throwable t) {
             Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
         }
+        // test exception case: same name and dob, at a different time of day
+        try {
+            cal.set(1995, Calendar.JUNE, 8, 23, 59);
+            TenantRecord newTR5 = PropertyManager.getInstance().addTenantRecord("Thomas", "Hague", cal.getTime(), true);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
     }
 
     private void testIssueRentalContract() {
@@ -142,7 +211,7 @@ public class PropertyManagerTest {
         // that are called directly or indirectly in issueRentalContract.
         Date dob = new Date();
         Calendar cal = Calendar.getInstance();
-        cal.set(1995, Calendar.JUNE, 8);
+        cal.set(1995, Calendar.JUNE, 9);
         dob = cal.getTime();
         TenantRecord tR = PropertyManager.getInstance().addTenantRecord("Thomas", "Hague", dob, true);
         // test normal case: issue contract and add record to tenants properties Map.
@@ -152,7 +221,7 @@ public class PropertyManagerTest {
         // test error case: tenant can only rent one property of all types at one time
         PropertyManager.getInstance().issueRentalContract(tR, apartmentPropertyType, 40);
         // test error case: tenant needs to premium class to rent a villa.
-        cal.set(2000, Calendar.FEBRUARY, 26);
+        cal.set(2000, Calendar.FEBRUARY, 27);
         Date dob2 = cal.getTime();
         TenantRecord tR2 = PropertyManager.getInstance().addTenantRecord("Sophie", "Radford", dob2, false);
         PropertyManager.getInstance().issueRentalContract(tR2, villaPropertyType, 20);
@@ -194,7 +263,7 @@ public class PropertyManagerTest {
     private void testTerminateRentalContract() {
         Date dob = new Date();
         Calendar cal = Calendar.getInstance();
-        cal.set(1995, Calendar.JUNE, 8);
+        cal.set(1995, Calendar.JUNE, 10);
         dob = cal.getTime();
         TenantRecord tR = PropertyManager.getInstance().addTenantRecord("Thomas", "Hague", dob, true);
         // test exception case: tenant doesn't have a current rental contract to terminate
@@ -238,11 +307,15 @@ public class PropertyManagerTest {
         cal.set(1994, Calendar.FEBRUARY, 16);
         Date dob2 = cal.getTime();
         TenantRecord tR6 = PropertyManager.getInstance().addTenantRecord("Sharon", "Osbourne", dob2, false);
+        // clean a pool left dirty by the earlier tests
+        PropertyManager.getInstance().cleanPools();
         // test normal case: no properties terminating soon
         PropertyManager.getInstance().issueRentalContract(tR5, villaPropertyType, 20);
         PropertyManager.getInstance().issueRentalContract(tR6, apartmentPropertyType, 20);
         Assertions.assertEquals(0, PropertyManager.getInstance().getPropertiesTerminatingSoon().size());
         PropertyManager.getInstance().terminateRental(tR5);
+        // the villa can't be rented again until its pool has been cleaned
+        PropertyManager.getInstance().cleanPools();
         // test normal case: 1 property terminating soon
         PropertyManager.getInstance().issueRentalContract(tR5, villaPropertyType, 2);
         Assertions.assertEquals(1, PropertyManager.getInstance().getPropertiesTerminatingSoon().size());
@@ -256,5 +329,831 @@ public class PropertyManagerTest {
         Assertions.assertEquals(2, PropertyManager.getInstance().getPropertiesTerminatingSoon().size());
     }
 
+    private void testGetPropertiesTerminatingBetween() {
+        Calendar cal = Calendar.getInstance();
+        Date today = cal.getTime();
+        cal.add(Calendar.DAY_OF_MONTH, 2);
+        Date twoDaysLater = cal.getTime();
+        cal.add(Calendar.DAY_OF_MONTH, 5);
+        Date sevenDaysLater = cal.getTime();
+        cal.add(Calendar.DAY_OF_MONTH, 13);
+        Date twentyDaysLater = cal.getTime();
+        cal.add(Calendar.DAY_OF_MONTH, 1);
+        Date twentyOneDaysLater = cal.getTime();
+        // test normal case: the 2 and 7 day rentals terminate within the next week
+        Assertions.assertEquals(2, PropertyManager.getInstance().getPropertiesTerminatingBetween(today,
+                sevenDaysLater).size());
+        // test boundary case: both the from and to days are included
+        Assertions.assertEquals(1, PropertyManager.getInstance().getPropertiesTerminatingBetween(twoDaysLater,
+                twoDaysLater).size());
+        // test normal case: the 20 day Villa rental still live from the issue rental contract test
+        Assertions.assertEquals(1, PropertyManager.getInstance().getPropertiesTerminatingBetween(twentyDaysLater,
+                twentyDaysLater).size());
+        // test error case: no rentals terminate after 20 days
+        Assertions.assertEquals(0, PropertyManager.getInstance().getPropertiesTerminatingBetween(twentyOneDaysLater,
+                twentyOneDaysLater).size());
+        // test exception case: from date after to date
+        try {
+            PropertyManager.getInstance().getPropertiesTerminatingBetween(twentyDaysLater, today);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        // test exception case: null date
+        try {
+            PropertyManager.getInstance().getPropertiesTerminatingBetween(null, today);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testConcurrentRentalContracts() {
+        PropertyManager pm = PropertyManager.getInstance();
+        for (int i = 0; i < 200; i++) {
+            pm.addProperty(apartmentPropertyType);
+        }
+        int available = pm.noOfAvailableProperties(apartmentPropertyType);
+        int rentedBefore = pm.getTenantsProperties().size();
+        Calendar cal = Calendar.getInstance();
+        cal.set(1990, Calendar.JANUARY, 1);
+        List<TenantRecord> tenants = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+            tenants.add(pm.addTenantRecord("Concurrent", "Tenant", cal.getTime(), false));
+        }
+        // test complicated normal case: 300 tenants competing from 8 threads for the available apartments, each
+        // tenant trying twice
+        AtomicInteger contractsIssued = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int round = 0; round < 2; round++) {
+                    for (TenantRecord tR : tenants) {
+                        if (pm.issueRentalContract(tR, apartmentPropertyType, 30)) {
+                            contractsIssued.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+        // test normal case: every available apartment was rented exactly once, and no tenant has two
+        Assertions.assertEquals(available, contractsIssued.get());
+        Assertions.assertEquals(0, pm.noOfAvailableProperties(apartmentPropertyType));
+        Assertions.assertEquals(rentedBefore + available, pm.getTenantsProperties().size());
+        Assertions.assertEquals(pm.getTenantsProperties().size(),
+                new HashSet<>(pm.getTenantsProperties().values()).size());
+    }
+
+    private void testBulkOperations() {
+        PropertyManager pm = PropertyManager.getInstance();
+        int availableBefore = pm.noOfAvailableProperties(apartmentPropertyType);
+        int propertiesBefore = pm.getProperties().size();
+        // test normal case: 500 apartments added at once
+        List<Property> added = pm.addProperties(apartmentPropertyType, 500);
+        Assertions.assertEquals(500, added.size());
+        Assertions.assertEquals(500, new HashSet<>(added).size());
+        Assertions.assertEquals(propertiesBefore + 500, pm.getProperties().size());
+        Assertions.assertEquals(availableBefore + 500, pm.noOfAvailableProperties(apartmentPropertyType));
+        // test boundary case: adding no properties
+        Assertions.assertEquals(0, pm.addProperties(villaPropertyType, 0).size());
+        // test exception case: invalid property type and negative count
+        try {
+            pm.addProperties(mansionPropertyType, 5);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        try {
+            pm.addProperties(apartmentPropertyType, -1);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+
+        int tenantsBefore = pm.getTenants().size();
+        Calendar cal = Calendar.getInstance();
+        cal.set(1985, Calendar.MARCH, 1);
+        List<TenantDetails> details = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+            details.add(new TenantDetails("Bulk", "Tenant", cal.getTime(), false));
+        }
+        // test normal case: 300 tenants added at once
+        List<TenantRecord> tenants = pm.addTenantRecords(details);
+        Assertions.assertEquals(300, tenants.size());
+        Assertions.assertEquals(tenantsBefore + 300, pm.getTenants().size());
+        // test exception case: one tenant already exists, so none of the batch is added
+        List<TenantDetails> repeated = new ArrayList<>();
+        repeated.add(new TenantDetails("Another", "Tenant", cal.getTime(), false));
+        repeated.add(details.get(0));
+        try {
+            pm.addTenantRecords(repeated);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        Assertions.assertEquals(tenantsBefore + 300, pm.getTenants().size());
+
+        // test normal case: 300 apartment contracts issued at once, and a non-premium tenant can't rent a villa
+        List<RentalRequest> requests = new ArrayList<>();
+        for (TenantRecord tR : tenants) {
+            requests.add(new RentalRequest(tR, apartmentPropertyType, 10));
+        }
+        requests.add(new RentalRequest(tenants.get(0), villaPropertyType, 10));
+        List<Boolean> issued = pm.issueRentalContracts(requests);
+        Assertions.assertEquals(301, issued.size());
+        Assertions.assertFalse(issued.contains(false) && issued.indexOf(false) < 300);
+        Assertions.assertFalse(issued.get(300));
+        Assertions.assertEquals(availableBefore + 200, pm.noOfAvailableProperties(apartmentPropertyType));
+        // test exception case: invalid property type, so no contracts are issued
+        List<RentalRequest> invalid = new ArrayList<>();
+        invalid.add(new RentalRequest(tenants.get(0), mansionPropertyType, 10));
+        try {
+            pm.issueRentalContracts(invalid);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testClock() {
+        PropertyManager pm = PropertyManager.getInstance();
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate pinned = LocalDate.of(2030, 6, 15);
+        Clock fixed = Clock.fixed(pinned.atStartOfDay(zone).plusHours(12).toInstant(), zone);
+        pm.setClock(fixed);
+        pm.addProperty(apartmentPropertyType);
+        // boundary case: tenant turns 18 tomorrow, so can't rent an apartment today
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2012, Calendar.JUNE, 16);
+        TenantRecord nearly18 = pm.addTenantRecord("Clock", "Tenant", cal.getTime(), false);
+        // test normal case: the tenant ID is issued in the clock's year, not the system's
+        Assertions.assertTrue(2030 == nearly18.getTenantID().getYearOfIssue());
+        Assertions.assertFalse(pm.issueRentalContract(nearly18, apartmentPropertyType, 3));
+        // test normal case: moving the clock forward a day makes the tenant old enough
+        pm.setClock(Clock.offset(fixed, Duration.ofDays(1)));
+        Assertions.assertTrue(pm.issueRentalContract(nearly18, apartmentPropertyType, 3));
+        Property rented = pm.getProperties().get(pm.getTenantsProperties().get(nearly18.getTenantID()));
+        // test normal case: termination date is counted from the clock's date
+        Assertions.assertTrue(pinned.plusDays(4).toEpochDay() == rented.getTerminationDay());
+        Assertions.assertTrue(pm.getPropertiesTerminatingSoon().contains(rented));
+        // test normal case: once the clock passes the termination date, the rental isn't terminating soon
+        pm.setClock(Clock.offset(fixed, Duration.ofDays(5)));
+        Assertions.assertFalse(pm.getPropertiesTerminatingSoon().contains(rented));
+        // test exception case: null clock
+        try {
+            pm.setClock(null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        pm.terminateRental(nearly18);
+        Assertions.assertTrue(Property.NO_TERMINATION_DAY == rented.getTerminationDay());
+        Assertions.assertNull(rented.getTerminationDate());
+        pm.setClock(Clock.systemDefaultZone());
+    }
+
+    private void testRentalEvents() {
+        PropertyManager pm = PropertyManager.getInstance();
+        RecordingListener recorded = new RecordingListener();
+        pm.setRentalEventListener(recorded);
+        pm.addProperty(apartmentPropertyType);
+        Calendar cal = Calendar.getInstance();
+        cal.set(1991, Calendar.APRIL, 3);
+        TenantRecord standard = pm.addTenantRecord("Event", "Tenant", cal.getTime(), false);
+        cal.set(Calendar.YEAR, cal.get(Calendar.YEAR) + 25);
+        TenantRecord child = pm.addTenantRecord("Young", "Tenant", cal.getTime(), true);
+        // test normal case: each outcome is reported with a reason code
+        Assertions.assertFalse(pm.issueRentalContract(standard, villaPropertyType, 5));
+        Assertions.assertFalse(pm.issueRentalContract(child, apartmentPropertyType, 5));
+        Assertions.assertTrue(pm.issueRentalContract(standard, apartmentPropertyType, 5));
+        Assertions.assertFalse(pm.issueRentalContract(standard, apartmentPropertyType, 5));
+        pm.terminateRental(standard);
+        Assertions.assertEquals("rejected NOT_PREMIUM,rejected UNDER_18,issued,rejected ALREADY_RENTING,terminated",
+                recorded.toString());
+
+        // test normal case: events passed through the asynchronous listener arrive in order once it is closed
+        RecordingListener delegate = new RecordingListener();
+        AsyncRentalEventListener async = new AsyncRentalEventListener(delegate);
+        pm.setRentalEventListener(async);
+        Assertions.assertTrue(pm.issueRentalContract(standard, apartmentPropertyType, 5));
+        pm.terminateRental(standard);
+        async.close();
+        Assertions.assertEquals("issued,terminated", delegate.toString().replace(",flush", ""));
+        Assertions.assertTrue(delegate.toString().endsWith(",flush"));
+        Assertions.assertTrue(0 == async.getDroppedEvents());
+
+        // test boundary case: events sent once the queue is full are dropped rather than blocking
+        AsyncRentalEventListener tiny = new AsyncRentalEventListener(new BlockingListener(), 1);
+        for (int i = 0; i < 10; i++) {
+            tiny.contractRejected(0, standard, apartmentPropertyType, RejectionReason.NO_STOCK);
+        }
+        Assertions.assertTrue(tiny.getDroppedEvents() > 0);
+
+        // test error case: an event the listener fails on is counted and reported, and later events still arrive
+        List<Throwable> failures = new ArrayList<>();
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((t, e) -> {
+            synchronized (failures) {
+                failures.add(e);
+            }
+        });
+        FailingListener failing = new FailingListener();
+        AsyncRentalEventListener reporting = new AsyncRentalEventListener(failing);
+        try {
+            reporting.contractRejected(0, standard, apartmentPropertyType, RejectionReason.NO_STOCK);
+            reporting.lapsedRentalsTerminated(0, 1, 2);
+            reporting.close();
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(previous);
+        }
+        Assertions.assertTrue(1 == reporting.getFailedEvents());
+        synchronized (failures) {
+            Assertions.assertEquals(1, failures.size());
+            Assertions.assertExpectedThrowable(IllegalStateException.class, failures.get(0));
+        }
+        Assertions.assertTrue(failing.toString().startsWith("lapsed 1 2"));
+
+        // test normal case: messages are written to the print stream in a batch when flushed
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStreamRentalEventListener printer = new PrintStreamRentalEventListener(new PrintStream(bytes));
+        printer.contractRejected(0, standard, apartmentPropertyType, RejectionReason.NO_STOCK);
+        Assertions.assertEquals(0, bytes.size());
+        printer.flush();
+        Assertions.assertTrue(bytes.toString().startsWith("All Apartment's are currently already rented."));
+        // test exception case: null listener
+        try {
+            pm.setRentalEventListener(null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        pm.setRentalEventListener(RentalEventListener.NONE);
+    }
+
+    private void testMetrics() throws Exception {
+        PropertyManager pm = PropertyManager.getInstance();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = pm.getMetricsName();
+        Assertions.assertEquals(new ObjectName("uk.ac.ncl.tom:type=PropertyManager,name=0"), name);
+        // test normal case: metrics are only registered once enabled
+        Assertions.assertFalse(server.isRegistered(name));
+        PropertyManagerMetrics metrics = pm.enableMetrics();
+        Assertions.assertTrue(server.isRegistered(name));
+        Assertions.assertEquals(metrics, pm.enableMetrics());
+        // test normal case: every Property Manager registers its own metrics, and only unregisters its own
+        PropertyManager other = PropertyManager.newInstance(RentalEventListener.NONE);
+        Assertions.assertNotEquals(name, other.getMetricsName());
+        other.enableMetrics();
+        Assertions.assertTrue(server.isRegistered(name));
+        Assertions.assertTrue(server.isRegistered(other.getMetricsName()));
+        other.disableMetrics();
+        Assertions.assertTrue(server.isRegistered(name));
+        Assertions.assertFalse(server.isRegistered(other.getMetricsName()));
+
+        pm.addProperty(villaPropertyType);
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.OCTOBER, 10);
+        TenantRecord premium = pm.addTenantRecord("Metric", "Tenant", cal.getTime(), true);
+        cal.set(1980, Calendar.OCTOBER, 11);
+        TenantRecord standard = pm.addTenantRecord("Metric", "Tenant", cal.getTime(), false);
+        int rentedVillas = pm.noOfRentedProperties(villaPropertyType);
+        int terminatingSoon = pm.getPropertiesTerminatingSoon().size();
+        Assertions.assertTrue(pm.issueRentalContract(premium, villaPropertyType, 3));
+        Assertions.assertFalse(pm.issueRentalContract(premium, villaPropertyType, 3));
+        Assertions.assertFalse(pm.issueRentalContract(standard, villaPropertyType, 3));
+        // test normal case: counters and gauges reflect the contracts issued and rejected
+        Assertions.assertTrue(1 == metrics.getContractsIssued());
+        Assertions.assertTrue(1 == metrics.getContractsRejectedAlreadyRenting());
+        Assertions.assertTrue(1 == metrics.getContractsRejectedNotPremium());
+        Assertions.assertTrue(0 == metrics.getContractsRejectedUnder18());
+        Assertions.assertEquals(rentedVillas + 1, metrics.getRentedVillas());
+        Assertions.assertEquals(pm.noOfAvailableProperties(villaPropertyType), metrics.getFreeVillas());
+        Assertions.assertEquals(terminatingSoon + 1, metrics.getRentalsTerminatingSoon());
+        Assertions.assertEquals(metrics.getRentedVillas(), server.getAttribute(name, "RentedVillas"));
+        // test normal case: latencies are recorded for each call
+        Assertions.assertTrue(3 == metrics.callCount("issueRentalContract"));
+        Assertions.assertTrue(2 == metrics.callCount("addTenantRecord"));
+        Assertions.assertTrue(1 == metrics.callCount("noOfRentedProperties"));
+        // test normal case: reading the gauges isn't counted as a call
+        long availableCalls = metrics.callCount("noOfAvailableProperties");
+        metrics.getFreeVillas();
+        metrics.getFreeApartments();
+        metrics.getRentedApartments();
+        Assertions.assertEquals(availableCalls, metrics.callCount("noOfAvailableProperties"));
+        Assertions.assertTrue(1 == metrics.callCount("noOfRentedProperties"));
+        pm.terminateLapsedRentals();
+        Assertions.assertTrue(1 == metrics.callCount("terminateLapsedRentals"));
+        pm.cleanPools();
+        Assertions.assertTrue(1 == metrics.callCount("cleanPools"));
+        pm.decommissionProperty(pm.addProperty(villaPropertyType).getPropertyCode());
+        Assertions.assertTrue(1 == metrics.callCount("decommissionProperty"));
+        pm.decommissionTenant(standard);
+        Assertions.assertTrue(1 == metrics.callCount("decommissionTenant"));
+        Assertions.assertNull(pm.findProperty("Z-A12"));
+        Assertions.assertTrue(1 == metrics.callCount("findProperty"));
+        Assertions.assertEquals(premium, pm.findTenant(premium.getTenantID().toString()));
+        Assertions.assertTrue(1 == metrics.callCount("findTenant"));
+        // test normal case: calls timed on many threads at once are all counted
+        Thread[] finders = new Thread[4];
+        for (int i = 0; i < finders.length; i++) {
+            finders[i] = new Thread(() -> {
+                for (int n = 0; n < 1000; n++) {
+                    pm.findTenant(premium.getTenantID().toString());
+                }
+            });
+            finders[i].start();
+        }
+        for (Thread finder : finders) {
+            finder.join();
+        }
+        Assertions.assertTrue(4001 == metrics.callCount("findTenant"));
+        Assertions.assertFalse(pm.joinWaitingList(premium, villaPropertyType, 3));
+        Assertions.assertTrue(1 == metrics.callCount("joinWaitingList"));
+        double p50 = metrics.latencyPercentileMicros("issueRentalContract", 50);
+        double p99 = metrics.latencyPercentileMicros("issueRentalContract", 99);
+        Assertions.assertTrue(p50 > 0 && p50 <= p99);
+        metrics.resetLatencies();
+        Assertions.assertTrue(0 == metrics.callCount("issueRentalContract"));
+        // test exception case: unknown method and invalid percentile
+        try {
+            metrics.callCount("addMansion");
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        try {
+            metrics.latencyPercentileMicros("addProperty", 101);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        // test normal case: disabled metrics are unregistered and stop counting
+        pm.disableMetrics();
+        Assertions.assertFalse(server.isRegistered(name));
+        pm.terminateRental(premium);
+        Assertions.assertTrue(0 == metrics.callCount("terminateRental"));
+    }
+
+    private void testExpirySweep() throws InterruptedException {
+        PropertyManager pm = PropertyManager.getInstance();
+        ZoneId zone = ZoneId.systemDefault();
+        Clock fixed = Clock.fixed(LocalDate.of(2020, 3, 1).atStartOfDay(zone).plusHours(12).toInstant(), zone);
+        pm.setClock(fixed);
+        RecordingListener recorded = new RecordingListener();
+        pm.setRentalEventListener(recorded);
+        pm.addProperties(apartmentPropertyType, 2);
+        pm.addProperty(villaPropertyType);
+        Calendar cal = Calendar.getInstance();
+        cal.set(1985, Calendar.MAY, 5);
+        TenantRecord shortStay = pm.addTenantRecord("Short", "Stay", cal.getTime(), false);
+        TenantRecord longStay = pm.addTenantRecord("Long", "Stay", cal.getTime(), false);
+        TenantRecord villaStay = pm.addTenantRecord("Villa", "Stay", cal.getTime(), true);
+        Assertions.assertTrue(pm.issueRentalContract(shortStay, apartmentPropertyType, 3));
+        Assertions.assertTrue(pm.issueRentalContract(longStay, apartmentPropertyType, 20));
+        Assertions.assertTrue(pm.issueRentalContract(villaStay, villaPropertyType, 2));
+        int freeVillas = pm.noOfAvailableProperties(villaPropertyType);
+        int freeApartments = pm.noOfAvailableProperties(apartmentPropertyType);
+        Property villa = pm.getProperties().get(pm.getTenantsProperties().get(villaStay.getTenantID()));
+        recorded = new RecordingListener();
+        pm.setRentalEventListener(recorded);
+
+        // boundary case: a rental isn't lapsed on its termination date, only the day after
+        pm.setClock(Clock.offset(fixed, Duration.ofDays(3)));
+        Assertions.assertEquals(1, pm.terminateLapsedRentals());
+        Assertions.assertFalse(pm.getTenantsProperties().containsKey(villaStay.getTenantID()));
+        Assertions.assertTrue(pm.getTenantsProperties().containsKey(shortStay.getTenantID()));
+        Assertions.assertFalse(villa.isRented());
+        Assertions.assertEquals(freeVillas + 1, pm.noOfAvailableProperties(villaPropertyType));
+        Assertions.assertEquals("terminated,lapsed 1 0", recorded.toString());
+        // test normal case: only the rentals that have lapsed are terminated
+        pm.setClock(Clock.offset(fixed, Duration.ofDays(5)));
+        Assertions.assertEquals(1, pm.terminateLapsedRentals());
+        Assertions.assertFalse(pm.getTenantsProperties().containsKey(shortStay.getTenantID()));
+        Assertions.assertTrue(pm.getTenantsProperties().containsKey(longStay.getTenantID()));
+        Assertions.assertEquals(freeApartments + 1, pm.noOfAvailableProperties(apartmentPropertyType));
+        // boundary case: sweeping again on the same day finds nothing
+        Assertions.assertEquals(0, pm.terminateLapsedRentals());
+        // test normal case: a terminated tenant can rent again
+        Assertions.assertTrue(pm.issueRentalContract(shortStay, apartmentPropertyType, 30));
+
+        // test normal case: the background sweeper terminates lapsed rentals as soon as it starts
+        pm.setRentalEventListener(RentalEventListener.NONE);
+        pm.setClock(Clock.offset(fixed, Duration.ofDays(30)));
+        pm.startExpirySweeps();
+        for (int i = 0; i < 500 && pm.getTenantsProperties().containsKey(longStay.getTenantID()); i++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertFalse(pm.getTenantsProperties().containsKey(longStay.getTenantID()));
+        Assertions.assertTrue(pm.getTenantsProperties().containsKey(shortStay.getTenantID()));
+        // test exception case: sweeps already started
+        try {
+            pm.startExpirySweeps();
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalStateException.class, t);
+        }
+        pm.stopExpirySweeps();
+        pm.terminateRental(shortStay);
+        pm.setClock(Clock.systemDefaultZone());
+
+        // test error case: a sweep that fails is reported to the sweeper thread's uncaught exception handler
+        PropertyManager failing = PropertyManager.newInstance(new FailingListener() {
+            @Override
+            public void lapsedRentalsTerminated(long day, int villas, int apartments) {
+                throw new IllegalStateException("Listener failed");
+            }
+        });
+        BlockingQueue<Throwable> failures = new LinkedBlockingQueue<>();
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((t, e) -> failures.add(e));
+        try {
+            failing.startExpirySweeps();
+            Throwable failure = failures.poll(10, TimeUnit.SECONDS);
+            Assertions.assertNotNull(failure);
+            Assertions.assertExpectedThrowable(IllegalStateException.class, failure);
+        } finally {
+            failing.stopExpirySweeps();
+            Thread.setDefaultUncaughtExceptionHandler(previous);
+        }
+    }
+
+    private void testPoolCleaning() throws InterruptedException {
+        PropertyManager pm = PropertyManager.getInstance();
+        pm.setPoolCleaningCrews(1000);
+        pm.addProperties(villaPropertyType, 3);
+        Calendar cal = Calendar.getInstance();
+        cal.set(1975, Calendar.JULY, 1);
+        List<TenantRecord> renting = new ArrayList<>();
+        // rent every villa, cleaning any pools found dirty along the way
+        do {
+            pm.cleanPools();
+            while (true) {
+                cal.add(Calendar.DAY_OF_MONTH, 1);
+                TenantRecord tR = pm.addTenantRecord("Pool", "Tenant", cal.getTime(), true);
+                if (!pm.issueRentalContract(tR, villaPropertyType, 10)) {
+                    break;
+                }
+                renting.add(tR);
+            }
+        } while (pm.noOfPoolsAwaitingCleaning() > 0);
+        Assertions.assertTrue(renting.size() >= 3);
+        int free = pm.noOfAvailableProperties(villaPropertyType);
+        RecordingListener recorded = new RecordingListener();
+        pm.setRentalEventListener(recorded);
+        // test normal case: villas whose tenants have left wait for their pools to be cleaned
+        for (int i = 0; i < 3; i++) {
+            pm.terminateRental(renting.remove(renting.size() - 1));
+        }
+        Assertions.assertEquals(3, pm.noOfPoolsAwaitingCleaning());
+        Assertions.assertEquals(free + 3, pm.noOfAvailableProperties(villaPropertyType));
+        cal.add(Calendar.DAY_OF_MONTH, 1);
+        TenantRecord waiting = pm.addTenantRecord("Waiting", "Tenant", cal.getTime(), true);
+        Assertions.assertFalse(pm.issueRentalContract(waiting, villaPropertyType, 10));
+        Assertions.assertEquals("terminated,terminated,terminated,rejected DIRTY_POOL", recorded.toString());
+        // test normal case: each crew cleans one pool a day
+        pm.setPoolCleaningCrews(2);
+        Assertions.assertEquals(2, pm.cleanPools());
+        Assertions.assertEquals(1, pm.noOfPoolsAwaitingCleaning());
+        Assertions.assertTrue(pm.issueRentalContract(waiting, villaPropertyType, 10));
+        // boundary case: fewer pools waiting than crews
+        Assertions.assertEquals(1, pm.cleanPools());
+        Assertions.assertEquals(0, pm.cleanPools());
+        // test normal case: the background cleaner cleans pools as soon as it starts
+        pm.terminateRental(waiting);
+        pm.startPoolCleaning();
+        for (int i = 0; i < 500 && pm.noOfPoolsAwaitingCleaning() > 0; i++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(0, pm.noOfPoolsAwaitingCleaning());
+        // test exception case: cleaning already started
+        try {
+            pm.startPoolCleaning();
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalStateException.class, t);
+        }
+        pm.stopPoolCleaning();
+        // test exception case: no crews
+        try {
+            pm.setPoolCleaningCrews(0);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        for (TenantRecord tR : renting) {
+            pm.terminateRental(tR);
+        }
+        pm.setPoolCleaningCrews(1);
+        pm.setRentalEventListener(RentalEventListener.NONE);
+    }
+
+    private void testDecommission() {
+        PropertyManager pm = PropertyManager.newInstance(RentalEventListener.NONE);
+        // test normal case: a new Property Manager has its own properties and property codes
+        Assertions.assertTrue(pm.getProperties().isEmpty());
+        Property villa = pm.addProperty(villaPropertyType);
+        Property apartment = pm.addProperty(apartmentPropertyType);
+        // views of a decommissioned property can't be used, so keep the codes
+        PropertyCode villaCode = villa.getPropertyCode();
+        PropertyCode apartmentCode = apartment.getPropertyCode();
+        Assertions.assertEquals(villaCode, pm.getPropertyCodes().valueOf(villaCode.toString()));
+        Assertions.assertFalse(PropertyManager.getInstance().getProperties().containsKey(villaCode));
+        // test normal case: properties are found from their code's string
+        Assertions.assertEquals(villa, pm.findProperty(villaCode.toString()));
+        Assertions.assertEquals(apartment, pm.findProperty(apartmentCode.toString()));
+        Assertions.assertNull(pm.findProperty("Z-A12"));
+        try {
+            pm.findProperty(null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.MARCH, 3);
+        TenantRecord tR = pm.addTenantRecord("Dana", "Dell", cal.getTime(), true);
+        Assertions.assertEquals(tR.getTenantID(), pm.getTenantIDs().valueOf(tR.getTenantID().toString()));
+        // test normal case: tenants are found from their tenant ID's string
+        Assertions.assertEquals(tR, pm.findTenant(tR.getTenantID().toString()));
+        Assertions.assertNull(pm.findTenant("DD.1999.00"));
+        Assertions.assertNull(pm.findTenant("not a tenant ID"));
+        // test exception case: a rented property and a renting tenant can't be decommissioned
+        Assertions.assertTrue(pm.issueRentalContract(tR, apartmentPropertyType, 5));
+        try {
+            pm.decommissionProperty(apartmentCode);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        try {
+            pm.decommissionTenant(tR);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        Assertions.assertEquals(2, pm.getProperties().size());
+        // test normal case: once the rental is terminated, the property and tenant are removed and their code and ID
+        // released
+        pm.terminateRental(tR);
+        pm.decommissionProperty(apartmentCode);
+        pm.decommissionTenant(tR);
+        Assertions.assertEquals(1, pm.getProperties().size());
+        Assertions.assertEquals(0, pm.noOfAvailableProperties(apartmentPropertyType));
+        Assertions.assertNull(pm.getPropertyCodes().valueOf(apartmentCode.toString()));
+        Assertions.assertNull(pm.findProperty(apartmentCode.toString()));
+        Assertions.assertTrue(pm.getTenants().isEmpty());
+        Assertions.assertNull(pm.getTenantIDs().valueOf(tR.getTenantID().toString()));
+        Assertions.assertNull(pm.findTenant(tR.getTenantID().toString()));
+        // test normal case: the same tenant can be added again, with a new tenant ID
+        TenantRecord tR2 = pm.addTenantRecord("Dana", "Dell", cal.getTime(), true);
+        Assertions.assertNotEquals(tR.getTenantID(), tR2.getTenantID());
+        // test normal case: a Villa waiting for its pool to be cleaned is taken out of the cleaning queue
+        Assertions.assertTrue(pm.issueRentalContract(tR2, villaPropertyType, 5));
+        pm.terminateRental(tR2);
+        Assertions.assertEquals(1, pm.noOfPoolsAwaitingCleaning());
+        pm.decommissionProperty(villaCode);
+        Assertions.assertEquals(0, pm.noOfPoolsAwaitingCleaning());
+        Assertions.assertEquals(0, pm.noOfAvailableProperties(villaPropertyType));
+        // test exception case: the property has already been decommissioned
+        try {
+            pm.decommissionProperty(villaCode);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        // test exception case: null property code and tenant record
+        try {
+            pm.decommissionProperty(null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        try {
+            pm.decommissionTenant(null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testFindWhileDecommissioning() throws InterruptedException {
+        PropertyManager pm = PropertyManager.newInstance(RentalEventListener.NONE);
+        pm.addProperties(villaPropertyType, 10);
+        AtomicReference<String> latest = new AtomicReference<>(pm.addProperty(apartmentPropertyType).getPropertyCode()
+                .toString());
+        AtomicInteger failures = new AtomicInteger();
+        Thread finder = new Thread(() -> {
+            while (latest.get() != null) {
+                String code = latest.get();
+                try {
+                    if (code != null) {
+                        pm.findProperty(code);
+                    }
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                }
+            }
+        });
+        finder.start();
+        // test boundary case: a property decommissioned while it is being found, with its id reused straight away,
+        // is either found or not, without an exception
+        for (int i = 0; i < 20000; i++) {
+            PropertyCode code = pm.findProperty(latest.get()).getPropertyCode();
+            Property next = pm.addProperty(apartmentPropertyType);
+            pm.decommissionProperty(code);
+            latest.set(next.getPropertyCode().toString());
+        }
+        latest.set(null);
+        finder.join();
+        Assertions.assertEquals(0, failures.get());
+        Assertions.assertEquals(11, pm.getProperties().size());
+    }
 
+    private void testWaitingList() throws InterruptedException {
+        RecordingListener recorded = new RecordingListener();
+        PropertyManager pm = PropertyManager.newInstance(recorded);
+        pm.addProperty(apartmentPropertyType);
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.MARCH, 3);
+        TenantRecord renting = pm.addTenantRecord("Rhys", "Renter", cal.getTime(), false);
+        TenantRecord first = pm.addTenantRecord("Fern", "First", cal.getTime(), false);
+        TenantRecord second = pm.addTenantRecord("Seth", "Second", cal.getTime(), false);
+        TenantRecord premium = pm.addTenantRecord("Pia", "Premium", cal.getTime(), true);
+        // test normal case: a tenant is issued a contract straight away if a property is available
+        Assertions.assertTrue(pm.joinWaitingList(renting, apartmentPropertyType, 5));
+        Assertions.assertFalse(pm.isWaiting(renting));
+        // test normal case: otherwise they join the waiting list, without being rejected
+        Assertions.assertTrue(pm.joinWaitingList(first, apartmentPropertyType, 5));
+        Assertions.assertTrue(pm.joinWaitingList(second, apartmentPropertyType, 5));
+        Assertions.assertTrue(pm.joinWaitingList(premium, apartmentPropertyType, 7));
+        Assertions.assertTrue(pm.isWaiting(first));
+        Assertions.assertEquals(3, pm.noOfTenantsWaiting(apartmentPropertyType));
+        Assertions.assertEquals(0, pm.noOfTenantsWaiting(villaPropertyType));
+        Assertions.assertEquals("issued", recorded.toString());
+        // test error case: a tenant can't wait twice, or wait while renting
+        Assertions.assertFalse(pm.joinWaitingList(first, apartmentPropertyType, 5));
+        Assertions.assertFalse(pm.joinWaitingList(renting, apartmentPropertyType, 5));
+        Assertions.assertEquals(3, pm.noOfTenantsWaiting(apartmentPropertyType));
+        // test normal case: a terminated rental goes to the premium tenant first, for the duration they asked for
+        pm.terminateRental(renting);
+        Assertions.assertFalse(pm.isWaiting(premium));
+        Property rented = pm.getProperties().get(pm.getTenantsProperties().get(premium.getTenantID()));
+        Assertions.assertEquals(LocalDate.now().plusDays(7).toEpochDay(), rented.getTerminationDay());
+        Assertions.assertEquals(2, pm.noOfTenantsWaiting(apartmentPropertyType));
+        Assertions.assertEquals("issued,rejected ALREADY_RENTING,terminated,issued", recorded.toString());
+        // test normal case: a tenant can leave the waiting list
+        Assertions.assertTrue(pm.leaveWaitingList(second));
+        Assertions.assertFalse(pm.leaveWaitingList(second));
+        // test normal case: a new property goes to the tenant who joined first
+        pm.addProperty(apartmentPropertyType);
+        Assertions.assertTrue(pm.getTenantsProperties().containsKey(first.getTenantID()));
+        Assertions.assertFalse(pm.getTenantsProperties().containsKey(second.getTenantID()));
+        Assertions.assertEquals(0, pm.noOfTenantsWaiting(apartmentPropertyType));
+        // test normal case: a Villa is only given to a waiting tenant once its pool has been cleaned
+        TenantRecord villaTenant = pm.addTenantRecord("Vic", "Villa", cal.getTime(), true);
+        TenantRecord villaWaiter = pm.addTenantRecord("Wyn", "Waiter", cal.getTime(), true);
+        pm.addProperty(villaPropertyType);
+        pm.cleanPools();
+        Assertions.assertTrue(pm.issueRentalContract(villaTenant, villaPropertyType, 5));
+        Assertions.assertTrue(pm.joinWaitingList(villaWaiter, villaPropertyType, 5));
+        pm.terminateRental(villaTenant);
+        Assertions.assertTrue(pm.isWaiting(villaWaiter));
+        pm.cleanPools();
+        Assertions.assertFalse(pm.isWaiting(villaWaiter));
+        Assertions.assertTrue(pm.getTenantsProperties().containsKey(villaWaiter.getTenantID()));
+        // test error case: a tenant that can't rent the property type doesn't join the waiting list
+        Assertions.assertFalse(pm.joinWaitingList(second, villaPropertyType, 5));
+        Assertions.assertFalse(pm.isWaiting(second));
+        // test normal case: a waiting tenant that is issued a contract another way, or decommissioned, leaves the list
+        Assertions.assertTrue(pm.joinWaitingList(villaTenant, villaPropertyType, 5));
+        pm.addProperty(apartmentPropertyType);
+        Assertions.assertTrue(pm.issueRentalContract(villaTenant, apartmentPropertyType, 5));
+        Assertions.assertFalse(pm.isWaiting(villaTenant));
+        Assertions.assertEquals(0, pm.noOfTenantsWaiting(villaPropertyType));
+        Assertions.assertTrue(pm.joinWaitingList(second, apartmentPropertyType, 5));
+        pm.decommissionTenant(second);
+        Assertions.assertFalse(pm.isWaiting(second));
+        Assertions.assertEquals(0, pm.noOfTenantsWaiting(apartmentPropertyType));
+        // test complicated normal case: properties freed from many threads each go to exactly one waiting tenant
+        pm.setRentalEventListener(RentalEventListener.NONE);
+        List<TenantRecord> tenants = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            pm.addProperty(apartmentPropertyType);
+            TenantRecord tR = pm.addTenantRecord("Busy", "Renter" + i, cal.getTime(), false);
+            Assertions.assertTrue(pm.issueRentalContract(tR, apartmentPropertyType, 5));
+            tenants.add(tR);
+        }
+        List<TenantRecord> waiters = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            TenantRecord tR = pm.addTenantRecord("Keen", "Waiter" + i, cal.getTime(), i % 4 == 0);
+            Assertions.assertTrue(pm.joinWaitingList(tR, apartmentPropertyType, 5));
+            waiters.add(tR);
+        }
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int from = t;
+            threads[t] = new Thread(() -> {
+                for (int i = from; i < tenants.size(); i += threads.length) {
+                    pm.terminateRental(tenants.get(i));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        int served = 0;
+        for (int i = 0; i < waiters.size(); i++) {
+            boolean renter = pm.getTenantsProperties().containsKey(waiters.get(i).getTenantID());
+            Assertions.assertTrue(renter != pm.isWaiting(waiters.get(i)));
+            // the 20 premium tenants are all served
+            Assertions.assertTrue(renter || i % 4 != 0);
+            served += renter ? 1 : 0;
+        }
+        Assertions.assertEquals(50, served);
+        Assertions.assertEquals(30, pm.noOfTenantsWaiting(apartmentPropertyType));
+        Assertions.assertEquals(0, pm.noOfAvailableProperties(apartmentPropertyType));
+        // test exception case: null tenant record and property type
+        try {
+            pm.joinWaitingList(null, apartmentPropertyType, 5);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        try {
+            pm.joinWaitingList(first, nullPropertyType, 5);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        try {
+            pm.leaveWaitingList(null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private static class RecordingListener implements RentalEventListener {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void contractIssued(long day, TenantRecord tenantRecord, Property property, int duration) {
+            events.add("issued");
+        }
+
+        @Override
+        public void contractRejected(long day, TenantRecord tenantRecord, String propertyType, RejectionReason reason) {
+            events.add("rejected " + reason);
+        }
+
+        @Override
+        public void rentalTerminated(long day, TenantRecord tenantRecord, Property property) {
+            events.add("terminated");
+        }
+
+        @Override
+        public void lapsedRentalsTerminated(long day, int villas, int apartments) {
+            events.add("lapsed " + villas + " " + apartments);
+        }
+
+        @Override
+        public void flush() {
+            events.add("flush");
+        }
+
+        @Override
+        public String toString() {
+            return String.join(",", events);
+        }
+    }
+
+    private static class FailingListener extends RecordingListener {
+        @Override
+        public void contractRejected(long day, TenantRecord tenantRecord, String propertyType, RejectionReason reason) {
+            throw new IllegalStateException("Listener failed");
+        }
+    }
+
+    private static class BlockingListener extends RecordingListener {
+        @Override
+        public void contractRejected(long day, TenantRecord tenantRecord, String propertyType, RejectionReason reason) {
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 }
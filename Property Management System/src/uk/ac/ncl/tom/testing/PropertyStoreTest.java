@@ -0,0 +1,198 @@
+package uk.ac.ncl.tom.testing;
+
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.properties.PropertyCode;
+import uk.ac.ncl.tom.properties.PropertyCodeRegistry;
+import uk.ac.ncl.tom.properties.PropertyFactory;
+import uk.ac.ncl.tom.properties.PropertyStore;
+import uk.ac.ncl.tom.properties.Villa;
+
+import java.time.LocalDate;
+
+public class PropertyStoreTest {
+    String villaPropertyType = "Villa";
+    String apartmentPropertyType = "Apartment";
+
+    public static void main(String[] args) {
+        PropertyStoreTest storeTest = new PropertyStoreTest();
+        System.out.println("Test dense property ids");
+        storeTest.testIds();
+        System.out.println("Test property views");
+        storeTest.testViews();
+        System.out.println("Test counting properties");
+        storeTest.testCount();
+        System.out.println("Test termination days");
+        storeTest.testTerminationDay();
+        System.out.println("Test releasing property ids");
+        storeTest.testRelease();
+        System.out.println("Test separate property stores");
+        storeTest.testSeparateStores();
+    }
+
+    private void testIds() {
+        PropertyStore store = PropertyStore.global();
+        int size = store.size();
+        Property villa = PropertyFactory.getInstance(villaPropertyType);
+        Property apartment = PropertyFactory.getInstance(apartmentPropertyType);
+        // test normal case: ids are handed out in order, starting from the size of the store
+        Assertions.assertEquals(size, villa.getId());
+        Assertions.assertEquals(size + 1, apartment.getId());
+        Assertions.assertEquals(size + 2, store.size());
+        // test normal case: enough properties to need a second chunk of every column
+        PropertyCode.setCodeDigits(4);
+        for (Property p : PropertyFactory.getInstances(apartmentPropertyType, 5000)) {
+            Assertions.assertEquals(apartmentPropertyType, store.view(p.getId()).getPropertyType());
+        }
+        PropertyCode.setCodeDigits(PropertyCode.DEFAULT_CODE_DIGITS);
+        Assertions.assertEquals(size + 5002, store.size());
+        // test exception case: no property with that id
+        try {
+            store.view(store.size());
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        try {
+            store.view(-1);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testViews() {
+        PropertyStore store = PropertyStore.global();
+        Villa villa = (Villa) PropertyFactory.getInstance(villaPropertyType);
+        Property view = store.view(villa.getId());
+        // test normal case: a view of a property is equal to it and shares its state
+        Assertions.assertEquals(villa, view);
+        Assertions.assertEquals(villa.hashCode(), view.hashCode());
+        Assertions.assertEquals(villa.getPropertyCode(), view.getPropertyCode());
+        Assertions.assertEquals(villa.getPropertyCode().toInt(), store.packedCode(villa.getId()));
+        Assertions.assertEquals(500, view.getDeposit());
+        Assertions.assertTrue(villa.getCleanPool());
+        view.setRented(true);
+        ((Villa) view).setCleanPool(false);
+        Assertions.assertTrue(villa.isRented());
+        Assertions.assertFalse(villa.getCleanPool());
+        // test normal case: rented and clean pool are separate flags
+        villa.setRented(false);
+        Assertions.assertFalse(view.isRented());
+        Assertions.assertFalse(((Villa) view).getCleanPool());
+        // test error case: different properties are not equal
+        Assertions.assertNotEquals(villa, PropertyFactory.getInstance(villaPropertyType));
+        Property apartment = PropertyFactory.getInstance(apartmentPropertyType);
+        Assertions.assertEquals(200, store.view(apartment.getId()).getDeposit());
+    }
+
+    private void testCount() {
+        PropertyStore store = PropertyStore.global();
+        int freeVillas = store.count(villaPropertyType, false);
+        int rentedVillas = store.count(villaPropertyType, true);
+        int freeApartments = store.count(apartmentPropertyType, false);
+        Property villa = PropertyFactory.getInstance(villaPropertyType);
+        // test normal case: a new property is free
+        Assertions.assertEquals(freeVillas + 1, store.count(villaPropertyType, false));
+        villa.setRented(true);
+        // test normal case: renting a property moves it between the counts
+        Assertions.assertEquals(freeVillas, store.count(villaPropertyType, false));
+        Assertions.assertEquals(rentedVillas + 1, store.count(villaPropertyType, true));
+        // test normal case: property types are counted separately, ignoring case
+        Assertions.assertEquals(freeApartments, store.count("apartment", false));
+        // test exception case: invalid property type
+        try {
+            store.count("House", false);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testTerminationDay() {
+        Property apartment = PropertyFactory.getInstance(apartmentPropertyType);
+        // test normal case: a new property has no termination day
+        Assertions.assertTrue(apartment.getTerminationDay() == Property.NO_TERMINATION_DAY);
+        Assertions.assertNull(apartment.getTerminationDate());
+        long day = LocalDate.of(2030, 6, 1).toEpochDay();
+        apartment.setTerminationDay(day);
+        Assertions.assertTrue(apartment.getTerminationDay() == day);
+        // test boundary case: days before the epoch
+        apartment.setTerminationDay(-1);
+        Assertions.assertTrue(apartment.getTerminationDay() == -1);
+        apartment.setTerminationDay(Property.NO_TERMINATION_DAY);
+        Assertions.assertTrue(apartment.getTerminationDay() == Property.NO_TERMINATION_DAY);
+        // test exception case: day is too far from the epoch to be stored
+        try {
+            apartment.setTerminationDay(1L << 40);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testRelease() {
+        PropertyStore store = PropertyStore.global();
+        Property apartment = PropertyFactory.getInstance(apartmentPropertyType);
+        int id = apartment.getId();
+        int size = store.size();
+        int freeApartments = store.count(apartmentPropertyType, false);
+        int apartmentCode = apartment.getPropertyCode().toInt();
+        Assertions.assertEquals(apartment, store.viewWithCode(id, apartmentCode));
+        // test normal case: a released property is no longer counted or viewable, and its id is given to the next
+        // property added
+        store.release(id);
+        Assertions.assertEquals(freeApartments - 1, store.count(apartmentPropertyType, false));
+        Assertions.assertNull(store.viewWithCode(id, apartmentCode));
+        try {
+            store.view(id);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        Property villa = PropertyFactory.getInstance(villaPropertyType);
+        Assertions.assertEquals(id, villa.getId());
+        Assertions.assertEquals(size, store.size());
+        Assertions.assertEquals(villaPropertyType, store.view(id).getPropertyType());
+        // test boundary case: a view looked up by the released property's code isn't given the reused id
+        Assertions.assertNull(store.viewWithCode(id, apartmentCode));
+        Assertions.assertEquals(villa, store.viewWithCode(id, villa.getPropertyCode().toInt()));
+        Assertions.assertNull(store.viewWithCode(store.size(), apartmentCode));
+        // test exception case: a rented property can't be released
+        villa.setRented(true);
+        try {
+            store.release(id);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        villa.setRented(false);
+    }
+
+    private void testSeparateStores() {
+        PropertyCodeRegistry registry = new PropertyCodeRegistry();
+        PropertyStore first = new PropertyStore();
+        PropertyStore second = new PropertyStore();
+        // test normal case: each store numbers its own properties from 0
+        Property villa = PropertyFactory.getInstance(villaPropertyType, registry, first);
+        Property apartment = PropertyFactory.getInstance(apartmentPropertyType, registry, second);
+        Assertions.assertEquals(0, villa.getId());
+        Assertions.assertEquals(0, apartment.getId());
+        Assertions.assertEquals(1, first.size());
+        Assertions.assertEquals(1, second.size());
+        // test normal case: views with the same id in different stores are different properties
+        Assertions.assertNotEquals(villa, apartment);
+        Assertions.assertEquals(villa, first.view(0));
+        Assertions.assertEquals(apartmentPropertyType, second.view(0).getPropertyType());
+        apartment.setRented(true);
+        Assertions.assertFalse(villa.isRented());
+        Assertions.assertEquals(0, first.count(villaPropertyType, true));
+        Assertions.assertEquals(1, second.count(apartmentPropertyType, true));
+        // test exception case: null store
+        try {
+            PropertyFactory.getInstance(villaPropertyType, registry, null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package uk.ac.ncl.tom.testing;
+
+import uk.ac.ncl.tom.events.RejectionReason;
+import uk.ac.ncl.tom.events.RentalEventListener;
+import uk.ac.ncl.tom.management.PropertyManager;
+import uk.ac.ncl.tom.management.ShardedPropertyManager;
+import uk.ac.ncl.tom.persistence.FsyncPolicy;
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.properties.PropertyCode;
+import uk.ac.ncl.tom.tenants.TenantRecord;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ShardedPropertyManagerTest {
+    String villaPropertyType = "Villa";
+    String apartmentPropertyType = "Apartment";
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        ShardedPropertyManagerTest shardedTest = new ShardedPropertyManagerTest();
+        System.out.println("Test creating a sharded Property Manager");
+        shardedTest.testCreate();
+        System.out.println("Test spreading properties and tenants across shards");
+        shardedTest.testAddPropertiesAndTenants();
+        System.out.println("Test issuing and terminating rental contracts across shards");
+        shardedTest.testRentalContracts();
+        System.out.println("Test issuing rental contracts across shards from many threads");
+        shardedTest.testConcurrentRentalContracts();
+        System.out.println("Test terminating lapsed rentals across shards");
+        shardedTest.testLapsedRentals();
+        Path[] paths = new Path[4];
+        try {
+            for (int i = 0; i < paths.length; i++) {
+                paths[i] = Files.createTempFile("pms", ".journal");
+            }
+            System.out.println("Test rebuilding every shard from its own journal");
+            shardedTest.testJournals(paths);
+        } finally {
+            for (Path path : paths) {
+                if (path != null) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private void testCreate() {
+        // test normal case
+        ShardedPropertyManager spm = new ShardedPropertyManager(4);
+        Assertions.assertEquals(4, spm.getShardCount());
+        Assertions.assertNotNull(spm.getShard(3));
+        // test exception case: no shards
+        try {
+            new ShardedPropertyManager(0);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        // test exception case: null listener
+        try {
+            new ShardedPropertyManager(4, null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        // test exception case: shard that doesn't exist
+        try {
+            spm.getShard(4);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testAddPropertiesAndTenants() {
+        ShardedPropertyManager spm = new ShardedPropertyManager(4);
+        spm.setRentalEventListener(RentalEventListener.NONE);
+        // test normal case: properties are split evenly between the shards
+        Assertions.assertEquals(10, spm.addProperties(apartmentPropertyType, 10).size());
+        spm.addProperty(apartmentPropertyType);
+        Property villa = spm.addProperty(villaPropertyType);
+        Assertions.assertEquals(11, spm.noOfAvailableProperties(apartmentPropertyType));
+        Assertions.assertEquals(1, spm.noOfAvailableProperties(villaPropertyType));
+        for (int i = 0; i < 4; i++) {
+            int apartments = spm.getShard(i).noOfAvailableProperties(apartmentPropertyType);
+            Assertions.assertTrue(apartments == 2 || apartments == 3);
+        }
+        // test exception case: invalid property type and count
+        try {
+            spm.addProperty("Mansion");
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        try {
+            spm.addProperties(apartmentPropertyType, -1);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        // test exception case: a duplicate tenant is routed to the same shard, which rejects it
+        Calendar cal = Calendar.getInstance();
+        cal.set(1990, Calendar.MARCH, 3);
+        TenantRecord tR = spm.addTenantRecord("Shard", "Tenant", cal.getTime(), false);
+        try {
+            spm.addTenantRecord("Shard", "Tenant", cal.getTime(), true);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        // test normal case: a property is found and decommissioned in whichever shard holds it
+        PropertyCode villaCode = villa.getPropertyCode();
+        Assertions.assertEquals(villa, spm.findProperty(villaCode.toString()));
+        spm.decommissionProperty(villaCode);
+        Assertions.assertNull(spm.findProperty(villaCode.toString()));
+        Assertions.assertEquals(0, spm.noOfAvailableProperties(villaPropertyType));
+        Assertions.assertNull(spm.getPropertyCodes().valueOf(villaCode.toString()));
+        // test normal case: a tenant is found, then decommissioned from their shard, and can then be added again
+        Assertions.assertEquals(tR, spm.findTenant(tR.getTenantID().toString()));
+        spm.decommissionTenant(tR);
+        Assertions.assertNull(spm.findTenant(tR.getTenantID().toString()));
+        Assertions.assertNull(spm.getTenantIDs().valueOf(tR.getTenantID().toString()));
+        spm.addTenantRecord("Shard", "Tenant", cal.getTime(), false);
+        try {
+            spm.addTenantRecord(null, "Tenant", cal.getTime(), true);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testRentalContracts() {
+        ShardedPropertyManager spm = new ShardedPropertyManager(4);
+        CountingListener counts = new CountingListener();
+        spm.setRentalEventListener(counts);
+        spm.addProperties(apartmentPropertyType, 4);
+        Calendar cal = Calendar.getInstance();
+        cal.set(1985, Calendar.JANUARY, 1);
+        List<TenantRecord> tenants = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+            tenants.add(spm.addTenantRecord("Sharded", "Tenant", cal.getTime(), false));
+        }
+        // test normal case: each shard's apartment goes to the first tenant held by that shard, and the rest of the
+        // shard's tenants are rejected even if another shard still has an apartment free
+        Map<Integer, TenantRecord> firstInShard = new HashMap<>();
+        for (TenantRecord tR : tenants) {
+            boolean first = firstInShard.putIfAbsent(shardOf(spm, tR), tR) == null;
+            Assertions.assertEquals(first, spm.issueRentalContract(tR, apartmentPropertyType, 3));
+        }
+        int issued = firstInShard.size();
+        Assertions.assertEquals(issued, counts.issued.get());
+        Assertions.assertEquals(12 - issued, counts.rejected.get(RejectionReason.NO_STOCK).get());
+        Assertions.assertEquals(4 - issued, spm.noOfAvailableProperties(apartmentPropertyType));
+        Assertions.assertEquals(issued, spm.noOfRentedProperties(apartmentPropertyType));
+        Assertions.assertEquals(issued, spm.getPropertiesTerminatingSoon().size());
+        // test normal case: every rental is held by the shard keeping its tenant's record
+        for (TenantRecord tR : firstInShard.values()) {
+            Assertions.assertTrue(spm.getShard(shardOf(spm, tR)).getTenantsProperties().containsKey(tR.getTenantID()));
+        }
+        // test error case: a tenant can only rent one property
+        TenantRecord renting = firstInShard.values().iterator().next();
+        Assertions.assertFalse(spm.issueRentalContract(renting, apartmentPropertyType, 3));
+        Assertions.assertEquals(1, counts.rejected.get(RejectionReason.ALREADY_RENTING).get());
+        // test error case: ineligible tenants are rejected
+        Assertions.assertFalse(spm.issueRentalContract(tenants.get(0), villaPropertyType, 3));
+        Assertions.assertEquals(1, counts.rejected.get(RejectionReason.NOT_PREMIUM).get());
+        // test normal case: terminating a rental frees the apartment for another tenant of the same shard
+        spm.terminateRental(renting);
+        Assertions.assertEquals(5 - issued, spm.noOfAvailableProperties(apartmentPropertyType));
+        for (TenantRecord tR : tenants) {
+            if (tR != renting && shardOf(spm, tR) == shardOf(spm, renting)) {
+                Assertions.assertTrue(spm.issueRentalContract(tR, apartmentPropertyType, 3));
+                spm.terminateRental(tR);
+                break;
+            }
+        }
+        // test exception case: tenant that isn't renting
+        try {
+            spm.terminateRental(renting);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        // test normal case: the tenant can rent again once a property in their shard is free
+        Assertions.assertTrue(spm.issueRentalContract(renting, apartmentPropertyType, 3));
+        Assertions.assertEquals(issued, spm.getTenantsProperties().size());
+        // test exception case: a renting tenant can't be decommissioned
+        try {
+            spm.decommissionTenant(renting);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testConcurrentRentalContracts() throws InterruptedException {
+        ShardedPropertyManager spm = new ShardedPropertyManager(4, RentalEventListener.NONE);
+        spm.addProperties(apartmentPropertyType, 200);
+        Calendar cal = Calendar.getInstance();
+        cal.set(1970, Calendar.JANUARY, 1);
+        List<TenantRecord> tenants = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+            tenants.add(spm.addTenantRecord("Concurrent", "Tenant", cal.getTime(), false));
+        }
+        // each shard can rent out no more apartments than it has, nor more than it has tenants
+        int expected = 0;
+        for (int i = 0; i < spm.getShardCount(); i++) {
+            expected += Math.min(spm.getShard(i).getTenants().size(),
+                    spm.getShard(i).noOfAvailableProperties(apartmentPropertyType));
+        }
+        // test complicated normal case: 300 tenants competing from 8 threads for 200 apartments in 4 shards, each
+        // tenant trying twice
+        AtomicInteger contractsIssued = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int round = 0; round < 2; round++) {
+                    for (TenantRecord tR : tenants) {
+                        if (spm.issueRentalContract(tR, apartmentPropertyType, 30)) {
+                            contractsIssued.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // test normal case: every apartment that could be rented was rented exactly once, and no tenant has two
+        Assertions.assertEquals(expected, contractsIssued.get());
+        Assertions.assertEquals(200 - expected, spm.noOfAvailableProperties(apartmentPropertyType));
+        int rentals = 0;
+        for (int i = 0; i < spm.getShardCount(); i++) {
+            rentals += spm.getShard(i).getTenantsProperties().size();
+        }
+        Assertions.assertEquals(expected, rentals);
+        Assertions.assertEquals(expected, spm.getTenantsProperties().size());
+        Assertions.assertEquals(expected, new HashSet<>(spm.getTenantsProperties().values()).size());
+    }
+
+    private void testLapsedRentals() {
+        ShardedPropertyManager spm = new ShardedPropertyManager(4);
+        CountingListener counts = new CountingListener();
+        spm.setRentalEventListener(counts);
+        ZoneId zone = ZoneId.systemDefault();
+        Clock fixed = Clock.fixed(LocalDate.of(2030, 3, 1).atStartOfDay(zone).plusHours(12).toInstant(), zone);
+        spm.setClock(fixed);
+        spm.addProperties(apartmentPropertyType, 80);
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.MARCH, 1);
+        List<TenantRecord> tenants = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+            TenantRecord tR = spm.addTenantRecord("Lapsed", "Tenant", cal.getTime(), false);
+            Assertions.assertTrue(spm.issueRentalContract(tR, apartmentPropertyType, 1));
+            tenants.add(tR);
+        }
+        // every rental is held by the shard keeping its tenant's record
+        for (TenantRecord tR : tenants) {
+            Assertions.assertTrue(spm.getShard(shardOf(spm, tR)).getTenantsProperties().containsKey(tR.getTenantID()));
+        }
+        // test normal case: every lapsed rental is terminated and reported with the tenant's record
+        spm.setClock(Clock.offset(fixed, Duration.ofDays(5)));
+        Assertions.assertEquals(20, spm.terminateLapsedRentals());
+        Assertions.assertEquals(0, counts.unknownTenants.get());
+        Assertions.assertEquals(new HashSet<>(tenants), counts.terminated);
+        Assertions.assertEquals(80, spm.noOfAvailableProperties(apartmentPropertyType));
+        Assertions.assertTrue(spm.getTenantsProperties().isEmpty());
+        // boundary case: sweeping again finds nothing
+        Assertions.assertEquals(0, spm.terminateLapsedRentals());
+    }
+
+    private void testJournals(Path[] paths) throws IOException {
+        ShardedPropertyManager spm = new ShardedPropertyManager(paths.length, RentalEventListener.NONE);
+        for (int i = 0; i < paths.length; i++) {
+            Files.delete(paths[i]);
+            spm.getShard(i).openJournal(paths[i], FsyncPolicy.ALWAYS);
+        }
+        spm.addProperties(apartmentPropertyType, 12);
+        spm.addProperties(villaPropertyType, 4);
+        Calendar cal = Calendar.getInstance();
+        cal.set(1975, Calendar.JUNE, 1);
+        List<TenantRecord> tenants = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+            TenantRecord tR = spm.addTenantRecord("Journal", "Tenant", cal.getTime(), i % 4 == 0);
+            spm.issueRentalContract(tR, i % 4 == 0 ? villaPropertyType : apartmentPropertyType, 10);
+            tenants.add(tR);
+        }
+        for (int i = 0; i < 20; i += 3) {
+            if (spm.getTenantsProperties().containsKey(tenants.get(i).getTenantID())) {
+                spm.terminateRental(tenants.get(i));
+            }
+        }
+        List<Map<String, String>> rentals = new ArrayList<>();
+        for (int i = 0; i < paths.length; i++) {
+            rentals.add(rentalsOf(spm.getShard(i)));
+            spm.getShard(i).closeJournal();
+        }
+        // test normal case: every shard's journal replays on its own, with the tenants its rentals are for
+        ShardedPropertyManager rebuilt = new ShardedPropertyManager(paths.length, RentalEventListener.NONE);
+        for (int i = 0; i < paths.length; i++) {
+            rebuilt.getShard(i).openJournal(paths[i], FsyncPolicy.ALWAYS);
+            Assertions.assertEquals(spm.getShard(i).getTenants().size(), rebuilt.getShard(i).getTenants().size());
+            Assertions.assertEquals(spm.getShard(i).getProperties().size(), rebuilt.getShard(i).getProperties().size());
+            Assertions.assertEquals(rentals.get(i), rentalsOf(rebuilt.getShard(i)));
+        }
+        Assertions.assertEquals(20, rebuilt.getTenantIDs().getTenantIDsMap().size());
+        // test normal case: rentals restored from the journals are terminated by the shard holding their tenant
+        for (TenantRecord tR : tenants) {
+            TenantRecord restored = rebuilt.findTenant(tR.getTenantID().toString());
+            if (rebuilt.getTenantsProperties().containsKey(restored.getTenantID())) {
+                rebuilt.terminateRental(restored);
+            }
+        }
+        Assertions.assertTrue(rebuilt.getTenantsProperties().isEmpty());
+        Assertions.assertEquals(12, rebuilt.noOfAvailableProperties(apartmentPropertyType));
+        for (int i = 0; i < paths.length; i++) {
+            rebuilt.getShard(i).closeJournal();
+        }
+    }
+
+    /**
+     * Returns the index of the shard holding the specified tenant's record.
+     */
+    private static int shardOf(ShardedPropertyManager spm, TenantRecord tenantRecord) {
+        for (int i = 0; i < spm.getShardCount(); i++) {
+            if (spm.getShard(i).getTenants().containsKey(tenantRecord.getTenantID())) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Tenant " + tenantRecord.getTenantID() + " isn't held by any shard.");
+    }
+
+    /**
+     * Returns the rentals of the specified Property Manager as tenant ID and property code strings, so rentals of
+     * different Property Managers can be compared.
+     */
+    private static Map<String, String> rentalsOf(PropertyManager manager) {
+        Map<String, String> rentals = new HashMap<>();
+        manager.getTenantsProperties().forEach((id, code) -> rentals.put(id.toString(), code.toString()));
+        return rentals;
+    }
+
+    private static class CountingListener implements RentalEventListener {
+        private final AtomicInteger issued = new AtomicInteger();
+        private final Map<RejectionReason, AtomicInteger> rejected = new ConcurrentHashMap<>();
+        private final Set<TenantRecord> terminated = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger unknownTenants = new AtomicInteger();
+
+        CountingListener() {
+            for (RejectionReason reason : RejectionReason.values()) {
+                rejected.put(reason, new AtomicInteger());
+            }
+        }
+
+        @Override
+        public void contractIssued(long day, TenantRecord tenantRecord, Property property, int duration) {
+            issued.incrementAndGet();
+        }
+
+        @Override
+        public void contractRejected(long day, TenantRecord tenantRecord, String propertyType, RejectionReason reason) {
+            rejected.get(reason).incrementAndGet();
+        }
+
+        @Override
+        public void rentalTerminated(long day, TenantRecord tenantRecord, Property property) {
+            if (tenantRecord == null) {
+                unknownTenants.incrementAndGet();
+            } else {
+                terminated.add(tenantRecord);
+            }
+        }
+    }
+}
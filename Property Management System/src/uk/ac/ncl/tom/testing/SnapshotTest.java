@@ -0,0 +1,184 @@
+package uk.ac.ncl.tom.testing;
+
+import uk.ac.ncl.tom.events.RentalEventListener;
+import uk.ac.ncl.tom.management.PropertyManager;
+import uk.ac.ncl.tom.management.PropertyManagerMetrics;
+import uk.ac.ncl.tom.persistence.Snapshot;
+import uk.ac.ncl.tom.persistence.SnapshotHandler;
+import uk.ac.ncl.tom.persistence.SnapshotWriter;
+import uk.ac.ncl.tom.properties.Property;
+import uk.ac.ncl.tom.properties.PropertyCode;
+import uk.ac.ncl.tom.tenants.Name;
+import uk.ac.ncl.tom.tenants.TenantID;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class SnapshotTest {
+    String villaPropertyType = "Villa";
+    String apartmentPropertyType = "Apartment";
+    int year = Calendar.getInstance().get(Calendar.YEAR);
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SnapshotTest snapshotTest = new SnapshotTest();
+        Path path = Files.createTempFile("pms", ".snapshot");
+        try {
+            System.out.println("Test loading the Property Manager from a snapshot");
+            snapshotTest.testLoadSnapshot(path);
+            System.out.println("Test saving a snapshot of the Property Manager");
+            snapshotTest.testSaveSnapshot(path);
+            System.out.println("Test reading a corrupt snapshot");
+            snapshotTest.testCorruptSnapshot(path);
+            System.out.println("Test reporting snapshots that fail in the background");
+            snapshotTest.testSnapshotFailures(path);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private void testLoadSnapshot(Path path) throws IOException {
+        SnapshotWriter writer = new SnapshotWriter();
+        writer.propertyCode("V-D03");
+        writer.propertyCode("V-D04");
+        writer.propertyCode("A-E55");
+        writer.propertyCode("A-E56");
+        writer.tenantID("SR." + year + ".07");
+        writer.tenantID("XY." + year + ".00");
+        writer.property(villaPropertyType, "V-D03", false);
+        writer.property(villaPropertyType, "V-D04", false);
+        writer.property(apartmentPropertyType, "A-E55", true);
+        writer.tenant("SR." + year + ".07", "Sophie", "Radford", LocalDate.of(2000, 2, 27).toEpochDay(), true);
+        writer.rental("SR." + year + ".07", "V-D03", LocalDate.now().plusDays(5).toEpochDay());
+        writer.writeTo(path);
+
+        PropertyManager.getInstance().loadSnapshot(path);
+        // test normal case: properties, tenants and rentals are loaded with their original codes and IDs
+        Assertions.assertEquals(3, PropertyManager.getInstance().getProperties().size());
+        Assertions.assertEquals(1, PropertyManager.getInstance().getTenants().size());
+        Assertions.assertEquals(1, PropertyManager.getInstance().getTenantsProperties().size());
+        Property villa = PropertyManager.getInstance().getProperties().get(PropertyCode.getPropertyCodesMap().get("V-D03"));
+        Assertions.assertTrue(villa.isRented());
+        Assertions.assertTrue(PropertyManager.getInstance().getPropertiesTerminatingSoon().contains(villa));
+        Assertions.assertEquals(1, PropertyManager.getInstance().noOfAvailableProperties(villaPropertyType));
+        Assertions.assertEquals(1, PropertyManager.getInstance().noOfAvailableProperties(apartmentPropertyType));
+        // test normal case: codes and IDs that were issued but not used are still reserved
+        Assertions.assertTrue(PropertyCode.getPropertyCodesMap().containsKey("A-E56"));
+        Assertions.assertEquals("08", TenantID.getInstance(new Name("Sam", "Rogers")).getSerialNumber());
+        Assertions.assertEquals("01", TenantID.getInstance(new Name("Xavier", "Young")).getSerialNumber());
+        // test exception case: the Property Manager already has properties
+        try {
+            PropertyManager.getInstance().loadSnapshot(path);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalStateException.class, t);
+        }
+        // test exception case: null path
+        try {
+            PropertyManager.getInstance().loadSnapshot(null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testSaveSnapshot(Path path) throws IOException {
+        PropertyManager.getInstance().addProperty(apartmentPropertyType);
+        PropertyManager.getInstance().saveSnapshot(path);
+        // test normal case: the snapshot holds everything on the system, including the registries
+        CountingHandler counts = new CountingHandler();
+        Snapshot.read(path, counts);
+        Assertions.assertEquals(5, counts.propertyCodes);
+        Assertions.assertEquals(4, counts.tenantIDs);
+        Assertions.assertEquals(4, counts.properties);
+        Assertions.assertEquals(1, counts.tenants);
+        Assertions.assertEquals(1, counts.rentals);
+        Assertions.assertEquals(LocalDate.now().plusDays(5).toEpochDay(), counts.terminationDay);
+        // test normal case: no temporary file is left behind
+        Assertions.assertFalse(Files.exists(path.resolveSibling(path.getFileName() + ".tmp")));
+    }
+
+    private void testCorruptSnapshot(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(path, bytes);
+        // test exception case: a changed byte is caught by the checksum
+        try {
+            Snapshot.read(path, new CountingHandler());
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IOException.class, t);
+        }
+        // test exception case: not a snapshot at all
+        Files.write(path, new byte[]{1, 2, 3});
+        try {
+            Snapshot.read(path, new CountingHandler());
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IOException.class, t);
+        }
+    }
+
+    private void testSnapshotFailures(Path path) throws InterruptedException {
+        PropertyManager pm = PropertyManager.newInstance(RentalEventListener.NONE);
+        PropertyManagerMetrics metrics = pm.enableMetrics();
+        BlockingQueue<Throwable> failures = new LinkedBlockingQueue<>();
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((t, e) -> failures.add(e));
+        try {
+            // test error case: a snapshot that can't be written is reported and counted, and snapshots carry on
+            pm.startSnapshots(path.resolve("missing").resolve("pms.snapshot"), 10);
+            Throwable first = failures.poll(10, TimeUnit.SECONDS);
+            Throwable second = failures.poll(10, TimeUnit.SECONDS);
+            pm.stopSnapshots();
+            Assertions.assertNotNull(first);
+            Assertions.assertExpectedThrowable(UncheckedIOException.class, first);
+            Assertions.assertNotNull(second);
+            Assertions.assertTrue(metrics.getBackgroundJobFailures() >= 2);
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(previous);
+            pm.disableMetrics();
+        }
+    }
+
+    private static final class CountingHandler implements SnapshotHandler {
+        int propertyCodes;
+        int tenantIDs;
+        int properties;
+        int tenants;
+        int rentals;
+        long terminationDay;
+
+        @Override
+        public void propertyCode(String propertyCode) {
+            propertyCodes++;
+        }
+
+        @Override
+        public void tenantID(String tenantID) {
+            tenantIDs++;
+        }
+
+        @Override
+        public void property(String propertyType, String propertyCode, boolean cleanPool) {
+            properties++;
+        }
+
+        @Override
+        public void tenant(String tenantID, String firstName, String lastName, long dateOfBirthDay, boolean premium) {
+            tenants++;
+        }
+
+        @Override
+        public void rental(String tenantID, String propertyCode, long terminationDay) {
+            rentals++;
+            this.terminationDay = terminationDay;
+        }
+    }
+}
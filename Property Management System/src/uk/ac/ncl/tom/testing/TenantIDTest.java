@@ -0,0 +1,213 @@
+package uk.ac.ncl.tom.testing;
+
+import uk.ac.ncl.tom.tenants.Name;
+import uk.ac.ncl.tom.tenants.TenantID;
+import uk.ac.ncl.tom.tenants.TenantIDMap;
+import uk.ac.ncl.tom.tenants.TenantIDRegistry;
+
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Set;
+
+public class TenantIDTest {
+    public static void main(String[] args) {
+        TenantIDTest tIDTest = new TenantIDTest();
+        System.out.println("Test create tenant ID");
+        tIDTest.createTenantID();
+        System.out.println("Test uniqueness of tenant IDs with the same initials");
+        tIDTest.testUniqueSerialNumbers();
+        System.out.println("Test serial numbers past 99");
+        tIDTest.testSerialNumberOverflow();
+        System.out.println("Test restoring a saved tenant ID");
+        tIDTest.testRestore();
+        System.out.println("Test separate registries and releasing tenant IDs");
+        tIDTest.testRegistry();
+        System.out.println("Test packed tenant IDs");
+        tIDTest.testPacked();
+        System.out.println("Test Map keyed by tenant ID");
+        tIDTest.testMap();
+    }
+
+    private void createTenantID() {
+        // test normal case
+        TenantID tID = TenantID.getInstance(new Name("Thomas", "Hague"));
+        Assertions.assertNotNull(tID);
+        Assertions.assertEquals("TH", tID.getInitials());
+        Assertions.assertEquals(Calendar.getInstance().get(Calendar.YEAR), tID.getYearOfIssue());
+        Assertions.assertEquals(2, tID.getSerialNumber().length());
+        Assertions.assertEquals("TH." + tID.getYearOfIssue() + "." + tID.getSerialNumber(), tID.toString());
+        // exception case: null name
+        try {
+            TenantID.getInstance(null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testUniqueSerialNumbers() {
+        // test normal case: 100 tenants with the same initials all get two-digit serial numbers, and are unique
+        Set<String> generatedIDs = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            TenantID tID = TenantID.getInstance(new Name("John", "Smith"));
+            Assertions.assertEquals(2, tID.getSerialNumber().length());
+            Assertions.assertFalse(generatedIDs.contains(tID.toString()));
+            generatedIDs.add(tID.toString());
+        }
+        Assertions.assertEquals(100, generatedIDs.size());
+    }
+
+    private void testSerialNumberOverflow() {
+        // boundary case: the 101st tenant with the same initials gets a three-digit serial number
+        TenantID tID = TenantID.getInstance(new Name("Jane", "Simpson"));
+        Assertions.assertEquals("100", tID.getSerialNumber());
+        // test complicated normal case: many more tenants with the same initials are still unique
+        Set<String> generatedIDs = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            TenantID tID2 = TenantID.getInstance(new Name("Jack", "Sparrow"));
+            Assertions.assertFalse(generatedIDs.contains(tID2.toString()));
+            generatedIDs.add(tID2.toString());
+        }
+        Assertions.assertEquals(100000, generatedIDs.size());
+    }
+
+    private void testRestore() {
+        int year = Calendar.getInstance().get(Calendar.YEAR);
+        // test normal case: a restored ID keeps its serial number and new IDs carry on after it
+        TenantID restored = TenantID.restore("ZZ." + year + ".41");
+        Assertions.assertEquals("41", restored.getSerialNumber());
+        Assertions.assertEquals(restored, TenantID.valueOf("ZZ." + year + ".41"));
+        TenantID tID = TenantID.getInstance(new Name("Zoe", "Zed"));
+        Assertions.assertEquals("42", tID.getSerialNumber());
+        // test exception case: the ID is already on the system
+        try {
+            TenantID.restore("ZZ." + year + ".41");
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        // test exception case: not a tenant ID
+        try {
+            TenantID.restore("ZZ-" + year + "-43");
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testRegistry() {
+        // test normal case: a new registry issues serial numbers from 00, separately from the shared registry
+        TenantIDRegistry registry = new TenantIDRegistry();
+        TenantID tID = registry.getInstance(new Name("Quinn", "Quill"));
+        Assertions.assertEquals("00", tID.getSerialNumber());
+        Assertions.assertEquals(tID, registry.valueOf(tID.toString()));
+        Assertions.assertNull(TenantID.valueOf(tID.toString()));
+        // test normal case: a released tenant ID is no longer in use, and its serial number isn't issued again
+        Assertions.assertTrue(registry.release(tID));
+        Assertions.assertNull(registry.valueOf(tID.toString()));
+        Assertions.assertTrue(registry.getTenantIDsMap().isEmpty());
+        Assertions.assertEquals("01", registry.getInstance(new Name("Quinn", "Quill")).getSerialNumber());
+        // test error case: a tenant ID that has already been released isn't released again
+        Assertions.assertFalse(registry.release(tID));
+        // test exception case: null tenant ID
+        try {
+            registry.release(null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        // test normal case: a tenant ID can be issued in a given year, with its own serial numbers
+        TenantID issued2030 = registry.getInstance(new Name("Quinn", "Quill"), 2030);
+        Assertions.assertEquals("QQ.2030.00", issued2030.toString());
+        // test exception case: year of issue doesn't fit in a tenant ID
+        try {
+            registry.getInstance(new Name("Quinn", "Quill"), TenantID.MAX_YEAR_OF_ISSUE + 1);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testPacked() {
+        TenantIDRegistry registry = new TenantIDRegistry();
+        TenantID tID = registry.getInstance(new Name("Thomas", "Hague"));
+        // test normal case: a tenant ID's string parses back to its packed long, and finds the same tenant ID
+        Assertions.assertEquals(tID.toLong(), TenantID.parse(tID.toString()));
+        Assertions.assertEquals(tID, registry.valueOf(tID.toLong()));
+        Assertions.assertEquals("TH", tID.getInitials());
+        // test normal case: tenant IDs that differ in any part pack to different longs
+        Assertions.assertNotEquals(TenantID.parse("TH.2025.07"), TenantID.parse("HT.2025.07"));
+        Assertions.assertNotEquals(TenantID.parse("TH.2025.07"), TenantID.parse("TH.2024.07"));
+        Assertions.assertNotEquals(TenantID.parse("TH.2025.07"), TenantID.parse("TH.2025.70"));
+        // test boundary case: serial numbers past 99, and the largest year and serial number
+        TenantID restored = registry.restore("TH.2025.123");
+        Assertions.assertEquals("TH.2025.123", restored.toString());
+        Assertions.assertEquals("123", restored.getSerialNumber());
+        Assertions.assertEquals("QQ.8191.524286", registry.restore("QQ.8191.524286").toString());
+        // test error case: strings that aren't tenant IDs, or aren't written the way tenant IDs are
+        Assertions.assertEquals(TenantID.INVALID_ID, TenantID.parse(null));
+        Assertions.assertEquals(TenantID.INVALID_ID, TenantID.parse("TH.2025.7"));
+        Assertions.assertEquals(TenantID.INVALID_ID, TenantID.parse("TH.2025.007"));
+        Assertions.assertEquals(TenantID.INVALID_ID, TenantID.parse("TH.02025.07"));
+        Assertions.assertEquals(TenantID.INVALID_ID, TenantID.parse("T.2025.07"));
+        Assertions.assertEquals(TenantID.INVALID_ID, TenantID.parse("TH-2025.07"));
+        Assertions.assertEquals(TenantID.INVALID_ID, TenantID.parse("TH.2025.0x"));
+        Assertions.assertEquals(TenantID.INVALID_ID, TenantID.parse("TH.8192.07"));
+        Assertions.assertEquals(TenantID.INVALID_ID, TenantID.parse("TH.2025.524287"));
+        // test exception case: restoring a string that isn't a tenant ID
+        try {
+            registry.restore("TH.2025.007");
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+
+    private void testMap() {
+        TenantIDRegistry registry = new TenantIDRegistry();
+        TenantIDMap<String> map = new TenantIDMap<>();
+        Set<TenantID> tIDs = new HashSet<>();
+        // test complicated normal case: 1000 tenant IDs with the same initials are all found, by object and packed long
+        for (int i = 0; i < 1000; i++) {
+            TenantID tID = registry.getInstance(new Name("Quinn", "Quill"));
+            tIDs.add(tID);
+            Assertions.assertNull(map.put(tID, tID.toString()));
+        }
+        Assertions.assertEquals(1000, map.size());
+        for (TenantID tID : tIDs) {
+            Assertions.assertEquals(tID.toString(), map.get(tID));
+            Assertions.assertEquals(tID.toString(), map.get(TenantID.parse(tID.toString())));
+        }
+        Assertions.assertEquals(tIDs, map.keySet());
+        // test normal case: replacing and removing values
+        TenantID first = registry.restore("QQ.2000.00");
+        Assertions.assertNull(map.put(first, "a"));
+        Assertions.assertEquals("a", map.put(first, "b"));
+        Assertions.assertFalse(map.remove(first, "a"));
+        Assertions.assertTrue(map.remove(first, "b"));
+        Assertions.assertFalse(map.containsKey(first.toLong()));
+        // test boundary case: removed entries can be added again, and removing every entry empties the Map
+        Assertions.assertNull(map.put(first, "c"));
+        Assertions.assertEquals("c", map.remove(first));
+        for (TenantID tID : tIDs) {
+            Assertions.assertNotNull(map.remove(tID));
+        }
+        Assertions.assertTrue(map.isEmpty());
+        // test error case: keys that aren't tenant IDs in the Map
+        Assertions.assertNull(map.get("QQ.2000.00"));
+        Assertions.assertNull(map.get(TenantID.INVALID_ID));
+        // test exception case: null tenant ID or value
+        try {
+            map.put(null, "a");
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+        try {
+            map.put(first, null);
+            Assertions.assertNotReached();
+        } catch (Throwable t) {
+            Assertions.assertExpectedThrowable(IllegalArgumentException.class, t);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package uk.ac.ncl.tom.util;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Class representing a hash table keyed by primitive longs, so looking a key up neither boxes it nor calls equals.
+ * It holds the packed property codes in use in a registry, the Property Manager's index of property store ids by
+ * packed property code, and the entries of a TenantIDMap. Packed property codes are ints, which are widened to longs.
+ * It is an open addressing hash table with linear probing. An empty slot has no value and a removed slot holds a
+ * marker value, so every long can be a key. Lookups don't take a lock: they read the table under an optimistic stamp,
+ * and only read it again holding the read lock if an entry was added or removed at the same time. Adding and removing
+ * entries takes the write lock, so the table can be used from many threads at once.
+ * Null values aren't allowed.
+ *
+ * @param <V> the type of the values.
+ * @author Thomas Hague
+ */
+
+public final class LongHashTable<V> {
+    /**
+     * Value of a slot whose entry has been removed, so that lookups carry on probing past it.
+     */
+    private static final Object REMOVED = new Object();
+
+    private final StampedLock lock = new StampedLock();
+    private Table table = new Table(16);
+    private int size;
+    private int used;
+
+    /**
+     * Creates an empty table.
+     */
+    public LongHashTable() {
+    }
+
+    /**
+     * Returns the value for the specified key.
+     *
+     * @param key , any long.
+     * @return the value, or null if the key isn't in the table.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        Object value = table.find(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = table.find(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return (V) value;
+    }
+
+    /**
+     * Returns what the specified function makes of the value for the specified key, such as a view of the property
+     * with a property store id. The function is applied under the same optimistic stamp as the lookup, and is applied
+     * again holding the read lock if an entry was added or removed in the meantime, so its result is never for an
+     * entry that was removed, or a value that was replaced, while it was being made.
+     *
+     * @param key  , any long.
+     * @param view , applied to the value. May return null, and may see an entry being removed before it is retried.
+     * @return the function's result, or null if the key isn't in the table.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(long key, Function<? super V, ? extends T> view) {
+        long stamp = lock.tryOptimisticRead();
+        Object value = table.find(key);
+        T found = value == null ? null : view.apply((V) value);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = table.find(key);
+                found = value == null ? null : view.apply((V) value);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns a boolean indicating whether the specified key is in the table.
+     *
+     * @param key , any long.
+     * @return true if the key is in the table, false if not.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Adds the specified value to the table under the specified key, replacing any value already there.
+     * Exception is thrown if the value is null.
+     *
+     * @param key   , any long.
+     * @param value , the value.
+     * @return the value that was replaced, or null if the key wasn't in the table.
+     */
+    public V put(long key, V value) {
+        return put(key, value, true);
+    }
+
+    /**
+     * Adds the specified value to the table under the specified key, unless the key is already in the table.
+     * Exception is thrown if the value is null.
+     *
+     * @param key   , any long.
+     * @param value , the value.
+     * @return the value already in the table, or null if the value was added.
+     */
+    public V putIfAbsent(long key, V value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * Removes the entry for the specified key.
+     *
+     * @param key , any long.
+     * @return the value that was removed, or null if the key wasn't in the table.
+     */
+    public V remove(long key) {
+        return remove(key, null, true);
+    }
+
+    /**
+     * Removes the entry for the specified key, only if its value equals the specified value.
+     *
+     * @param key   , any long.
+     * @param value , the value the entry must have.
+     * @return true if the entry was removed, false if not.
+     */
+    public boolean remove(long key, Object value) {
+        return value != null && remove(key, value, false) != null;
+    }
+
+    /**
+     * Returns the number of entries in the table.
+     *
+     * @return an int
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Removes every entry from the table.
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new Table(16);
+            size = 0;
+            used = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns every key in the table, copied into a new array so the table can be changed while they are looked at.
+     *
+     * @return a long array of keys, in no particular order.
+     */
+    public long[] keys() {
+        long stamp = lock.readLock();
+        try {
+            long[] keys = new long[size];
+            int n = 0;
+            for (int i = 0; i < table.keys.length; i++) {
+                Object value = table.values[i];
+                if (value != null && value != REMOVED) {
+                    keys[n++] = table.keys[i];
+                }
+            }
+            return keys;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Passes each value in the table to the specified action, holding the read lock, so entries can't be added or
+     * removed while it runs and no copy of the entries is made. The action must not change the table.
+     *
+     * @param action , called for each value.
+     */
+    public void forEachValue(Consumer<? super V> action) {
+        forEach((key, value) -> action.accept(value));
+    }
+
+    /**
+     * Passes each key and its value to the specified action, holding the read lock, so entries can't be added or
+     * removed while it runs and no copy of the entries is made. The action must not change the table.
+     *
+     * @param action , called for each entry.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        long stamp = lock.readLock();
+        try {
+            long[] keys = table.keys;
+            Object[] values = table.values;
+            for (int i = 0; i < keys.length; i++) {
+                Object value = values[i];
+                if (value != null && value != REMOVED) {
+                    action.accept(keys[i], (V) value);
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Adds the specified value under the specified key, replacing any value already there only if asked to.
+     *
+     * @return the value that was there before, or null if the key wasn't in the table.
+     */
+    @SuppressWarnings("unchecked")
+    private V put(long key, V value, boolean replace) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value can't be null");
+        }
+        long stamp = lock.writeLock();
+        try {
+            if ((used + 1) * 4L > table.keys.length * 3L) {
+                // grow when live entries fill half the table, otherwise just clear out removed slots
+                rehash(size * 2 >= table.keys.length ? table.keys.length * 2 : table.keys.length);
+            }
+            long[] keys = table.keys;
+            Object[] values = table.values;
+            int mask = keys.length - 1;
+            int free = -1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                Object old = values[i];
+                if (old == null) {
+                    if (free < 0) {
+                        free = i;
+                        used++;
+                    }
+                    keys[free] = key;
+                    values[free] = value;
+                    size++;
+                    return null;
+                }
+                if (old == REMOVED) {
+                    if (free < 0) {
+                        free = i;
+                    }
+                } else if (keys[i] == key) {
+                    if (replace) {
+                        values[i] = value;
+                    }
+                    return (V) old;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the entry for the specified key if its value equals the specified value, or whatever its value if any
+     * value is accepted.
+     *
+     * @return the value that was removed, or null if nothing was removed.
+     */
+    @SuppressWarnings("unchecked")
+    private V remove(long key, Object expected, boolean anyValue) {
+        long stamp = lock.writeLock();
+        try {
+            long[] keys = table.keys;
+            Object[] values = table.values;
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+                Object old = values[i];
+                if (old != REMOVED && keys[i] == key) {
+                    if (!anyValue && !expected.equals(old)) {
+                        return null;
+                    }
+                    values[i] = REMOVED;
+                    size--;
+                    return (V) old;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Moves every entry into a new table with the specified number of slots, leaving out removed slots.
+     */
+    private void rehash(int capacity) {
+        Table old = table;
+        Table grown = new Table(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.keys.length; j++) {
+            Object value = old.values[j];
+            if (value != null && value != REMOVED) {
+                int i = slot(old.keys[j], mask);
+                while (grown.values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                grown.keys[i] = old.keys[j];
+                grown.values[i] = value;
+            }
+        }
+        table = grown;
+        used = size;
+    }
+
+    /**
+     * Returns the first slot to probe for the specified key. Packed property codes and tenant IDs differ mostly in
+     * their low bits, so keys are spread over the table by multiplying with the golden ratio.
+     */
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Interface for an action taking a key of a LongHashTable and its value, without boxing the key.
+     *
+     * @param <V> the type of the values.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    /**
+     * Class representing the slots of the hash table, swapped as one when the table grows so a lookup always reads
+     * keys and values from the same table.
+     */
+    private static final class Table {
+        private final long[] keys;
+        private final Object[] values;
+
+        private Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+
+        /**
+         * Returns the value for the specified key in this table. The probe is bounded by the table's size, so it ends
+         * even if the table is changed while it is being read.
+         */
+        private Object find(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            for (int n = 0; n < keys.length; n++, i = (i + 1) & mask) {
+                Object value = values[i];
+                if (value == null) {
+                    return null;
+                }
+                if (value != REMOVED && keys[i] == key) {
+                    return value;
+                }
+            }
+            return null;
+        }
+    }
+}